@@ -0,0 +1,401 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import live.thought.thought4j.ThoughtClientInterface.AddressValidationResult;
+import live.thought.thought4j.ThoughtClientInterface.Block;
+import live.thought.thought4j.ThoughtClientInterface.BlockChainInfo;
+import live.thought.thought4j.ThoughtClientInterface.DecodedScript;
+import live.thought.thought4j.ThoughtClientInterface.MemPoolInfo;
+import live.thought.thought4j.ThoughtClientInterface.RawTransaction;
+import live.thought.thought4j.ThoughtClientInterface.Transaction;
+import live.thought.thought4j.ThoughtClientInterface.TransactionsSinceBlock;
+import live.thought.thought4j.ThoughtClientInterface.TxOut;
+import live.thought.thought4j.ThoughtClientInterface.Unspent;
+import live.thought.thought4j.util.JSONWriter;
+
+/**
+ * Non-blocking counterpart of {@link ThoughtRPCClient}. Every call returns at
+ * once with a {@link CompletableFuture}; requests are multiplexed over a small,
+ * bounded set of keep-alive connections driven by a single selector thread, so
+ * hundreds of calls can be outstanding without a thread per call.
+ * <p>
+ * Results are the same typed views the blocking client returns. Responses are
+ * parsed, and futures completed, on the executor given to the constructor
+ * (the common fork-join pool by default).
+ * <p>
+ * Only the calls on the paths that are worth overlapping are mirrored: block
+ * and transaction lookups, chain and mempool state, and the wallet calls of a
+ * payment, from listing and signing outputs to sending them. Rarely used,
+ * administrative and deprecated account calls are left out, as are calls
+ * whose arguments need building, such as
+ * {@link ThoughtRPCClient#createRawTransaction(List, List)}; reach those
+ * through {@link #query(String, Object...)}, which returns the node's JSON as
+ * parsed, or run the blocking client on an executor of your own.
+ * <p>
+ * thoughtd serves plain HTTP only. For an https URL, e.g. behind a TLS proxy,
+ * calls fall back to the blocking client running on a pool of
+ * <code>maxInFlight</code> threads.
+ */
+public class AsyncThoughtClient implements Closeable
+{
+  public static final int             DEFAULT_MAX_IN_FLIGHT = 8;
+
+  private final ThoughtRPCClient      client;
+  private final ThoughtAsyncTransport transport;
+  private final ExecutorService       fallbackExecutor;
+
+  public AsyncThoughtClient(ThoughtRPCClient client) throws IOException
+  {
+    this(client, DEFAULT_MAX_IN_FLIGHT, null);
+  }
+
+  /**
+   * @param client
+   *          the client whose URL, credentials and result types are used
+   * @param maxInFlight
+   *          the maximum number of requests sent to thoughtd at the same time
+   * @param executor
+   *          the executor completing the futures, or null for the common pool
+   */
+  public AsyncThoughtClient(ThoughtRPCClient client, int maxInFlight, Executor executor) throws IOException
+  {
+    this.client = client;
+    if ("http".equalsIgnoreCase(client.rpcURL.getProtocol()))
+    {
+      this.transport = new ThoughtAsyncTransport(client.rpcURL, maxInFlight, executor);
+      this.fallbackExecutor = null;
+    }
+    else
+    {
+      this.transport = null;
+      this.fallbackExecutor = Executors.newFixedThreadPool(maxInFlight, new ThreadFactory()
+      {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+          Thread t = new Thread(r, "thought4j-async-rpc-fallback");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+  }
+
+  public ThoughtRPCClient getClient()
+  {
+    return client;
+  }
+
+  /**
+   * The non-blocking transport, or null when calls fall back to the blocking
+   * client.
+   */
+  public ThoughtAsyncTransport getTransport()
+  {
+    return transport;
+  }
+
+  @Override
+  public void close()
+  {
+    if (transport != null)
+      transport.close();
+    if (fallbackExecutor != null)
+      fallbackExecutor.shutdown();
+  }
+
+  /**
+   * Asynchronous {@link ThoughtRPCClient#query(String, Object...)}.
+   */
+  public CompletableFuture<Object> query(final String method, final Object... o)
+  {
+    if (transport == null)
+    {
+      return CompletableFuture.supplyAsync(new Supplier<Object>()
+      {
+        @Override
+        public Object get()
+        {
+          return client.query(method, o);
+        }
+      }, fallbackExecutor);
+    }
+
+    final CompletableFuture<Object> result = new CompletableFuture<Object>();
+    final long start = System.nanoTime();
+    JSONWriter request = client.writeRequest(method, o);
+    transport.post(client.getRpcPath(), client.getAuthorization(), request.buffer(), 0, request.size())
+        .whenComplete(new BiConsumer<ThoughtAsyncTransport.HttpResult, Throwable>()
+        {
+          @Override
+          public void accept(ThoughtAsyncTransport.HttpResult r, Throwable ex)
+          {
+            if (ex != null)
+            {
+              client.record(method, true, start, 0, 0, 0, 0, 0, 0);
+              result.completeExceptionally(new ThoughtRPCException(method, Arrays.deepToString(o), ex));
+              return;
+            }
+            long bodyStart = System.nanoTime();
+            boolean failed = true;
+            try
+            {
+              if (r.statusCode != 200)
+                throw new ThoughtRPCException(method, Arrays.deepToString(o), r.statusCode, r.message, new String(r.body));
+              Object parsed = client.loadResponse(new ByteArrayInputStream(r.body), "1", false);
+              failed = false;
+              client.record(method, false, start, r.bytesSent, r.bytesReceived, r.connectNanos, r.waitNanos,
+                  r.readNanos, System.nanoTime() - bodyStart);
+              result.complete(parsed);
+            }
+            catch (IOException e)
+            {
+              result.completeExceptionally(new ThoughtRPCException(method, Arrays.deepToString(o), e));
+            }
+            catch (RuntimeException e)
+            {
+              result.completeExceptionally(e);
+            }
+            finally
+            {
+              if (failed)
+                client.record(method, true, start, r.bytesSent, r.bytesReceived, r.connectNanos, r.waitNanos,
+                    r.readNanos, System.nanoTime() - bodyStart);
+            }
+          }
+        });
+    return result;
+  }
+
+  private <T> CompletableFuture<T> query(Function<Object, T> converter, String method, Object... o)
+  {
+    return query(method, o).thenApply(converter);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> Function<Object, T> cast()
+  {
+    return (Function<Object, T>) ThoughtRPCClient.AS_IS;
+  }
+
+  public CompletableFuture<Block> getBlock(String blockHash)
+  {
+    return query(client.toBlock, "getblock", blockHash);
+  }
+
+  public CompletableFuture<Block> getBlock(int height)
+  {
+    return getBlockHash(height).thenCompose(new Function<String, CompletableFuture<Block>>()
+    {
+      @Override
+      public CompletableFuture<Block> apply(String hash)
+      {
+        return getBlock(hash);
+      }
+    });
+  }
+
+  public CompletableFuture<String> getRawBlock(String blockHash)
+  {
+    return query(AsyncThoughtClient.<String> cast(), "getblock", blockHash, false);
+  }
+
+  public CompletableFuture<String> getBlockHash(int height)
+  {
+    return query(AsyncThoughtClient.<String> cast(), "getblockhash", height);
+  }
+
+  public CompletableFuture<Integer> getBlockCount()
+  {
+    return query(ThoughtRPCClient.TO_INT, "getblockcount");
+  }
+
+  public CompletableFuture<String> getBestBlockHash()
+  {
+    return query(AsyncThoughtClient.<String> cast(), "getbestblockhash");
+  }
+
+  public CompletableFuture<BlockChainInfo> getBlockChainInfo()
+  {
+    return query(client.toBlockChainInfo, "getblockchaininfo");
+  }
+
+  public CompletableFuture<List<String>> getRawMemPool()
+  {
+    return query(AsyncThoughtClient.<List<String>> cast(), "getrawmempool");
+  }
+
+  public CompletableFuture<MemPoolInfo> getMemPoolInfo()
+  {
+    return query(client.toMemPoolInfo, "getmempoolinfo");
+  }
+
+  public CompletableFuture<RawTransaction> getRawTransaction(String txId)
+  {
+    return query(client.toRawTransaction, "getrawtransaction", txId, 1);
+  }
+
+  public CompletableFuture<String> getRawTransactionHex(String txId)
+  {
+    return query(AsyncThoughtClient.<String> cast(), "getrawtransaction", txId);
+  }
+
+  public CompletableFuture<RawTransaction> decodeRawTransaction(String hex)
+  {
+    return query(client.toRawTransaction, "decoderawtransaction", hex);
+  }
+
+  /**
+   * Signs with the wallet's keys only; see
+   * {@link ThoughtRPCClient#signRawTransaction(String)}.
+   */
+  public CompletableFuture<String> signRawTransaction(String hex)
+  {
+    return query(ThoughtRPCClient.TO_SIGNED_HEX, "signrawtransaction", hex);
+  }
+
+  /**
+   * Fetches the transactions spent by every input of the given transaction, all
+   * at once.
+   *
+   * @return the input transactions, in input order; coinbase inputs map to null
+   */
+  public CompletableFuture<List<RawTransaction>> getInputTransactions(RawTransaction tx)
+  {
+    List<RawTransaction.In> inputs = tx.vIn();
+    final List<CompletableFuture<RawTransaction>> futures = new ArrayList<CompletableFuture<RawTransaction>>(inputs.size());
+    for (RawTransaction.In in : inputs)
+      futures.add(in.txid() == null ? CompletableFuture.<RawTransaction> completedFuture(null) : getRawTransaction(in.txid()));
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+        .thenApply(new Function<Void, List<RawTransaction>>()
+        {
+          @Override
+          public List<RawTransaction> apply(Void v)
+          {
+            List<RawTransaction> result = new ArrayList<RawTransaction>(futures.size());
+            for (CompletableFuture<RawTransaction> f : futures)
+              result.add(f.join());
+            return result;
+          }
+        });
+  }
+
+  public CompletableFuture<Transaction> getTransaction(String txId)
+  {
+    return query(client.toTransaction, "gettransaction", txId);
+  }
+
+  public CompletableFuture<TxOut> getTxOut(String txId, long vout)
+  {
+    return getTxOut(txId, vout, true);
+  }
+
+  public CompletableFuture<TxOut> getTxOut(String txId, long vout, boolean includemempool)
+  {
+    return query(client.toTxOut, "gettxout", txId, vout, includemempool);
+  }
+
+  public CompletableFuture<TransactionsSinceBlock> listSinceBlock()
+  {
+    return query(client.toTransactionsSinceBlock, "listsinceblock");
+  }
+
+  public CompletableFuture<TransactionsSinceBlock> listSinceBlock(String blockHash)
+  {
+    return query(client.toTransactionsSinceBlock, "listsinceblock", blockHash);
+  }
+
+  public CompletableFuture<TransactionsSinceBlock> listSinceBlock(String blockHash, int targetConfirmations)
+  {
+    return query(client.toTransactionsSinceBlock, "listsinceblock", blockHash, targetConfirmations);
+  }
+
+  public CompletableFuture<List<Unspent>> listUnspent(int minConf)
+  {
+    return query(client.toUnspentList, "listunspent", minConf);
+  }
+
+  public CompletableFuture<List<Unspent>> listUnspent(int minConf, int maxConf, String... addresses)
+  {
+    return query(client.toUnspentList, "listunspent", minConf, maxConf, addresses);
+  }
+
+  public CompletableFuture<Double> getBalance()
+  {
+    return query(ThoughtRPCClient.TO_DOUBLE, "getbalance");
+  }
+
+  public CompletableFuture<List<Transaction>> listTransactions(String account, int count)
+  {
+    return query(client.toTransactionList, "listtransactions", account, count);
+  }
+
+  public CompletableFuture<String> getNewAddress()
+  {
+    return query(AsyncThoughtClient.<String> cast(), "getnewaddress");
+  }
+
+  public CompletableFuture<String> getRawChangeAddress()
+  {
+    return query(AsyncThoughtClient.<String> cast(), "getrawchangeaddress");
+  }
+
+  public CompletableFuture<String> sendRawTransaction(String hex)
+  {
+    return query(AsyncThoughtClient.<String> cast(), "sendrawtransaction", hex);
+  }
+
+  public CompletableFuture<String> sendToAddress(String toAddress, double amount)
+  {
+    return query(AsyncThoughtClient.<String> cast(), "sendtoaddress", toAddress, amount);
+  }
+
+  public CompletableFuture<String> sendMany(String fromAccount, Map<String, Double> amounts)
+  {
+    return query(AsyncThoughtClient.<String> cast(), "sendmany", fromAccount, amounts);
+  }
+
+  public CompletableFuture<AddressValidationResult> validateAddress(String address)
+  {
+    return query(client.toAddressValidationResult, "validateaddress", address);
+  }
+
+  public CompletableFuture<DecodedScript> decodeScript(String hex)
+  {
+    return query(client.toDecodedScript, "decodescript", hex);
+  }
+}
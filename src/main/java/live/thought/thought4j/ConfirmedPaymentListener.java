@@ -22,11 +22,12 @@
  */
 package live.thought.thought4j;
 
-import java.util.Collections;
-import java.util.HashSet;
+import java.io.File;
+import java.io.IOException;
 import java.util.Set;
 
 import live.thought.thought4j.ThoughtClientInterface.Transaction;
+import live.thought.thought4j.util.TxidSet;
 
 
 /**
@@ -45,12 +46,44 @@ public abstract class ConfirmedPaymentListener extends SimpleThoughtPaymentListe
         this(6);
     }
 
-    protected Set<String> processed = Collections.synchronizedSet(new HashSet<String>());
+    /**
+     * Keeps the processed transaction ids in the given file, so confirmations
+     * are not reported again after a restart.
+     */
+    public ConfirmedPaymentListener(int minConf, File processedStore) throws IOException {
+        this.minConf = minConf;
+        TxidSet store = new TxidSet(processedStore);
+        processed = store;
+        blocks = Math.max(store.getMaxHeight(), 0);
+    }
+
+    protected Set<String> processed = new TxidSet();
+
+    /**
+     * The number of blocks a processed transaction id is remembered for. Beyond
+     * this depth the acceptor no longer reports the transaction anyway.
+     */
+    public int retainBlocks = 100;
+
+    private volatile int blocks;
 
     protected boolean markProcess(String txId) {
+        if (processed instanceof TxidSet)
+            return ((TxidSet) processed).add(txId, blocks);
         return processed.add(txId);
     }
 
+    /**
+     * Counts blocks to expire old transaction ids. Subclasses overriding this
+     * should call it.
+     */
+    @Override
+    public void block(String blockHash) {
+        blocks++;
+        if (processed instanceof TxidSet)
+            ((TxidSet) processed).expire(blocks - retainBlocks);
+    }
+
     @Override
     public void transaction(Transaction transaction) {
         if (transaction.confirmations() < minConf)
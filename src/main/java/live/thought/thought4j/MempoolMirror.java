@@ -0,0 +1,236 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import live.thought.thought4j.ThoughtClientInterface.Block;
+import live.thought.thought4j.ThoughtClientInterface.RawTransaction;
+import live.thought.thought4j.util.TxidSet;
+
+/**
+ * Keeps a local copy of the set of transaction ids in the node's memory pool
+ * and reports what changed between two polls.
+ *
+ * Each {@link #poll()} fetches the id list and the best block hash in one batch
+ * and diffs the list against the ids held, which are stored as binary keys in a
+ * {@link TxidSet}. New transactions are then fetched with
+ * <code>getrawtransaction</code> in batches of {@link #getBatchSize()} and
+ * handed to the listeners; ids that left the pool are reported as removed,
+ * flagged as confirmed when they are in one of the blocks connected since the
+ * previous poll. Those blocks are found by walking back from the new tip until
+ * the height of the previous tip is reached.
+ *
+ * At most {@link #getMaxSize()} ids are held. Further transactions are not
+ * reported until room frees up; {@link #getSkipped()} counts them.
+ */
+public class MempoolMirror
+{
+  private static final Logger logger             = Logger.getLogger(MempoolMirror.class.getCanonicalName());
+
+  public static final int     DEFAULT_BATCH_SIZE = 100;
+  public static final int     DEFAULT_MAX_SIZE   = 500000;
+
+  public interface Listener
+  {
+    /**
+     * Called for every transaction that entered the memory pool.
+     */
+    void added(RawTransaction transaction);
+
+    /**
+     * Called for every transaction that left the memory pool.
+     *
+     * @param confirmed
+     *          true if the transaction is in a block connected since the
+     *          previous poll
+     */
+    void removed(String txId, boolean confirmed);
+  }
+
+  private final ThoughtRPCClient                     client;
+  private final TxidSet                              txids     = new TxidSet();
+  private final CopyOnWriteArrayList<Listener>       listeners = new CopyOnWriteArrayList<Listener>();
+  private int                                        batchSize = DEFAULT_BATCH_SIZE;
+  private int                                        maxSize   = DEFAULT_MAX_SIZE;
+  private int                                        generation;
+  private String                                     tip;
+  private int                                        tipHeight;
+  private long                                       skipped;
+
+  public MempoolMirror(ThoughtRPCClient client)
+  {
+    this.client = client;
+  }
+
+  public void addListener(Listener listener)
+  {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener)
+  {
+    listeners.remove(listener);
+  }
+
+  public synchronized int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  public synchronized void setBatchSize(int batchSize)
+  {
+    if (batchSize < 1)
+      throw new IllegalArgumentException("batchSize must be at least 1");
+    this.batchSize = batchSize;
+  }
+
+  public synchronized int getMaxSize()
+  {
+    return maxSize;
+  }
+
+  public synchronized void setMaxSize(int maxSize)
+  {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * The number of transactions not reported because the mirror was full.
+   */
+  public synchronized long getSkipped()
+  {
+    return skipped;
+  }
+
+  public boolean contains(String txId)
+  {
+    return txids.contains(txId);
+  }
+
+  public int size()
+  {
+    return txids.size();
+  }
+
+  /**
+   * Brings the mirror up to date and reports the changes.
+   */
+  public synchronized void poll() throws GenericRpcException
+  {
+    ThoughtRPCClient.BatchResult r = client.batch().call("getrawmempool").getBestBlockHash().execute();
+    List<?> pool = r.get(0);
+    String best = r.get(1);
+
+    int gen = ++generation;
+    List<String> added = new ArrayList<String>();
+    for (Object o : pool)
+    {
+      String id = (String) o;
+      if (txids.contains(id))
+        txids.put(id, gen);
+      else if (txids.size() >= maxSize)
+        skipped++;
+      else
+      {
+        txids.put(id, gen);
+        added.add(id);
+      }
+    }
+
+    List<String> removed = new ArrayList<String>();
+    txids.expire(gen, removed);
+    HashSet<String> confirmed = new HashSet<String>();
+    if (!best.equals(tip))
+    {
+      Block b = client.getBlock(best);
+      int height = b.height();
+      if (tip != null && !removed.isEmpty())
+      {
+        // collect every block above the previous tip, not only the new one
+        while (true)
+        {
+          confirmed.addAll(b.tx());
+          String prev = b.previousHash();
+          if (prev == null || prev.equals(tip) || b.height() <= tipHeight + 1)
+            break;
+          b = client.getBlock(prev);
+        }
+      }
+      tipHeight = height;
+    }
+    if (!removed.isEmpty())
+    {
+      for (String id : removed)
+        for (Listener l : listeners)
+        {
+          try
+          {
+            l.removed(id, confirmed.contains(id));
+          }
+          catch (Exception ex)
+          {
+            logger.log(Level.SEVERE, null, ex);
+          }
+        }
+    }
+    tip = best;
+
+    for (int i = 0; i < added.size(); i += batchSize)
+      fetch(added.subList(i, Math.min(i + batchSize, added.size())));
+  }
+
+  private void fetch(List<String> ids) throws GenericRpcException
+  {
+    ThoughtRPCClient.Batch batch = client.batch();
+    for (String id : ids)
+      batch.getRawTransaction(id);
+    ThoughtRPCClient.BatchResult r = batch.execute();
+    for (int i = 0; i < ids.size(); i++)
+    {
+      RawTransaction tx;
+      try
+      {
+        tx = r.get(i);
+      }
+      catch (GenericRpcException ex)
+      {
+        // left the pool since the list was taken, reported as removed next time
+        continue;
+      }
+      for (Listener l : listeners)
+      {
+        try
+        {
+          l.added(tx);
+        }
+        catch (Exception ex)
+        {
+          logger.log(Level.SEVERE, null, ex);
+        }
+      }
+    }
+  }
+}
@@ -23,7 +23,6 @@
 
 package live.thought.thought4j;
 
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.logging.Level;
@@ -99,65 +98,121 @@ public class ThoughtAcceptor implements Runnable
     listeners.remove(listener);
   }
 
-  private HashSet<String> seen = new HashSet<String>();
-
   private void updateMonitorBlock() throws GenericRpcException
   {
     monitorBlock = lastBlock;
+    // ThoughtRPCClient answers from its block cache after the first walk
     for (int i = 0; i < monitorDepth && monitorBlock != null; i++)
-    {
-      ThoughtClientInterface.Block b = thought.getBlock(monitorBlock);
-      monitorBlock = b == null ? null : b.previousHash();
-    }
+      monitorBlock = thought.getPreviousBlockHash(monitorBlock);
   }
 
+  private ThoughtConfirmationTracker tracker;
+
+  /**
+   * Reports receive transactions to the listeners once per confirmation count,
+   * from 0 up to monitorDepth. The first check looks back monitorDepth blocks
+   * from lastBlock; later checks only fetch what changed since the previous tip.
+   */
   public synchronized void checkPayments() throws GenericRpcException
   {
-    ThoughtClientInterface.TransactionsSinceBlock t = monitorBlock == null ? thought.listSinceBlock()
-        : thought.listSinceBlock(monitorBlock);
-    for (ThoughtClientInterface.Transaction transaction : t.transactions())
+    if (tracker == null)
     {
-      if ("receive".equals(transaction.category()))
+      int[] thresholds = new int[monitorDepth + 1];
+      for (int i = 0; i < thresholds.length; i++)
+        thresholds[i] = i;
+      tracker = new ThoughtConfirmationTracker(thought, monitorBlock, thresholds);
+      tracker.addListener(new ThoughtPaymentListener()
       {
-        if (!seen.add(transaction.txId()))
-          continue;
-        for (ThoughtPaymentListener listener : listeners)
+        @Override
+        public void block(String blockHash)
         {
-          try
-          {
-            listener.transaction(transaction);
-          }
-          catch (Exception ex)
-          {
-            logger.log(Level.SEVERE, null, ex);
-          }
+          if (blockHash.equals(lastBlock))
+            return;
+          lastBlock = blockHash;
+          dispatch(null, blockHash);
         }
-      }
+
+        @Override
+        public void transaction(ThoughtClientInterface.Transaction transaction)
+        {
+          dispatch(transaction, null);
+        }
+      });
     }
-    if (!t.lastBlock().equals(lastBlock))
+    tracker.check();
+  }
+
+  private volatile ThoughtListenerDispatcher dispatcher;
+
+  public ThoughtListenerDispatcher getDispatcher()
+  {
+    return dispatcher;
+  }
+
+  /**
+   * Hands listener calls to the given dispatcher instead of making them on the
+   * thread checking for payments. Null, the default, calls listeners inline.
+   */
+  public void setDispatcher(ThoughtListenerDispatcher dispatcher)
+  {
+    this.dispatcher = dispatcher;
+  }
+
+  private void dispatch(ThoughtClientInterface.Transaction transaction, String blockHash)
+  {
+    ThoughtListenerDispatcher d = dispatcher;
+    for (ThoughtPaymentListener listener : getListeners())
     {
-      seen.clear();
-      lastBlock = t.lastBlock();
-      updateMonitorBlock();
-      for (ThoughtPaymentListener listener : listeners)
+      try
       {
-        try
+        if (d != null)
         {
-          listener.block(lastBlock);
-        }
-        catch (Exception ex)
-        {
-          logger.log(Level.SEVERE, null, ex);
+          if (transaction != null)
+            d.transaction(listener, transaction);
+          else
+            d.block(listener, blockHash);
         }
+        else if (transaction != null)
+          listener.transaction(transaction);
+        else
+          listener.block(blockHash);
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+        logger.log(Level.WARNING, "Interrupted while queueing a listener event", ex);
+        return;
+      }
+      catch (Exception ex)
+      {
+        logger.log(Level.SEVERE, null, ex);
       }
     }
   }
 
-  private boolean stop = false;
+  private volatile boolean stop = false;
 
   public void stopAccepting()
   {
     stop = true;
+    wakeUp();
+  }
+
+  private final Object wakeLock = new Object();
+  private boolean      wakeRequested;
+
+  /**
+   * Makes {@link #run()} check for payments right away instead of waiting for
+   * the rest of the check interval. Called by {@link ThoughtNotifyReceiver} when
+   * thoughtd reports a new block or wallet transaction.
+   */
+  public void wakeUp()
+  {
+    synchronized (wakeLock)
+    {
+      wakeRequested = true;
+      wakeLock.notifyAll();
+    }
   }
 
   private long checkInterval = 5000;
@@ -190,6 +245,14 @@ public class ThoughtAcceptor implements Runnable
     long nextCheck = 0;
     while (!(Thread.interrupted() || stop))
     {
+      synchronized (wakeLock)
+      {
+        if (wakeRequested)
+        {
+          wakeRequested = false;
+          nextCheck = 0;
+        }
+      }
       if (nextCheck <= System.currentTimeMillis())
         try
         {
@@ -203,7 +266,11 @@ public class ThoughtAcceptor implements Runnable
       else
         try
         {
-          Thread.sleep(Math.max(nextCheck - System.currentTimeMillis(), 100));
+          synchronized (wakeLock)
+          {
+            if (!wakeRequested && !stop)
+              wakeLock.wait(Math.max(nextCheck - System.currentTimeMillis(), 100));
+          }
         }
         catch (InterruptedException ex)
         {
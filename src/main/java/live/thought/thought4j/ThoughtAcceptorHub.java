@@ -0,0 +1,121 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs one {@link ThoughtAcceptor} per wallet of a multi-wallet node, with the
+ * chain followed once for all of them.
+ *
+ * Each acceptor talks to its wallet through {@link ThoughtRPCClient#forWallet(String)},
+ * so all of them share the node client's connection pool and block cache: the
+ * block walks and header lookups done for a new tip are fetched by the first
+ * wallet and answered from memory for the others. A single
+ * {@link ThoughtPollScheduler} probe through the node client decides when the
+ * wallets scan for payments, so an idle node costs one batch per probe
+ * interval, however many wallets there are.
+ */
+public class ThoughtAcceptorHub implements Closeable
+{
+  private final ThoughtRPCClient                       node;
+  private final ThoughtPollScheduler                   scheduler;
+  private final boolean                                ownScheduler;
+  private final LinkedHashMap<String, ThoughtAcceptor> acceptors = new LinkedHashMap<String, ThoughtAcceptor>();
+
+  public ThoughtAcceptorHub(ThoughtRPCClient node)
+  {
+    this(node, new ThoughtPollScheduler(), true);
+  }
+
+  /**
+   * Creates a hub driven by an existing scheduler, which is left running on
+   * {@link #close()}.
+   */
+  public ThoughtAcceptorHub(ThoughtRPCClient node, ThoughtPollScheduler scheduler)
+  {
+    this(node, scheduler, false);
+  }
+
+  private ThoughtAcceptorHub(ThoughtRPCClient node, ThoughtPollScheduler scheduler, boolean ownScheduler)
+  {
+    this.node = node;
+    this.scheduler = scheduler;
+    this.ownScheduler = ownScheduler;
+  }
+
+  public ThoughtPollScheduler getScheduler()
+  {
+    return scheduler;
+  }
+
+  /**
+   * Starts accepting payments to a wallet, looking back monitorDepth blocks from
+   * the current tip.
+   *
+   * @throws IllegalStateException
+   *           if the wallet was already added
+   */
+  public synchronized ThoughtAcceptor addWallet(String wallet, int monitorDepth, ThoughtPaymentListener... listeners)
+      throws GenericRpcException
+  {
+    if (acceptors.containsKey(wallet))
+      throw new IllegalStateException("Wallet already added: " + wallet);
+    ThoughtAcceptor acceptor = new ThoughtAcceptor(node.forWallet(wallet), null, monitorDepth);
+    for (ThoughtPaymentListener l : listeners)
+      acceptor.addListener(l);
+    acceptor.setLastBlock(node.getBestBlockHash());
+    acceptors.put(wallet, acceptor);
+    scheduler.add(acceptor, node);
+    return acceptor;
+  }
+
+  public synchronized ThoughtAcceptor getAcceptor(String wallet)
+  {
+    return acceptors.get(wallet);
+  }
+
+  public synchronized Map<String, ThoughtAcceptor> getAcceptors()
+  {
+    return new LinkedHashMap<String, ThoughtAcceptor>(acceptors);
+  }
+
+  public synchronized void removeWallet(String wallet)
+  {
+    ThoughtAcceptor acceptor = acceptors.remove(wallet);
+    if (acceptor != null)
+      scheduler.remove(acceptor);
+  }
+
+  /**
+   * Stops polling for all wallets.
+   */
+  @Override
+  public synchronized void close()
+  {
+    for (ThoughtAcceptor a : acceptors.values())
+      scheduler.remove(a);
+    acceptors.clear();
+    if (ownScheduler)
+      scheduler.close();
+  }
+}
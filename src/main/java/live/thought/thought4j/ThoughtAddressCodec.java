@@ -0,0 +1,126 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.Serializable;
+
+import live.thought.thought4j.util.Base58Coder;
+
+/**
+ * Converts between Thought addresses and the hashes and output scripts they
+ * stand for. The Base58 version bytes differ per network, so there is one
+ * codec per network; custom networks can create their own.
+ */
+public class ThoughtAddressCodec implements Serializable
+{
+  private static final long               serialVersionUID = 1L;
+
+  public static final ThoughtAddressCodec MAINNET          = new ThoughtAddressCodec(7, 9);
+  public static final ThoughtAddressCodec TESTNET          = new ThoughtAddressCodec(109, 193);
+
+  private final int                       pubKeyHashVersion;
+  private final int                       scriptHashVersion;
+
+  public ThoughtAddressCodec(int pubKeyHashVersion, int scriptHashVersion)
+  {
+    this.pubKeyHashVersion = pubKeyHashVersion;
+    this.scriptHashVersion = scriptHashVersion;
+  }
+
+  public int getPubKeyHashVersion()
+  {
+    return pubKeyHashVersion;
+  }
+
+  public int getScriptHashVersion()
+  {
+    return scriptHashVersion;
+  }
+
+  public String pubKeyHashAddress(byte[] hash160, int offset)
+  {
+    return encode(pubKeyHashVersion, hash160, offset);
+  }
+
+  public String scriptHashAddress(byte[] hash160, int offset)
+  {
+    return encode(scriptHashVersion, hash160, offset);
+  }
+
+  private static String encode(int version, byte[] hash, int offset)
+  {
+    byte[] payload = new byte[21];
+    payload[0] = (byte) version;
+    System.arraycopy(hash, offset, payload, 1, 20);
+    return Base58Coder.encodeChecked(payload);
+  }
+
+  /**
+   * Builds the output script paying to an address: P2PKH for public key hash
+   * addresses and P2SH for script hash addresses.
+   *
+   * @throws IllegalArgumentException
+   *           if the address is malformed or belongs to another network
+   */
+  public byte[] toScript(String address)
+  {
+    byte[] payload = Base58Coder.decodeChecked(address);
+    if (payload.length != 21)
+      throw new IllegalArgumentException("Invalid address length: " + address);
+    int version = payload[0] & 0xff;
+    byte[] script;
+    if (version == pubKeyHashVersion)
+    {
+      // OP_DUP OP_HASH160 <hash> OP_EQUALVERIFY OP_CHECKSIG
+      script = new byte[25];
+      script[0] = (byte) 0x76;
+      script[1] = (byte) 0xa9;
+      script[2] = 20;
+      System.arraycopy(payload, 1, script, 3, 20);
+      script[23] = (byte) 0x88;
+      script[24] = (byte) 0xac;
+    }
+    else if (version == scriptHashVersion)
+    {
+      // OP_HASH160 <hash> OP_EQUAL
+      script = new byte[23];
+      script[0] = (byte) 0xa9;
+      script[1] = 20;
+      System.arraycopy(payload, 1, script, 2, 20);
+      script[22] = (byte) 0x87;
+    }
+    else
+      throw new IllegalArgumentException("Address " + address + " has version " + version + ", not of this network");
+    return script;
+  }
+
+  public boolean isValid(String address)
+  {
+    try
+    {
+      toScript(address);
+      return true;
+    }
+    catch (IllegalArgumentException ex)
+    {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,790 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A non-blocking HTTP/1.1 client for a single thoughtd RPC endpoint.
+ *
+ * All sockets are driven by one selector thread. At most
+ * {@link #getMaxConnections()} requests are on the wire at any time, each on
+ * its own keep-alive connection; further requests wait in a queue, which can
+ * be bounded with {@link #setMaxQueued(int)}. Futures are completed on the
+ * callback executor, never on the selector thread.
+ *
+ * Only plain HTTP is supported, which is what thoughtd itself serves.
+ */
+public class ThoughtAsyncTransport implements Closeable
+{
+  private static final Logger              logger    = Logger.getLogger(ThoughtAsyncTransport.class.getCanonicalName());
+
+  public static final int                  DEFAULT_MAX_CONNECTIONS = 4;
+
+  private final InetSocketAddress          address;
+  private final String                     hostHeader;
+  private final int                        maxConnections;
+  private final Executor                   callbackExecutor;
+  private final Selector                   selector;
+  private final Thread                     ioThread;
+
+  private volatile int                     maxQueued        = 0;
+  private volatile long                    requestTimeout   = 0;
+  private volatile long                    idleTimeout      = ThoughtConnectionPool.DEFAULT_IDLE_TIMEOUT;
+  private volatile boolean                 closed           = false;
+
+  private final ConcurrentLinkedQueue<Exchange> submitted   = new ConcurrentLinkedQueue<Exchange>();
+  private final AtomicInteger              pending          = new AtomicInteger();
+
+  // Owned by the selector thread
+  private final ArrayDeque<Exchange>       waiting          = new ArrayDeque<Exchange>();
+  private final ArrayDeque<Connection>     idle             = new ArrayDeque<Connection>();
+  private int                              open             = 0;
+
+  public ThoughtAsyncTransport(URL url, int maxConnections, Executor callbackExecutor) throws IOException
+  {
+    if (!"http".equalsIgnoreCase(url.getProtocol()))
+      throw new IllegalArgumentException("Unsupported protocol: " + url.getProtocol());
+    if (maxConnections < 1)
+      throw new IllegalArgumentException("maxConnections must be at least 1");
+    int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    this.address = new InetSocketAddress(url.getHost(), port);
+    this.hostHeader = port == 80 ? url.getHost() : url.getHost() + ":" + port;
+    this.maxConnections = maxConnections;
+    this.callbackExecutor = callbackExecutor == null ? ForkJoinPool.commonPool() : callbackExecutor;
+    this.selector = Selector.open();
+    this.ioThread = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        loop();
+      }
+    }, "thought4j-async-rpc");
+    ioThread.setDaemon(true);
+    ioThread.start();
+  }
+
+  public ThoughtAsyncTransport(URL url) throws IOException
+  {
+    this(url, DEFAULT_MAX_CONNECTIONS, null);
+  }
+
+  public int getMaxConnections()
+  {
+    return maxConnections;
+  }
+
+  public int getMaxQueued()
+  {
+    return maxQueued;
+  }
+
+  /**
+   * Set the maximum number of requests waiting for a free connection. Requests
+   * beyond that fail immediately with a {@link RejectedExecutionException}.
+   * Zero means no limit.
+   *
+   * @param maxQueued
+   *          new value of maxQueued
+   */
+  public void setMaxQueued(int maxQueued)
+  {
+    this.maxQueued = maxQueued;
+  }
+
+  public long getRequestTimeout()
+  {
+    return requestTimeout;
+  }
+
+  /**
+   * Set the time in milliseconds a request may stay on the wire before it fails
+   * with a {@link SocketTimeoutException}. Zero means no limit.
+   *
+   * @param requestTimeout
+   *          new value of requestTimeout
+   */
+  public void setRequestTimeout(long requestTimeout)
+  {
+    this.requestTimeout = requestTimeout;
+  }
+
+  public long getIdleTimeout()
+  {
+    return idleTimeout;
+  }
+
+  public void setIdleTimeout(long idleTimeout)
+  {
+    this.idleTimeout = idleTimeout;
+  }
+
+  /**
+   * The number of requests submitted and not completed yet.
+   */
+  public int getPending()
+  {
+    return pending.get();
+  }
+
+  public static class HttpResult
+  {
+    public final int    statusCode;
+    public final String message;
+    public final byte[] body;
+    /** Request and response sizes, HTTP heads included. */
+    public final long   bytesSent;
+    public final long   bytesReceived;
+    /** Time spent opening the connection, or 0 if it was reused. */
+    public final long   connectNanos;
+    /** Time from the request being written to the first response byte. */
+    public final long   waitNanos;
+    /** Time from the first to the last response byte. */
+    public final long   readNanos;
+
+    HttpResult(int statusCode, String message, byte[] body, long bytesSent, long bytesReceived, long connectNanos,
+        long waitNanos, long readNanos)
+    {
+      this.statusCode = statusCode;
+      this.message = message;
+      this.body = body;
+      this.bytesSent = bytesSent;
+      this.bytesReceived = bytesReceived;
+      this.connectNanos = connectNanos;
+      this.waitNanos = waitNanos;
+      this.readNanos = readNanos;
+    }
+  }
+
+  /**
+   * Queues a POST request.
+   *
+   * @return a future completed with the response once its body has been read
+   */
+  public CompletableFuture<HttpResult> post(String path, String authorization, byte[] body)
+  {
+    return post(path, authorization, body, 0, body.length);
+  }
+
+  /**
+   * Queues a POST request. The body is copied before this method returns, so
+   * the caller may reuse the array.
+   *
+   * @return a future completed with the response once its body has been read
+   */
+  public CompletableFuture<HttpResult> post(String path, String authorization, byte[] body, int offset, int length)
+  {
+    CompletableFuture<HttpResult> future = new CompletableFuture<HttpResult>();
+    if (closed)
+    {
+      future.completeExceptionally(new IOException("Transport is closed"));
+      return future;
+    }
+    int limit = maxQueued;
+    if (pending.incrementAndGet() > limit + maxConnections && limit > 0)
+    {
+      pending.decrementAndGet();
+      future.completeExceptionally(new RejectedExecutionException("Too many queued RPC requests"));
+      return future;
+    }
+    StringBuilder b = new StringBuilder(160);
+    b.append("POST ").append(path == null || path.isEmpty() ? "/" : path).append(" HTTP/1.1\r\n");
+    b.append("Host: ").append(hostHeader).append("\r\n");
+    if (authorization != null)
+      b.append("Authorization: ").append(authorization).append("\r\n");
+    b.append("Content-Type: application/json\r\n");
+    b.append("Content-Length: ").append(length).append("\r\n");
+    b.append("Connection: keep-alive\r\n\r\n");
+    byte[] head = b.toString().getBytes(ThoughtConnectionPool.HEADER_CHARSET);
+    ByteBuffer request = ByteBuffer.allocate(head.length + length);
+    request.put(head).put(body, offset, length);
+    // Buffer methods are called through Buffer so that a build on JDK 9+ still
+    // links against Java 8, where ByteBuffer does not override them
+    ((Buffer) request).flip();
+    Exchange e = new Exchange(request, future);
+    submitted.add(e);
+    // The selector thread may have drained the queue for good in the meantime
+    if (closed && submitted.remove(e))
+    {
+      pending.decrementAndGet();
+      future.completeExceptionally(new IOException("Transport is closed"));
+      return future;
+    }
+    selector.wakeup();
+    return future;
+  }
+
+  /**
+   * Stops the selector thread, closes all connections and fails every request
+   * that has not completed yet.
+   */
+  @Override
+  public void close()
+  {
+    closed = true;
+    selector.wakeup();
+  }
+
+  private void loop()
+  {
+    try
+    {
+      while (!closed)
+      {
+        selector.select(250);
+        Exchange e;
+        while ((e = submitted.poll()) != null)
+          waiting.add(e);
+        for (Iterator<SelectionKey> i = selector.selectedKeys().iterator(); i.hasNext();)
+        {
+          SelectionKey key = i.next();
+          i.remove();
+          Connection c = (Connection) key.attachment();
+          try
+          {
+            if (!key.isValid())
+              continue;
+            if (key.isConnectable())
+              c.finishConnect();
+            else if (key.isWritable())
+              c.write();
+            else if (key.isReadable())
+              c.read();
+          }
+          catch (IOException ex)
+          {
+            c.fail(ex);
+          }
+        }
+        dispatch();
+        expire();
+      }
+    }
+    catch (IOException | RuntimeException ex)
+    {
+      logger.log(Level.SEVERE, "Async RPC transport stopped", ex);
+    }
+    finally
+    {
+      closed = true;
+      IOException ex = new IOException("Transport is closed");
+      for (SelectionKey key : selector.keys())
+        ((Connection) key.attachment()).fail(ex);
+      Exchange e;
+      while ((e = waiting.poll()) != null)
+        complete(e, null, ex);
+      while ((e = submitted.poll()) != null)
+        complete(e, null, ex);
+      try
+      {
+        selector.close();
+      }
+      catch (IOException ignored)
+      {
+      }
+    }
+  }
+
+  /**
+   * Hands waiting requests to idle or new connections. A failure only fails the
+   * request it happened on, so one bad socket cannot stop the selector thread.
+   */
+  private void dispatch()
+  {
+    while (!waiting.isEmpty())
+    {
+      Connection c = idle.pollFirst();
+      if (c == null)
+      {
+        if (open >= maxConnections)
+          return;
+        try
+        {
+          c = new Connection();
+        }
+        catch (IOException ex)
+        {
+          complete(waiting.pollFirst(), null, ex);
+          continue;
+        }
+      }
+      Exchange e = waiting.pollFirst();
+      try
+      {
+        c.start(e);
+      }
+      catch (IOException ex)
+      {
+        // A reset kept-alive socket gets the request retried once by fail()
+        c.fail(ex);
+      }
+      catch (RuntimeException ex)
+      {
+        // e.g. an unresolved address
+        c.fail(new IOException(ex.toString(), ex));
+      }
+    }
+  }
+
+  private void expire()
+  {
+    long now = System.currentTimeMillis();
+    long timeout = requestTimeout;
+    if (timeout > 0)
+    {
+      for (SelectionKey key : selector.keys())
+      {
+        Connection c = (Connection) key.attachment();
+        if (c.exchange != null && now - c.exchange.started > timeout)
+          c.fail(new SocketTimeoutException("RPC request timed out"));
+      }
+    }
+    long expired = now - idleTimeout;
+    while (!idle.isEmpty() && idle.peekLast().lastUsed <= expired)
+      idle.pollLast().close();
+  }
+
+  private void complete(final Exchange e, final HttpResult result, final Throwable error)
+  {
+    pending.decrementAndGet();
+    try
+    {
+      callbackExecutor.execute(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          if (error != null)
+            e.future.completeExceptionally(error);
+          else
+            e.future.complete(result);
+        }
+      });
+    }
+    catch (RejectedExecutionException ex)
+    {
+      e.future.completeExceptionally(ex);
+    }
+  }
+
+  private static class Exchange
+  {
+    final ByteBuffer                    request;
+    final CompletableFuture<HttpResult> future;
+    long                                started;
+    boolean                             retried = false;
+    // Phase timestamps and counters, in nanoseconds and bytes
+    long                                connectStart;
+    long                                connectNanos;
+    long                                written;
+    long                                firstByte;
+    long                                received;
+
+    Exchange(ByteBuffer request, CompletableFuture<HttpResult> future)
+    {
+      this.request = request;
+      this.future = future;
+    }
+  }
+
+  private class Connection
+  {
+    final SocketChannel         channel;
+    final SelectionKey          key;
+    final ByteBuffer            readBuffer = ByteBuffer.allocate(16384);
+    final ResponseParser        parser     = new ResponseParser();
+    Exchange                    exchange;
+    boolean                     connected  = false;
+    int                         uses       = 0;
+    long                        lastUsed;
+
+    Connection() throws IOException
+    {
+      channel = SocketChannel.open();
+      try
+      {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+        key = channel.register(selector, 0, this);
+      }
+      catch (IOException | RuntimeException ex)
+      {
+        channel.close();
+        throw ex;
+      }
+      open++;
+    }
+
+    void start(Exchange e) throws IOException
+    {
+      exchange = e;
+      e.started = System.currentTimeMillis();
+      e.connectNanos = e.firstByte = e.received = 0;
+      ((Buffer) e.request).rewind();
+      parser.reset();
+      if (!connected)
+      {
+        e.connectStart = System.nanoTime();
+        if (channel.connect(address))
+          finishConnect();
+        else
+          key.interestOps(SelectionKey.OP_CONNECT);
+      }
+      else
+        write();
+    }
+
+    void finishConnect() throws IOException
+    {
+      if (!channel.finishConnect())
+        return;
+      connected = true;
+      exchange.connectNanos = System.nanoTime() - exchange.connectStart;
+      write();
+    }
+
+    void write() throws IOException
+    {
+      channel.write(exchange.request);
+      if (exchange.request.hasRemaining())
+        key.interestOps(SelectionKey.OP_WRITE);
+      else
+      {
+        exchange.written = System.nanoTime();
+        key.interestOps(SelectionKey.OP_READ);
+      }
+    }
+
+    void read() throws IOException
+    {
+      for (;;)
+      {
+        ((Buffer) readBuffer).clear();
+        int nr = channel.read(readBuffer);
+        if (nr == 0)
+          return;
+        if (nr == -1)
+        {
+          if (exchange != null && parser.readsUntilEof())
+          {
+            finish();
+            return;
+          }
+          throw new EOFException("Connection closed by server");
+        }
+        if (exchange == null)
+          throw new IOException("Unexpected data on idle connection");
+        if (exchange.firstByte == 0)
+          exchange.firstByte = System.nanoTime();
+        exchange.received += nr;
+        ((Buffer) readBuffer).flip();
+        if (parser.feed(readBuffer))
+        {
+          finish();
+          return;
+        }
+      }
+    }
+
+    private void finish()
+    {
+      Exchange e = exchange;
+      exchange = null;
+      uses++;
+      long firstByte = e.firstByte == 0 ? System.nanoTime() : e.firstByte;
+      HttpResult result = new HttpResult(parser.statusCode, parser.message, parser.body.toByteArray(), e.request.limit(),
+          e.received, e.connectNanos, firstByte - e.written, System.nanoTime() - firstByte);
+      if (parser.keepAlive && !closed)
+      {
+        lastUsed = System.currentTimeMillis();
+        key.interestOps(SelectionKey.OP_READ);
+        idle.addFirst(this);
+      }
+      else
+        close();
+      complete(e, result, null);
+    }
+
+    void fail(IOException ex)
+    {
+      Exchange e = exchange;
+      exchange = null;
+      boolean stale = uses > 0 && !parser.started() && lost(ex);
+      idle.remove(this);
+      close();
+      if (e == null)
+        return;
+      if (stale && !e.retried && !closed)
+      {
+        // The server closed a kept-alive connection before answering; try once more.
+        e.retried = true;
+        waiting.addFirst(e);
+        return;
+      }
+      complete(e, null, ex);
+    }
+
+    /**
+     * Tells whether the server dropped the connection, as opposed to a timeout
+     * or a protocol error, after which the request may well have been run.
+     */
+    private boolean lost(IOException ex)
+    {
+      if (ex instanceof EOFException || ex instanceof SocketException)
+        return true;
+      // NIO channels report a reset as a plain IOException before Java 13
+      String message = ex.getMessage();
+      return message != null && (message.contains("reset") || message.contains("Broken pipe"));
+    }
+
+    void close()
+    {
+      if (!channel.isOpen())
+        return;
+      open--;
+      key.cancel();
+      try
+      {
+        channel.close();
+      }
+      catch (IOException ignored)
+      {
+      }
+    }
+  }
+
+  /**
+   * Incremental HTTP/1.1 response parser supporting fixed length, chunked and
+   * close-delimited bodies.
+   */
+  static class ResponseParser
+  {
+    private static final int  HEADERS = 0, BODY = 1, CHUNK_SIZE = 2, CHUNK_DATA = 3, CHUNK_END = 4, TRAILERS = 5,
+        UNTIL_EOF = 6, DONE = 7;
+
+    int                       state;
+    int                       statusCode;
+    String                    message;
+    boolean                   keepAlive;
+    long                      remaining;
+    final StringBuilder       line = new StringBuilder();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private boolean           statusRead;
+    private boolean           chunked;
+    private long              contentLength;
+    private boolean           any;
+
+    void reset()
+    {
+      state = HEADERS;
+      statusCode = 0;
+      message = null;
+      keepAlive = true;
+      remaining = 0;
+      line.setLength(0);
+      body.reset();
+      statusRead = false;
+      chunked = false;
+      contentLength = -1;
+      any = false;
+    }
+
+    boolean started()
+    {
+      return any;
+    }
+
+    boolean readsUntilEof()
+    {
+      return state == UNTIL_EOF;
+    }
+
+    /**
+     * @return true when the response is complete
+     */
+    boolean feed(ByteBuffer in) throws IOException
+    {
+      if (in.hasRemaining())
+        any = true;
+      while (in.hasRemaining())
+      {
+        switch (state)
+        {
+          case HEADERS:
+          case CHUNK_SIZE:
+          case CHUNK_END:
+          case TRAILERS:
+            if (!readLine(in))
+              break;
+            String l = line.toString();
+            line.setLength(0);
+            if (state == HEADERS)
+              header(l);
+            else if (state == CHUNK_SIZE)
+            {
+              int ext = l.indexOf(';');
+              try
+              {
+                remaining = Long.parseLong((ext == -1 ? l : l.substring(0, ext)).trim(), 16);
+              }
+              catch (NumberFormatException ex)
+              {
+                throw new IOException("Invalid chunk size: " + l);
+              }
+              state = remaining == 0 ? TRAILERS : CHUNK_DATA;
+            }
+            else if (state == CHUNK_END)
+              state = CHUNK_SIZE;
+            else if (l.isEmpty())
+              state = DONE;
+            break;
+          case BODY:
+          case CHUNK_DATA:
+            int n = (int) Math.min(in.remaining(), remaining);
+            body.write(in.array(), in.arrayOffset() + in.position(), n);
+            ((Buffer) in).position(in.position() + n);
+            remaining -= n;
+            if (remaining == 0)
+              state = state == BODY ? DONE : CHUNK_END;
+            break;
+          case UNTIL_EOF:
+            body.write(in.array(), in.arrayOffset() + in.position(), in.remaining());
+            ((Buffer) in).position(in.limit());
+            break;
+          default:
+            throw new IOException("Unexpected data after end of response");
+        }
+        if (state == DONE)
+        {
+          if (in.hasRemaining())
+            throw new IOException("Unexpected data after end of response");
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean readLine(ByteBuffer in)
+    {
+      while (in.hasRemaining())
+      {
+        char c = (char) (in.get() & 0xff);
+        if (c == '\n')
+        {
+          int l = line.length();
+          if (l > 0 && line.charAt(l - 1) == '\r')
+            line.setLength(l - 1);
+          return true;
+        }
+        line.append(c);
+      }
+      return false;
+    }
+
+    private void header(String l) throws IOException
+    {
+      if (!statusRead)
+      {
+        int sp1 = l.indexOf(' ');
+        if (!l.startsWith("HTTP/") || sp1 == -1)
+          throw new IOException("Invalid HTTP status line: " + l);
+        int sp2 = l.indexOf(' ', sp1 + 1);
+        try
+        {
+          statusCode = Integer.parseInt(sp2 == -1 ? l.substring(sp1 + 1) : l.substring(sp1 + 1, sp2));
+        }
+        catch (NumberFormatException ex)
+        {
+          throw new IOException("Invalid HTTP status line: " + l);
+        }
+        message = sp2 == -1 ? "" : l.substring(sp2 + 1);
+        keepAlive = l.startsWith("HTTP/1.1");
+        statusRead = true;
+        return;
+      }
+      if (l.isEmpty())
+      {
+        if (chunked)
+          state = CHUNK_SIZE;
+        else if (contentLength >= 0)
+        {
+          remaining = contentLength;
+          state = contentLength == 0 ? DONE : BODY;
+        }
+        else
+        {
+          keepAlive = false;
+          state = UNTIL_EOF;
+        }
+        return;
+      }
+      int colon = l.indexOf(':');
+      if (colon <= 0)
+        return;
+      String name = l.substring(0, colon).trim();
+      String value = l.substring(colon + 1).trim();
+      if ("Content-Length".equalsIgnoreCase(name))
+      {
+        try
+        {
+          contentLength = Long.parseLong(value);
+        }
+        catch (NumberFormatException ex)
+        {
+          throw new IOException("Invalid Content-Length: " + value);
+        }
+      }
+      else if ("Transfer-Encoding".equalsIgnoreCase(name))
+        chunked = value.toLowerCase().contains("chunked");
+      else if ("Connection".equalsIgnoreCase(name))
+      {
+        if ("close".equalsIgnoreCase(value))
+          keepAlive = false;
+        else if ("keep-alive".equalsIgnoreCase(value))
+          keepAlive = true;
+      }
+    }
+  }
+}
@@ -0,0 +1,388 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, reorg-aware cache of block data kept by {@link ThoughtRPCClient}.
+ *
+ * Three indexes are kept, each bounded and evicted least recently used first:
+ * <ul>
+ * <li>hash to previous block hash and height. A block never changes its parent
+ * nor its height, so these are cached at any depth;</li>
+ * <li>hash to verbose block, as returned by <code>getblock</code>. Only blocks
+ * that had at least {@link #getSafeDepth()} confirmations when fetched are
+ * served from the cache, since for them <code>nextblockhash</code> is settled.
+ * Their confirmation count is worked out from the highest tip height the
+ * client has seen, through <code>getblockcount</code>, a known best block hash
+ * or a fetched block, so it can lag behind the node until the client next
+ * looks at the tip. With {@link #setExactConfirmations(boolean)} every hit
+ * takes a <code>getblockcount</code> call instead;</li>
+ * <li>height to hash, again only for blocks at least {@link #getSafeDepth()}
+ * deep.</li>
+ * </ul>
+ *
+ * A reorganization deeper than the safe depth is detected in two ways: when
+ * {@link ThoughtRPCClient#getBestBlockHash()} returns a new tip, the hash at the
+ * highest cached height is checked against the node; and every freshly fetched
+ * block is checked against the cached hashes of its neighbours. Either mismatch
+ * clears the height index and the cached blocks.
+ */
+public class ThoughtBlockCache
+{
+  public static final int DEFAULT_MAX_BLOCKS = 256;
+  public static final int DEFAULT_MAX_LINKS  = 16384;
+  public static final int DEFAULT_SAFE_DEPTH = 6;
+
+  private int             maxBlocks          = DEFAULT_MAX_BLOCKS;
+  private int             maxLinks           = DEFAULT_MAX_LINKS;
+  private int             safeDepth          = DEFAULT_SAFE_DEPTH;
+  private boolean         enabled            = true;
+  private boolean         exactConfirmations;
+
+  private final LinkedHashMap<String, Map<?, ?>> blocks  = new LinkedHashMap<String, Map<?, ?>>(64, 0.75f, true);
+  private final LinkedHashMap<Integer, String>   heights = new LinkedHashMap<Integer, String>(64, 0.75f, true);
+  private final LinkedHashMap<String, String>    parents = new LinkedHashMap<String, String>(64, 0.75f, true);
+  private final LinkedHashMap<String, Integer>   heightOf = new LinkedHashMap<String, Integer>(64, 0.75f, true);
+
+  private int             tipHeight          = -1;
+  private String          tipHash;
+  private int             topHeight          = -1;
+
+  private long            hits, misses, invalidations;
+
+  public synchronized int getMaxBlocks()
+  {
+    return maxBlocks;
+  }
+
+  /**
+   * Sets the maximum number of verbose blocks kept. Each takes roughly the size
+   * of its transaction id list.
+   */
+  public synchronized void setMaxBlocks(int maxBlocks)
+  {
+    if (maxBlocks < 0)
+      throw new IllegalArgumentException("maxBlocks must not be negative");
+    this.maxBlocks = maxBlocks;
+    trim(blocks, maxBlocks);
+  }
+
+  public synchronized int getMaxLinks()
+  {
+    return maxLinks;
+  }
+
+  /**
+   * Sets the maximum number of height to hash and hash to parent entries kept.
+   */
+  public synchronized void setMaxLinks(int maxLinks)
+  {
+    if (maxLinks < 0)
+      throw new IllegalArgumentException("maxLinks must not be negative");
+    this.maxLinks = maxLinks;
+    trim(heights, maxLinks);
+    trim(parents, maxLinks);
+    trim(heightOf, maxLinks);
+  }
+
+  public synchronized int getSafeDepth()
+  {
+    return safeDepth;
+  }
+
+  /**
+   * Sets the number of confirmations a block needs before its height and verbose
+   * data are cached. Reorganizations deeper than this are still detected, but
+   * only on the next tip check or fetch.
+   */
+  public synchronized void setSafeDepth(int safeDepth)
+  {
+    if (safeDepth < 1)
+      throw new IllegalArgumentException("safeDepth must be at least 1");
+    this.safeDepth = safeDepth;
+  }
+
+  public synchronized boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Enables or disables the cache. Disabling it also clears it.
+   */
+  public synchronized void setEnabled(boolean enabled)
+  {
+    this.enabled = enabled;
+    if (!enabled)
+      clear();
+  }
+
+  public synchronized boolean isExactConfirmations()
+  {
+    return exactConfirmations;
+  }
+
+  /**
+   * Makes every cached block served take a <code>getblockcount</code> call, so
+   * that its confirmation count is exact even if the tip moved unseen.
+   * Disabled by default.
+   */
+  public synchronized void setExactConfirmations(boolean exactConfirmations)
+  {
+    this.exactConfirmations = exactConfirmations;
+  }
+
+  public synchronized long getHits()
+  {
+    return hits;
+  }
+
+  public synchronized long getMisses()
+  {
+    return misses;
+  }
+
+  /**
+   * The number of times the cache was cleared because of a detected
+   * reorganization.
+   */
+  public synchronized long getInvalidations()
+  {
+    return invalidations;
+  }
+
+  public synchronized void clear()
+  {
+    blocks.clear();
+    heights.clear();
+    parents.clear();
+    heightOf.clear();
+    topHeight = -1;
+  }
+
+  /**
+   * Returns the cached hash of the main chain block at the given height, or null.
+   */
+  synchronized String hash(int height)
+  {
+    String hash = enabled ? heights.get(height) : null;
+    count(hash != null);
+    return hash;
+  }
+
+  /**
+   * Returns a copy of the cached verbose block with the given hash, or null.
+   * Its confirmation count is the one it had when fetched; see
+   * {@link #confirm(Map)}.
+   */
+  synchronized Map<Object, Object> block(String hash)
+  {
+    Map<?, ?> m = enabled ? blocks.get(hash) : null;
+    count(m != null);
+    return m == null ? null : new LinkedHashMap<Object, Object>(m);
+  }
+
+  /**
+   * Sets the confirmation count of a cached block copy from the highest tip
+   * height seen so far.
+   */
+  synchronized void confirm(Map<Object, Object> block)
+  {
+    confirm(block, tipHeight);
+  }
+
+  /**
+   * Sets the confirmation count of a cached block copy from the current chain
+   * height, which the caller must have just read from the node.
+   */
+  synchronized void confirm(Map<Object, Object> block, int tip)
+  {
+    tipHeight(tip);
+    tip = tipHeight;
+    Object height = block.get("height");
+    if (height instanceof Number)
+      block.put("confirmations", Long.valueOf(Math.max(tip - ((Number) height).intValue() + 1, 1)));
+  }
+
+  /**
+   * Returns the hash of the parent of the given block if it is known, or null.
+   * The result is an empty string for the genesis block.
+   */
+  synchronized String previousHash(String hash)
+  {
+    String prev = enabled ? parents.get(hash) : null;
+    count(prev != null);
+    return prev;
+  }
+
+  /**
+   * Returns the height of the given block if it is known, or -1. A block keeps
+   * its height even when it leaves the main chain.
+   */
+  synchronized int height(String hash)
+  {
+    Integer height = enabled ? heightOf.get(hash) : null;
+    count(height != null);
+    return height == null ? -1 : height;
+  }
+
+  private void count(boolean hit)
+  {
+    if (hit)
+      hits++;
+    else
+      misses++;
+  }
+
+  /**
+   * Records a block or block header map freshly returned by the node.
+   */
+  synchronized void put(Map<?, ?> m)
+  {
+    if (!enabled || m == null)
+      return;
+    String hash = (String) m.get("hash");
+    Object h = m.get("height"), c = m.get("confirmations");
+    if (hash == null || !(h instanceof Number) || !(c instanceof Number))
+      return;
+    int height = ((Number) h).intValue();
+    int confirmations = ((Number) c).intValue();
+    String prev = (String) m.get("previousblockhash");
+
+    put(parents, hash, prev == null ? "" : prev, maxLinks);
+    put(heightOf, hash, height, maxLinks);
+
+    if (confirmations < 0)
+    {
+      // the block was disconnected from the main chain
+      if (hash.equals(heights.get(height)) || blocks.containsKey(hash))
+        invalidate();
+      return;
+    }
+
+    int tip = height + confirmations - 1;
+    if (tip > tipHeight)
+      tipHeight = tip;
+
+    String cached = heights.get(height);
+    if (cached != null && !cached.equals(hash))
+    {
+      invalidate();
+      cached = null;
+    }
+    String below = heights.get(height - 1);
+    if (below != null && prev != null && !below.equals(prev))
+      invalidate();
+    String above = heights.get(height + 1);
+    String abovePrev = above == null ? null : parents.get(above);
+    if (abovePrev != null && !abovePrev.equals(hash))
+      invalidate();
+
+    if (confirmations >= safeDepth)
+    {
+      put(heights, height, hash, maxLinks);
+      if (height > topHeight)
+        topHeight = height;
+      if (m.containsKey("tx") && m.containsKey("nextblockhash"))
+        put(blocks, hash, m, maxBlocks);
+    }
+  }
+
+  /**
+   * Records a height to hash mapping obtained from the node. Only kept if the
+   * height is known to be at least the safe depth below the tip.
+   */
+  synchronized void putHash(int height, String hash)
+  {
+    if (!enabled || tipHeight < 0 || tipHeight - height + 1 < safeDepth)
+      return;
+    String cached = heights.get(height);
+    if (cached != null && !cached.equals(hash))
+      invalidate();
+    put(heights, height, hash, maxLinks);
+    if (height > topHeight)
+      topHeight = height;
+  }
+
+  /**
+   * Notes the current best block hash. Returns the highest cached height if the
+   * tip changed and that height must be checked against the node, -1 otherwise.
+   */
+  synchronized int tip(String hash)
+  {
+    if (!enabled || hash == null || hash.equals(tipHash))
+      return -1;
+    tipHash = hash;
+    Integer height = heightOf.get(hash);
+    if (height != null)
+      tipHeight(height);
+    if (heights.isEmpty())
+      return -1;
+    if (!heights.containsKey(topHeight))
+    {
+      topHeight = -1;
+      for (Integer h : heights.keySet())
+        topHeight = Math.max(topHeight, h);
+    }
+    return topHeight;
+  }
+
+  /**
+   * Verifies a cached height against the hash the node now reports for it.
+   */
+  synchronized void check(int height, String hash)
+  {
+    String cached = heights.get(height);
+    if (cached != null && !cached.equals(hash))
+      invalidate();
+  }
+
+  synchronized void tipHeight(int height)
+  {
+    if (height > tipHeight)
+      tipHeight = height;
+  }
+
+  private void invalidate()
+  {
+    invalidations++;
+    clear();
+  }
+
+  private static <K, V> void put(LinkedHashMap<K, V> map, K key, V value, int max)
+  {
+    map.put(key, value);
+    trim(map, max);
+  }
+
+  private static void trim(LinkedHashMap<?, ?> map, int max)
+  {
+    Iterator<?> i = map.keySet().iterator();
+    while (map.size() > max && i.hasNext())
+    {
+      i.next();
+      i.remove();
+    }
+  }
+}
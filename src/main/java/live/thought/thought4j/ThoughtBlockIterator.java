@@ -0,0 +1,213 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import live.thought.thought4j.ThoughtClientInterface.Block;
+
+/**
+ * Iterates over a range of blocks in height order while fetching ahead.
+ * <p>
+ * Block hashes are resolved in batches of getblockhash calls, and up to
+ * <code>window</code> blocks are requested concurrently. A new request is only
+ * started when the consumer takes a block, so at most <code>window</code>
+ * blocks are ever buffered. The client's connection pool should allow at least
+ * <code>window</code> connections.
+ * <p>
+ * The iterator must be closed when it is not consumed to the end.
+ */
+public class ThoughtBlockIterator implements Iterator<Block>, Closeable
+{
+  private final ThoughtRPCClient                           client;
+  private final int                                        toHeight;
+  private final int                                        hashChunk;
+  private final ExecutorService                            executor;
+  private final ArrayDeque<CompletableFuture<Block>>       window = new ArrayDeque<CompletableFuture<Block>>();
+  private final Function<String, Block>                    fetch;
+
+  private int                                              nextHeight;
+  private int                                              chunkStart;
+  private CompletableFuture<List<String>>                  chunk;
+
+  /**
+   * @param client
+   *          the client to fetch blocks with
+   * @param fromHeight
+   *          the first height, inclusive
+   * @param toHeight
+   *          the last height, inclusive
+   * @param window
+   *          the number of blocks fetched ahead of the consumer
+   * @param decoded
+   *          fetch blocks in serialized form and decode them locally, see
+   *          {@link ThoughtRPCClient#getDecodedBlock(String)}
+   */
+  public ThoughtBlockIterator(final ThoughtRPCClient client, int fromHeight, int toHeight, int window, final boolean decoded)
+  {
+    if (window < 1)
+      throw new IllegalArgumentException("window must be at least 1");
+    this.client = client;
+    this.toHeight = toHeight;
+    this.nextHeight = fromHeight;
+    this.chunkStart = fromHeight;
+    this.hashChunk = Math.min(Math.max(window * 2, 16), 500);
+    this.executor = Executors.newFixedThreadPool(window, new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        Thread t = new Thread(r, "thought4j-block-prefetch");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    this.fetch = new Function<String, Block>()
+    {
+      @Override
+      public Block apply(String hash)
+      {
+        return decoded ? client.getDecodedBlock(hash) : client.getBlock(hash);
+      }
+    };
+    for (int i = 0; i < window; i++)
+      submit();
+  }
+
+  private void submit()
+  {
+    if (nextHeight > toHeight)
+      return;
+    final int height = nextHeight++;
+    if (chunk == null || height >= chunkStart + hashChunk)
+    {
+      if (chunk != null)
+        chunkStart += hashChunk;
+      final int start = chunkStart;
+      final int end = Math.min(start + hashChunk - 1, toHeight);
+      chunk = CompletableFuture.supplyAsync(new Supplier<List<String>>()
+      {
+        @Override
+        public List<String> get()
+        {
+          ThoughtRPCClient.Batch batch = client.batch();
+          for (int h = start; h <= end; h++)
+            batch.getBlockHash(h);
+          ThoughtRPCClient.BatchResult r = batch.execute();
+          List<String> hashes = new ArrayList<String>(r.size());
+          for (int i = 0; i < r.size(); i++)
+            hashes.add(r.<String> get(i));
+          return hashes;
+        }
+      }, executor);
+    }
+    final int index = height - chunkStart;
+    window.add(chunk.thenApplyAsync(new Function<List<String>, Block>()
+    {
+      @Override
+      public Block apply(List<String> hashes)
+      {
+        return fetch.apply(hashes.get(index));
+      }
+    }, executor));
+  }
+
+  @Override
+  public boolean hasNext()
+  {
+    return !window.isEmpty();
+  }
+
+  /**
+   * Returns the next block, waiting for it if needed.
+   *
+   * @throws GenericRpcException
+   *           if fetching the block failed
+   */
+  @Override
+  public Block next()
+  {
+    CompletableFuture<Block> f = window.poll();
+    if (f == null)
+      throw new NoSuchElementException();
+    Block block;
+    try
+    {
+      block = f.join();
+    }
+    catch (CompletionException ex)
+    {
+      close();
+      if (ex.getCause() instanceof RuntimeException)
+        throw (RuntimeException) ex.getCause();
+      throw new GenericRpcException(ex.getCause());
+    }
+    submit();
+    if (window.isEmpty())
+      close();
+    return block;
+  }
+
+  /**
+   * The remaining blocks as a sequential stream; closing the stream closes the
+   * iterator.
+   */
+  public Stream<Block> stream()
+  {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            close();
+          }
+        });
+  }
+
+  /**
+   * Stops fetching ahead and discards buffered blocks.
+   */
+  @Override
+  public void close()
+  {
+    for (CompletableFuture<Block> f : window)
+      f.cancel(false);
+    window.clear();
+    nextHeight = toHeight + 1;
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,325 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import live.thought.thought4j.ThoughtClientInterface.Block;
+
+/**
+ * Follows the main chain block by block and reports every block connected to
+ * or disconnected from it, keeping its position in a checkpoint file so a
+ * restart resumes where it stopped.
+ *
+ * The checkpoint holds the height and hash of the last block reported plus the
+ * hashes of up to {@link #getMaxAncestors()} blocks below it. On each
+ * {@link #poll()} the stored hashes are compared with the node's main chain from
+ * the top down; blocks that no longer match are reported as disconnected, newest
+ * first, then the blocks of the new branch are reported as connected, oldest
+ * first. A reorganization deeper than the stored ancestors is still followed,
+ * through the parent links of the disconnected blocks.
+ *
+ * The checkpoint is rewritten after every event, through a temporary file moved
+ * over the old one, so it is never seen half written. A crash between an event
+ * and the write means that event is reported again after the restart.
+ */
+public class ThoughtChainFollower implements Runnable
+{
+  private static final Logger logger                 = Logger.getLogger(ThoughtChainFollower.class.getCanonicalName());
+
+  public static final int     DEFAULT_MAX_ANCESTORS  = 100;
+  public static final long    DEFAULT_CHECK_INTERVAL = 5000;
+
+  public interface Listener
+  {
+    void blockConnected(Block block);
+
+    void blockDisconnected(Block block);
+  }
+
+  private final ThoughtClientInterface              thought;
+  private final File                                checkpoint;
+  private final CopyOnWriteArrayList<Listener>      listeners    = new CopyOnWriteArrayList<Listener>();
+  private final TreeMap<Integer, String>            chain        = new TreeMap<Integer, String>();
+  private final int                                 startHeight;
+  private int                                       maxAncestors = DEFAULT_MAX_ANCESTORS;
+  private long                                      checkInterval = DEFAULT_CHECK_INTERVAL;
+
+  /**
+   * Creates a follower that starts at the current tip when there is no
+   * checkpoint yet.
+   */
+  public ThoughtChainFollower(ThoughtClientInterface thought, File checkpoint) throws IOException
+  {
+    this(thought, checkpoint, -1);
+  }
+
+  /**
+   * @param startHeight
+   *          where to start when there is no checkpoint yet: the first block
+   *          reported is the one after this height. -1 for the current tip.
+   */
+  public ThoughtChainFollower(ThoughtClientInterface thought, File checkpoint, int startHeight) throws IOException
+  {
+    this.thought = thought;
+    this.checkpoint = checkpoint;
+    this.startHeight = startHeight;
+    load();
+  }
+
+  public void addListener(Listener listener)
+  {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener)
+  {
+    listeners.remove(listener);
+  }
+
+  public synchronized int getMaxAncestors()
+  {
+    return maxAncestors;
+  }
+
+  /**
+   * Sets how many block hashes below the last block are kept to detect
+   * reorganizations without walking parent links.
+   */
+  public synchronized void setMaxAncestors(int maxAncestors)
+  {
+    if (maxAncestors < 1)
+      throw new IllegalArgumentException("maxAncestors must be at least 1");
+    this.maxAncestors = maxAncestors;
+  }
+
+  public long getCheckInterval()
+  {
+    return checkInterval;
+  }
+
+  public void setCheckInterval(long checkInterval)
+  {
+    this.checkInterval = checkInterval;
+  }
+
+  /**
+   * The height of the last block reported, or -1 before the first poll.
+   */
+  public synchronized int getHeight()
+  {
+    return chain.isEmpty() ? -1 : chain.lastKey();
+  }
+
+  /**
+   * The hash of the last block reported, or null before the first poll.
+   */
+  public synchronized String getHash()
+  {
+    return chain.isEmpty() ? null : chain.lastEntry().getValue();
+  }
+
+  /**
+   * Brings the follower up to the node's tip, reporting every change.
+   *
+   * @return the number of events reported
+   */
+  public synchronized int poll() throws GenericRpcException, IOException
+  {
+    // also lets a client side block cache notice a reorganization
+    String best = thought.getBestBlockHash();
+    if (!chain.isEmpty() && best.equals(chain.lastEntry().getValue()))
+      return 0;
+    int tip = thought.getBlockCount();
+    if (chain.isEmpty())
+    {
+      int height = startHeight < 0 ? tip : Math.min(startHeight, tip);
+      chain.put(height, thought.getBlockHash(height));
+      save();
+    }
+    int events = disconnect(tip);
+    for (int height = chain.lastKey() + 1; height <= tip; height++)
+    {
+      Block block = thought.getBlock(thought.getBlockHash(height));
+      if (!chain.lastEntry().getValue().equals(block.previousHash()))
+      {
+        // the chain changed again while catching up
+        events += disconnect(thought.getBlockCount());
+        height = chain.lastKey();
+        continue;
+      }
+      chain.put(height, block.hash());
+      while (chain.size() > maxAncestors + 1)
+        chain.pollFirstEntry();
+      save();
+      events++;
+      for (Listener l : listeners)
+      {
+        try
+        {
+          l.blockConnected(block);
+        }
+        catch (Exception ex)
+        {
+          logger.log(Level.SEVERE, null, ex);
+        }
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Pops blocks off the stored chain until its top is on the node's main chain.
+   */
+  private int disconnect(int tip) throws GenericRpcException, IOException
+  {
+    int events = 0;
+    while (true)
+    {
+      Map.Entry<Integer, String> top = chain.lastEntry();
+      if (top.getKey() <= tip && top.getValue().equals(thought.getBlockHash(top.getKey())))
+        return events;
+      Block block = thought.getBlock(top.getValue());
+      chain.remove(top.getKey());
+      if (chain.isEmpty())
+        chain.put(top.getKey() - 1, block.previousHash());
+      save();
+      events++;
+      for (Listener l : listeners)
+      {
+        try
+        {
+          l.blockDisconnected(block);
+        }
+        catch (Exception ex)
+        {
+          logger.log(Level.SEVERE, null, ex);
+        }
+      }
+    }
+  }
+
+  private void load() throws IOException
+  {
+    if (!checkpoint.exists())
+      return;
+    Properties p = new Properties();
+    try (InputStream in = new FileInputStream(checkpoint))
+    {
+      p.load(in);
+    }
+    for (String name : p.stringPropertyNames())
+      if (name.startsWith("block."))
+        chain.put(Integer.parseInt(name.substring(6)), p.getProperty(name));
+    if (chain.isEmpty())
+      throw new IOException("No blocks in checkpoint " + checkpoint);
+  }
+
+  private void save() throws IOException
+  {
+    Properties p = new Properties();
+    for (Map.Entry<Integer, String> e : chain.entrySet())
+      p.setProperty("block." + e.getKey(), e.getValue());
+    File tmp = new File(checkpoint.getPath() + ".tmp");
+    try (FileOutputStream out = new FileOutputStream(tmp))
+    {
+      p.store(out, "thought4j chain follower checkpoint");
+      out.getFD().sync();
+    }
+    try
+    {
+      Files.move(tmp.toPath(), checkpoint.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (AtomicMoveNotSupportedException ex)
+    {
+      Files.move(tmp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private volatile boolean stop = false;
+  private final Object     wakeLock = new Object();
+  private boolean          wakeRequested;
+
+  public void stopFollowing()
+  {
+    stop = true;
+    wakeUp();
+  }
+
+  /**
+   * Makes {@link #run()} poll right away, for instance from a
+   * {@link ThoughtNotifyReceiver} listener on block notifications.
+   */
+  public void wakeUp()
+  {
+    synchronized (wakeLock)
+    {
+      wakeRequested = true;
+      wakeLock.notifyAll();
+    }
+  }
+
+  @Override
+  public void run()
+  {
+    stop = false;
+    while (!(Thread.interrupted() || stop))
+    {
+      try
+      {
+        poll();
+      }
+      catch (GenericRpcException ex)
+      {
+        logger.log(Level.SEVERE, null, ex);
+      }
+      catch (IOException ex)
+      {
+        logger.log(Level.SEVERE, "Cannot write checkpoint " + checkpoint, ex);
+      }
+      try
+      {
+        synchronized (wakeLock)
+        {
+          if (!wakeRequested && !stop)
+            wakeLock.wait(checkInterval);
+          wakeRequested = false;
+        }
+      }
+      catch (InterruptedException ex)
+      {
+        return;
+      }
+    }
+  }
+}
@@ -28,11 +28,14 @@ package live.thought.thought4j;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import live.thought.thought4j.util.CoinUtil;
+
 /**
  *
  * @author Mikhail Yevchenko m.ṥῥẚɱ.ѓѐḿởύḙ@azazar.com Small modifications by
@@ -45,8 +48,7 @@ public interface ThoughtClientInterface
    * Missing methods:  getgenerate
    * gethashespersec getwork ( "data" ) help ( "command" ) listaddressgroupings
    * listlockunspent (DEPRECATED) listreceivedbyaccount ( minconf includeempty )
-   * lockunspent unlock [{"txid":"txid","vout":n},...] sendmany "fromaccount"
-   * {"address":amount,...} ( minconf "comment" ) (DEPRECATED) setaccount
+   * lockunspent unlock [{"txid":"txid","vout":n},...] setaccount
    * "bitcoinaddress" "account"
    */
 
@@ -165,6 +167,14 @@ public interface ThoughtClientInterface
     public String address();
 
     public double amount();
+
+    /**
+     * The amount in satoshis.
+     */
+    public default long amountSat()
+    {
+      return CoinUtil.toSatoshis(amount());
+    }
   }
 
   public static class BasicTxOutput implements TxOutput
@@ -410,6 +420,24 @@ public interface ThoughtClientInterface
    *      "https://bitcoin.org/en/developer-reference#getbalance">getbalance</a>
    */
   public double getBalance(String account, int minConf) throws GenericRpcException;
+
+  /**
+   * Like {@link #getBalance()}, in satoshis. The default rounds the double
+   * result; clients may read the amount without floating point.
+   */
+  public default long getBalanceSat() throws GenericRpcException
+  {
+    return CoinUtil.toSatoshis(getBalance());
+  }
+
+  /**
+   * Like {@link #getBalance(String, int)}, in satoshis. The default rounds the
+   * double result; clients may read the amount without floating point.
+   */
+  public default long getBalanceSat(String account, int minConf) throws GenericRpcException
+  {
+    return CoinUtil.toSatoshis(getBalance(account, minConf));
+  }
   
   
   /**
@@ -668,6 +696,20 @@ public interface ThoughtClientInterface
     String chainWork();
   }
 
+  static interface MemPoolInfo extends Serializable
+  {
+
+    long size();
+
+    long bytes();
+
+    long usage();
+
+    long maxMemPool();
+
+    double memPoolMinFee();
+  }
+
   static interface DecodedScript extends Serializable
   {
 
@@ -903,6 +945,26 @@ public interface ThoughtClientInterface
    */
   Block getBlock(String blockHash) throws GenericRpcException;
 
+  /**
+   * Returns the hash of the parent of the given block, or null for the genesis
+   * block. Clients may answer this from cached links or a block header rather
+   * than the whole block.
+   */
+  default String getPreviousBlockHash(String blockHash) throws GenericRpcException
+  {
+    Block b = getBlock(blockHash);
+    return b == null ? null : b.previousHash();
+  }
+
+  /**
+   * Returns the height of the given block. Clients may answer this from a
+   * cache or a block header rather than the whole block.
+   */
+  default int getBlockHeight(String blockHash) throws GenericRpcException
+  {
+    return getBlock(blockHash).height();
+  }
+
   /**
    * The getblock RPC gets a block with a particular header hash from the local
    * block database as a serialized block.
@@ -984,6 +1046,54 @@ public interface ThoughtClientInterface
    */
   List<String> getRawMemPool() throws GenericRpcException;
 
+  /**
+   * The getmempoolinfo RPC returns information about the node's current
+   * transaction memory pool. Its size and bytes are a cheap way to notice that
+   * the memory pool changed. The default counts the result of
+   * {@link #getRawMemPool()} and reports the other figures as -1.
+   * 
+   * @see <a href=
+   *      "https://bitcoin.org/en/developer-reference#getmempoolinfo">getmempoolinfo</a>
+   */
+  default MemPoolInfo getMemPoolInfo() throws GenericRpcException
+  {
+    final long size = getRawMemPool().size();
+    return new MemPoolInfo()
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public long size()
+      {
+        return size;
+      }
+
+      @Override
+      public long bytes()
+      {
+        return -1;
+      }
+
+      @Override
+      public long usage()
+      {
+        return -1;
+      }
+
+      @Override
+      public long maxMemPool()
+      {
+        return -1;
+      }
+
+      @Override
+      public double memPoolMinFee()
+      {
+        return -1;
+      }
+    };
+  }
+
   /**
    * The getbestblockhash RPC returns the header hash of the most recent block on
    * the best block chain.
@@ -993,6 +1103,32 @@ public interface ThoughtClientInterface
    */
   String getBestBlockHash() throws GenericRpcException;
 
+  /**
+   * The best block hash and the memory pool summary, read together.
+   */
+  public static class ChainActivity implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+    public final String       bestBlockHash;
+    public final MemPoolInfo  memPool;
+
+    public ChainActivity(String bestBlockHash, MemPoolInfo memPool)
+    {
+      this.bestBlockHash = bestBlockHash;
+      this.memPool = memPool;
+    }
+  }
+
+  /**
+   * Reads the best block hash and the memory pool summary, which together tell
+   * whether anything changed since they were last read. Clients able to batch
+   * calls read both in one request.
+   */
+  default ChainActivity getChainActivity() throws GenericRpcException
+  {
+    return new ChainActivity(getBestBlockHash(), getMemPoolInfo());
+  }
+
   interface RawTransaction extends Serializable
   {
 
@@ -1040,6 +1176,14 @@ public interface ThoughtClientInterface
 
       double value();
 
+      /**
+       * The value in satoshis.
+       */
+      default long valueSat()
+      {
+        return CoinUtil.toSatoshis(value());
+      }
+
       int n();
 
       interface ScriptPubKey extends Serializable
@@ -1092,6 +1236,33 @@ public interface ThoughtClientInterface
    */
   RawTransaction getRawTransaction(String txId) throws GenericRpcException;
 
+  /**
+   * Returns the decoded transactions with the given ids, in the same order.
+   * Clients may fetch them in fewer round trips than one per transaction.
+   */
+  default List<RawTransaction> getRawTransactions(List<String> txIds) throws GenericRpcException
+  {
+    List<RawTransaction> txs = new ArrayList<RawTransaction>(txIds.size());
+    for (String txId : txIds)
+      txs.add(getRawTransaction(txId));
+    return txs;
+  }
+
+  /**
+   * Returns the decoded wallet transactions with the given ids, in the same
+   * order. Unlike {@link #getRawTransactions(List)} this works for any wallet
+   * transaction, spent or not, without a transaction index, when the client
+   * reads them through <code>gettransaction</code>. The default goes through
+   * {@link Transaction#raw()} one transaction at a time.
+   */
+  default List<RawTransaction> getWalletTransactions(List<String> txIds) throws GenericRpcException
+  {
+    List<RawTransaction> txs = new ArrayList<RawTransaction>(txIds.size());
+    for (String txId : txIds)
+      txs.add(getTransaction(txId).raw());
+    return txs;
+  }
+
   /**
    * The getrawtransaction RPC gets a hex-encoded serialized transaction.
    * 
@@ -1133,6 +1304,16 @@ public interface ThoughtClientInterface
    */
   double getReceivedByAddress(String address, int minConf) throws GenericRpcException;
 
+  /**
+   * Like {@link #getReceivedByAddress(String, int)}, in satoshis. The default
+   * rounds the double result; clients may read the amount without floating
+   * point.
+   */
+  default long getReceivedByAddressSat(String address, int minConf) throws GenericRpcException
+  {
+    return CoinUtil.toSatoshis(getReceivedByAddress(address, minConf));
+  }
+
   /**
    * The importprivkey RPC adds a private key to your wallet. The key should be
    * formatted in the wallet import format created by the dumpprivkey RPC.
@@ -1294,11 +1475,37 @@ public interface ThoughtClientInterface
     double amount();
 
     double fee();
+
+    /**
+     * The amount in satoshis.
+     */
+    default long amountSat()
+    {
+      return CoinUtil.toSatoshis(amount());
+    }
+
+    /**
+     * The fee in satoshis.
+     */
+    default long feeSat()
+    {
+      return CoinUtil.toSatoshis(fee());
+    }
     
     boolean generated();
 
     int confirmations();
 
+    /**
+     * The output index, for the send and receive entries of
+     * <code>listtransactions</code> and <code>listsinceblock</code>; -1 where
+     * the node does not report one, which is the default.
+     */
+    default int vout()
+    {
+      return -1;
+    }
+
     String blockHash();
 
     int blockIndex();
@@ -1674,6 +1881,57 @@ public interface ThoughtClientInterface
   String sendFrom(String fromAccount, String toAddress, double amount, int minConf, boolean addlocked, String comment, String commentTo)
       throws GenericRpcException;
 
+  /**
+   * The sendmany RPC creates and broadcasts a transaction which sends outputs
+   * to multiple addresses.
+   * 
+   * @param fromAccount
+   *          The name of the account from which the thoughts should be spent.
+   *          Use an empty string ("") for the default account
+   * @param amounts
+   *          The amount in thoughts to send to each P2PKH or P2SH address
+   * 
+   * @return The TXID of the sent transaction, encoded as hex in RPC byte order
+   * 
+   * @see <a href=
+   *      "https://bitcoin.org/en/developer-reference#sendmany">sendmany</a>
+   */
+  default String sendMany(String fromAccount, Map<String, Double> amounts) throws GenericRpcException
+  {
+    return sendMany(fromAccount, amounts, 1, false, null);
+  }
+
+  /**
+   * The sendmany RPC creates and broadcasts a transaction which sends outputs
+   * to multiple addresses.
+   * 
+   * @param fromAccount
+   *          The name of the account from which the thoughts should be spent.
+   *          Use an empty string ("") for the default account
+   * @param amounts
+   *          The amount in thoughts to send to each P2PKH or P2SH address
+   * @param minConf
+   *          The minimum number of confirmations an incoming transaction must
+   *          have for its outputs to be spent
+   * @param addlocked
+   *          Whether to include transactions locked via InstantSend
+   * @param comment
+   *          A locally-stored (not broadcast) comment assigned to this
+   *          transaction
+   * 
+   * @return The TXID of the sent transaction, encoded as hex in RPC byte order
+   * @throws UnsupportedOperationException
+   *           if the client does not implement sendmany, the default
+   * 
+   * @see <a href=
+   *      "https://bitcoin.org/en/developer-reference#sendmany">sendmany</a>
+   */
+  default String sendMany(String fromAccount, Map<String, Double> amounts, int minConf, boolean addlocked, String comment)
+      throws GenericRpcException
+  {
+    throw new UnsupportedOperationException("sendmany is not supported by " + getClass().getName());
+  }
+
   /**
    * The sendrawtransaction RPC validates a transaction and broadcasts it to the
    * peer-to-peer network.
@@ -2016,6 +2274,15 @@ public interface ThoughtClientInterface
    */
   double getUnconfirmedBalance();
 
+  /**
+   * Like {@link #getUnconfirmedBalance()}, in satoshis. The default rounds the
+   * double result; clients may read the amount without floating point.
+   */
+  default long getUnconfirmedBalanceSat()
+  {
+    return CoinUtil.toSatoshis(getUnconfirmedBalance());
+  }
+
   /**
    * The getdifficulty RPC
    * 
@@ -0,0 +1,552 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import live.thought.thought4j.ThoughtClientInterface.TxInput;
+import live.thought.thought4j.ThoughtClientInterface.Unspent;
+
+/**
+ * Picks wallet outputs to fund a payment.
+ *
+ * The selector keeps a snapshot of the wallet's unspent outputs, taken with a
+ * single <code>listunspent</code> call, or from a {@link ThoughtUtxoMirror},
+ * and reused for {@link #getMaxAge()} milliseconds. Amounts are held as satoshis in a sorted <code>long</code>
+ * array, so selections do not touch the node or do floating point sums.
+ * Outputs handed out by {@link #select(long, int, Collection)} are left out of
+ * later selections until the snapshot is refreshed.
+ *
+ * Each output is counted at its effective value, its amount less
+ * {@link #getInputCost()}, the fee it adds when spent. Outputs worth no more
+ * than that are never chosen. A selection whose effective value exceeds the
+ * target by at most {@link #getChangeCost()} is best spent without change. Both
+ * costs are zero by default; set them from the fee rate in use.
+ *
+ * How outputs are chosen is up to a {@link Strategy}. The default tries an
+ * exact match by branch and bound first and falls back to knapsack.
+ */
+public class ThoughtCoinSelector
+{
+  public static final long DEFAULT_MAX_AGE = 30000;
+
+  /**
+   * Branch and bound gives up after this many steps.
+   */
+  public static final int  BNB_MAX_TRIES   = 100000;
+
+  public interface Strategy
+  {
+    /**
+     * @param values
+     *          the effective values of the candidate outputs in satoshis,
+     *          largest first, all positive
+     * @param target
+     *          the sum to reach
+     * @param changeCost
+     *          how far over the target a selection may go and still be spent
+     *          without change
+     * @return the indexes of the chosen values, or null if the target can not
+     *         be reached
+     */
+    int[] select(long[] values, long target, long changeCost);
+  }
+
+  /**
+   * Takes the largest outputs until the target is reached, for the fewest
+   * inputs.
+   */
+  public static final Strategy LARGEST_FIRST     = new Strategy()
+  {
+    @Override
+    public int[] select(long[] values, long target, long changeCost)
+    {
+      long sum = 0;
+      for (int i = 0; i < values.length; i++)
+      {
+        sum += values[i];
+        if (sum >= target)
+          return range(0, i + 1);
+      }
+      return null;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "LARGEST_FIRST";
+    }
+  };
+
+  /**
+   * Takes the smallest outputs until the target is reached, consolidating the
+   * wallet.
+   */
+  public static final Strategy SMALLEST_FIRST    = new Strategy()
+  {
+    @Override
+    public int[] select(long[] values, long target, long changeCost)
+    {
+      long sum = 0;
+      for (int i = values.length - 1; i >= 0; i--)
+      {
+        sum += values[i];
+        if (sum >= target)
+          return range(i, values.length);
+      }
+      return null;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "SMALLEST_FIRST";
+    }
+  };
+
+  /**
+   * Searches for a selection that needs no change, that is one within the
+   * change cost over the target, preferring the least excess. Returns null if
+   * there is none or the search runs out of {@link #BNB_MAX_TRIES} steps.
+   */
+  public static final Strategy BRANCH_AND_BOUND  = new Strategy()
+  {
+    @Override
+    public int[] select(long[] values, long target, long changeCost)
+    {
+      int n = values.length;
+      long[] rest = new long[n + 1];
+      for (int i = n - 1; i >= 0; i--)
+        rest[i] = rest[i + 1] + values[i];
+      if (rest[0] < target)
+        return null;
+      long upper = target + changeCost;
+      int[] stack = new int[n];
+      int size = 0;
+      int[] best = null;
+      long bestExcess = Long.MAX_VALUE;
+      long sum = 0;
+      int depth = 0;
+      for (int tries = 0; tries < BNB_MAX_TRIES; tries++)
+      {
+        boolean backtrack;
+        if (sum + rest[depth] < target || sum > upper)
+          backtrack = true;
+        else if (sum >= target)
+        {
+          if (sum - target < bestExcess)
+          {
+            bestExcess = sum - target;
+            best = Arrays.copyOf(stack, size);
+            if (bestExcess == 0)
+              break;
+          }
+          backtrack = true;
+        }
+        else
+          backtrack = false;
+        if (backtrack)
+        {
+          if (size == 0)
+            break;
+          int last = stack[--size];
+          sum -= values[last];
+          // leaving out one output and taking an equal one next would repeat
+          // the branch just explored
+          depth = last + 1;
+          while (depth < n && values[depth] == values[last])
+            depth++;
+        }
+        else
+        {
+          stack[size++] = depth;
+          sum += values[depth];
+          depth++;
+        }
+      }
+      return best;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "BRANCH_AND_BOUND";
+    }
+  };
+
+  /**
+   * Uses an exact match or the smallest output that covers the target and
+   * change on its own, or else approximates the subset of smaller outputs
+   * closest to the target by random passes, whichever is closer.
+   */
+  public static final Strategy KNAPSACK          = new Strategy()
+  {
+    @Override
+    public int[] select(long[] values, long target, long changeCost)
+    {
+      int lowestLarger = -1;
+      int first = values.length;
+      long lower = 0;
+      for (int i = 0; i < values.length; i++)
+      {
+        if (values[i] == target)
+          return new int[] { i };
+        if (values[i] < target + changeCost)
+        {
+          if (first == values.length)
+            first = i;
+          lower += values[i];
+        }
+        else
+          lowestLarger = i;
+      }
+      if (lower == target)
+        return range(first, values.length);
+      if (lower < target)
+        return lowestLarger < 0 ? null : new int[] { lowestLarger };
+
+      long[] smaller = Arrays.copyOfRange(values, first, values.length);
+      boolean[] best = new boolean[smaller.length];
+      long bestSum = approximate(smaller, lower, target, best);
+      if (bestSum != target && lower >= target + changeCost)
+        bestSum = approximate(smaller, lower, target + changeCost, best);
+      if (lowestLarger >= 0 && ((bestSum != target && bestSum < target + changeCost) || values[lowestLarger] <= bestSum))
+        return new int[] { lowestLarger };
+      int count = 0;
+      for (boolean b : best)
+        if (b)
+          count++;
+      int[] chosen = new int[count];
+      count = 0;
+      for (int i = 0; i < best.length; i++)
+        if (best[i])
+          chosen[count++] = first + i;
+      return chosen;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "KNAPSACK";
+    }
+  };
+
+  /**
+   * {@link #BRANCH_AND_BOUND}, then {@link #KNAPSACK} if it finds nothing.
+   */
+  public static final Strategy DEFAULT           = new Strategy()
+  {
+    @Override
+    public int[] select(long[] values, long target, long changeCost)
+    {
+      int[] chosen = BRANCH_AND_BOUND.select(values, target, changeCost);
+      return chosen != null ? chosen : KNAPSACK.select(values, target, changeCost);
+    }
+
+    @Override
+    public String toString()
+    {
+      return "DEFAULT";
+    }
+  };
+
+  /**
+   * The outputs chosen by {@link ThoughtCoinSelector#select(long, int, Collection)}.
+   */
+  public static final class Selection
+  {
+    public final List<Unspent> coins;
+    /** The sum of the chosen amounts in satoshis, before input costs. */
+    public final long          total;
+    /** The fee the chosen inputs add, in satoshis. */
+    public final long          inputCost;
+
+    Selection(List<Unspent> coins, long total, long inputCost)
+    {
+      this.coins = coins;
+      this.total = total;
+      this.inputCost = inputCost;
+    }
+  }
+
+  private static final Random            random     = new Random();
+
+  private final ThoughtClientInterface   thought;
+  private final ThoughtUtxoMirror        mirror;
+  private Strategy                       strategy   = DEFAULT;
+  private long                           maxAge     = DEFAULT_MAX_AGE;
+  private long                           inputCost;
+  private long                           changeCost;
+
+  private Unspent[]                      coins;
+  private long[]                         amounts;
+  private int[]                          confirmations;
+  private boolean[]                      used;
+  private HashMap<String, Integer>       index;
+  private long                           fetched;
+
+  public ThoughtCoinSelector(ThoughtClientInterface thought)
+  {
+    this.thought = thought;
+    this.mirror = null;
+  }
+
+  /**
+   * Creates a selector taking its snapshots from a UTXO mirror, brought up to
+   * date first, instead of from <code>listunspent</code>.
+   */
+  public ThoughtCoinSelector(ThoughtUtxoMirror mirror)
+  {
+    this.thought = null;
+    this.mirror = mirror;
+  }
+
+  public synchronized Strategy getStrategy()
+  {
+    return strategy;
+  }
+
+  public synchronized void setStrategy(Strategy strategy)
+  {
+    if (strategy == null)
+      throw new IllegalArgumentException("strategy must not be null");
+    this.strategy = strategy;
+  }
+
+  public synchronized long getMaxAge()
+  {
+    return maxAge;
+  }
+
+  /**
+   * Sets how long a snapshot of the unspent outputs is used, in milliseconds.
+   */
+  public synchronized void setMaxAge(long maxAge)
+  {
+    this.maxAge = maxAge;
+  }
+
+  public synchronized long getInputCost()
+  {
+    return inputCost;
+  }
+
+  /**
+   * Sets the fee one more input adds to a transaction, in satoshis.
+   */
+  public synchronized void setInputCost(long inputCost)
+  {
+    this.inputCost = inputCost;
+  }
+
+  public synchronized long getChangeCost()
+  {
+    return changeCost;
+  }
+
+  /**
+   * Sets the excess in satoshis below which adding a change output is not
+   * worth it, typically the fee of that output plus the dust limit.
+   */
+  public synchronized void setChangeCost(long changeCost)
+  {
+    this.changeCost = changeCost;
+  }
+
+  /**
+   * Drops the snapshot, so that the next selection takes a new one.
+   */
+  public synchronized void invalidate()
+  {
+    coins = null;
+  }
+
+  /**
+   * Returns the number of outputs in the snapshot that are not handed out yet,
+   * taking a snapshot if needed.
+   */
+  public synchronized int getAvailable() throws GenericRpcException
+  {
+    refresh();
+    int available = 0;
+    for (boolean u : used)
+      if (!u)
+        available++;
+    return available;
+  }
+
+  /**
+   * Chooses outputs worth at least the target plus their input costs.
+   *
+   * @param target
+   *          the amount to fund in satoshis
+   * @param minConf
+   *          the confirmations an output needs to be chosen
+   * @param exclude
+   *          outputs not to choose, for example those already spent by the
+   *          transaction being built; may be null
+   * @return the selection, or null if the available outputs do not cover the
+   *         target
+   */
+  public synchronized Selection select(long target, int minConf, Collection<? extends TxInput> exclude) throws GenericRpcException
+  {
+    refresh();
+    boolean[] skip = used.clone();
+    if (exclude != null)
+      for (TxInput in : exclude)
+      {
+        Integer i = index.get(key(in));
+        if (i != null)
+          skip[i] = true;
+      }
+    int[] map = new int[coins.length];
+    long[] values = new long[coins.length];
+    int m = 0;
+    for (int i = 0; i < coins.length; i++)
+      if (!skip[i] && confirmations[i] >= minConf && amounts[i] > inputCost)
+      {
+        map[m] = i;
+        values[m++] = amounts[i] - inputCost;
+      }
+    int[] chosen = strategy.select(Arrays.copyOf(values, m), target, changeCost);
+    if (chosen == null)
+      return null;
+    for (int j = 0; j < chosen.length; j++)
+      chosen[j] = map[chosen[j]];
+    Arrays.sort(chosen);
+    List<Unspent> picked = new ArrayList<Unspent>(chosen.length);
+    long total = 0;
+    for (int i : chosen)
+    {
+      used[i] = true;
+      picked.add(coins[i]);
+      total += amounts[i];
+    }
+    return new Selection(Collections.unmodifiableList(picked), total, inputCost * chosen.length);
+  }
+
+  private void refresh() throws GenericRpcException
+  {
+    if (coins != null && System.currentTimeMillis() - fetched < maxAge)
+      return;
+    List<Unspent> unspent;
+    if (mirror != null)
+    {
+      mirror.update();
+      unspent = mirror.listUnspent(0);
+    }
+    else
+      unspent = thought.listUnspent(0);
+    List<Unspent> usable = new ArrayList<Unspent>(unspent.size());
+    for (Unspent u : unspent)
+      if (u.spendable())
+        usable.add(u);
+    final int n = usable.size();
+    Unspent[] sorted = usable.toArray(new Unspent[n]);
+    final long[] values = new long[n];
+    for (int i = 0; i < n; i++)
+      values[i] = sorted[i].amountSat();
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++)
+      order[i] = i;
+    Arrays.sort(order, new Comparator<Integer>()
+    {
+      @Override
+      public int compare(Integer a, Integer b)
+      {
+        return Long.compare(values[b], values[a]);
+      }
+    });
+    coins = new Unspent[n];
+    amounts = new long[n];
+    confirmations = new int[n];
+    used = new boolean[n];
+    index = new HashMap<String, Integer>(n * 2);
+    for (int i = 0; i < n; i++)
+    {
+      coins[i] = sorted[order[i]];
+      amounts[i] = values[order[i]];
+      confirmations[i] = coins[i].confirmations();
+      index.put(key(coins[i]), i);
+    }
+    fetched = System.currentTimeMillis();
+  }
+
+  private static String key(TxInput in)
+  {
+    return in.txid() + ":" + in.vout();
+  }
+
+  private static int[] range(int from, int to)
+  {
+    int[] r = new int[to - from];
+    for (int i = 0; i < r.length; i++)
+      r[i] = from + i;
+    return r;
+  }
+
+  /**
+   * Random passes over the values, as in the reference wallet, keeping in best
+   * the subset with the smallest sum not below the target; returns that sum.
+   */
+  private static long approximate(long[] values, long total, long target, boolean[] best)
+  {
+    Arrays.fill(best, true);
+    long bestSum = total;
+    boolean[] included = new boolean[values.length];
+    int iterations = (int) Math.max(10, Math.min(1000, 10000000L / Math.max(1, values.length)));
+    for (int rep = 0; rep < iterations && bestSum != target; rep++)
+    {
+      Arrays.fill(included, false);
+      long sum = 0;
+      boolean reached = false;
+      for (int pass = 0; pass < 2 && !reached; pass++)
+      {
+        for (int i = 0; i < values.length; i++)
+        {
+          if (pass == 0 ? random.nextBoolean() : !included[i])
+          {
+            sum += values[i];
+            included[i] = true;
+            if (sum >= target)
+            {
+              reached = true;
+              if (sum < bestSum)
+              {
+                bestSum = sum;
+                System.arraycopy(included, 0, best, 0, included.length);
+              }
+              sum -= values[i];
+              included[i] = false;
+            }
+          }
+        }
+      }
+    }
+    return bestSum;
+  }
+}
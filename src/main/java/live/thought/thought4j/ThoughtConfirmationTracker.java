@@ -0,0 +1,435 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import live.thought.thought4j.ThoughtClientInterface.RawTransaction;
+import live.thought.thought4j.ThoughtClientInterface.Transaction;
+
+/**
+ * Follows incoming wallet payments until they reach a set of confirmation
+ * thresholds, without re-reading the whole confirmation window on every block.
+ *
+ * Each {@link #check()} asks for <code>listsinceblock</code> from the tip seen
+ * by the previous check, so only transactions that are new, still in the
+ * mempool, or touched by a reorganization are returned. Pending payments are
+ * kept in a table indexed by block height; their confirmations follow from the
+ * tip height, which costs one header lookup per new tip.
+ *
+ * {@link ThoughtPaymentListener#transaction(Transaction)} is called once for
+ * each threshold a payment reaches, with the confirmations at that time. When
+ * several thresholds are passed between two checks, a single call covers them.
+ * A payment is dropped from the table once the last threshold is reached, or
+ * when the node reports it as conflicted. <code>listsinceblock</code> returns
+ * every wallet transaction still in the mempool, so an unconfirmed payment
+ * that is missing from {@link #getMaxMissedChecks()} checks in a row, evicted
+ * or replaced without the wallet noticing a conflict, is dropped as well.
+ */
+public class ThoughtConfirmationTracker
+{
+  public static final int                             DEFAULT_MAX_MISSED_CHECKS = 3;
+
+  private static final Logger                         logger    = Logger.getLogger(ThoughtConfirmationTracker.class.getCanonicalName());
+
+  private final ThoughtClientInterface                thought;
+  private final int[]                                 thresholds;
+  private final LinkedHashSet<ThoughtPaymentListener> listeners = new LinkedHashSet<ThoughtPaymentListener>();
+
+  private String                                      lastBlock;
+  private int                                         tipHeight = -1;
+  private int                                         maxMissedChecks = DEFAULT_MAX_MISSED_CHECKS;
+  private int                                         checks;
+
+  private static final class Pending
+  {
+    Transaction tx;
+    int         height;
+    int         next;
+    /** The last check that returned the payment. */
+    int         seen;
+  }
+
+  /** Pending payments by txid. */
+  private final HashMap<String, Pending>              pending   = new HashMap<String, Pending>();
+  /** Confirmed pending payments by block height, unconfirmed ones under -1. */
+  private final TreeMap<Integer, Map<String, Pending>> byHeight = new TreeMap<Integer, Map<String, Pending>>();
+
+  /**
+   * @param thought
+   *          the client to query
+   * @param sinceBlock
+   *          the block after which payments are looked for, or null for the
+   *          whole wallet history
+   * @param thresholds
+   *          the confirmation counts to report, for instance 0, 1 and 6
+   */
+  public ThoughtConfirmationTracker(ThoughtClientInterface thought, String sinceBlock, int... thresholds)
+  {
+    if (thresholds.length == 0)
+      throw new IllegalArgumentException("At least one threshold is needed");
+    this.thought = thought;
+    this.lastBlock = sinceBlock;
+    this.thresholds = thresholds.clone();
+    Arrays.sort(this.thresholds);
+    if (this.thresholds[0] < 0)
+      throw new IllegalArgumentException("Thresholds must not be negative");
+  }
+
+  public synchronized void addListener(ThoughtPaymentListener listener)
+  {
+    listeners.add(listener);
+  }
+
+  public synchronized void removeListener(ThoughtPaymentListener listener)
+  {
+    listeners.remove(listener);
+  }
+
+  /**
+   * The tip seen by the last check, or the starting block before the first.
+   */
+  public synchronized String getLastBlock()
+  {
+    return lastBlock;
+  }
+
+  public synchronized int getTipHeight()
+  {
+    return tipHeight;
+  }
+
+  public synchronized int getMaxMissedChecks()
+  {
+    return maxMissedChecks;
+  }
+
+  /**
+   * Sets after how many checks in a row without it an unconfirmed payment is
+   * given up on.
+   */
+  public synchronized void setMaxMissedChecks(int maxMissedChecks)
+  {
+    if (maxMissedChecks < 1)
+      throw new IllegalArgumentException("At least one missed check is needed");
+    this.maxMissedChecks = maxMissedChecks;
+  }
+
+  /**
+   * The number of payments that have not reached the last threshold yet.
+   */
+  public synchronized int getPendingCount()
+  {
+    return pending.size();
+  }
+
+  public synchronized void check() throws GenericRpcException
+  {
+    ThoughtClientInterface.TransactionsSinceBlock t = lastBlock == null ? thought.listSinceBlock()
+        : thought.listSinceBlock(lastBlock);
+    String tip = t.lastBlock();
+    boolean newTip = !tip.equals(lastBlock);
+    if (newTip || tipHeight < 0)
+      tipHeight = thought.getBlockHeight(tip);
+    checks++;
+
+    for (Transaction tx : t.transactions())
+    {
+      if (!"receive".equals(tx.category()))
+        continue;
+      int confirmations = tx.confirmations();
+      Pending p = pending.get(tx.txId());
+      if (p == null)
+      {
+        if (confirmations < 0)
+          continue;
+        p = new Pending();
+        pending.put(tx.txId(), p);
+      }
+      else
+      {
+        unindex(p);
+        if (confirmations < 0)
+        {
+          pending.remove(tx.txId());
+          continue;
+        }
+      }
+      p.tx = tx;
+      p.height = confirmations == 0 ? -1 : tipHeight - confirmations + 1;
+      p.seen = checks;
+      index(p);
+    }
+
+    // unconfirmed payments left the mempool if the node stopped returning them
+    Map<String, Pending> unconfirmed = byHeight.get(-1);
+    if (unconfirmed != null)
+    {
+      Iterator<Pending> j = unconfirmed.values().iterator();
+      while (j.hasNext())
+      {
+        Pending p = j.next();
+        if (checks - p.seen < maxMissedChecks)
+          continue;
+        j.remove();
+        pending.remove(p.tx.txId());
+      }
+      if (unconfirmed.isEmpty())
+        byHeight.remove(-1);
+    }
+
+    // every pending payment is below the last threshold, so this walks no more
+    // than the confirmation window
+    Iterator<Map.Entry<Integer, Map<String, Pending>>> i = byHeight.entrySet().iterator();
+    while (i.hasNext())
+    {
+      Map<String, Pending> row = i.next().getValue();
+      Iterator<Pending> j = row.values().iterator();
+      while (j.hasNext())
+      {
+        Pending p = j.next();
+        int confirmations = p.height < 0 ? 0 : tipHeight - p.height + 1;
+        int r = reached(confirmations);
+        if (r < p.next)
+          continue;
+        p.next = r + 1;
+        fire(p.tx, confirmations);
+        if (p.next == thresholds.length)
+        {
+          j.remove();
+          pending.remove(p.tx.txId());
+        }
+      }
+      if (row.isEmpty())
+        i.remove();
+    }
+
+    if (newTip)
+    {
+      lastBlock = tip;
+      for (ThoughtPaymentListener listener : listeners)
+      {
+        try
+        {
+          listener.block(tip);
+        }
+        catch (Exception ex)
+        {
+          logger.log(Level.SEVERE, null, ex);
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Returns the index of the highest threshold reached, or -1.
+   */
+  private int reached(int confirmations)
+  {
+    int r = -1;
+    while (r + 1 < thresholds.length && thresholds[r + 1] <= confirmations)
+      r++;
+    return r;
+  }
+
+  private void index(Pending p)
+  {
+    Map<String, Pending> row = byHeight.get(p.height);
+    if (row == null)
+      byHeight.put(p.height, row = new HashMap<String, Pending>());
+    row.put(p.tx.txId(), p);
+  }
+
+  private void unindex(Pending p)
+  {
+    Map<String, Pending> row = byHeight.get(p.height);
+    if (row != null && row.remove(p.tx.txId()) != null && row.isEmpty())
+      byHeight.remove(p.height);
+  }
+
+  private void fire(Transaction tx, int confirmations)
+  {
+    Transaction t = new TrackedTransaction(tx, confirmations);
+    for (ThoughtPaymentListener listener : listeners)
+    {
+      try
+      {
+        listener.transaction(t);
+      }
+      catch (Exception ex)
+      {
+        logger.log(Level.SEVERE, null, ex);
+      }
+    }
+  }
+
+  /**
+   * A transaction as returned by the node, with confirmations brought up to date.
+   */
+  private static class TrackedTransaction implements Transaction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final Transaction tx;
+    private final int         confirmations;
+
+    TrackedTransaction(Transaction tx, int confirmations)
+    {
+      this.tx = tx;
+      this.confirmations = confirmations;
+    }
+
+    @Override
+    public String account()
+    {
+      return tx.account();
+    }
+
+    @Override
+    public String address()
+    {
+      return tx.address();
+    }
+
+    @Override
+    public String category()
+    {
+      return tx.category();
+    }
+
+    @Override
+    public double amount()
+    {
+      return tx.amount();
+    }
+
+    @Override
+    public double fee()
+    {
+      return tx.fee();
+    }
+
+    @Override
+    public long amountSat()
+    {
+      return tx.amountSat();
+    }
+
+    @Override
+    public long feeSat()
+    {
+      return tx.feeSat();
+    }
+
+    @Override
+    public boolean generated()
+    {
+      return tx.generated();
+    }
+
+    @Override
+    public int confirmations()
+    {
+      return confirmations;
+    }
+
+    @Override
+    public int vout()
+    {
+      return tx.vout();
+    }
+
+    @Override
+    public String blockHash()
+    {
+      return tx.blockHash();
+    }
+
+    @Override
+    public int blockIndex()
+    {
+      return tx.blockIndex();
+    }
+
+    @Override
+    public Date blockTime()
+    {
+      return tx.blockTime();
+    }
+
+    @Override
+    public String txId()
+    {
+      return tx.txId();
+    }
+
+    @Override
+    public Date time()
+    {
+      return tx.time();
+    }
+
+    @Override
+    public Date timeReceived()
+    {
+      return tx.timeReceived();
+    }
+
+    @Override
+    public List<Details> details()
+    {
+      return tx.details();
+    }
+
+    @Override
+    public String comment()
+    {
+      return tx.comment();
+    }
+
+    @Override
+    public String commentTo()
+    {
+      return tx.commentTo();
+    }
+
+    @Override
+    public RawTransaction raw()
+    {
+      return tx.raw();
+    }
+
+    @Override
+    public String toString()
+    {
+      return tx.toString();
+    }
+  }
+}
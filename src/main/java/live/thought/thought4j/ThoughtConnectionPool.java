@@ -0,0 +1,988 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * A pool of persistent HTTP/1.1 connections to a single thoughtd RPC endpoint.
+ *
+ * Connections are kept alive between calls and handed out most recently used
+ * first, so a lightly loaded client keeps few sockets warm. The pool never
+ * opens more than {@link #getMaxConnections()} sockets at once; callers block
+ * until one is returned. Since thoughtd serves at most <code>rpcthreads</code>
+ * requests concurrently (and queues up to <code>rpcworkqueue</code> more),
+ * there is little point in sizing the pool much above that value.
+ *
+ * Idle connections are closed after {@link #getIdleTimeout()} milliseconds,
+ * which should stay below the node's <code>rpcservertimeout</code> (30 seconds
+ * by default) so the client, not the server, decides when a socket dies.
+ */
+public class ThoughtConnectionPool implements Closeable
+{
+  private static final Logger  logger                  = Logger.getLogger(ThoughtConnectionPool.class.getCanonicalName());
+
+  public static final Charset  HEADER_CHARSET          = Charset.forName("ISO8859-1");
+
+  public static final int      DEFAULT_MAX_CONNECTIONS = 4;
+  public static final long     DEFAULT_IDLE_TIMEOUT    = 15000;
+  public static final int      DEFAULT_CONNECT_TIMEOUT = 10000;
+  public static final int      DEFAULT_READ_TIMEOUT    = 0;
+
+  private final String         host;
+  private final int            port;
+  private final boolean        secure;
+
+  private int                  maxConnections          = DEFAULT_MAX_CONNECTIONS;
+  private long                 idleTimeout             = DEFAULT_IDLE_TIMEOUT;
+  private boolean              validateOnBorrow        = true;
+  private int                  connectTimeout          = DEFAULT_CONNECT_TIMEOUT;
+  private int                  readTimeout             = DEFAULT_READ_TIMEOUT;
+  private long                 borrowTimeout           = 0;
+
+  private HostnameVerifier     hostnameVerifier        = null;
+  private SSLSocketFactory     sslSocketFactory        = null;
+
+  private final ArrayDeque<PooledConnection> idle      = new ArrayDeque<PooledConnection>();
+  private int                  leased                  = 0;
+  private boolean              closed                  = false;
+
+  private final AtomicLong     created                 = new AtomicLong();
+  private final AtomicLong     reused                  = new AtomicLong();
+  private final AtomicLong     discarded               = new AtomicLong();
+  private final AtomicLong     evicted                 = new AtomicLong();
+  private final AtomicLong     validationFailures      = new AtomicLong();
+  private final AtomicLong     waits                   = new AtomicLong();
+
+  public ThoughtConnectionPool(URL url)
+  {
+    String protocol = url.getProtocol();
+    if ("https".equalsIgnoreCase(protocol))
+      secure = true;
+    else if ("http".equalsIgnoreCase(protocol))
+      secure = false;
+    else
+      throw new IllegalArgumentException("Unsupported protocol: " + protocol);
+    this.host = url.getHost();
+    this.port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+  }
+
+  public String getHost()
+  {
+    return host;
+  }
+
+  public int getPort()
+  {
+    return port;
+  }
+
+  public boolean isSecure()
+  {
+    return secure;
+  }
+
+  public synchronized int getMaxConnections()
+  {
+    return maxConnections;
+  }
+
+  /**
+   * Set the maximum number of connections open at the same time, leased and
+   * idle together.
+   *
+   * @param maxConnections
+   *          new value of maxConnections, at least 1
+   */
+  public synchronized void setMaxConnections(int maxConnections)
+  {
+    if (maxConnections < 1)
+      throw new IllegalArgumentException("maxConnections must be at least 1");
+    this.maxConnections = maxConnections;
+    while (idle.size() + leased > maxConnections && !idle.isEmpty())
+      discard(idle.pollLast());
+    notifyAll();
+  }
+
+  public synchronized long getIdleTimeout()
+  {
+    return idleTimeout;
+  }
+
+  /**
+   * Set the time in milliseconds an unused connection is kept open. Zero or a
+   * negative value disables keep-alive altogether.
+   *
+   * @param idleTimeout
+   *          new value of idleTimeout
+   */
+  public synchronized void setIdleTimeout(long idleTimeout)
+  {
+    this.idleTimeout = idleTimeout;
+  }
+
+  public synchronized boolean isValidateOnBorrow()
+  {
+    return validateOnBorrow;
+  }
+
+  /**
+   * When enabled, an idle connection is probed before being reused, so one
+   * closed by the server is discarded instead of failing the next request.
+   *
+   * @param validateOnBorrow
+   *          new value of validateOnBorrow
+   */
+  public synchronized void setValidateOnBorrow(boolean validateOnBorrow)
+  {
+    this.validateOnBorrow = validateOnBorrow;
+  }
+
+  public synchronized int getConnectTimeout()
+  {
+    return connectTimeout;
+  }
+
+  public synchronized void setConnectTimeout(int connectTimeout)
+  {
+    this.connectTimeout = connectTimeout;
+  }
+
+  public synchronized int getReadTimeout()
+  {
+    return readTimeout;
+  }
+
+  public synchronized void setReadTimeout(int readTimeout)
+  {
+    this.readTimeout = readTimeout;
+  }
+
+  public synchronized long getBorrowTimeout()
+  {
+    return borrowTimeout;
+  }
+
+  /**
+   * Set how long, in milliseconds, a caller waits for a free connection when
+   * the pool is exhausted. Zero waits forever.
+   *
+   * @param borrowTimeout
+   *          new value of borrowTimeout
+   */
+  public synchronized void setBorrowTimeout(long borrowTimeout)
+  {
+    this.borrowTimeout = borrowTimeout;
+  }
+
+  public synchronized HostnameVerifier getHostnameVerifier()
+  {
+    return hostnameVerifier;
+  }
+
+  /**
+   * Sets the verifier that checks the server's certificate against the host
+   * name. When null, the default, the check is done during the TLS handshake
+   * by HTTPS endpoint identification, as HttpsURLConnection does.
+   *
+   * @param hostnameVerifier
+   *          new value of hostnameVerifier
+   */
+  public synchronized void setHostnameVerifier(HostnameVerifier hostnameVerifier)
+  {
+    this.hostnameVerifier = hostnameVerifier;
+  }
+
+  public synchronized SSLSocketFactory getSslSocketFactory()
+  {
+    return sslSocketFactory;
+  }
+
+  public synchronized void setSslSocketFactory(SSLSocketFactory sslSocketFactory)
+  {
+    this.sslSocketFactory = sslSocketFactory;
+  }
+
+  /**
+   * Sends a POST request and returns the response once its status line and
+   * headers have been read. The connection goes back to the pool when the
+   * response is closed, provided its body was read to the end.
+   *
+   * @param path
+   *          the request target, e.g. "/" or "/wallet/main"
+   * @param authorization
+   *          the value of the Authorization header, or null
+   * @param body
+   *          the request body
+   * @param offset
+   *          offset of the body in the array
+   * @param length
+   *          length of the body
+   */
+  public Response post(String path, String authorization, byte[] body, int offset, int length) throws IOException
+  {
+    byte[] head = requestHead(path, authorization, length);
+    for (int attempt = 0;; attempt++)
+    {
+      PooledConnection c = borrow();
+      long connectNanos = c.connectNanos;
+      c.connectNanos = 0;
+      boolean sent = false;
+      try
+      {
+        c.out.write(head);
+        c.out.write(body, offset, length);
+        c.out.flush();
+        sent = true;
+        long written = System.nanoTime();
+        long received = c.raw.bytes;
+        Response response = readResponse(c);
+        response.measured(head.length + length, received, connectNanos, System.nanoTime() - written);
+        return response;
+      }
+      catch (IOException ex)
+      {
+        release(c, false);
+        // A kept-alive socket may have been closed by the server while it sat in
+        // the pool; retry once on a fresh connection if nothing came back.
+        if (attempt == 0 && c.uses > 0 && (!sent || ex instanceof StaleConnectionException))
+        {
+          logger.log(Level.FINE, "Retrying request on a new connection", ex);
+          continue;
+        }
+        throw ex;
+      }
+      catch (RuntimeException ex)
+      {
+        release(c, false);
+        throw ex;
+      }
+    }
+  }
+
+  public Response post(String path, String authorization, byte[] body) throws IOException
+  {
+    return post(path, authorization, body, 0, body.length);
+  }
+
+  private byte[] requestHead(String path, String authorization, int length)
+  {
+    StringBuilder b = new StringBuilder(160);
+    b.append("POST ").append(path == null || path.isEmpty() ? "/" : path).append(" HTTP/1.1\r\n");
+    b.append("Host: ").append(host);
+    if (port != (secure ? 443 : 80))
+      b.append(':').append(port);
+    b.append("\r\n");
+    if (authorization != null)
+      b.append("Authorization: ").append(authorization).append("\r\n");
+    b.append("Content-Type: application/json\r\n");
+    b.append("Content-Length: ").append(length).append("\r\n");
+    b.append("Connection: keep-alive\r\n\r\n");
+    return b.toString().getBytes(HEADER_CHARSET);
+  }
+
+  private Response readResponse(PooledConnection c) throws IOException
+  {
+    String statusLine = readLine(c.in);
+    if (statusLine == null)
+      throw new StaleConnectionException();
+    c.uses++;
+
+    int sp1 = statusLine.indexOf(' ');
+    if (!statusLine.startsWith("HTTP/") || sp1 == -1)
+      throw new IOException("Invalid HTTP status line: " + statusLine);
+    int sp2 = statusLine.indexOf(' ', sp1 + 1);
+    int statusCode;
+    try
+    {
+      statusCode = Integer.parseInt(sp2 == -1 ? statusLine.substring(sp1 + 1) : statusLine.substring(sp1 + 1, sp2));
+    }
+    catch (NumberFormatException ex)
+    {
+      throw new IOException("Invalid HTTP status line: " + statusLine);
+    }
+    String message = sp2 == -1 ? "" : statusLine.substring(sp2 + 1);
+
+    boolean keepAlive = statusLine.startsWith("HTTP/1.1");
+    long contentLength = -1;
+    boolean chunked = false;
+    String line;
+    while ((line = readLine(c.in)) != null && !line.isEmpty())
+    {
+      int colon = line.indexOf(':');
+      if (colon <= 0)
+        continue;
+      String name = line.substring(0, colon).trim();
+      String value = line.substring(colon + 1).trim();
+      if ("Content-Length".equalsIgnoreCase(name))
+        contentLength = Long.parseLong(value);
+      else if ("Transfer-Encoding".equalsIgnoreCase(name))
+        chunked = value.toLowerCase().contains("chunked");
+      else if ("Connection".equalsIgnoreCase(name))
+      {
+        if ("close".equalsIgnoreCase(value))
+          keepAlive = false;
+        else if ("keep-alive".equalsIgnoreCase(value))
+          keepAlive = true;
+      }
+    }
+    if (line == null)
+      throw new EOFException("Connection closed while reading response headers");
+
+    InputStream body;
+    if (chunked)
+      body = new ChunkedInputStream(c.in);
+    else if (contentLength >= 0)
+      body = new FixedLengthInputStream(c.in, contentLength);
+    else
+    {
+      body = new FilterInputStream(c.in)
+      {
+        @Override
+        public void close()
+        {
+        }
+      };
+      keepAlive = false;
+    }
+    return new Response(c, statusCode, message, body, keepAlive);
+  }
+
+  private static String readLine(InputStream in) throws IOException
+  {
+    StringBuilder b = new StringBuilder(64);
+    int ch;
+    while ((ch = in.read()) != -1)
+    {
+      if (ch == '\n')
+      {
+        int l = b.length();
+        if (l > 0 && b.charAt(l - 1) == '\r')
+          b.setLength(l - 1);
+        return b.toString();
+      }
+      b.append((char) ch);
+    }
+    return b.length() == 0 ? null : b.toString();
+  }
+
+  PooledConnection borrow() throws IOException
+  {
+    PooledConnection c = null;
+    synchronized (this)
+    {
+      long deadline = borrowTimeout > 0 ? System.currentTimeMillis() + borrowTimeout : 0;
+      boolean waited = false;
+      for (;;)
+      {
+        if (closed)
+          throw new IOException("Connection pool is closed");
+        evictExpired();
+        while (!idle.isEmpty())
+        {
+          PooledConnection candidate = idle.pollFirst();
+          if (!validateOnBorrow || candidate.isAlive(System.currentTimeMillis() - candidate.lastUsed > 1000))
+          {
+            c = candidate;
+            break;
+          }
+          validationFailures.incrementAndGet();
+          discard(candidate);
+        }
+        if (c != null)
+        {
+          reused.incrementAndGet();
+          break;
+        }
+        if (leased < maxConnections)
+          break;
+        if (!waited)
+        {
+          waits.incrementAndGet();
+          waited = true;
+        }
+        try
+        {
+          if (deadline == 0)
+            wait();
+          else
+          {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0)
+              throw new SocketTimeoutException("Timed out waiting for a free RPC connection");
+            wait(left);
+          }
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting for a free RPC connection", ex);
+        }
+      }
+      leased++;
+    }
+    if (c != null)
+      return c;
+    try
+    {
+      return connect();
+    }
+    catch (IOException | RuntimeException ex)
+    {
+      synchronized (this)
+      {
+        leased--;
+        notifyAll();
+      }
+      throw ex;
+    }
+  }
+
+  void release(PooledConnection c, boolean reusable)
+  {
+    synchronized (this)
+    {
+      leased--;
+      if (reusable && !closed && idleTimeout > 0 && idle.size() + leased < maxConnections)
+      {
+        c.lastUsed = System.currentTimeMillis();
+        idle.addFirst(c);
+        c = null;
+      }
+      notifyAll();
+    }
+    if (c != null)
+      discard(c);
+  }
+
+  private PooledConnection connect() throws IOException
+  {
+    int connectTimeout, readTimeout;
+    SSLSocketFactory factory;
+    HostnameVerifier verifier;
+    synchronized (this)
+    {
+      connectTimeout = this.connectTimeout;
+      readTimeout = this.readTimeout;
+      factory = sslSocketFactory;
+      verifier = hostnameVerifier;
+    }
+    long start = System.nanoTime();
+    Socket socket = new Socket();
+    try
+    {
+      socket.setTcpNoDelay(true);
+      socket.setKeepAlive(true);
+      socket.connect(new InetSocketAddress(host, port), connectTimeout);
+      socket.setSoTimeout(readTimeout);
+      if (secure)
+      {
+        if (factory == null)
+          factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+        SSLSocket ssl = (SSLSocket) factory.createSocket(socket, host, port, true);
+        if (verifier == null)
+        {
+          SSLParameters params = ssl.getSSLParameters();
+          params.setEndpointIdentificationAlgorithm("HTTPS");
+          ssl.setSSLParameters(params);
+        }
+        ssl.startHandshake();
+        if (verifier != null && !verifier.verify(host, ssl.getSession()))
+          throw new SSLException("Hostname verification failed for " + host);
+        socket = ssl;
+      }
+      created.incrementAndGet();
+      PooledConnection c = new PooledConnection(socket);
+      c.connectNanos = System.nanoTime() - start;
+      return c;
+    }
+    catch (IOException | RuntimeException ex)
+    {
+      try
+      {
+        socket.close();
+      }
+      catch (IOException ignored)
+      {
+      }
+      throw ex;
+    }
+  }
+
+  private void evictExpired()
+  {
+    if (idle.isEmpty())
+      return;
+    long expired = System.currentTimeMillis() - idleTimeout;
+    for (Iterator<PooledConnection> i = idle.descendingIterator(); i.hasNext();)
+    {
+      PooledConnection c = i.next();
+      if (c.lastUsed > expired)
+        break;
+      i.remove();
+      evicted.incrementAndGet();
+      discard(c);
+    }
+  }
+
+  /**
+   * Closes every idle connection that has outlived the idle timeout. Expired
+   * connections are also dropped whenever a connection is borrowed, so calling
+   * this is only needed to release sockets of a client that went quiet.
+   */
+  public synchronized void evictIdle()
+  {
+    evictExpired();
+  }
+
+  private void discard(PooledConnection c)
+  {
+    discarded.incrementAndGet();
+    c.close();
+  }
+
+  /**
+   * Closes all idle connections. Leased connections are closed when they are
+   * returned.
+   */
+  @Override
+  public synchronized void close()
+  {
+    closed = true;
+    while (!idle.isEmpty())
+      discard(idle.pollFirst());
+    notifyAll();
+  }
+
+  public synchronized Statistics getStatistics()
+  {
+    return new Statistics(maxConnections, leased, idle.size(), created.get(), reused.get(), discarded.get(), evicted.get(),
+        validationFailures.get(), waits.get());
+  }
+
+  /**
+   * A snapshot of the pool counters.
+   */
+  public static class Statistics implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    public final int          maxConnections;
+    public final int          leased;
+    public final int          idle;
+    public final long         created;
+    public final long         reused;
+    public final long         closed;
+    public final long         evicted;
+    public final long         validationFailures;
+    public final long         waits;
+
+    Statistics(int maxConnections, int leased, int idle, long created, long reused, long closed, long evicted,
+        long validationFailures, long waits)
+    {
+      this.maxConnections = maxConnections;
+      this.leased = leased;
+      this.idle = idle;
+      this.created = created;
+      this.reused = reused;
+      this.closed = closed;
+      this.evicted = evicted;
+      this.validationFailures = validationFailures;
+      this.waits = waits;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "ConnectionPool(max: " + maxConnections + ", leased: " + leased + ", idle: " + idle + ", created: " + created
+          + ", reused: " + reused + ", closed: " + closed + ", evicted: " + evicted + ", validationFailures: "
+          + validationFailures + ", waits: " + waits + ")";
+    }
+  }
+
+  static class PooledConnection
+  {
+    final Socket              socket;
+    final MeteredInputStream  raw;
+    final InputStream         in;
+    final OutputStream        out;
+    long                      lastUsed;
+    int                       uses;
+    /** Time taken to open the connection, until its first request. */
+    long                      connectNanos;
+
+    PooledConnection(Socket socket) throws IOException
+    {
+      this.socket = socket;
+      this.raw = new MeteredInputStream(socket.getInputStream());
+      this.in = new BufferedInputStream(raw, 8192);
+      this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+      this.lastUsed = System.currentTimeMillis();
+    }
+
+    boolean isAlive(boolean probe)
+    {
+      if (socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown())
+        return false;
+      int timeout = -1;
+      try
+      {
+        // Anything readable on an idle connection is either EOF or garbage.
+        if (in.available() > 0)
+          return false;
+        if (!probe)
+          return true;
+        timeout = socket.getSoTimeout();
+        socket.setSoTimeout(1);
+        in.read();
+        return false;
+      }
+      catch (SocketTimeoutException ex)
+      {
+        return true;
+      }
+      catch (IOException ex)
+      {
+        return false;
+      }
+      finally
+      {
+        if (timeout != -1)
+        {
+          try
+          {
+            socket.setSoTimeout(timeout);
+          }
+          catch (IOException ignored)
+          {
+          }
+        }
+      }
+    }
+
+    void close()
+    {
+      try
+      {
+        socket.close();
+      }
+      catch (IOException ignored)
+      {
+      }
+    }
+  }
+
+  /**
+   * An HTTP response whose body is streamed from a pooled connection. It must
+   * be closed to give the connection back.
+   */
+  public class Response implements Closeable
+  {
+    private final PooledConnection connection;
+    private final int              statusCode;
+    private final String           message;
+    private final InputStream      body;
+    private final boolean          keepAlive;
+    private boolean                released = false;
+
+    private long                   bytesSent;
+    private long                   bytesReceived;
+    private long                   connectNanos;
+    private long                   waitNanos;
+    private long                   readNanos;
+
+    Response(PooledConnection connection, int statusCode, String message, InputStream body, boolean keepAlive)
+    {
+      this.connection = connection;
+      this.statusCode = statusCode;
+      this.message = message;
+      this.body = body;
+      this.keepAlive = keepAlive;
+    }
+
+    public int getStatusCode()
+    {
+      return statusCode;
+    }
+
+    public String getMessage()
+    {
+      return message;
+    }
+
+    public InputStream getInputStream()
+    {
+      return body;
+    }
+
+    void measured(long bytesSent, long received, long connectNanos, long waitNanos)
+    {
+      this.bytesSent = bytesSent;
+      this.bytesReceived = received;
+      this.connectNanos = connectNanos;
+      this.waitNanos = waitNanos;
+      this.readNanos = connection.raw.nanos;
+    }
+
+    /**
+     * The size of the request, head included.
+     */
+    public long getBytesSent()
+    {
+      return bytesSent;
+    }
+
+    /**
+     * The size of the response read from the network, head included. Only
+     * complete once the response is closed.
+     */
+    public long getBytesReceived()
+    {
+      return released ? bytesReceived : connection.raw.bytes - bytesReceived;
+    }
+
+    /**
+     * The time spent opening the connection, or 0 if it was reused.
+     */
+    public long getConnectNanos()
+    {
+      return connectNanos;
+    }
+
+    /**
+     * The time from the request being sent to the response head being read,
+     * mostly spent by the server handling the call.
+     */
+    public long getWaitNanos()
+    {
+      return waitNanos;
+    }
+
+    /**
+     * The time spent blocked on the network while reading the body. Only
+     * complete once the response is closed.
+     */
+    public long getReadNanos()
+    {
+      return released ? readNanos : connection.raw.nanos - readNanos;
+    }
+
+    /**
+     * Releases the connection. It is returned to the pool when the body has been
+     * consumed completely, otherwise it is closed.
+     */
+    @Override
+    public void close()
+    {
+      if (released)
+        return;
+      boolean reusable = keepAlive;
+      if (reusable)
+      {
+        try
+        {
+          reusable = body.read() == -1;
+        }
+        catch (IOException ex)
+        {
+          reusable = false;
+        }
+      }
+      // The connection may serve another thread once released
+      bytesReceived = connection.raw.bytes - bytesReceived;
+      readNanos = connection.raw.nanos - readNanos;
+      released = true;
+      release(connection, reusable);
+    }
+  }
+
+  private static class StaleConnectionException extends EOFException
+  {
+    private static final long serialVersionUID = 1L;
+
+    StaleConnectionException()
+    {
+      super("Connection closed by server before response");
+    }
+  }
+
+  /**
+   * Counts the bytes read from a socket and the time spent waiting for them.
+   */
+  static class MeteredInputStream extends FilterInputStream
+  {
+    long bytes;
+    long nanos;
+
+    MeteredInputStream(InputStream in)
+    {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      long start = System.nanoTime();
+      int ch = in.read();
+      nanos += System.nanoTime() - start;
+      if (ch != -1)
+        bytes++;
+      return ch;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      long start = System.nanoTime();
+      int nr = in.read(b, off, len);
+      nanos += System.nanoTime() - start;
+      if (nr > 0)
+        bytes += nr;
+      return nr;
+    }
+  }
+
+  private static class FixedLengthInputStream extends InputStream
+  {
+    private final InputStream in;
+    private long              remaining;
+
+    FixedLengthInputStream(InputStream in, long length)
+    {
+      this.in = in;
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      if (remaining <= 0)
+        return -1;
+      int ch = in.read();
+      if (ch == -1)
+        throw new EOFException("Connection closed before end of response body");
+      remaining--;
+      return ch;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      if (remaining <= 0)
+        return -1;
+      int nr = in.read(b, off, (int) Math.min(len, remaining));
+      if (nr == -1)
+        throw new EOFException("Connection closed before end of response body");
+      remaining -= nr;
+      return nr;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+      return (int) Math.min(in.available(), remaining);
+    }
+  }
+
+  private static class ChunkedInputStream extends InputStream
+  {
+    private final InputStream in;
+    private long              chunkRemaining = 0;
+    private boolean           eof            = false;
+
+    ChunkedInputStream(InputStream in)
+    {
+      this.in = in;
+    }
+
+    private boolean nextChunk() throws IOException
+    {
+      if (eof)
+        return false;
+      if (chunkRemaining == 0)
+      {
+        String line = readLine(in);
+        if (line != null && line.isEmpty())
+          line = readLine(in);
+        if (line == null)
+          throw new EOFException("Connection closed inside chunked response body");
+        int ext = line.indexOf(';');
+        chunkRemaining = Long.parseLong((ext == -1 ? line : line.substring(0, ext)).trim(), 16);
+        if (chunkRemaining == 0)
+        {
+          String trailer;
+          while ((trailer = readLine(in)) != null && !trailer.isEmpty())
+            ;
+          eof = true;
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      if (!nextChunk())
+        return -1;
+      int ch = in.read();
+      if (ch == -1)
+        throw new EOFException("Connection closed inside chunked response body");
+      chunkRemaining--;
+      return ch;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      if (!nextChunk())
+        return -1;
+      int nr = in.read(b, off, (int) Math.min(len, chunkRemaining));
+      if (nr == -1)
+        throw new EOFException("Connection closed inside chunked response body");
+      chunkRemaining -= nr;
+      return nr;
+    }
+  }
+}
@@ -0,0 +1,458 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import live.thought.thought4j.ThoughtClientInterface.Transaction;
+
+/**
+ * Delivers payment events to listeners on a pool of worker threads, so a slow
+ * listener does not hold up the thread detecting payments nor the other
+ * listeners. Set it on an acceptor with
+ * {@link ThoughtAcceptor#setDispatcher(ThoughtListenerDispatcher)}.
+ *
+ * Every listener has {@link #getLanesPerListener()} lanes, each a bounded queue
+ * served by at most one worker at a time. Transactions are assigned to a lane by
+ * txid or by account (see {@link Ordering}), so events for the same key reach
+ * the listener in order while different keys may be handled concurrently.
+ * Block events use the lane of their hash; they are not ordered against
+ * transaction events on other lanes.
+ *
+ * When a lane is full, the {@link OverflowPolicy} applies: the caller waits
+ * (BLOCK), the oldest queued event is discarded (DROP_OLDEST), or the event is
+ * moved to an unbounded overflow queue that is drained in order once the lane
+ * has room (SPILL).
+ */
+public class ThoughtListenerDispatcher implements Closeable
+{
+  private static final Logger logger                      = Logger.getLogger(ThoughtListenerDispatcher.class.getCanonicalName());
+
+  public static final int     DEFAULT_QUEUE_CAPACITY      = 1024;
+  public static final int     DEFAULT_LANES_PER_LISTENER  = 1;
+
+  /** Events a worker handles on one lane before giving other lanes a turn. */
+  private static final int    BURST                       = 64;
+
+  public enum OverflowPolicy
+  {
+    BLOCK, DROP_OLDEST, SPILL
+  }
+
+  public enum Ordering
+  {
+    TXID, ACCOUNT
+  }
+
+  private final ExecutorService                                      executor;
+  private final IdentityHashMap<ThoughtPaymentListener, ListenerState> states = new IdentityHashMap<ThoughtPaymentListener, ListenerState>();
+
+  private volatile int                                               queueCapacity    = DEFAULT_QUEUE_CAPACITY;
+  private volatile int                                               lanesPerListener = DEFAULT_LANES_PER_LISTENER;
+  private volatile OverflowPolicy                                    overflowPolicy   = OverflowPolicy.BLOCK;
+  private volatile Ordering                                          ordering         = Ordering.TXID;
+
+  /**
+   * @param threads
+   *          the number of worker threads shared by all listeners
+   */
+  public ThoughtListenerDispatcher(int threads)
+  {
+    final AtomicInteger n = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        Thread t = new Thread(r, "thought4j-dispatch-" + n.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  public int getQueueCapacity()
+  {
+    return queueCapacity;
+  }
+
+  /**
+   * Sets the capacity of each lane. Applies to lanes created afterwards.
+   */
+  public void setQueueCapacity(int queueCapacity)
+  {
+    if (queueCapacity < 1)
+      throw new IllegalArgumentException("queueCapacity must be at least 1");
+    this.queueCapacity = queueCapacity;
+  }
+
+  public int getLanesPerListener()
+  {
+    return lanesPerListener;
+  }
+
+  /**
+   * Sets how many events a single listener may handle concurrently. Applies to
+   * listeners that receive their first event afterwards.
+   */
+  public void setLanesPerListener(int lanesPerListener)
+  {
+    if (lanesPerListener < 1)
+      throw new IllegalArgumentException("lanesPerListener must be at least 1");
+    this.lanesPerListener = lanesPerListener;
+  }
+
+  public OverflowPolicy getOverflowPolicy()
+  {
+    return overflowPolicy;
+  }
+
+  public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+  {
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  public Ordering getOrdering()
+  {
+    return ordering;
+  }
+
+  public void setOrdering(Ordering ordering)
+  {
+    this.ordering = ordering;
+  }
+
+  public void transaction(ThoughtPaymentListener listener, Transaction transaction) throws InterruptedException
+  {
+    String key = ordering == Ordering.ACCOUNT ? transaction.account() : transaction.txId();
+    state(listener).lane(key).offer(new Event(transaction, null));
+  }
+
+  public void block(ThoughtPaymentListener listener, String blockHash) throws InterruptedException
+  {
+    state(listener).lane(blockHash).offer(new Event(null, blockHash));
+  }
+
+  /**
+   * Returns the counters of a listener, or null if it never got an event.
+   */
+  public Metrics getMetrics(ThoughtPaymentListener listener)
+  {
+    ListenerState s;
+    synchronized (states)
+    {
+      s = states.get(listener);
+    }
+    return s == null ? null : s.metrics();
+  }
+
+  /**
+   * Forgets a listener. Events already queued for it are still delivered.
+   */
+  public void remove(ThoughtPaymentListener listener)
+  {
+    synchronized (states)
+    {
+      states.remove(listener);
+    }
+  }
+
+  /**
+   * Waits until every queued event has been delivered.
+   *
+   * @return false if the timeout elapsed first
+   */
+  public boolean awaitIdle(long timeout) throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + timeout;
+    ListenerState[] all;
+    synchronized (states)
+    {
+      all = states.values().toArray(new ListenerState[0]);
+    }
+    for (ListenerState s : all)
+      for (Lane l : s.lanes)
+        if (!l.awaitIdle(deadline))
+          return false;
+    return true;
+  }
+
+  /**
+   * Stops the workers. Queued events are discarded.
+   */
+  @Override
+  public void close()
+  {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Waits for the workers to finish the events they are handling, after
+   * {@link #close()}.
+   */
+  public boolean awaitTermination(long timeout) throws InterruptedException
+  {
+    return executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+  }
+
+  private ListenerState state(ThoughtPaymentListener listener)
+  {
+    synchronized (states)
+    {
+      ListenerState s = states.get(listener);
+      if (s == null)
+        states.put(listener, s = new ListenerState(listener, lanesPerListener, queueCapacity));
+      return s;
+    }
+  }
+
+  private static final class Event
+  {
+    final Transaction transaction;
+    final String      blockHash;
+
+    Event(Transaction transaction, String blockHash)
+    {
+      this.transaction = transaction;
+      this.blockHash = blockHash;
+    }
+  }
+
+  private final class ListenerState
+  {
+    final ThoughtPaymentListener listener;
+    final Lane[]                 lanes;
+    long                         dispatched, dropped, spilled, failures, totalNanos, maxNanos;
+    int                          maxQueued;
+
+    ListenerState(ThoughtPaymentListener listener, int lanes, int capacity)
+    {
+      this.listener = listener;
+      this.lanes = new Lane[lanes];
+      for (int i = 0; i < lanes; i++)
+        this.lanes[i] = new Lane(this, capacity);
+    }
+
+    Lane lane(String key)
+    {
+      return lanes[key == null ? 0 : (key.hashCode() & 0x7fffffff) % lanes.length];
+    }
+
+    synchronized void delivered(long nanos, boolean failed)
+    {
+      dispatched++;
+      if (failed)
+        failures++;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    synchronized void queued(int depth, boolean drop, boolean spill)
+    {
+      if (drop)
+        dropped++;
+      if (spill)
+        spilled++;
+      maxQueued = Math.max(maxQueued, depth);
+    }
+
+    Metrics metrics()
+    {
+      int queued = 0;
+      for (Lane l : lanes)
+        queued += l.depth();
+      synchronized (this)
+      {
+        return new Metrics(queued, maxQueued, dispatched, dropped, spilled, failures, totalNanos, maxNanos);
+      }
+    }
+  }
+
+  private final class Lane implements Runnable
+  {
+    private final ListenerState      state;
+    private final int                capacity;
+    private final ArrayDeque<Event>  queue = new ArrayDeque<Event>();
+    private final ArrayDeque<Event>  spill = new ArrayDeque<Event>();
+    private boolean                  running;
+
+    Lane(ListenerState state, int capacity)
+    {
+      this.state = state;
+      this.capacity = capacity;
+    }
+
+    void offer(Event e) throws InterruptedException
+    {
+      boolean drop = false, spilled = false;
+      int depth;
+      synchronized (this)
+      {
+        OverflowPolicy policy = overflowPolicy;
+        if (policy == OverflowPolicy.SPILL && (queue.size() >= capacity || !spill.isEmpty()))
+        {
+          spill.add(e);
+          spilled = true;
+        }
+        else
+        {
+          if (policy == OverflowPolicy.BLOCK)
+            while (queue.size() >= capacity)
+              wait();
+          else if (queue.size() >= capacity)
+          {
+            queue.pollFirst();
+            drop = true;
+          }
+          queue.add(e);
+        }
+        depth = queue.size() + spill.size();
+        if (!running)
+        {
+          running = true;
+          executor.execute(this);
+        }
+      }
+      state.queued(depth, drop, spilled);
+    }
+
+    synchronized int depth()
+    {
+      return queue.size() + spill.size();
+    }
+
+    synchronized boolean awaitIdle(long deadline) throws InterruptedException
+    {
+      while (running)
+      {
+        long left = deadline - System.currentTimeMillis();
+        if (left <= 0)
+          return false;
+        wait(left);
+      }
+      return true;
+    }
+
+    private synchronized Event next()
+    {
+      Event e = queue.pollFirst();
+      if (!spill.isEmpty())
+        queue.add(spill.pollFirst());
+      notifyAll();
+      return e;
+    }
+
+    @Override
+    public void run()
+    {
+      for (int i = 0; i < BURST; i++)
+      {
+        Event e = next();
+        if (e == null)
+          break;
+        long start = System.nanoTime();
+        boolean failed = false;
+        try
+        {
+          if (e.transaction != null)
+            state.listener.transaction(e.transaction);
+          else
+            state.listener.block(e.blockHash);
+        }
+        catch (Exception ex)
+        {
+          failed = true;
+          logger.log(Level.SEVERE, null, ex);
+        }
+        state.delivered(System.nanoTime() - start, failed);
+      }
+      synchronized (this)
+      {
+        if (queue.isEmpty())
+        {
+          running = false;
+          notifyAll();
+          return;
+        }
+      }
+      // let other lanes have a turn
+      executor.execute(this);
+    }
+  }
+
+  /**
+   * A snapshot of the counters of one listener.
+   */
+  public static class Metrics implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    /** Events waiting, including spilled ones. */
+    public final int          queued;
+    public final int          maxQueued;
+    public final long         dispatched;
+    public final long         dropped;
+    public final long         spilled;
+    /** Listener calls that threw. */
+    public final long         failures;
+    /** Total time spent in the listener, in nanoseconds. */
+    public final long         totalNanos;
+    public final long         maxNanos;
+
+    Metrics(int queued, int maxQueued, long dispatched, long dropped, long spilled, long failures, long totalNanos,
+        long maxNanos)
+    {
+      this.queued = queued;
+      this.maxQueued = maxQueued;
+      this.dispatched = dispatched;
+      this.dropped = dropped;
+      this.spilled = spilled;
+      this.failures = failures;
+      this.totalNanos = totalNanos;
+      this.maxNanos = maxNanos;
+    }
+
+    /**
+     * The mean listener latency in milliseconds.
+     */
+    public double averageMillis()
+    {
+      return dispatched == 0 ? 0 : totalNanos / 1e6 / dispatched;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "ListenerMetrics(queued: " + queued + ", maxQueued: " + maxQueued + ", dispatched: " + dispatched
+          + ", dropped: " + dropped + ", spilled: " + spilled + ", failures: " + failures + ", avgMillis: "
+          + averageMillis() + ", maxMillis: " + maxNanos / 1e6 + ")";
+    }
+  }
+}
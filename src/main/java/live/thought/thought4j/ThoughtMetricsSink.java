@@ -0,0 +1,93 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+/**
+ * Receives one record per JSON-RPC call made by a {@link ThoughtRPCClient} or
+ * an {@link AsyncThoughtClient}, with its outcome, size and the time spent in
+ * each phase. A batch is recorded as one call of method <code>batch</code>;
+ * answers served from a {@link ThoughtResponseCache} are not recorded.
+ *
+ * Install one with {@link ThoughtRPCClient#setMetricsSink(ThoughtMetricsSink)};
+ * {@link ThoughtRpcMetrics} aggregates calls per method. Sinks are called on
+ * the thread that completed the call and must be thread-safe and quick.
+ */
+public interface ThoughtMetricsSink
+{
+  /**
+   * The sink installed by default, which ignores every call.
+   */
+  ThoughtMetricsSink NONE = new ThoughtMetricsSink()
+  {
+    @Override
+    public void record(Call call)
+    {
+    }
+  };
+
+  /**
+   * Records one call. The instance is reused by the caller's thread, so it
+   * must not be kept after this method returns.
+   */
+  void record(Call call);
+
+  /**
+   * The measurements of one call. Durations are in nanoseconds; a phase that
+   * did not happen, like connecting on a reused connection, is 0.
+   */
+  final class Call
+  {
+    /** The RPC method, or <code>batch</code>. */
+    public String  method;
+    /** Whether the call failed, in the transport or with an RPC error. */
+    public boolean error;
+    /** Request bytes written, HTTP head included. */
+    public long    bytesSent;
+    /** Response bytes read, HTTP head included. */
+    public long    bytesReceived;
+    /** From the call's start to its result or failure. */
+    public long    totalNanos;
+    /** Opening the TCP connection, when the call needed a new one. */
+    public long    connectNanos;
+    /** From the request being written to the response head being received. */
+    public long    waitNanos;
+    /** Waiting for response body bytes from the network. */
+    public long    readNanos;
+    /** Decoding the response body, not counting network reads. */
+    public long    parseNanos;
+
+    Call set(String method, boolean error, long totalNanos)
+    {
+      this.method = method;
+      this.error = error;
+      this.totalNanos = totalNanos;
+      bytesSent = bytesReceived = connectNanos = waitNanos = readNanos = parseNanos = 0;
+      return this;
+    }
+
+    @Override
+    public String toString()
+    {
+      return method + (error ? " failed" : "") + " in " + totalNanos + "ns (connect " + connectNanos + ", wait " + waitNanos
+          + ", read " + readNanos + ", parse " + parseNanos + "), " + bytesSent + " bytes sent, " + bytesReceived
+          + " received";
+    }
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A small loopback endpoint for thoughtd's <code>-walletnotify</code> and
+ * <code>-blocknotify</code> hooks, so payments are picked up as soon as they
+ * happen instead of on the next poll.
+ *
+ * Both a line protocol and plain HTTP are understood on the same port, so the
+ * hooks can use whatever tool is at hand:
+ *
+ * <pre>
+ * walletnotify=sh -c 'echo walletnotify %s | nc -q0 127.0.0.1 10620'
+ * blocknotify=curl -s http://127.0.0.1:10620/blocknotify/%s
+ * </pre>
+ *
+ * A line is <code>walletnotify &lt;txid&gt;</code> or
+ * <code>blocknotify &lt;hash&gt;</code>; several lines may be sent on one
+ * connection. Over HTTP, the kind and id are taken from the request path
+ * (<code>/walletnotify/&lt;txid&gt;</code>), with any method.
+ *
+ * The socket is bound to the loopback interface only. Notifications carry no
+ * data that is trusted: listeners, such as a {@link ThoughtAcceptor} added with
+ * {@link #addAcceptor(ThoughtAcceptor)}, only use them as a hint to query the
+ * node.
+ */
+public class ThoughtNotifyReceiver implements Closeable
+{
+  private static final Logger  logger                    = Logger.getLogger(ThoughtNotifyReceiver.class.getCanonicalName());
+
+  private static final Charset ASCII                     = Charset.forName("US-ASCII");
+
+  public static final String   WALLET_NOTIFY             = "walletnotify";
+  public static final String   BLOCK_NOTIFY              = "blocknotify";
+
+  /**
+   * The check interval given to acceptors woken by this receiver, so polling
+   * only covers missed notifications.
+   */
+  public static final long     DEFAULT_FALLBACK_INTERVAL = 60000;
+
+  /** Connections must deliver their notification within this time. */
+  public static final int      READ_TIMEOUT              = 2000;
+
+  private static final int     MAX_LINE                  = 512;
+
+  public interface Listener
+  {
+    /**
+     * Called on the receiver thread for every notification.
+     *
+     * @param kind
+     *          {@link #WALLET_NOTIFY} or {@link #BLOCK_NOTIFY}
+     * @param id
+     *          the transaction id or block hash passed by thoughtd
+     */
+    void notified(String kind, String id);
+  }
+
+  private final ServerSocket                         server;
+  private final Thread                               thread;
+  private final CopyOnWriteArrayList<Listener>       listeners = new CopyOnWriteArrayList<Listener>();
+  private volatile long                              received;
+
+  /**
+   * Starts listening on the given loopback port, or on any free port if 0.
+   */
+  public ThoughtNotifyReceiver(int port) throws IOException
+  {
+    server = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+    thread = new Thread("thought4j-notify")
+    {
+      @Override
+      public void run()
+      {
+        accept();
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public int getPort()
+  {
+    return server.getLocalPort();
+  }
+
+  /**
+   * The number of notifications received so far.
+   */
+  public long getReceived()
+  {
+    return received;
+  }
+
+  public void addListener(Listener listener)
+  {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener)
+  {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Wakes the acceptor on every notification and relaxes its check interval to
+   * at least {@link #DEFAULT_FALLBACK_INTERVAL}.
+   */
+  public Listener addAcceptor(final ThoughtAcceptor acceptor)
+  {
+    acceptor.setCheckInterval(Math.max(acceptor.getCheckInterval(), DEFAULT_FALLBACK_INTERVAL));
+    Listener l = new Listener()
+    {
+      @Override
+      public void notified(String kind, String id)
+      {
+        acceptor.wakeUp();
+      }
+    };
+    addListener(l);
+    return l;
+  }
+
+  private void accept()
+  {
+    while (!server.isClosed())
+    {
+      try (Socket s = server.accept())
+      {
+        s.setSoTimeout(READ_TIMEOUT);
+        serve(s);
+      }
+      catch (SocketException ex)
+      {
+        if (!server.isClosed())
+          logger.log(Level.WARNING, "Notification connection failed", ex);
+      }
+      catch (IOException ex)
+      {
+        logger.log(Level.FINE, "Notification connection failed", ex);
+      }
+    }
+  }
+
+  private void serve(Socket s) throws IOException
+  {
+    BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), ASCII), MAX_LINE);
+    String line = readLine(in);
+    if (line == null)
+      return;
+    int sp = line.indexOf(' ');
+    if (line.endsWith(" HTTP/1.1") || line.endsWith(" HTTP/1.0"))
+    {
+      String path = line.substring(sp + 1, line.lastIndexOf(' '));
+      // headers, and a body if any, are not needed
+      while ((line = readLine(in)) != null && !line.isEmpty())
+        ;
+      int slash = path.indexOf('/', 1);
+      boolean ok = slash > 0 && dispatch(path.substring(1, slash), path.substring(slash + 1));
+      OutputStream out = s.getOutputStream();
+      out.write((ok ? "HTTP/1.1 204 No Content\r\n" : "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n").getBytes(ASCII));
+      out.write("Connection: close\r\n\r\n".getBytes(ASCII));
+      out.flush();
+      return;
+    }
+    do
+    {
+      line = line.trim();
+      sp = line.indexOf(' ');
+      if (sp > 0)
+        dispatch(line.substring(0, sp), line.substring(sp + 1).trim());
+      else if (!line.isEmpty())
+        logger.log(Level.WARNING, "Ignoring notification line: {0}", line);
+    }
+    while ((line = readLine(in)) != null);
+  }
+
+  private static String readLine(BufferedReader in) throws IOException
+  {
+    StringBuilder b = new StringBuilder();
+    int c;
+    while ((c = in.read()) != -1 && c != '\n')
+    {
+      if (b.length() >= MAX_LINE)
+        throw new IOException("Notification line too long");
+      if (c != '\r')
+        b.append((char) c);
+    }
+    return c == -1 && b.length() == 0 ? null : b.toString();
+  }
+
+  private boolean dispatch(String kind, String id)
+  {
+    if (!WALLET_NOTIFY.equals(kind) && !BLOCK_NOTIFY.equals(kind))
+    {
+      logger.log(Level.WARNING, "Ignoring notification of kind {0}", kind);
+      return false;
+    }
+    received++;
+    for (Listener l : listeners)
+    {
+      try
+      {
+        l.notified(kind, id);
+      }
+      catch (Exception ex)
+      {
+        logger.log(Level.SEVERE, null, ex);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    server.close();
+  }
+}
@@ -0,0 +1,423 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import live.thought.thought4j.util.CoinUtil;
+import live.thought.thought4j.util.JSON;
+
+/**
+ * Collects payouts and sends them together in one <code>sendmany</code>
+ * transaction, instead of one <code>sendtoaddress</code> call and transaction
+ * each.
+ *
+ * A batch is sent {@link #getMaxDelay()} milliseconds after its first payout
+ * was submitted, or as soon as it holds {@link #getMaxPayouts()} payouts.
+ * Payouts to the same address are merged into one output. Every payout's
+ * future completes with the id of the shared transaction, or exceptionally.
+ *
+ * When the node answers <code>sendmany</code> with an error nothing was sent.
+ * The addresses of the batch are then checked with
+ * <code>validateaddress</code>: payouts to invalid addresses fail with the
+ * node's error and the rest are sent again without them. If no address is
+ * invalid, every payout fails with the node's error.
+ *
+ * When the call fails without an answer from the node, for example on a
+ * timeout or a dropped connection, the transaction may have been broadcast all
+ * the same. The futures then fail with an {@link UnknownOutcomeException}, and
+ * callers should look for the payout in the wallet before paying it again.
+ *
+ * Batches are sent one at a time on a single thread.
+ */
+public class ThoughtPayoutBatcher implements Closeable
+{
+  public static final long DEFAULT_MAX_DELAY   = 1000;
+  public static final int  DEFAULT_MAX_PAYOUTS = 100;
+
+  /**
+   * Reports that a batch may or may not have been sent, because no answer to
+   * its <code>sendmany</code> call was received.
+   */
+  public static class UnknownOutcomeException extends GenericRpcException
+  {
+    private static final long serialVersionUID = 1L;
+
+    public UnknownOutcomeException(Throwable cause)
+    {
+      super("Outcome of sendmany unknown: " + cause.getMessage(), cause);
+    }
+  }
+
+  private static final class Payout
+  {
+    final String                    address;
+    final long                      amount;
+    final CompletableFuture<String> future = new CompletableFuture<String>();
+
+    Payout(String address, long amount)
+    {
+      this.address = address;
+      this.amount = amount;
+    }
+  }
+
+  private final ThoughtClientInterface   thought;
+  private final ScheduledExecutorService executor;
+  private List<Payout>                   pending     = new ArrayList<Payout>();
+  private ScheduledFuture<?>             timer;
+  private boolean                        closed;
+
+  private long                           maxDelay    = DEFAULT_MAX_DELAY;
+  private int                            maxPayouts  = DEFAULT_MAX_PAYOUTS;
+  private String                         fromAccount = "";
+  private int                            minConf     = 1;
+  private String                         comment;
+
+  private long                           batches;
+  private long                           payouts;
+
+  private final Runnable                 send        = new Runnable()
+  {
+    @Override
+    public void run()
+    {
+      send(drain());
+    }
+  };
+
+  public ThoughtPayoutBatcher(ThoughtClientInterface thought)
+  {
+    this.thought = thought;
+    executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        Thread t = new Thread(r, "thought4j-payout");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  public synchronized long getMaxDelay()
+  {
+    return maxDelay;
+  }
+
+  /**
+   * Sets how long, in milliseconds, a payout waits for others to join its
+   * batch.
+   */
+  public synchronized void setMaxDelay(long maxDelay)
+  {
+    this.maxDelay = maxDelay;
+  }
+
+  public synchronized int getMaxPayouts()
+  {
+    return maxPayouts;
+  }
+
+  /**
+   * Sets the number of payouts that makes a batch be sent right away.
+   */
+  public synchronized void setMaxPayouts(int maxPayouts)
+  {
+    if (maxPayouts < 1)
+      throw new IllegalArgumentException("maxPayouts must be positive");
+    this.maxPayouts = maxPayouts;
+  }
+
+  public synchronized String getFromAccount()
+  {
+    return fromAccount;
+  }
+
+  public synchronized void setFromAccount(String fromAccount)
+  {
+    this.fromAccount = fromAccount;
+  }
+
+  public synchronized int getMinConf()
+  {
+    return minConf;
+  }
+
+  public synchronized void setMinConf(int minConf)
+  {
+    this.minConf = minConf;
+  }
+
+  public synchronized String getComment()
+  {
+    return comment;
+  }
+
+  /**
+   * Sets the wallet comment stored with every batch transaction.
+   */
+  public synchronized void setComment(String comment)
+  {
+    this.comment = comment;
+  }
+
+  /**
+   * Returns the number of <code>sendmany</code> calls made.
+   */
+  public synchronized long getBatches()
+  {
+    return batches;
+  }
+
+  /**
+   * Returns the number of payouts sent successfully, before merging.
+   */
+  public synchronized long getPayouts()
+  {
+    return payouts;
+  }
+
+  public synchronized int getPending()
+  {
+    return pending.size();
+  }
+
+  /**
+   * Queues a payout.
+   *
+   * @return a future completed with the id of the transaction carrying the
+   *         payout
+   * @throws IllegalArgumentException
+   *           if the amount is not positive
+   * @throws IllegalStateException
+   *           if the batcher is closed
+   */
+  public synchronized CompletableFuture<String> submit(String address, double amount)
+  {
+    long satoshis = CoinUtil.toSatoshis(amount);
+    if (satoshis <= 0)
+      throw new IllegalArgumentException("Invalid amount " + amount + " for " + address);
+    if (closed)
+      throw new IllegalStateException("Payout batcher is closed");
+    Payout p = new Payout(address, satoshis);
+    pending.add(p);
+    if (pending.size() >= maxPayouts)
+      schedule(0);
+    else if (timer == null)
+      schedule(maxDelay);
+    return p.future;
+  }
+
+  /**
+   * Sends the pending payouts now.
+   */
+  public synchronized void flush()
+  {
+    if (!pending.isEmpty() && !closed)
+      schedule(0);
+  }
+
+  /**
+   * Sends the pending payouts and stops, waiting for the last batch to be
+   * sent.
+   */
+  @Override
+  public void close()
+  {
+    synchronized (this)
+    {
+      if (closed)
+        return;
+      closed = true;
+      if (timer != null)
+        timer.cancel(false);
+      executor.execute(send);
+    }
+    executor.shutdown();
+    try
+    {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void schedule(long delay)
+  {
+    if (timer != null)
+      timer.cancel(false);
+    timer = executor.schedule(send, delay, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized List<Payout> drain()
+  {
+    timer = null;
+    if (closed || pending.size() <= maxPayouts)
+    {
+      List<Payout> batch = pending;
+      pending = new ArrayList<Payout>();
+      return batch;
+    }
+    List<Payout> batch = new ArrayList<Payout>(pending.subList(0, maxPayouts));
+    pending = new ArrayList<Payout>(pending.subList(maxPayouts, pending.size()));
+    // payouts beyond a full batch have waited long enough already
+    schedule(0);
+    return batch;
+  }
+
+  private void send(List<Payout> batch)
+  {
+    while (!batch.isEmpty())
+    {
+      String txid;
+      try
+      {
+        txid = sendMany(batch);
+      }
+      catch (RuntimeException ex)
+      {
+        if (!rejected(ex))
+        {
+          UnknownOutcomeException unknown = new UnknownOutcomeException(ex);
+          for (Payout p : batch)
+            p.future.completeExceptionally(unknown);
+          return;
+        }
+        List<Payout> valid = dropInvalid(batch, ex);
+        if (valid.size() == batch.size())
+        {
+          for (Payout p : batch)
+            p.future.completeExceptionally(ex);
+          return;
+        }
+        batch = valid;
+        continue;
+      }
+      synchronized (this)
+      {
+        payouts += batch.size();
+      }
+      for (Payout p : batch)
+        p.future.complete(txid);
+      return;
+    }
+  }
+
+  private String sendMany(List<Payout> batch)
+  {
+    Map<String, Long> merged = new LinkedHashMap<String, Long>();
+    for (Payout p : batch)
+    {
+      Long old = merged.put(p.address, p.amount);
+      if (old != null)
+        merged.put(p.address, old + p.amount);
+    }
+    Map<String, Double> amounts = new LinkedHashMap<String, Double>();
+    for (Map.Entry<String, Long> e : merged.entrySet())
+      amounts.put(e.getKey(), e.getValue() / 100000000d);
+
+    String account;
+    int conf;
+    String note;
+    synchronized (this)
+    {
+      account = fromAccount;
+      conf = minConf;
+      note = comment;
+      batches++;
+    }
+    if (conf == 1 && note == null)
+      return thought.sendMany(account, amounts);
+    return thought.sendMany(account, amounts, conf, false, note);
+  }
+
+  /**
+   * Tells whether the node answered the call with an error, as opposed to the
+   * call failing on the way. Only a JSON-RPC error, either in a 200 response or
+   * in the 500 response thoughtd sends with it, an authentication failure and
+   * a client without sendmany count; any other HTTP status may come from a
+   * proxy that lost the answer.
+   */
+  private static boolean rejected(RuntimeException ex)
+  {
+    if (ex instanceof UnsupportedOperationException)
+      return true;
+    if (!(ex instanceof ThoughtRPCException))
+      return ex.getClass() == GenericRpcException.class;
+    ThoughtRPCException rpc = (ThoughtRPCException) ex;
+    int code = rpc.getResponseCode();
+    if (code == 401 || code == 403)
+      return true;
+    if (code != 500 || rpc.getResponse() == null)
+      return false;
+    try
+    {
+      Object body = JSON.parse(rpc.getResponse());
+      return body instanceof Map && ((Map<?, ?>) body).get("error") != null;
+    }
+    catch (RuntimeException notJson)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Fails the payouts to addresses the node reports as invalid and returns the
+   * others. Returns the batch unchanged if the addresses cannot be checked.
+   */
+  private List<Payout> dropInvalid(List<Payout> batch, RuntimeException error)
+  {
+    Map<String, Boolean> valid = new HashMap<String, Boolean>();
+    try
+    {
+      for (Payout p : batch)
+        if (!valid.containsKey(p.address))
+          valid.put(p.address, thought.validateAddress(p.address).isValid());
+    }
+    catch (RuntimeException ex)
+    {
+      return batch;
+    }
+    List<Payout> rest = new ArrayList<Payout>(batch.size());
+    for (Payout p : batch)
+    {
+      if (valid.get(p.address))
+        rest.add(p);
+      else
+        p.future.completeExceptionally(error);
+    }
+    return rest;
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drives any number of {@link ThoughtAcceptor}s from a single thread, as an
+ * alternative to running each acceptor on a thread of its own.
+ *
+ * Acceptors sharing a client, or a probe client given to
+ * {@link #add(ThoughtAcceptor, ThoughtClientInterface)}, are polled together. Every
+ * {@link #getProbeInterval()} milliseconds the scheduler asks the node for its
+ * best block hash and memory pool size, in one batch where the client supports
+ * it. Only when either changed do the acceptors run
+ * {@link ThoughtAcceptor#checkPayments()}, plus once every
+ * {@link #getFullInterval()} milliseconds as a safety net. RPC errors double the
+ * delay before the next probe, up to {@link #getMaxBackoff()}.
+ *
+ * Checks run on the scheduler thread, so a slow check delays the other clients;
+ * use a {@link ThoughtListenerDispatcher} to take listener work off it.
+ */
+public class ThoughtPollScheduler implements Closeable
+{
+  private static final Logger   logger                 = Logger.getLogger(ThoughtPollScheduler.class.getCanonicalName());
+
+  public static final long      DEFAULT_PROBE_INTERVAL = 1000;
+  public static final long      DEFAULT_FULL_INTERVAL  = 60000;
+  public static final long      DEFAULT_MAX_BACKOFF    = 60000;
+
+  private final ScheduledExecutorService                      executor;
+  private final IdentityHashMap<ThoughtClientInterface, Group> groups        = new IdentityHashMap<ThoughtClientInterface, Group>();
+
+  private volatile long                                       probeInterval = DEFAULT_PROBE_INTERVAL;
+  private volatile long                                       fullInterval  = DEFAULT_FULL_INTERVAL;
+  private volatile long                                       maxBackoff    = DEFAULT_MAX_BACKOFF;
+
+  public ThoughtPollScheduler()
+  {
+    executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        Thread t = new Thread(r, "thought4j-poll");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  public long getProbeInterval()
+  {
+    return probeInterval;
+  }
+
+  public void setProbeInterval(long probeInterval)
+  {
+    this.probeInterval = probeInterval;
+  }
+
+  public long getFullInterval()
+  {
+    return fullInterval;
+  }
+
+  /**
+   * Sets how often acceptors check for payments even if nothing seemed to change.
+   */
+  public void setFullInterval(long fullInterval)
+  {
+    this.fullInterval = fullInterval;
+  }
+
+  public long getMaxBackoff()
+  {
+    return maxBackoff;
+  }
+
+  public void setMaxBackoff(long maxBackoff)
+  {
+    this.maxBackoff = maxBackoff;
+  }
+
+  /**
+   * Starts polling for the given acceptor. Its first check runs on the next
+   * probe.
+   */
+  public void add(ThoughtAcceptor acceptor)
+  {
+    add(acceptor, acceptor.thought);
+  }
+
+  /**
+   * Starts polling for the given acceptor, probing the node through another
+   * client. Acceptors of different wallets on one node can so share a single
+   * probe, see {@link ThoughtAcceptorHub}.
+   */
+  public synchronized void add(ThoughtAcceptor acceptor, ThoughtClientInterface probe)
+  {
+    Group g = groups.get(probe);
+    if (g == null)
+    {
+      groups.put(probe, g = new Group(probe));
+      g.future = executor.schedule(g, 0, TimeUnit.MILLISECONDS);
+    }
+    g.acceptors.addIfAbsent(acceptor);
+    g.dirty.add(acceptor);
+  }
+
+  public synchronized void remove(ThoughtAcceptor acceptor)
+  {
+    for (Group g : groups.values())
+    {
+      if (!g.acceptors.remove(acceptor))
+        continue;
+      g.dirty.remove(acceptor);
+      if (g.acceptors.isEmpty())
+      {
+        groups.remove(g.thought);
+        g.future.cancel(false);
+      }
+      return;
+    }
+  }
+
+  /**
+   * Makes every acceptor check for payments on the next probe, which is brought
+   * forward to now. Suitable for a {@link ThoughtNotifyReceiver} listener.
+   */
+  public synchronized void wakeUp()
+  {
+    for (Group g : groups.values())
+    {
+      g.dirty.addAll(g.acceptors);
+      if (g.future.cancel(false))
+        g.future = executor.schedule(g, 0, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    executor.shutdownNow();
+  }
+
+  private final class Group implements Runnable
+  {
+    final ThoughtClientInterface                     thought;
+    final CopyOnWriteArrayList<ThoughtAcceptor>      acceptors = new CopyOnWriteArrayList<ThoughtAcceptor>();
+    /** Acceptors to check on the next probe whatever it finds. */
+    final Set<ThoughtAcceptor>                       dirty     = Collections
+        .newSetFromMap(new IdentityHashMap<ThoughtAcceptor, Boolean>());
+    ScheduledFuture<?>                               future;
+    String                                           tip;
+    long                                             memPoolSize = -1, memPoolBytes = -1;
+    long                                             lastFull;
+    int                                              failures;
+
+    Group(ThoughtClientInterface thought)
+    {
+      this.thought = thought;
+    }
+
+    @Override
+    public void run()
+    {
+      long delay;
+      try
+      {
+        boolean changed = probe();
+        long now = System.currentTimeMillis();
+        boolean full = changed || now - lastFull >= fullInterval;
+        if (full)
+          lastFull = now;
+        for (ThoughtAcceptor a : acceptors)
+        {
+          boolean check;
+          synchronized (ThoughtPollScheduler.this)
+          {
+            check = dirty.remove(a) || full;
+          }
+          if (!check)
+            continue;
+          try
+          {
+            a.checkPayments();
+          }
+          catch (GenericRpcException ex)
+          {
+            logger.log(Level.SEVERE, null, ex);
+            synchronized (ThoughtPollScheduler.this)
+            {
+              dirty.add(a);
+            }
+          }
+        }
+        failures = 0;
+        delay = probeInterval;
+      }
+      catch (GenericRpcException ex)
+      {
+        failures++;
+        delay = Math.min(maxBackoff, probeInterval << Math.min(failures, 16));
+        logger.log(Level.WARNING, "Probe failed, next in " + delay + " ms", ex);
+      }
+      catch (RuntimeException ex)
+      {
+        failures++;
+        delay = Math.min(maxBackoff, probeInterval << Math.min(failures, 16));
+        logger.log(Level.SEVERE, null, ex);
+      }
+      synchronized (ThoughtPollScheduler.this)
+      {
+        if (groups.get(thought) == this && !executor.isShutdown())
+          future = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    /**
+     * Returns true if the tip or the memory pool changed since the last probe.
+     */
+    private boolean probe() throws GenericRpcException
+    {
+      ThoughtClientInterface.ChainActivity activity = thought.getChainActivity();
+      String best = activity.bestBlockHash;
+      ThoughtClientInterface.MemPoolInfo info = activity.memPool;
+      boolean changed = !best.equals(tip) || info.size() != memPoolSize || info.bytes() != memPoolBytes;
+      tip = best;
+      memPoolSize = info.size();
+      memPoolBytes = info.bytes();
+      return changed;
+    }
+  }
+}
@@ -30,12 +30,11 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.AbstractList;
 import java.util.ArrayList;
@@ -49,11 +48,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSocketFactory;
 
 import live.thought.thought4j.ThoughtClientInterface.FundRawTransactionOptions;
@@ -61,7 +62,10 @@ import live.thought.thought4j.ThoughtClientInterface.FundedRawTransaction;
 import live.thought.thought4j.ThoughtClientInterface.Transaction.Details;
 import live.thought.thought4j.util.Base64Coder;
 import live.thought.thought4j.util.CoinUtil;
+import live.thought.thought4j.util.HexCoder;
 import live.thought.thought4j.util.JSON;
+import live.thought.thought4j.util.JSONWriter;
+import live.thought.thought4j.util.LazyJSON;
 import live.thought.thought4j.util.ListMapWrapper;
 import live.thought.thought4j.util.MapWrapper;
 
@@ -77,8 +81,10 @@ public class ThoughtRPCClient implements ThoughtClientInterface
 
   public final URL            rpcURL;
 
-  private URL                 noAuthURL;
-  private String              authStr;
+  private final String                rpcPath;
+  private final String                authStr;
+  private final ThoughtConnectionPool connectionPool;
+  private final ThoughtBlockCache     blockCache;
 
   public ThoughtRPCClient(String rpcUrl) throws MalformedURLException
   {
@@ -88,16 +94,42 @@ public class ThoughtRPCClient implements ThoughtClientInterface
   public ThoughtRPCClient(URL rpc)
   {
     this.rpcURL = rpc;
+    this.rpcPath = rpc.getFile().isEmpty() ? "/" : rpc.getFile();
+    this.connectionPool = new ThoughtConnectionPool(rpc);
+    this.blockCache = new ThoughtBlockCache();
+    authStr = rpc.getUserInfo() == null ? null
+        : String.valueOf(Base64Coder.encode(rpc.getUserInfo().getBytes(Charset.forName("ISO8859-1"))));
+  }
+
+  private ThoughtRPCClient(ThoughtRPCClient node, URL walletURL)
+  {
+    this.rpcURL = walletURL;
+    this.rpcPath = walletURL.getFile();
+    this.connectionPool = node.connectionPool;
+    this.blockCache = node.blockCache;
+    this.authStr = node.authStr;
+    this.lazyResponses = node.lazyResponses;
+    this.addressCodec = node.addressCodec;
+    this.metricsSink = node.metricsSink;
+  }
+
+  /**
+   * Returns a client for one wallet of a node running several, sending its
+   * calls to <code>/wallet/&lt;name&gt;</code>. It shares this client's
+   * connection pool and block cache, and starts with its other settings except
+   * the response cache, since wallet calls may differ between wallets.
+   */
+  public ThoughtRPCClient forWallet(String name)
+  {
     try
     {
-      noAuthURL = new URI(rpc.getProtocol(), null, rpc.getHost(), rpc.getPort(), rpc.getPath(), rpc.getQuery(), null).toURL();
+      String path = "/wallet/" + URLEncoder.encode(name, "UTF-8").replace("+", "%20");
+      return new ThoughtRPCClient(this, new URL(rpcURL, path));
     }
-    catch (MalformedURLException | URISyntaxException ex)
+    catch (UnsupportedEncodingException | MalformedURLException ex)
     {
-      throw new IllegalArgumentException(rpc.toString(), ex);
+      throw new IllegalArgumentException("Invalid wallet name: " + name, ex);
     }
-    authStr = rpc.getUserInfo() == null ? null
-        : String.valueOf(Base64Coder.encode(rpc.getUserInfo().getBytes(Charset.forName("ISO8859-1"))));
   }
 
   public static final URL    DEFAULT_JSONRPC_URL;
@@ -181,42 +213,275 @@ public class ThoughtRPCClient implements ThoughtClientInterface
     this(DEFAULT_JSONRPC_TESTNET_URL);
   }
 
-  private HostnameVerifier hostnameVerifier = null;
-  private SSLSocketFactory sslSocketFactory = null;
-
   public HostnameVerifier getHostnameVerifier()
   {
-    return hostnameVerifier;
+    return connectionPool.getHostnameVerifier();
   }
 
   public void setHostnameVerifier(HostnameVerifier hostnameVerifier)
   {
-    this.hostnameVerifier = hostnameVerifier;
+    connectionPool.setHostnameVerifier(hostnameVerifier);
   }
 
   public SSLSocketFactory getSslSocketFactory()
   {
-    return sslSocketFactory;
+    return connectionPool.getSslSocketFactory();
   }
 
   public void setSslSocketFactory(SSLSocketFactory sslSocketFactory)
   {
-    this.sslSocketFactory = sslSocketFactory;
+    connectionPool.setSslSocketFactory(sslSocketFactory);
+  }
+
+  /**
+   * The pool of keep-alive connections used for every call made by this client.
+   * Use it to tune the number of connections and the idle timeout, and to read
+   * the pool statistics.
+   */
+  public ThoughtConnectionPool getConnectionPool()
+  {
+    return connectionPool;
+  }
+
+  /**
+   * The cache of block hashes, links and confirmed blocks used by
+   * {@link #getBlock(int)}, {@link #getBlock(String)},
+   * {@link #getBlockHash(int)} and {@link #getPreviousBlockHash(String)}.
+   */
+  public ThoughtBlockCache getBlockCache()
+  {
+    return blockCache;
+  }
+
+  private volatile ThoughtResponseCache responseCache;
+
+  public ThoughtResponseCache getResponseCache()
+  {
+    return responseCache;
+  }
+
+  /**
+   * Installs a cache consulted by {@link #query(String, Object...)} before
+   * calling the node, or removes it when null. No cache is installed by default.
+   * A cache may be shared by several clients talking to the same node.
+   */
+  public void setResponseCache(ThoughtResponseCache responseCache)
+  {
+    this.responseCache = responseCache;
+  }
+
+  private volatile boolean lazyResponses = false;
+
+  public boolean isLazyResponses()
+  {
+    return lazyResponses;
+  }
+
+  /**
+   * When enabled, responses are kept as raw bytes and results are returned as
+   * lazy views ({@link live.thought.thought4j.util.LazyJSON}) that only decode
+   * the fields actually read. This pays off for large results of which little
+   * is used, like verbose blocks read by a block scanner. Results are then
+   * read-only. Disabled by default.
+   *
+   * @param lazyResponses
+   *          new value of lazyResponses
+   */
+  public void setLazyResponses(boolean lazyResponses)
+  {
+    this.lazyResponses = lazyResponses;
+  }
+
+  private volatile boolean exactDecimals = false;
+
+  public boolean isExactDecimals()
+  {
+    return exactDecimals;
+  }
+
+  /**
+   * When enabled, decimals in responses, such as amounts, are decoded to exact
+   * {@link live.thought.thought4j.util.JSONDecimal}s instead of Doubles, so the
+   * satoshi accessors read them without floating point. Results of
+   * {@link #query(String, Object...)} and batches then hold JSONDecimals where
+   * they would otherwise hold Doubles. Disabled by default.
+   *
+   * @param exactDecimals
+   *          new value of exactDecimals
+   */
+  public void setExactDecimals(boolean exactDecimals)
+  {
+    this.exactDecimals = exactDecimals;
+  }
+
+  private volatile ThoughtMetricsSink metricsSink = ThoughtMetricsSink.NONE;
+
+  public ThoughtMetricsSink getMetricsSink()
+  {
+    return metricsSink;
+  }
+
+  /**
+   * Installs the sink receiving the timings and sizes of every call, or
+   * restores the default no-op sink when null. Wallet clients created by
+   * {@link #forWallet(String)} afterwards share it.
+   */
+  public void setMetricsSink(ThoughtMetricsSink metricsSink)
+  {
+    this.metricsSink = metricsSink == null ? ThoughtMetricsSink.NONE : metricsSink;
+  }
+
+  private static final ThreadLocal<ThoughtMetricsSink.Call> CALLS = new ThreadLocal<ThoughtMetricsSink.Call>()
+  {
+    @Override
+    protected ThoughtMetricsSink.Call initialValue()
+    {
+      return new ThoughtMetricsSink.Call();
+    }
+  };
+
+  /**
+   * Reports a call started at the given {@link System#nanoTime()} to the
+   * metrics sink.
+   */
+  void record(String method, boolean error, long start, long bytesSent, long bytesReceived, long connectNanos,
+      long waitNanos, long readNanos, long parseNanos)
+  {
+    ThoughtMetricsSink sink = metricsSink;
+    if (sink == ThoughtMetricsSink.NONE)
+      return;
+    ThoughtMetricsSink.Call call = CALLS.get().set(method, error, System.nanoTime() - start);
+    call.bytesSent = bytesSent;
+    call.bytesReceived = bytesReceived;
+    call.connectNanos = connectNanos;
+    call.waitNanos = waitNanos;
+    call.readNanos = readNanos;
+    call.parseNanos = parseNanos;
+    try
+    {
+      sink.record(call);
+    }
+    catch (RuntimeException ex)
+    {
+      logger.log(Level.WARNING, "Metrics sink failed", ex);
+    }
+  }
+
+  /**
+   * Reports a call answered through the connection pool. The body is parsed as
+   * it streams in, so the parse time is what remains of the time spent on the
+   * body once network reads are taken out.
+   */
+  private void record(String method, boolean error, long start, long bodyStart, ThoughtConnectionPool.Response response)
+  {
+    if (metricsSink == ThoughtMetricsSink.NONE)
+      return;
+    if (response == null)
+    {
+      record(method, error, start, 0, 0, 0, 0, 0, 0);
+      return;
+    }
+    long read = response.getReadNanos();
+    long parse = bodyStart == 0 ? 0 : Math.max(0, System.nanoTime() - bodyStart - read);
+    record(method, error, start, response.getBytesSent(), response.getBytesReceived(), response.getConnectNanos(),
+        response.getWaitNanos(), read, parse);
+  }
+
+  private volatile ThoughtAddressCodec addressCodec;
+
+  /**
+   * The address codec used to decode raw blocks and transactions. Defaults to
+   * the testnet codec when the URL uses the testnet or regtest port, to the
+   * mainnet codec otherwise.
+   */
+  public ThoughtAddressCodec getAddressCodec()
+  {
+    ThoughtAddressCodec codec = addressCodec;
+    if (codec == null)
+    {
+      int port = rpcURL.getPort();
+      codec = port == DEFAULT_TEST_PORT || port == DEFAULT_REGTEST_PORT ? ThoughtAddressCodec.TESTNET
+          : ThoughtAddressCodec.MAINNET;
+    }
+    return codec;
+  }
+
+  public void setAddressCodec(ThoughtAddressCodec addressCodec)
+  {
+    this.addressCodec = addressCodec;
+  }
+
+  public ThoughtRawDecoder getRawDecoder()
+  {
+    return new ThoughtRawDecoder(getAddressCodec(), this);
+  }
+
+  public ThoughtRawEncoder getRawEncoder()
+  {
+    return new ThoughtRawEncoder(getAddressCodec());
+  }
+
+  String getRpcPath()
+  {
+    return rpcPath;
+  }
+
+  /**
+   * The value of the Authorization header, or null if the URL carries no
+   * credentials.
+   */
+  String getAuthorization()
+  {
+    return authStr == null ? null : "Basic " + authStr;
   }
 
   public static final Charset QUERY_CHARSET = Charset.forName("ISO8859-1");
+  public static final Charset RESPONSE_CHARSET = Charset.forName("UTF-8");
 
-  public byte[] prepareRequest(final String method, final Object... params)
+  private static final byte[]                             REQUEST_METHOD = "{\"method\":".getBytes(JSONWriter.ASCII);
+  private static final byte[]                             REQUEST_PARAMS = ",\"params\":".getBytes(JSONWriter.ASCII);
+  private static final byte[]                             REQUEST_END    = ",\"id\":\"1\"}".getBytes(JSONWriter.ASCII);
+  private static final byte[]                             BATCH_METHOD   = "{\"jsonrpc\":\"2.0\",\"method\":".getBytes(JSONWriter.ASCII);
+  private static final byte[]                             BATCH_ID       = ",\"id\":".getBytes(JSONWriter.ASCII);
+
+  // Method names are few, so their quoted form is encoded once
+  private static final ConcurrentHashMap<String, byte[]> METHOD_NAMES   = new ConcurrentHashMap<String, byte[]>();
+
+  private static final ThreadLocal<JSONWriter>           WRITERS        = new ThreadLocal<JSONWriter>()
   {
-    return JSON.stringify(new LinkedHashMap<String, Object>()
+    @Override
+    protected JSONWriter initialValue()
     {
-      private static final long serialVersionUID = 1L;
-      {
-        put("method", method);
-        put("params", params);
-        put("id", "1");
-      }
-    }).getBytes(QUERY_CHARSET);
+      return new JSONWriter();
+    }
+  };
+
+  private static byte[] methodName(String method)
+  {
+    byte[] name = METHOD_NAMES.get(method);
+    if (name == null)
+    {
+      name = new JSONWriter(method.length() + 2, Integer.MAX_VALUE).string(method).toByteArray();
+      if (METHOD_NAMES.size() < 1024)
+        METHOD_NAMES.put(method, name);
+    }
+    return name;
+  }
+
+  /**
+   * Serializes a request into the calling thread's reusable writer. The result
+   * is only valid until the next request is written on the same thread.
+   */
+  JSONWriter writeRequest(String method, Object... params)
+  {
+    JSONWriter w = WRITERS.get().reset();
+    w.raw(REQUEST_METHOD).raw(methodName(method)).raw(REQUEST_PARAMS).array(params).raw(REQUEST_END);
+    return w;
+  }
+
+  public byte[] prepareRequest(final String method, final Object... params)
+  {
+    return writeRequest(method, params).toByteArray();
   }
 
   private static byte[] loadStream(InputStream in, boolean close) throws IOException
@@ -243,113 +508,561 @@ public class ThoughtRPCClient implements ThoughtClientInterface
           o.write(buffer, 0, nr);
         }
       }
-    }
-    finally
-    {
-      if (close && null != in)
-      {
-        in.close();
-      }
-    }
-    return o.toByteArray();
-  }
-
-  public Object loadResponse(InputStream in, Object expectedID, boolean close) throws IOException, GenericRpcException
-  {
-      String r = new String(loadStream(in, close), QUERY_CHARSET);
-      logger.log(Level.FINE, "Thought JSON-RPC response:\n{0}", r);
-      try
+    }
+    finally
+    {
+      if (close && null != in)
+      {
+        in.close();
+      }
+    }
+    return o.toByteArray();
+  }
+
+  /**
+   * Parses a response body. The body is only buffered as a whole for lazy
+   * responses or when FINE logging is enabled, otherwise it is parsed straight
+   * from the stream.
+   */
+  private Object readJson(InputStream in, boolean close, String what) throws IOException
+  {
+    if (lazyResponses || logger.isLoggable(Level.FINE))
+    {
+      byte[] r = loadStream(in, close);
+      if (logger.isLoggable(Level.FINE))
+        logger.log(Level.FINE, "Thought JSON-RPC " + what + ":\n{0}", new String(r, RESPONSE_CHARSET));
+      if (lazyResponses)
+      {
+        try
+        {
+          return LazyJSON.parse(r, exactDecimals);
+        }
+        catch (IllegalArgumentException ex)
+        {
+          throw new IOException(ex.getMessage(), ex);
+        }
+      }
+      return JSON.parse(r, exactDecimals);
+    }
+    if (null == in)
+      throw new ThoughtRPCException("Empty server " + what);
+    try
+    {
+      return JSON.parse(in, exactDecimals);
+    }
+    finally
+    {
+      if (close)
+        in.close();
+    }
+  }
+
+  public Object loadResponse(InputStream in, Object expectedID, boolean close) throws IOException, GenericRpcException
+  {
+    Object parsed = readJson(in, close, "response");
+    if (!(parsed instanceof Map))
+      throw new ThoughtRPCException("Invalid server response format (data: \"" + JSON.stringify(parsed) + "\")");
+    Map<?, ?> response = (Map<?, ?>) parsed;
+
+    if (!expectedID.equals(response.get("id")))
+      throw new ThoughtRPCException(
+          "Wrong response ID (expected: " + String.valueOf(expectedID) + ", response: " + response.get("id") + ")");
+
+    if (response.get("error") != null)
+      throw new GenericRpcException(JSON.stringify(response.get("error")));
+
+    return response.get("result");
+  }
+
+  /**
+   * Posts a request through the connection pool and checks the HTTP status. The
+   * caller must close the returned response.
+   */
+  private ThoughtConnectionPool.Response send(String method, Object[] o) throws IOException
+  {
+    return send(method, o, writeRequest(method, o));
+  }
+
+  private ThoughtConnectionPool.Response send(String method, Object[] o, JSONWriter r) throws IOException
+  {
+    if (logger.isLoggable(Level.FINE))
+      logger.log(Level.FINE, "Thought JSON-RPC request:\n{0}", r.toString());
+    ThoughtConnectionPool.Response response = connectionPool.post(rpcPath, getAuthorization(), r.buffer(), 0, r.size());
+    int responseCode = response.getStatusCode();
+    if (responseCode != 200)
+    {
+      try
+      {
+        throw new ThoughtRPCException(method, Arrays.deepToString(o), responseCode, response.getMessage(),
+            new String(loadStream(response.getInputStream(), false)));
+      }
+      finally
+      {
+        response.close();
+      }
+    }
+    return response;
+  }
+
+  public Object query(String method, Object... o) throws GenericRpcException
+  {
+    ThoughtResponseCache cache = responseCache;
+    String key = cache == null ? null : cache.key(method, o);
+    if (key != null)
+    {
+      Object cached = cache.get(key);
+      if (cached != ThoughtResponseCache.MISS)
+        return cached;
+    }
+    long start = System.nanoTime();
+    long bodyStart = 0;
+    boolean failed = true;
+    ThoughtConnectionPool.Response response = null;
+    try
+    {
+      response = send(method, o);
+      bodyStart = System.nanoTime();
+      Object result = loadResponse(response.getInputStream(), "1", false);
+      if (key != null)
+        cache.put(method, key, result);
+      failed = false;
+      return result;
+    }
+    catch (IOException ex)
+    {
+      throw new ThoughtRPCException(method, Arrays.deepToString(o), ex);
+    }
+    finally
+    {
+      if (response != null)
+        response.close();
+      record(method, failed, start, bodyStart, response);
+    }
+  }
+
+  public String queryJson(String method, Object... o) throws GenericRpcException
+  {
+    long start = System.nanoTime();
+    long bodyStart = 0;
+    boolean failed = true;
+    ThoughtConnectionPool.Response response = null;
+    try
+    {
+      response = send(method, o);
+      bodyStart = System.nanoTime();
+      String result = new String(loadStream(response.getInputStream(), false));
+      failed = false;
+      return result;
+    }
+    catch (IOException ex)
+    {
+      throw new ThoughtRPCException(method, Arrays.deepToString(o), ex);
+    }
+    finally
+    {
+      if (response != null)
+        response.close();
+      record(method, failed, start, bodyStart, response);
+    }
+  }
+
+  private final AtomicLong batchIds = new AtomicLong();
+
+  /**
+   * Starts a JSON-RPC batch. Calls added to the batch are sent together in a
+   * single HTTP request when {@link Batch#execute()} is invoked, e.g.
+   *
+   * <pre>
+   * BatchResult r = client.batch().getBlockHash(1000).getRawTransaction(txid).execute();
+   * String hash = r.get(0);
+   * RawTransaction tx = r.get(1);
+   * </pre>
+   */
+  public Batch batch()
+  {
+    return new Batch();
+  }
+
+  static final Function<Object, Object> AS_IS = new Function<Object, Object>()
+  {
+    @Override
+    public Object apply(Object o)
+    {
+      return o;
+    }
+  };
+
+  /*
+   * Converters from parsed JSON results to the typed views, shared by Batch and
+   * AsyncThoughtClient.
+   */
+  static final Function<Object, Integer> TO_INT = new Function<Object, Integer>()
+  {
+    @Override
+    public Integer apply(Object o)
+    {
+      return ((Number) o).intValue();
+    }
+  };
+
+  static final Function<Object, Double> TO_DOUBLE = new Function<Object, Double>()
+  {
+    @Override
+    public Double apply(Object o)
+    {
+      return ((Number) o).doubleValue();
+    }
+  };
+
+  final Function<Object, Block> toBlock = new Function<Object, Block>()
+  {
+    @Override
+    public Block apply(Object o)
+    {
+      return new BlockMapWrapper((Map<?, ?>) o);
+    }
+  };
+
+  final Function<Object, BlockChainInfo> toBlockChainInfo = new Function<Object, BlockChainInfo>()
+  {
+    @Override
+    public BlockChainInfo apply(Object o)
+    {
+      return new BlockChainInfoMapWrapper((Map<?, ?>) o);
+    }
+  };
+
+  final Function<Object, MemPoolInfo> toMemPoolInfo = new Function<Object, MemPoolInfo>()
+  {
+    @Override
+    public MemPoolInfo apply(Object o)
+    {
+      return new MemPoolInfoMapWrapper((Map<?, ?>) o);
+    }
+  };
+
+  final Function<Object, RawTransaction> toRawTransaction = new Function<Object, RawTransaction>()
+  {
+    @Override
+    public RawTransaction apply(Object o)
+    {
+      return new RawTransactionImpl((Map<?, ?>) o);
+    }
+  };
+
+  final Function<Object, Transaction> toTransaction = new Function<Object, Transaction>()
+  {
+    @Override
+    public Transaction apply(Object o)
+    {
+      return new TransactionWrapper((Map<?, ?>) o);
+    }
+  };
+
+  final Function<Object, TxOut> toTxOut = new Function<Object, TxOut>()
+  {
+    @Override
+    public TxOut apply(Object o)
+    {
+      return o == null ? null : new TxOutWrapper((Map<?, ?>) o);
+    }
+  };
+
+  final Function<Object, DecodedScript> toDecodedScript = new Function<Object, DecodedScript>()
+  {
+    @Override
+    public DecodedScript apply(Object o)
+    {
+      return new DecodedScriptImpl((Map<?, ?>) o);
+    }
+  };
+
+  final Function<Object, AddressValidationResult> toAddressValidationResult = new Function<Object, AddressValidationResult>()
+  {
+    @Override
+    public AddressValidationResult apply(Object o)
+    {
+      return new AddressValidationResultWrapper((Map<?, ?>) o);
+    }
+  };
+
+  final Function<Object, TransactionsSinceBlock> toTransactionsSinceBlock = new Function<Object, TransactionsSinceBlock>()
+  {
+    @Override
+    public TransactionsSinceBlock apply(Object o)
+    {
+      return new TransactionsSinceBlockImpl((Map<?, ?>) o);
+    }
+  };
+
+  final Function<Object, List<Unspent>> toUnspentList = new Function<Object, List<Unspent>>()
+  {
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<Unspent> apply(Object o)
+    {
+      return new UnspentListWrapper((List<Map<?, ?>>) o);
+    }
+  };
+
+  final Function<Object, List<Transaction>> toTransactionList = new Function<Object, List<Transaction>>()
+  {
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<Transaction> apply(Object o)
+    {
+      return new TransactionListMapWrapper((List<Map<?, ?>>) o);
+    }
+  };
+
+  static final Function<Object, String> TO_SIGNED_HEX = new Function<Object, String>()
+  {
+    @Override
+    public String apply(Object o)
+    {
+      Map<?, ?> result = (Map<?, ?>) o;
+      if ((Boolean) result.get("complete"))
+        return (String) result.get("hex");
+      else
+        throw new GenericRpcException("Incomplete");
+    }
+  };
+
+  /**
+   * A list of calls to be sent to thoughtd as one JSON-RPC 2.0 batch. Every call
+   * gets its own id, responses are matched back by id and are returned in the
+   * order the calls were added. A failing call does not affect the others.
+   */
+  public class Batch
+  {
+    private final List<String>              methods    = new ArrayList<String>();
+    private final List<Object[]>            params     = new ArrayList<Object[]>();
+    private final List<Function<Object, ?>> converters = new ArrayList<Function<Object, ?>>();
+
+    protected Batch()
+    {
+    }
+
+    /**
+     * Adds a call whose result is returned as parsed JSON, just like
+     * {@link ThoughtRPCClient#query(String, Object...)} does.
+     */
+    public Batch call(String method, Object... o)
+    {
+      return add(AS_IS, method, o);
+    }
+
+    /**
+     * Adds a call whose result is converted with the given function.
+     */
+    public Batch add(Function<Object, ?> converter, String method, Object... o)
+    {
+      methods.add(method);
+      params.add(o);
+      converters.add(converter);
+      return this;
+    }
+
+    public Batch getBlockHash(int height)
+    {
+      return call("getblockhash", height);
+    }
+
+    public Batch getBlock(String blockHash)
+    {
+      return add(toBlock, "getblock", blockHash);
+    }
+
+    public Batch getRawBlock(String blockHash)
+    {
+      return call("getblock", blockHash, false);
+    }
+
+    public Batch getBlockCount()
+    {
+      return add(TO_INT, "getblockcount");
+    }
+
+    public Batch getBestBlockHash()
+    {
+      return call("getbestblockhash");
+    }
+
+    public Batch getMemPoolInfo()
+    {
+      return add(toMemPoolInfo, "getmempoolinfo");
+    }
+
+    public Batch getRawTransaction(String txId)
+    {
+      return add(toRawTransaction, "getrawtransaction", txId, 1);
+    }
+
+    public Batch getRawTransactionHex(String txId)
+    {
+      return call("getrawtransaction", txId);
+    }
+
+    public Batch decodeRawTransaction(String hex)
+    {
+      return add(toRawTransaction, "decoderawtransaction", hex);
+    }
+
+    public Batch getTransaction(String txId)
+    {
+      return add(toTransaction, "gettransaction", txId);
+    }
+
+    public Batch getTxOut(String txId, long vout)
+    {
+      return add(toTxOut, "gettxout", txId, vout, true);
+    }
+
+    public Batch decodeScript(String hex)
+    {
+      return add(toDecodedScript, "decodescript", hex);
+    }
+
+    public Batch validateAddress(String address)
+    {
+      return add(toAddressValidationResult, "validateaddress", address);
+    }
+
+    public int size()
+    {
+      return methods.size();
+    }
+
+    /**
+     * Sends all calls in one request.
+     *
+     * @return the results, in the order the calls were added
+     * @throws GenericRpcException
+     *           if the request as a whole fails; errors of single calls are
+     *           reported through {@link BatchResult#getError(int)}
+     */
+    public BatchResult execute() throws GenericRpcException
+    {
+      int n = methods.size();
+      Object[] results = new Object[n];
+      GenericRpcException[] errors = new GenericRpcException[n];
+      if (n == 0)
+        return new BatchResult(results, errors);
+
+      long firstId = batchIds.getAndAdd(n);
+      JSONWriter w = WRITERS.get().reset();
+      w.raw('[');
+      for (int i = 0; i < n; i++)
+      {
+        if (i > 0)
+          w.raw(',');
+        w.raw(BATCH_METHOD).raw(methodName(methods.get(i))).raw(REQUEST_PARAMS).array(params.get(i));
+        w.raw(BATCH_ID).number(firstId + i).raw('}');
+      }
+      w.raw(']');
+      String description = n + " calls starting with " + methods.get(0);
+      long start = System.nanoTime();
+      long bodyStart = 0;
+      boolean failed = true;
+      ThoughtConnectionPool.Response response = null;
+      try
+      {
+        response = send("batch", new Object[] { description }, w);
+        bodyStart = System.nanoTime();
+        Object parsed = readJson(response.getInputStream(), false, "batch response");
+        if (!(parsed instanceof List))
+          throw new ThoughtRPCException("Invalid batch response format (data: \"" + JSON.stringify(parsed) + "\")");
+        boolean[] answered = new boolean[n];
+        for (Object o : (List<?>) parsed)
+        {
+          if (!(o instanceof Map))
+            throw new ThoughtRPCException("Invalid batch response format (data: \"" + JSON.stringify(o) + "\")");
+          Map<?, ?> entry = (Map<?, ?>) o;
+          Object id = entry.get("id");
+          if (!(id instanceof Number))
+            throw new ThoughtRPCException("Unexpected response ID in batch: " + id);
+          long index = ((Number) id).longValue() - firstId;
+          if (index < 0 || index >= n || answered[(int) index])
+            throw new ThoughtRPCException("Unexpected response ID in batch: " + id);
+          int i = (int) index;
+          answered[i] = true;
+          if (entry.get("error") != null)
+            errors[i] = new GenericRpcException(JSON.stringify(entry.get("error")));
+          else
+          {
+            try
+            {
+              results[i] = converters.get(i).apply(entry.get("result"));
+            }
+            catch (ClassCastException ex)
+            {
+              errors[i] = new ThoughtRPCException("Invalid server response format for " + methods.get(i), ex);
+            }
+          }
+        }
+        for (int i = 0; i < n; i++)
+          if (!answered[i])
+            errors[i] = new ThoughtRPCException("No response for " + methods.get(i) + " in batch");
+        failed = false;
+        return new BatchResult(results, errors);
+      }
+      catch (IOException ex)
       {
-        Map<?, ?> response = (Map<?, ?>) JSON.parse(r);
-
-        if (!expectedID.equals(response.get("id")))
-          throw new ThoughtRPCException(
-              "Wrong response ID (expected: " + String.valueOf(expectedID) + ", response: " + response.get("id") + ")");
-
-        if (response.get("error") != null)
-          throw new GenericRpcException(JSON.stringify(response.get("error")));
-
-        return response.get("result");
+        throw new ThoughtRPCException("batch", description, ex);
       }
-      catch (ClassCastException ex)
+      finally
       {
-        throw new ThoughtRPCException("Invalid server response format (data: \"" + r + "\")");
+        if (response != null)
+          response.close();
+        record("batch", failed, start, bodyStart, response);
       }
+    }
   }
 
-  public Object query(String method, Object... o) throws GenericRpcException
+  /**
+   * The outcome of a {@link Batch}: one result or one error per call.
+   */
+  public static class BatchResult
   {
-    HttpURLConnection conn;
-    try
-    {
-      conn = (HttpURLConnection) noAuthURL.openConnection();
+    private final Object[]              results;
+    private final GenericRpcException[] errors;
 
-      conn.setDoOutput(true);
-      conn.setDoInput(true);
-
-      if (conn instanceof HttpsURLConnection)
-      {
-        if (hostnameVerifier != null)
-          ((HttpsURLConnection) conn).setHostnameVerifier(hostnameVerifier);
-        if (sslSocketFactory != null)
-          ((HttpsURLConnection) conn).setSSLSocketFactory(sslSocketFactory);
-      }
-
-      // conn.connect();
-      ((HttpURLConnection) conn).setRequestProperty("Authorization", "Basic " + authStr);
-      byte[] r = prepareRequest(method, o);
-      logger.log(Level.FINE, "Thought JSON-RPC request:\n{0}", new String(r, QUERY_CHARSET));
-      conn.getOutputStream().write(r);
-      conn.getOutputStream().close();
-      int responseCode = conn.getResponseCode();
-      if (responseCode != 200)
-        throw new ThoughtRPCException(method, Arrays.deepToString(o), responseCode, conn.getResponseMessage(),
-            new String(loadStream(conn.getErrorStream(), true)));
-      return loadResponse(conn.getInputStream(), "1", true);
-    }
-    catch (IOException ex)
+    BatchResult(Object[] results, GenericRpcException[] errors)
     {
-      throw new ThoughtRPCException(method, Arrays.deepToString(o), ex);
+      this.results = results;
+      this.errors = errors;
     }
-  }
 
-  public String queryJson(String method, Object... o) throws GenericRpcException
-  {
-    HttpURLConnection conn;
-    try
+    public int size()
     {
-      conn = (HttpURLConnection) noAuthURL.openConnection();
-
-      conn.setDoOutput(true);
-      conn.setDoInput(true);
+      return results.length;
+    }
 
-      if (conn instanceof HttpsURLConnection)
-      {
-        if (hostnameVerifier != null)
-          ((HttpsURLConnection) conn).setHostnameVerifier(hostnameVerifier);
-        if (sslSocketFactory != null)
-          ((HttpsURLConnection) conn).setSSLSocketFactory(sslSocketFactory);
-      }
+    /**
+     * Returns the typed result of the call at the given position.
+     *
+     * @throws GenericRpcException
+     *           the error returned by thoughtd for that call
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(int index) throws GenericRpcException
+    {
+      if (errors[index] != null)
+        throw errors[index];
+      return (T) results[index];
+    }
 
-      // conn.connect();
-      ((HttpURLConnection) conn).setRequestProperty("Authorization", "Basic " + authStr);
-      byte[] r = prepareRequest(method, o);
-      logger.log(Level.FINE, "Thought JSON-RPC request:\n{0}", new String(r, QUERY_CHARSET));
-      conn.getOutputStream().write(r);
-      conn.getOutputStream().close();
-      int responseCode = conn.getResponseCode();
-      if (responseCode != 200)
-        throw new ThoughtRPCException(method, Arrays.deepToString(o), responseCode, conn.getResponseMessage(),
-            new String(loadStream(conn.getErrorStream(), true)));
-      return new String(loadStream(conn.getInputStream(), true));
+    public boolean isError(int index)
+    {
+      return errors[index] != null;
     }
-    catch (IOException ex)
+
+    public GenericRpcException getError(int index)
     {
-      throw new ThoughtRPCException(method, Arrays.deepToString(o), ex);
+      return errors[index];
     }
   }
 
-  
   @Override
   public String createRawTransaction(List<TxInput> inputs, List<TxOutput> outputs) throws GenericRpcException
   {
@@ -492,11 +1205,27 @@ public class ThoughtRPCClient implements ThoughtClientInterface
   {
     return ((Number) query("getbalance", account, minConf)).doubleValue();
   }
+
+  @Override
+  public long getBalanceSat() throws GenericRpcException
+  {
+    return CoinUtil.toSatoshis((Number) query("getbalance"));
+  }
+
+  @Override
+  public long getBalanceSat(String account, int minConf) throws GenericRpcException
+  {
+    return CoinUtil.toSatoshis((Number) query("getbalance", account, minConf));
+  }
   
   @Override
   public Map<String,Double> listAddressBalances(double minBalance) throws GenericRpcException
   {
-    return (Map<String,Double>) query("listaddressbalances", minBalance);
+    Map<?,?> m = (Map<?,?>) query("listaddressbalances", minBalance);
+    Map<String,Double> balances = new LinkedHashMap<String,Double>(m.size() * 2);
+    for (Map.Entry<?,?> e : m.entrySet())
+      balances.put((String) e.getKey(), ((Number) e.getValue()).doubleValue());
+    return balances;
   }
   
   static Map<String,Collection<String>> addrParam = new HashMap<String, Collection<String>>();
@@ -1039,6 +1768,18 @@ public class ThoughtRPCClient implements ThoughtClientInterface
     {
       return mapDouble(m, "fee");
     }
+
+    @Override
+    public long amountSat()
+    {
+      return mapSatoshis("amount");
+    }
+
+    @Override
+    public long feeSat()
+    {
+      return mapSatoshis("fee");
+    }
     
     @Override
     public boolean generated()
@@ -1052,6 +1793,12 @@ public class ThoughtRPCClient implements ThoughtClientInterface
       return mapInt(m, "confirmations");
     }
 
+    @Override
+    public int vout()
+    {
+      return m.containsKey("vout") ? mapInt(m, "vout") : -1;
+    }
+
     @Override
     public String blockHash()
     {
@@ -1498,6 +2245,46 @@ public class ThoughtRPCClient implements ThoughtClientInterface
     }
   }
   
+  private class MemPoolInfoMapWrapper extends MapWrapper implements MemPoolInfo, Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    public MemPoolInfoMapWrapper(Map<?,?> m)
+    {
+      super(m);
+    }
+
+    @Override
+    public long size()
+    {
+      return mapLong("size");
+    }
+
+    @Override
+    public long bytes()
+    {
+      return mapLong("bytes");
+    }
+
+    @Override
+    public long usage()
+    {
+      return mapLong("usage");
+    }
+
+    @Override
+    public long maxMemPool()
+    {
+      return mapLong("maxmempool");
+    }
+
+    @Override
+    public double memPoolMinFee()
+    {
+      return mapDouble("mempoolminfee");
+    }
+  }
+
   private class BlockChainInfoMapWrapper extends MapWrapper implements BlockChainInfo, Serializable
   {
     private static final long serialVersionUID = 1L;
@@ -1681,14 +2468,56 @@ public class ThoughtRPCClient implements ThoughtClientInterface
   @Override
   public Block getBlock(int height) throws GenericRpcException
   {
-    String hash = (String) query("getblockhash", height);
-    return getBlock(hash);
+    return getBlock(getBlockHash(height));
   }
 
   @Override
   public Block getBlock(String blockHash) throws GenericRpcException
   {
-    return new BlockMapWrapper((Map<?,?>) query("getblock", blockHash));
+    Map<Object, Object> cached = blockCache.block(blockHash);
+    if (cached != null)
+    {
+      if (blockCache.isExactConfirmations())
+        blockCache.confirm(cached, ((Number) query("getblockcount")).intValue());
+      else
+        blockCache.confirm(cached);
+      return new BlockMapWrapper(cached);
+    }
+    Map<?,?> m = (Map<?,?>) query("getblock", blockHash);
+    blockCache.put(m);
+    return new BlockMapWrapper(m);
+  }
+
+  /**
+   * Returns the hash of the parent of the given block, or null for the genesis
+   * block. Parent links never change, so once known they are answered from the
+   * block cache; otherwise only the block header is fetched.
+   */
+  @Override
+  public String getPreviousBlockHash(String blockHash) throws GenericRpcException
+  {
+    String prev = blockCache.previousHash(blockHash);
+    if (prev == null)
+    {
+      Map<?,?> m = (Map<?,?>) query("getblockheader", blockHash);
+      blockCache.put(m);
+      prev = (String) m.get("previousblockhash");
+    }
+    return prev == null || prev.isEmpty() ? null : prev;
+  }
+
+  /**
+   * Returns the height of the given block, fetching only its header.
+   */
+  @Override
+  public int getBlockHeight(String blockHash) throws GenericRpcException
+  {
+    int height = blockCache.height(blockHash);
+    if (height >= 0)
+      return height;
+    Map<?,?> m = (Map<?,?>) query("getblockheader", blockHash);
+    blockCache.put(m);
+    return ((Number) m.get("height")).intValue();
   }
 
   @Override
@@ -1697,10 +2526,71 @@ public class ThoughtRPCClient implements ThoughtClientInterface
     return (String) query("getblock", blockHash, false);
   }
 
+  /**
+   * Fetches a block in serialized form together with its header data and
+   * decodes it locally, in a single request. Compared to {@link #getBlock(String)}
+   * this also gives the full transactions, without one getrawtransaction call
+   * per txid.
+   */
+  public ThoughtRawDecoder.DecodedBlock getDecodedBlock(String blockHash) throws GenericRpcException
+  {
+    BatchResult r = batch().getRawBlock(blockHash).call("getblockheader", blockHash).execute();
+    String hex = r.get(0);
+    Map<?, ?> header = r.get(1);
+    return getRawDecoder().decodeBlock(HexCoder.decode(hex), blockHash, header);
+  }
+
+  public ThoughtRawDecoder.DecodedBlock getDecodedBlock(int height) throws GenericRpcException
+  {
+    return getDecodedBlock(getBlockHash(height));
+  }
+
+  public static final int DEFAULT_PREFETCH_WINDOW = 4;
+
+  /**
+   * Iterates over the blocks from fromHeight to toHeight, both inclusive, in
+   * height order, fetching {@link #DEFAULT_PREFETCH_WINDOW} blocks ahead.
+   */
+  public ThoughtBlockIterator blocks(int fromHeight, int toHeight)
+  {
+    return blocks(fromHeight, toHeight, DEFAULT_PREFETCH_WINDOW, false);
+  }
+
+  /**
+   * Iterates over the blocks from fromHeight to toHeight, both inclusive, in
+   * height order.
+   *
+   * @param window
+   *          the number of blocks fetched concurrently ahead of the consumer
+   * @param decoded
+   *          fetch blocks in serialized form and decode them locally
+   * @see ThoughtBlockIterator
+   */
+  public ThoughtBlockIterator blocks(int fromHeight, int toHeight, int window, boolean decoded)
+  {
+    return new ThoughtBlockIterator(this, fromHeight, toHeight, window, decoded);
+  }
+
+  /**
+   * Fetches a transaction in serialized form and decodes it locally. Unlike
+   * {@link #getRawTransaction(String)} the result carries no block
+   * information.
+   */
+  public RawTransaction getDecodedRawTransaction(String txId) throws GenericRpcException
+  {
+    return getRawDecoder().decodeTransaction(getRawTransactionHex(txId));
+  }
+
   @Override
   public String getBlockHash(int height) throws GenericRpcException
   {
-    return (String) query("getblockhash", height);
+    String hash = blockCache.hash(height);
+    if (hash == null)
+    {
+      hash = (String) query("getblockhash", height);
+      blockCache.putHash(height, hash);
+    }
+    return hash;
   }
 
   @Override
@@ -1712,7 +2602,9 @@ public class ThoughtRPCClient implements ThoughtClientInterface
   @Override
   public int getBlockCount() throws GenericRpcException
   {
-    return ((Number) query("getblockcount")).intValue();
+    int count = ((Number) query("getblockcount")).intValue();
+    blockCache.tipHeight(count);
+    return count;
   }
 
   @Override
@@ -1796,10 +2688,30 @@ public class ThoughtRPCClient implements ThoughtClientInterface
     return (List<String>) query("getrawmempool");
   }
 
+  @Override
+  public MemPoolInfo getMemPoolInfo() throws GenericRpcException
+  {
+    return toMemPoolInfo.apply(query("getmempoolinfo"));
+  }
+
   @Override
   public String getBestBlockHash() throws GenericRpcException
   {
-    return (String) query("getbestblockhash");
+    String hash = (String) query("getbestblockhash");
+    int top = blockCache.tip(hash);
+    if (top >= 0)
+      blockCache.check(top, (String) query("getblockhash", top));
+    return hash;
+  }
+
+  /**
+   * Reads the best block hash and the memory pool summary in one batch.
+   */
+  @Override
+  public ChainActivity getChainActivity() throws GenericRpcException
+  {
+    BatchResult r = batch().getBestBlockHash().getMemPoolInfo().execute();
+    return new ChainActivity(r.<String> get(0), r.<MemPoolInfo> get(1));
   }
 
   @Override
@@ -1973,6 +2885,12 @@ public class ThoughtRPCClient implements ThoughtClientInterface
         return mapDouble("value");
       }
 
+      @Override
+      public long valueSat()
+      {
+        return mapSatoshis("value");
+      }
+
       @Override
       public int n()
       {
@@ -2223,6 +3141,39 @@ public class ThoughtRPCClient implements ThoughtClientInterface
     return new RawTransactionImpl((Map<?,?>) query("getrawtransaction", txId, 1));
   }
 
+  @Override
+  public List<RawTransaction> getRawTransactions(List<String> txIds) throws GenericRpcException
+  {
+    if (txIds.size() < 2)
+      return ThoughtClientInterface.super.getRawTransactions(txIds);
+    Batch batch = batch();
+    for (String txId : txIds)
+      batch.getRawTransaction(txId);
+    BatchResult r = batch.execute();
+    List<RawTransaction> txs = new ArrayList<RawTransaction>(txIds.size());
+    for (int i = 0; i < txIds.size(); i++)
+      txs.add(r.<RawTransaction> get(i));
+    return txs;
+  }
+
+  /**
+   * Fetches the transactions with <code>gettransaction</code> in one batch and
+   * decodes their hex locally.
+   */
+  @Override
+  public List<RawTransaction> getWalletTransactions(List<String> txIds) throws GenericRpcException
+  {
+    Batch batch = batch();
+    for (String txId : txIds)
+      batch.call("gettransaction", txId);
+    BatchResult r = batch.execute();
+    ThoughtRawDecoder decoder = getRawDecoder();
+    List<RawTransaction> txs = new ArrayList<RawTransaction>(txIds.size());
+    for (int i = 0; i < txIds.size(); i++)
+      txs.add(decoder.decodeTransaction((String) r.<Map<?, ?>> get(i).get("hex")));
+    return txs;
+  }
+
   @Override
   public double getReceivedByAddress(String address) throws GenericRpcException
   {
@@ -2235,6 +3186,12 @@ public class ThoughtRPCClient implements ThoughtClientInterface
     return ((Number) query("getreceivedbyaddress", address, minConf)).doubleValue();
   }
 
+  @Override
+  public long getReceivedByAddressSat(String address, int minConf) throws GenericRpcException
+  {
+    return CoinUtil.toSatoshis((Number) query("getreceivedbyaddress", address, minConf));
+  }
+
   @Override
   public void importPrivKey(String thoughtPrivKey) throws GenericRpcException
   {
@@ -2430,7 +3387,7 @@ public class ThoughtRPCClient implements ThoughtClientInterface
   @Override
   public List<Transaction> listTransactions(String account, int count) throws GenericRpcException
   {
-    return new TransactionListMapWrapper((List<Map<?, ?>>) query("listtransactions", account, count));
+    return toTransactionList.apply(query("listtransactions", account, count));
   }
 
   @Override
@@ -2499,6 +3456,12 @@ public class ThoughtRPCClient implements ThoughtClientInterface
       return MapWrapper.mapDouble(m, "amount");
     }
 
+    @Override
+    public long amountSat()
+    {
+      return mapSatoshis("amount");
+    }
+
     @Override
     public int confirmations()
     {
@@ -2507,12 +3470,13 @@ public class ThoughtRPCClient implements ThoughtClientInterface
 
     public boolean spendable()
     {
-      return mapBool(m, "spendable");
+      // older nodes omit the flags
+      return !Boolean.FALSE.equals(m.get("spendable"));
     }
     
     public boolean solvable()
     {
-      return mapBool(m, "solvable");
+      return !Boolean.FALSE.equals(m.get("solvable"));
     }
     
     @Override
@@ -2609,6 +3573,19 @@ public class ThoughtRPCClient implements ThoughtClientInterface
     return (String) query("sendfrom", fromAccount, toAddress, amount, minConf, addlocked, comment, commentTo);
   }
 
+  @Override
+  public String sendMany(String fromAccount, Map<String, Double> amounts) throws GenericRpcException
+  {
+    return (String) query("sendmany", fromAccount, amounts);
+  }
+
+  @Override
+  public String sendMany(String fromAccount, Map<String, Double> amounts, int minConf, boolean addlocked, String comment)
+      throws GenericRpcException
+  {
+    return (String) query("sendmany", fromAccount, amounts, minConf, addlocked, comment);
+  }
+
   @Override
   public String sendRawTransaction(String hex) throws GenericRpcException
   {
@@ -2678,13 +3655,8 @@ public class ThoughtRPCClient implements ThoughtClientInterface
       }
     }
 
-    Map<?, ?> result = (Map<?, ?>) query("signrawtransaction", hex, pInputs, privateKeys, sigHashType); // if sigHashType is null it
-                                                                                                        // will return
-    // the default "ALL"
-    if ((Boolean) result.get("complete"))
-      return (String) result.get("hex");
-    else
-      throw new GenericRpcException("Incomplete");
+    // if sigHashType is null it will return the default "ALL"
+    return TO_SIGNED_HEX.apply(query("signrawtransaction", hex, pInputs, privateKeys, sigHashType));
   }
 
   public RawTransaction decodeRawTransaction(String hex) throws GenericRpcException
@@ -2694,67 +3666,62 @@ public class ThoughtRPCClient implements ThoughtClientInterface
     return rawTransaction.vOut().get(0).transaction();
   }
 
-  @Override
-  public AddressValidationResult validateAddress(String address) throws GenericRpcException
+  private class AddressValidationResultWrapper extends MapWrapper implements AddressValidationResult
   {
-    final Map<?, ?> validationResult = (Map<?, ?>) query("validateaddress", address);
-    return new AddressValidationResult()
-    {
-
-      /**
-       * 
-       */
-      private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 1L;
 
-      @Override
-      public boolean isValid()
-      {
-        return ((Boolean) validationResult.get("isvalid"));
-      }
+    public AddressValidationResultWrapper(Map<?, ?> m)
+    {
+      super(m);
+    }
 
-      @Override
-      public String address()
-      {
-        return (String) validationResult.get("address");
-      }
+    @Override
+    public boolean isValid()
+    {
+      return ((Boolean) m.get("isvalid"));
+    }
 
-      @Override
-      public boolean isMine()
-      {
-        return ((Boolean) validationResult.get("ismine"));
-      }
+    @Override
+    public String address()
+    {
+      return (String) m.get("address");
+    }
 
-      @Override
-      public boolean isScript()
-      {
-        return ((Boolean) validationResult.get("isscript"));
-      }
+    @Override
+    public boolean isMine()
+    {
+      return ((Boolean) m.get("ismine"));
+    }
 
-      @Override
-      public String pubKey()
-      {
-        return (String) validationResult.get("pubkey");
-      }
+    @Override
+    public boolean isScript()
+    {
+      return ((Boolean) m.get("isscript"));
+    }
 
-      @Override
-      public boolean isCompressed()
-      {
-        return ((Boolean) validationResult.get("iscompressed"));
-      }
+    @Override
+    public String pubKey()
+    {
+      return (String) m.get("pubkey");
+    }
 
-      @Override
-      public String account()
-      {
-        return (String) validationResult.get("account");
-      }
+    @Override
+    public boolean isCompressed()
+    {
+      return ((Boolean) m.get("iscompressed"));
+    }
 
-      @Override
-      public String toString()
-      {
-        return validationResult.toString();
-      }
+    @Override
+    public String account()
+    {
+      return (String) m.get("account");
+    }
+  }
 
-    };
+  @Override
+  public AddressValidationResult validateAddress(String address) throws GenericRpcException
+  {
+    return new AddressValidationResultWrapper((Map<?, ?>) query("validateaddress", address));
   }
 
   @Override
@@ -2977,20 +3944,19 @@ public class ThoughtRPCClient implements ThoughtClientInterface
   @Override
   public double getUnconfirmedBalance() throws GenericRpcException
   {
-    return (double) query("getunconfirmedbalance");
+    return ((Number) query("getunconfirmedbalance")).doubleValue();
+  }
+
+  @Override
+  public long getUnconfirmedBalanceSat() throws GenericRpcException
+  {
+    return CoinUtil.toSatoshis((Number) query("getunconfirmedbalance"));
   }
 
   @Override
   public double getDifficulty() throws GenericRpcException
   {
-    if (query("getdifficulty") instanceof Long)
-    {
-      return ((Long) query("getdifficulty")).doubleValue();
-    }
-    else
-    {
-      return (double) query("getdifficulty");
-    }
+    return ((Number) query("getdifficulty")).doubleValue();
   }
 
   @Override
@@ -3021,7 +3987,7 @@ public class ThoughtRPCClient implements ThoughtClientInterface
   @Override
   public double getNetworkHashPs() throws GenericRpcException
   {
-    return (Double) query("getnetworkhashps");
+    return ((Number) query("getnetworkhashps")).doubleValue();
   }
 
   @Override
@@ -34,7 +34,6 @@ public class ThoughtRPCException extends GenericRpcException
   private String            rpcParams;
   private int               responseCode;
   private String            responseMessage;
-  @SuppressWarnings("unused")
   private String            response;
 
   /**
@@ -107,4 +106,12 @@ public class ThoughtRPCException extends GenericRpcException
     return responseMessage;
   }
 
+  /**
+   * The body of an HTTP error response, or null.
+   */
+  public String getResponse()
+  {
+    return response;
+  }
+
 }
@@ -0,0 +1,791 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import live.thought.thought4j.ThoughtClientInterface.BasicTxInput;
+import live.thought.thought4j.ThoughtClientInterface.Block;
+import live.thought.thought4j.ThoughtClientInterface.RawTransaction;
+import live.thought.thought4j.ThoughtClientInterface.TxInput;
+import live.thought.thought4j.util.HashUtil;
+import live.thought.thought4j.util.HexCoder;
+import live.thought.thought4j.util.MapWrapper;
+
+/**
+ * Decodes serialized blocks and transactions, as returned by
+ * <code>getblock &lt;hash&gt; false</code> and
+ * <code>getrawtransaction &lt;txid&gt;</code>, into the same {@link Block} and
+ * {@link RawTransaction} views the JSON calls produce.
+ * <p>
+ * Transaction ids are computed locally. Special transactions (DIP2, version 3
+ * with a non-zero type) are supported; their extra payload is skipped. Block
+ * headers may carry a proof-of-work solution after the 80 byte base header;
+ * its length is found by checking the merkle root.
+ * <p>
+ * What the serialized data does not contain (confirmations, the next block,
+ * chain work) comes from an optional <code>getblockheader</code> result, see
+ * {@link ThoughtRPCClient#getDecodedBlock(String)}. Lookups of previous
+ * transactions and blocks go through the client given to the constructor.
+ */
+public class ThoughtRawDecoder
+{
+  /** Possible lengths of the header extension after the 80 byte base header */
+  private static final int[]          HEADER_EXTENSIONS = { 0, 42 * 4 };
+
+  private final ThoughtAddressCodec    codec;
+  private final ThoughtClientInterface client;
+
+  /**
+   * @param codec
+   *          the network's address codec
+   * @param client
+   *          the client used to look up referenced blocks and transactions, may
+   *          be null
+   */
+  public ThoughtRawDecoder(ThoughtAddressCodec codec, ThoughtClientInterface client)
+  {
+    this.codec = codec;
+    this.client = client;
+  }
+
+  public ThoughtAddressCodec getAddressCodec()
+  {
+    return codec;
+  }
+
+  /**
+   * The client for lookups, which decoded views lose when serialized.
+   */
+  private static ThoughtClientInterface lookup(ThoughtClientInterface client)
+  {
+    if (client == null)
+      throw new IllegalStateException("No client to look up referenced data");
+    return client;
+  }
+
+  /**
+   * Reads the primitive types of the serialization format.
+   */
+  private static class Reader
+  {
+    final byte[] data;
+    int          pos;
+    final int    end;
+
+    Reader(byte[] data, int pos, int end)
+    {
+      this.data = data;
+      this.pos = pos;
+      this.end = end;
+    }
+
+    private void need(long n)
+    {
+      if (n < 0 || n > end - pos)
+        throw new IllegalArgumentException("Truncated data at byte " + pos);
+    }
+
+    int uint8()
+    {
+      need(1);
+      return data[pos++] & 0xff;
+    }
+
+    int int32()
+    {
+      need(4);
+      int v = (data[pos] & 0xff) | (data[pos + 1] & 0xff) << 8 | (data[pos + 2] & 0xff) << 16 | (data[pos + 3] & 0xff) << 24;
+      pos += 4;
+      return v;
+    }
+
+    long uint32()
+    {
+      return int32() & 0xffffffffL;
+    }
+
+    long int64()
+    {
+      return uint32() | (long) int32() << 32;
+    }
+
+    long varInt()
+    {
+      int b = uint8();
+      if (b < 0xfd)
+        return b;
+      if (b == 0xfd)
+        return uint8() | uint8() << 8;
+      if (b == 0xfe)
+        return uint32();
+      return int64();
+    }
+
+    /**
+     * Skips a length-prefixed byte string.
+     *
+     * @return the offset of the bytes
+     */
+    int bytes()
+    {
+      long n = varInt();
+      need(n);
+      int offset = pos;
+      pos += (int) n;
+      return offset;
+    }
+
+    void skip(int n)
+    {
+      need(n);
+      pos += n;
+    }
+  }
+
+  public RawTransaction decodeTransaction(String hex)
+  {
+    return decodeTransaction(HexCoder.decode(hex));
+  }
+
+  public RawTransaction decodeTransaction(byte[] raw)
+  {
+    Reader r = new Reader(raw, 0, raw.length);
+    DecodedTransaction tx = readTransaction(r, null);
+    if (r.pos != raw.length)
+      throw new IllegalArgumentException("Unexpected data after transaction at byte " + r.pos);
+    return tx;
+  }
+
+  public DecodedBlock decodeBlock(String hex)
+  {
+    return decodeBlock(HexCoder.decode(hex), null, null);
+  }
+
+  /**
+   * Decodes a serialized block.
+   *
+   * @param raw
+   *          the serialized block
+   * @param hash
+   *          the hash the block was requested with, or null to use the double
+   *          SHA-256 of the base header
+   * @param header
+   *          the <code>getblockheader</code> result for the block, or null
+   */
+  public DecodedBlock decodeBlock(byte[] raw, String hash, Map<?, ?> header)
+  {
+    IllegalArgumentException failure = null;
+    for (int extension : HEADER_EXTENSIONS)
+    {
+      if (80 + extension > raw.length)
+        break;
+      try
+      {
+        DecodedBlock block = new DecodedBlock(this, raw, 80 + extension, hash, header);
+        if (block.merkleMatches())
+          return block;
+        failure = new IllegalArgumentException("Merkle root mismatch");
+      }
+      catch (IllegalArgumentException ex)
+      {
+        if (failure == null)
+          failure = ex;
+      }
+    }
+    throw failure != null ? failure : new IllegalArgumentException("Block too short");
+  }
+
+  private DecodedTransaction readTransaction(Reader r, DecodedBlock block)
+  {
+    int start = r.pos;
+    int version = r.int32();
+    long inCount = r.varInt();
+    if (inCount > (r.end - r.pos) / 41)
+      throw new IllegalArgumentException("Invalid input count at byte " + start);
+    int[] ins = new int[(int) inCount * 4];
+    for (int i = 0; i < inCount; i++)
+    {
+      ins[i * 4] = r.pos;
+      r.skip(36);
+      ins[i * 4 + 1] = r.bytes();
+      ins[i * 4 + 2] = r.pos - ins[i * 4 + 1];
+      ins[i * 4 + 3] = r.pos;
+      r.skip(4);
+    }
+    long outCount = r.varInt();
+    if (outCount > (r.end - r.pos) / 9)
+      throw new IllegalArgumentException("Invalid output count at byte " + r.pos);
+    long[] values = new long[(int) outCount];
+    int[] outs = new int[(int) outCount * 2];
+    for (int i = 0; i < outCount; i++)
+    {
+      values[i] = r.int64();
+      outs[i * 2] = r.bytes();
+      outs[i * 2 + 1] = r.pos - outs[i * 2];
+    }
+    long lockTime = r.uint32();
+    if ((version & 0xffff) >= 3 && (version >>> 16) != 0)
+      r.bytes();
+    return new DecodedTransaction(r.data, start, r.pos, version, ins, values, outs, lockTime, block, codec, client);
+  }
+
+  /**
+   * A block decoded from its serialized form. Besides the {@link Block} view it
+   * gives access to the decoded transactions.
+   */
+  public static class DecodedBlock implements Block, Serializable
+  {
+    private static final long                      serialVersionUID = 1L;
+
+    private final byte[]                           raw;
+    private final int                              headerLength;
+    private final String                           hash;
+    private final Map<?, ?>                        header;
+    private final List<DecodedTransaction>         transactions;
+    private final transient ThoughtClientInterface client;
+
+    DecodedBlock(ThoughtRawDecoder decoder, byte[] raw, int headerLength, String hash, Map<?, ?> header)
+    {
+      this.raw = raw;
+      this.headerLength = headerLength;
+      // A plain copy, as lazy views are not serializable
+      this.header = header == null ? null : new LinkedHashMap<Object, Object>(header);
+      this.client = decoder.client;
+      this.hash = hash != null ? hash
+          : header != null ? MapWrapper.mapStr(header, "hash") : HexCoder.encodeReversed(HashUtil.sha256d(raw, 0, 80), 0, 32);
+      Reader r = new Reader(raw, headerLength, raw.length);
+      long count = r.varInt();
+      if (count < 1 || count > raw.length / 60)
+        throw new IllegalArgumentException("Invalid transaction count");
+      List<DecodedTransaction> txs = new ArrayList<DecodedTransaction>((int) count);
+      for (long i = 0; i < count; i++)
+        txs.add(decoder.readTransaction(r, this));
+      if (r.pos != raw.length)
+        throw new IllegalArgumentException("Unexpected data after block at byte " + r.pos);
+      this.transactions = Collections.unmodifiableList(txs);
+    }
+
+    boolean merkleMatches()
+    {
+      byte[][] level = new byte[transactions.size()][];
+      for (int i = 0; i < level.length; i++)
+        level[i] = transactions.get(i).txidBytes;
+      int n = level.length;
+      while (n > 1)
+      {
+        int m = 0;
+        for (int i = 0; i < n; i += 2)
+        {
+          byte[] pair = new byte[64];
+          System.arraycopy(level[i], 0, pair, 0, 32);
+          System.arraycopy(level[Math.min(i + 1, n - 1)], 0, pair, 32, 32);
+          level[m++] = HashUtil.sha256d(pair);
+        }
+        n = m;
+      }
+      return Arrays.equals(level[0], Arrays.copyOfRange(raw, 36, 68));
+    }
+
+    public List<? extends RawTransaction> transactions()
+    {
+      return transactions;
+    }
+
+    /**
+     * The serialized header, including any proof-of-work solution.
+     */
+    public byte[] rawHeader()
+    {
+      return Arrays.copyOf(raw, headerLength);
+    }
+
+    @Override
+    public String hash()
+    {
+      return hash;
+    }
+
+    /**
+     * @return the confirmations reported by getblockheader, or -1 if unknown
+     */
+    @Override
+    public int confirmations()
+    {
+      return header == null ? -1 : MapWrapper.mapInt(header, "confirmations");
+    }
+
+    @Override
+    public int size()
+    {
+      return raw.length;
+    }
+
+    /**
+     * @return the height from getblockheader or else from the coinbase (BIP34),
+     *         -1 if unknown
+     */
+    @Override
+    public int height()
+    {
+      if (header != null)
+        return MapWrapper.mapInt(header, "height");
+      DecodedTransaction coinbase = transactions.get(0);
+      return coinbase.ins.length == 0 ? -1 : ThoughtScript.coinbaseHeight(raw, coinbase.ins[1], coinbase.ins[2]);
+    }
+
+    @Override
+    public int version()
+    {
+      return new Reader(raw, 0, 4).int32();
+    }
+
+    @Override
+    public String merkleRoot()
+    {
+      return HexCoder.encodeReversed(raw, 36, 32);
+    }
+
+    @Override
+    public List<String> tx()
+    {
+      return new AbstractList<String>()
+      {
+        @Override
+        public String get(int index)
+        {
+          return transactions.get(index).txId();
+        }
+
+        @Override
+        public int size()
+        {
+          return transactions.size();
+        }
+      };
+    }
+
+    @Override
+    public Date time()
+    {
+      return new Date(new Reader(raw, 68, 72).uint32() * 1000);
+    }
+
+    @Override
+    public long nonce()
+    {
+      return new Reader(raw, 76, 80).uint32();
+    }
+
+    @Override
+    public String bits()
+    {
+      return String.format("%08x", new Reader(raw, 72, 76).uint32());
+    }
+
+    @Override
+    public double difficulty()
+    {
+      if (header != null)
+        return MapWrapper.mapDouble(header, "difficulty");
+      long bits = new Reader(raw, 72, 76).uint32();
+      int shift = (int) (bits >>> 24) & 0xff;
+      double difficulty = (double) 0x0000ffff / (double) (bits & 0x00ffffff);
+      while (shift < 29)
+      {
+        difficulty *= 256.0;
+        shift++;
+      }
+      while (shift > 29)
+      {
+        difficulty /= 256.0;
+        shift--;
+      }
+      return difficulty;
+    }
+
+    @Override
+    public String previousHash()
+    {
+      for (int i = 4; i < 36; i++)
+        if (raw[i] != 0)
+          return HexCoder.encodeReversed(raw, 4, 32);
+      return null;
+    }
+
+    @Override
+    public String nextHash()
+    {
+      return header == null ? null : MapWrapper.mapStr(header, "nextblockhash");
+    }
+
+    @Override
+    public String chainwork()
+    {
+      return header == null ? null : MapWrapper.mapStr(header, "chainwork");
+    }
+
+    @Override
+    public Block previous() throws GenericRpcException
+    {
+      String previousHash = previousHash();
+      return previousHash == null ? null : lookup(client).getBlock(previousHash);
+    }
+
+    @Override
+    public Block next() throws GenericRpcException
+    {
+      String nextHash = nextHash();
+      return nextHash == null ? null : lookup(client).getBlock(nextHash);
+    }
+
+    @Override
+    public String toString()
+    {
+      return "DecodedBlock{hash=" + hash + ", tx=" + transactions.size() + ", size=" + raw.length + "}";
+    }
+  }
+
+  private static class DecodedTransaction implements RawTransaction, Serializable
+  {
+    private static final long                      serialVersionUID = 1L;
+
+    private final byte[]                           data;
+    private final int                              start;
+    private final int                              end;
+    private final int                              version;
+    // Per input: outpoint offset, script offset, script length, sequence offset
+    private final int[]                            ins;
+    private final long[]                           values;
+    // Per output: script offset, script length
+    private final int[]                            outs;
+    private final long                             lockTime;
+    private final DecodedBlock                     block;
+    private final ThoughtAddressCodec              codec;
+    private final transient ThoughtClientInterface client;
+    final byte[]                                   txidBytes;
+
+    DecodedTransaction(byte[] data, int start, int end, int version, int[] ins, long[] values, int[] outs, long lockTime,
+        DecodedBlock block, ThoughtAddressCodec codec, ThoughtClientInterface client)
+    {
+      this.data = data;
+      this.start = start;
+      this.end = end;
+      this.version = version;
+      this.ins = ins;
+      this.values = values;
+      this.outs = outs;
+      this.lockTime = lockTime;
+      this.block = block;
+      this.codec = codec;
+      this.client = client;
+      this.txidBytes = HashUtil.sha256d(data, start, end - start);
+    }
+
+    @Override
+    public String hex()
+    {
+      return HexCoder.encode(data, start, end - start);
+    }
+
+    @Override
+    public String txId()
+    {
+      return HexCoder.encodeReversed(txidBytes, 0, 32);
+    }
+
+    @Override
+    public int version()
+    {
+      return version & 0xffff;
+    }
+
+    /**
+     * The special transaction type of DIP2, 0 for normal transactions.
+     */
+    public int type()
+    {
+      return (version & 0xffff) >= 3 ? version >>> 16 : 0;
+    }
+
+    @Override
+    public long lockTime()
+    {
+      return lockTime;
+    }
+
+    @Override
+    public long size()
+    {
+      return end - start;
+    }
+
+    @Override
+    public long vsize()
+    {
+      return end - start;
+    }
+
+    @Override
+    public String hash()
+    {
+      return txId();
+    }
+
+    @Override
+    public List<In> vIn()
+    {
+      return new AbstractList<In>()
+      {
+        @Override
+        public In get(int index)
+        {
+          if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index);
+          return new DecodedIn(index);
+        }
+
+        @Override
+        public int size()
+        {
+          return ins.length / 4;
+        }
+      };
+    }
+
+    @Override
+    public List<Out> vOut()
+    {
+      return new AbstractList<Out>()
+      {
+        @Override
+        public Out get(int index)
+        {
+          if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index);
+          return new DecodedOut(index);
+        }
+
+        @Override
+        public int size()
+        {
+          return values.length;
+        }
+      };
+    }
+
+    @Override
+    public String blockHash()
+    {
+      return block == null ? null : block.hash();
+    }
+
+    @Override
+    public int confirmations()
+    {
+      return block == null ? 0 : block.confirmations();
+    }
+
+    @Override
+    public Date time()
+    {
+      return block == null ? null : block.time();
+    }
+
+    @Override
+    public Date blocktime()
+    {
+      return block == null ? null : block.time();
+    }
+
+    @Override
+    public String toString()
+    {
+      return "DecodedTransaction{txid=" + txId() + "}";
+    }
+
+    private class DecodedIn implements In
+    {
+      private static final long serialVersionUID = 1L;
+
+      private final int         index;
+
+      DecodedIn(int index)
+      {
+        this.index = index;
+      }
+
+      @Override
+      public boolean isCoinbase()
+      {
+        int outpoint = ins[index * 4];
+        for (int i = 0; i < 32; i++)
+          if (data[outpoint + i] != 0)
+            return false;
+        return new Reader(data, outpoint + 32, outpoint + 36).uint32() == 0xffffffffL;
+      }
+
+      @Override
+      public String coinbase()
+      {
+        return isCoinbase() ? HexCoder.encode(data, ins[index * 4 + 1], ins[index * 4 + 2]) : null;
+      }
+
+      @Override
+      public String txid()
+      {
+        return isCoinbase() ? null : HexCoder.encodeReversed(data, ins[index * 4], 32);
+      }
+
+      @Override
+      public int vout()
+      {
+        return new Reader(data, ins[index * 4] + 32, ins[index * 4] + 36).int32();
+      }
+
+      @Override
+      public String scriptPubKey()
+      {
+        return null;
+      }
+
+      @Override
+      public Map<String, Object> scriptSig()
+      {
+        if (isCoinbase())
+          return null;
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        m.put("asm", ThoughtScript.toAsm(data, ins[index * 4 + 1], ins[index * 4 + 2], true));
+        m.put("hex", HexCoder.encode(data, ins[index * 4 + 1], ins[index * 4 + 2]));
+        return m;
+      }
+
+      @Override
+      public long sequence()
+      {
+        return new Reader(data, ins[index * 4 + 3], ins[index * 4 + 3] + 4).uint32();
+      }
+
+      @Override
+      public RawTransaction getTransaction()
+      {
+        return lookup(client).getRawTransaction(txid());
+      }
+
+      @Override
+      public Out getTransactionOutput()
+      {
+        return getTransaction().vOut().get(vout());
+      }
+    }
+
+    private class DecodedOut implements Out
+    {
+      private static final long serialVersionUID = 1L;
+
+      private final int         index;
+
+      DecodedOut(int index)
+      {
+        this.index = index;
+      }
+
+      @Override
+      public double value()
+      {
+        return values[index] / 100000000.0;
+      }
+
+      @Override
+      public long valueSat()
+      {
+        return values[index];
+      }
+
+      @Override
+      public int n()
+      {
+        return index;
+      }
+
+      @Override
+      public ScriptPubKey scriptPubKey()
+      {
+        final int offset = outs[index * 2];
+        final int length = outs[index * 2 + 1];
+        final ThoughtScript.Destination destination = ThoughtScript.destination(data, offset, length, codec);
+        return new ScriptPubKey()
+        {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          public String asm()
+          {
+            return ThoughtScript.toAsm(data, offset, length, false);
+          }
+
+          @Override
+          public String hex()
+          {
+            return HexCoder.encode(data, offset, length);
+          }
+
+          @Override
+          public int reqSigs()
+          {
+            return destination.reqSigs;
+          }
+
+          @Override
+          public String type()
+          {
+            return destination.type;
+          }
+
+          @Override
+          public List<String> addresses()
+          {
+            return destination.addresses;
+          }
+        };
+      }
+
+      @Override
+      public TxInput toInput()
+      {
+        return new BasicTxInput(txId(), index);
+      }
+
+      @Override
+      public RawTransaction transaction()
+      {
+        return DecodedTransaction.this;
+      }
+    }
+  }
+}
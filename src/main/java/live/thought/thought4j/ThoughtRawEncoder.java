@@ -0,0 +1,181 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import live.thought.thought4j.ThoughtClientInterface.TxInput;
+import live.thought.thought4j.ThoughtClientInterface.TxOutput;
+import live.thought.thought4j.util.HexCoder;
+
+/**
+ * Serializes unsigned transactions locally, producing the same hex as
+ * <code>createrawtransaction</code>: inputs with empty scripts and final
+ * sequence numbers, outputs paying P2PKH or P2SH addresses, lock time zero
+ * unless set. Outputs to the same address are merged into one, in the order
+ * the address first appears, as {@link ThoughtRPCClient#createRawTransaction(List, List)}
+ * does. Amounts are rounded to whole satoshis.
+ */
+public class ThoughtRawEncoder
+{
+  public static final int           DEFAULT_VERSION = 1;
+
+  private static final int          SEQUENCE_FINAL  = 0xffffffff;
+
+  private final ThoughtAddressCodec codec;
+  private int                       version         = DEFAULT_VERSION;
+  private long                      lockTime;
+
+  public ThoughtRawEncoder(ThoughtAddressCodec codec)
+  {
+    this.codec = codec;
+  }
+
+  public ThoughtAddressCodec getAddressCodec()
+  {
+    return codec;
+  }
+
+  public int getVersion()
+  {
+    return version;
+  }
+
+  public void setVersion(int version)
+  {
+    this.version = version;
+  }
+
+  public long getLockTime()
+  {
+    return lockTime;
+  }
+
+  /**
+   * Sets the lock time. Inputs then get sequence number 0xfffffffe so that it
+   * is enforced, as <code>createrawtransaction</code> does.
+   */
+  public void setLockTime(long lockTime)
+  {
+    if (lockTime < 0 || lockTime > 0xffffffffL)
+      throw new IllegalArgumentException("Invalid lock time " + lockTime);
+    this.lockTime = lockTime;
+  }
+
+  /**
+   * Returns the serialized transaction as hex.
+   *
+   * @throws GenericRpcException
+   *           if an address is invalid or an amount negative
+   */
+  public String createRawTransaction(List<? extends TxInput> inputs, List<? extends TxOutput> outputs) throws GenericRpcException
+  {
+    return HexCoder.encode(encodeTransaction(inputs, outputs));
+  }
+
+  /**
+   * Returns the serialized transaction.
+   *
+   * @throws GenericRpcException
+   *           if an address is invalid or an amount negative
+   */
+  public byte[] encodeTransaction(List<? extends TxInput> inputs, List<? extends TxOutput> outputs) throws GenericRpcException
+  {
+    Map<String, Long> amounts = new LinkedHashMap<String, Long>();
+    for (TxOutput o : outputs)
+    {
+      long amount = o.amountSat();
+      if (amount < 0)
+        throw new GenericRpcException("Invalid amount " + o.amount() + " for " + o.address());
+      Long old = amounts.put(o.address(), amount);
+      if (old != null)
+        amounts.put(o.address(), old + amount);
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(10 + inputs.size() * 41 + amounts.size() * 34);
+    writeInt(out, version);
+    writeVarInt(out, inputs.size());
+    int sequence = lockTime == 0 ? SEQUENCE_FINAL : SEQUENCE_FINAL - 1;
+    for (TxInput in : inputs)
+    {
+      byte[] txid = HexCoder.decodeReversed(in.txid());
+      if (txid.length != 32)
+        throw new GenericRpcException("Invalid txid " + in.txid());
+      out.write(txid, 0, 32);
+      writeInt(out, in.vout());
+      writeVarInt(out, 0);
+      writeInt(out, sequence);
+    }
+    writeVarInt(out, amounts.size());
+    for (Map.Entry<String, Long> e : amounts.entrySet())
+    {
+      byte[] script;
+      try
+      {
+        script = codec.toScript(e.getKey());
+      }
+      catch (IllegalArgumentException ex)
+      {
+        throw new GenericRpcException("Invalid Thought address: " + e.getKey(), ex);
+      }
+      long amount = e.getValue();
+      writeInt(out, (int) amount);
+      writeInt(out, (int) (amount >>> 32));
+      writeVarInt(out, script.length);
+      out.write(script, 0, script.length);
+    }
+    writeInt(out, (int) lockTime);
+    return out.toByteArray();
+  }
+
+  private static void writeInt(ByteArrayOutputStream out, int v)
+  {
+    out.write(v);
+    out.write(v >>> 8);
+    out.write(v >>> 16);
+    out.write(v >>> 24);
+  }
+
+  private static void writeVarInt(ByteArrayOutputStream out, long v)
+  {
+    if (v < 0xfd)
+      out.write((int) v);
+    else if (v <= 0xffff)
+    {
+      out.write(0xfd);
+      out.write((int) v);
+      out.write((int) (v >>> 8));
+    }
+    else if (v <= 0xffffffffL)
+    {
+      out.write(0xfe);
+      writeInt(out, (int) v);
+    }
+    else
+    {
+      out.write(0xff);
+      writeInt(out, (int) v);
+      writeInt(out, (int) (v >>> 32));
+    }
+  }
+}
@@ -41,6 +41,21 @@ public class ThoughtRawTxBuilder {
   public ThoughtRawTxBuilder(ThoughtClientInterface thought) {
     this.thought = thought;
   }
+
+  private ThoughtRawEncoder encoder;
+
+  public ThoughtRawEncoder getEncoder() {
+    return encoder;
+  }
+
+  /**
+   * Serializes the transaction locally with the given encoder instead of
+   * calling <code>createrawtransaction</code>. The encoder's address codec and
+   * version must match the node's network; null restores the RPC call.
+   */
+  public void setEncoder(ThoughtRawEncoder encoder) {
+    this.encoder = encoder;
+  }
   public Set<ThoughtClientInterface.TxInput> inputs = new LinkedHashSet<>();
   public List<ThoughtClientInterface.TxOutput> outputs = new ArrayList<>();
 
@@ -48,10 +63,18 @@ public class ThoughtRawTxBuilder {
 
     private static final long serialVersionUID = 1L;
 
+    /** The value of the spent output in satoshis, -1 if not known yet. */
+    private long amount = -1;
+
     public Input(String txid, int vout) {
       super(txid, vout);
     }
 
+    public Input(String txid, int vout, long amount) {
+      super(txid, vout);
+      this.amount = amount;
+    }
+
     public Input(ThoughtClientInterface.TxInput copy) {
       this(copy.txid(), copy.vout());
     }
@@ -74,7 +97,12 @@ public class ThoughtRawTxBuilder {
   }
 
   public ThoughtRawTxBuilder in(ThoughtClientInterface.TxInput in) {
-    inputs.add(new Input(in.txid(), in.vout()));
+    if (in instanceof ThoughtClientInterface.Unspent)
+      inputs.add(new Input(in.txid(), in.vout(), ((ThoughtClientInterface.Unspent) in).amountSat()));
+    else if (in instanceof Input)
+      inputs.add(in);
+    else
+      inputs.add(new Input(in.txid(), in.vout()));
     return this;
   }
 
@@ -83,6 +111,15 @@ public class ThoughtRawTxBuilder {
     return this;
   }
 
+  /**
+   * Adds an input whose value is already known, so that
+   * {@link #outChange(String, double)} need not look it up.
+   */
+  public ThoughtRawTxBuilder in(String txid, int vout, double amount) {
+    inputs.add(new Input(txid, vout, CoinUtil.toSatoshis(amount)));
+    return this;
+  }
+
   public ThoughtRawTxBuilder out(String address, double amount) {
     if (amount <= 0d)
       return this;
@@ -95,18 +132,33 @@ public class ThoughtRawTxBuilder {
   }
 
   public ThoughtRawTxBuilder in(double value, int minConf) throws GenericRpcException {
-    List<ThoughtClientInterface.Unspent> unspent = thought.listUnspent(minConf);
-    double v = value;
-    for (ThoughtClientInterface.Unspent o : unspent) {
-      if (!inputs.contains(new Input(o))) {
-        in(o);
-        v = CoinUtil.normalizeAmount(v - o.amount());
-      }
-      if (v < 0)
-        break;
-    }
-    if (v > 0)
-      throw new GenericRpcException("Not enough bitcoins (" + v + "/" + value + ")");
+    ThoughtCoinSelector.Selection selection = getCoinSelector().select(CoinUtil.toSatoshis(value), minConf, inputs);
+    if (selection == null)
+      throw new GenericRpcException("Not enough coins to fund " + value + " with " + minConf + " confirmations");
+    for (ThoughtClientInterface.Unspent o : selection.coins)
+      in(o);
+    return this;
+  }
+
+  private ThoughtCoinSelector coinSelector;
+
+  /**
+   * Returns the selector used by {@link #in(double, int)}, creating one with
+   * default settings if none was set.
+   */
+  public ThoughtCoinSelector getCoinSelector() {
+    if (coinSelector == null)
+      coinSelector = new ThoughtCoinSelector(thought);
+    return coinSelector;
+  }
+
+  /**
+   * Sets the selector used by {@link #in(double, int)}. Builders sharing one
+   * selector share its snapshot of unspent outputs and never pick the same
+   * output twice.
+   */
+  public ThoughtRawTxBuilder setCoinSelector(ThoughtCoinSelector coinSelector) {
+    this.coinSelector = coinSelector;
     return this;
   }
 
@@ -126,18 +178,46 @@ public class ThoughtRawTxBuilder {
   }
 
   public ThoughtRawTxBuilder outChange(String address, double fee) throws GenericRpcException {
-    double is = 0d;
-    for (ThoughtClientInterface.TxInput i : inputs)
-      is = CoinUtil.normalizeAmount(is + tx(i.txid()).vOut().get(i.vout()).value());
-    double os = fee;
+    fetchPrevouts();
+    long is = 0;
+    for (ThoughtClientInterface.TxInput i : inputs) {
+      long amount = i instanceof Input ? ((Input) i).amount : -1;
+      if (amount < 0)
+        amount = tx(i.txid()).vOut().get(i.vout()).valueSat();
+      is += amount;
+    }
+    long os = CoinUtil.toSatoshis(fee);
     for (ThoughtClientInterface.TxOutput o : outputs)
-      os = CoinUtil.normalizeAmount(os + o.amount());
+      os += o.amountSat();
     if (os < is)
-      out(address, CoinUtil.normalizeAmount(is - os));
+      out(address, CoinUtil.toCoins(is - os));
     return this;
   }
 
+  /**
+   * Fetches the transactions of all inputs of unknown value with one
+   * {@link ThoughtClientInterface#getRawTransactions(List)} call.
+   */
+  private void fetchPrevouts() throws GenericRpcException {
+    Set<String> missing = new LinkedHashSet<>();
+    for (ThoughtClientInterface.TxInput i : inputs)
+      if ((!(i instanceof Input) || ((Input) i).amount < 0) && !txCache.containsKey(i.txid()))
+        missing.add(i.txid());
+    if (missing.size() < 2)
+      return;
+    List<String> txIds = new ArrayList<>(missing);
+    List<ThoughtClientInterface.RawTransaction> txs = thought.getRawTransactions(txIds);
+    for (int n = 0; n < txIds.size(); n++)
+      txCache.put(txIds.get(n), txs.get(n));
+  }
+
+  /**
+   * Serializes the transaction, by <code>createrawtransaction</code> on the
+   * node unless an encoder was set with {@link #setEncoder(ThoughtRawEncoder)}.
+   */
   public String create() throws GenericRpcException {
+    if (encoder != null)
+      return encoder.createRawTransaction(new ArrayList<>(inputs), outputs);
     return thought.createRawTransaction(new ArrayList<>(inputs), outputs);
   }
 
@@ -0,0 +1,329 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import live.thought.thought4j.util.JSON;
+import live.thought.thought4j.util.LazyJSONArray;
+import live.thought.thought4j.util.LazyJSONObject;
+
+/**
+ * A size-bounded cache of RPC results, keyed by method and parameters.
+ *
+ * Install it with {@link ThoughtRPCClient#setResponseCache(ThoughtResponseCache)};
+ * every call made through {@link ThoughtRPCClient#query(String, Object...)},
+ * and so every typed method of the client, then consults it first. What is
+ * cached is decided per method by a {@link Policy}. By default:
+ * <ul>
+ * <li><code>getblock</code>, <code>getblockheader</code> and
+ * <code>getrawtransaction</code> results are kept once they report at least
+ * {@link #DEFAULT_MIN_CONFIRMATIONS} confirmations, or right away when they are
+ * serialized hex;</li>
+ * <li><code>decodescript</code> and <code>decoderawtransaction</code> results
+ * are kept for good;</li>
+ * <li><code>validateaddress</code> results are kept for a minute, since the
+ * wallet fields change when keys are imported;</li>
+ * <li>everything else is never cached.</li>
+ * </ul>
+ *
+ * Cached results are shared between callers and must not be modified. The
+ * confirmation count inside a cached result is the one at the time it was
+ * cached. Entries are evicted least recently used first once the estimated
+ * size of all entries exceeds {@link #getMaxBytes()}.
+ */
+public class ThoughtResponseCache
+{
+  public static final long DEFAULT_MAX_BYTES         = 16 * 1024 * 1024;
+  public static final int  DEFAULT_MIN_CONFIRMATIONS = 6;
+
+  /**
+   * How results of a method are cached.
+   */
+  public static final class Policy
+  {
+    public static final Policy NEVER     = new Policy(-1, -1);
+    public static final Policy IMMUTABLE = new Policy(0, -1);
+
+    final long                 ttl;
+    final int                  minConfirmations;
+
+    private Policy(long ttl, int minConfirmations)
+    {
+      this.ttl = ttl;
+      this.minConfirmations = minConfirmations;
+    }
+
+    /**
+     * Results are kept for the given number of milliseconds.
+     */
+    public static Policy ttl(long millis)
+    {
+      if (millis <= 0)
+        throw new IllegalArgumentException("ttl must be positive");
+      return new Policy(millis, -1);
+    }
+
+    /**
+     * Results are kept for good, but only once they report at least the given
+     * number of confirmations. Results that are not objects (serialized hex) are
+     * kept right away, objects without a confirmations field never.
+     */
+    public static Policy confirmed(int minConfirmations)
+    {
+      return new Policy(0, minConfirmations);
+    }
+
+    @Override
+    public String toString()
+    {
+      if (ttl < 0)
+        return "NEVER";
+      if (ttl > 0)
+        return "TTL " + ttl + "ms";
+      return minConfirmations < 0 ? "IMMUTABLE" : "CONFIRMED " + minConfirmations;
+    }
+  }
+
+  /**
+   * Returned by {@link #get(String)} when there is no usable entry, since null
+   * is a valid result.
+   */
+  static final Object MISS = new Object();
+
+  private static final class Entry
+  {
+    final Object value;
+    final long   expires;
+    final long   size;
+
+    Entry(Object value, long expires, long size)
+    {
+      this.value = value;
+      this.expires = expires;
+      this.size = size;
+    }
+  }
+
+  private final HashMap<String, Policy>       policies = new HashMap<String, Policy>();
+  private final LinkedHashMap<String, Entry>  entries  = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+  private Policy                              defaultPolicy = Policy.NEVER;
+  private long                                maxBytes;
+  private long                                bytes;
+  private long                                hits, misses, evictions;
+
+  public ThoughtResponseCache()
+  {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  public ThoughtResponseCache(long maxBytes)
+  {
+    this.maxBytes = maxBytes;
+    Policy confirmed = Policy.confirmed(DEFAULT_MIN_CONFIRMATIONS);
+    policies.put("getblock", confirmed);
+    policies.put("getblockheader", confirmed);
+    policies.put("getrawtransaction", confirmed);
+    policies.put("decodescript", Policy.IMMUTABLE);
+    policies.put("decoderawtransaction", Policy.IMMUTABLE);
+    policies.put("validateaddress", Policy.ttl(60000));
+  }
+
+  public synchronized Policy getPolicy(String method)
+  {
+    Policy p = policies.get(method);
+    return p == null ? defaultPolicy : p;
+  }
+
+  /**
+   * Sets the policy for a method. Entries already cached for it are kept until
+   * evicted or expired.
+   */
+  public synchronized void setPolicy(String method, Policy policy)
+  {
+    if (policy == null)
+      policies.remove(method);
+    else
+      policies.put(method, policy);
+  }
+
+  public synchronized Policy getDefaultPolicy()
+  {
+    return defaultPolicy;
+  }
+
+  /**
+   * Sets the policy for methods without one of their own. {@link Policy#NEVER}
+   * by default.
+   */
+  public synchronized void setDefaultPolicy(Policy defaultPolicy)
+  {
+    if (defaultPolicy == null)
+      throw new IllegalArgumentException("defaultPolicy must not be null");
+    this.defaultPolicy = defaultPolicy;
+  }
+
+  public synchronized long getMaxBytes()
+  {
+    return maxBytes;
+  }
+
+  public synchronized void setMaxBytes(long maxBytes)
+  {
+    this.maxBytes = maxBytes;
+    trim();
+  }
+
+  /**
+   * The estimated heap size of all entries, in bytes.
+   */
+  public synchronized long getBytes()
+  {
+    return bytes;
+  }
+
+  public synchronized int getSize()
+  {
+    return entries.size();
+  }
+
+  public synchronized long getHits()
+  {
+    return hits;
+  }
+
+  public synchronized long getMisses()
+  {
+    return misses;
+  }
+
+  public synchronized long getEvictions()
+  {
+    return evictions;
+  }
+
+  public synchronized void clear()
+  {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Returns the cache key for a call, or null if the method is never cached.
+   */
+  synchronized String key(String method, Object[] params)
+  {
+    if (getPolicy(method).ttl < 0)
+      return null;
+    return params == null || params.length == 0 ? method : method + JSON.stringify(params);
+  }
+
+  /**
+   * Returns the cached result for a key, or {@link #MISS}.
+   */
+  synchronized Object get(String key)
+  {
+    Entry e = entries.get(key);
+    if (e != null && e.expires != 0 && e.expires <= System.currentTimeMillis())
+    {
+      entries.remove(key);
+      bytes -= e.size;
+      e = null;
+    }
+    if (e == null)
+    {
+      misses++;
+      return MISS;
+    }
+    hits++;
+    return e.value;
+  }
+
+  /**
+   * Stores the result of a call if the method's policy allows it.
+   */
+  synchronized void put(String method, String key, Object value)
+  {
+    Policy p = getPolicy(method);
+    if (p.ttl < 0)
+      return;
+    if (p.minConfirmations >= 0 && value instanceof Map)
+    {
+      Object c = ((Map<?, ?>) value).get("confirmations");
+      if (!(c instanceof Number) || ((Number) c).longValue() < p.minConfirmations)
+        return;
+    }
+    long size = 64 + 2L * key.length() + sizeOf(value);
+    if (size > maxBytes)
+      return;
+    Entry old = entries.put(key, new Entry(value, p.ttl == 0 ? 0 : System.currentTimeMillis() + p.ttl, size));
+    if (old != null)
+      bytes -= old.size;
+    bytes += size;
+    trim();
+  }
+
+  private void trim()
+  {
+    Iterator<Entry> i = entries.values().iterator();
+    while (bytes > maxBytes && i.hasNext())
+    {
+      bytes -= i.next().size;
+      i.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * A rough estimate of the heap used by a decoded JSON value.
+   */
+  static long sizeOf(Object o)
+  {
+    if (o == null || o instanceof Boolean)
+      return 8;
+    if (o instanceof String)
+      return 40 + 2L * ((String) o).length();
+    if (o instanceof Number)
+      return 24;
+    if (o instanceof LazyJSONObject)
+      return 64 + ((LazyJSONObject) o).rawLength();
+    if (o instanceof LazyJSONArray)
+      return 64 + ((LazyJSONArray) o).rawLength();
+    if (o instanceof Map)
+    {
+      long size = 64;
+      for (Map.Entry<?, ?> e : ((Map<?, ?>) o).entrySet())
+        size += 40 + sizeOf(e.getKey()) + sizeOf(e.getValue());
+      return size;
+    }
+    if (o instanceof Collection)
+    {
+      long size = 40;
+      for (Object e : (Collection<?>) o)
+        size += 8 + sizeOf(e);
+      return size;
+    }
+    return 64;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import live.thought.thought4j.util.LatencyHistogram;
+
+/**
+ * A {@link ThoughtMetricsSink} keeping call and error counts, byte counts and
+ * latency histograms per RPC method, e.g.
+ *
+ * <pre>
+ * ThoughtRpcMetrics metrics = new ThoughtRpcMetrics();
+ * client.setMetricsSink(metrics);
+ * ...
+ * ThoughtRpcMetrics.Method m = metrics.get("getblock");
+ * long p99 = m.latency.getValueAtPercentile(99);
+ * long parsing = m.parse.getTotal();
+ * </pre>
+ *
+ * Separate histograms for the connect, server wait, body read and parse
+ * phases tell whether slow calls are spent on the network, in thoughtd or in
+ * JSON decoding. Recording takes no locks and allocates nothing once a method
+ * has been seen.
+ */
+public class ThoughtRpcMetrics implements ThoughtMetricsSink
+{
+  private final ConcurrentHashMap<String, Method> methods = new ConcurrentHashMap<String, Method>();
+
+  /**
+   * The measurements of one RPC method.
+   */
+  public static class Method
+  {
+    public final String           name;
+    public final AtomicLong       calls         = new AtomicLong();
+    public final AtomicLong       errors        = new AtomicLong();
+    public final AtomicLong       bytesSent     = new AtomicLong();
+    public final AtomicLong       bytesReceived = new AtomicLong();
+    /** Call durations, failed calls included. */
+    public final LatencyHistogram latency       = new LatencyHistogram();
+    /** Connection setup, recorded only for calls that opened a connection. */
+    public final LatencyHistogram connect       = new LatencyHistogram();
+    public final LatencyHistogram wait          = new LatencyHistogram();
+    public final LatencyHistogram read          = new LatencyHistogram();
+    public final LatencyHistogram parse         = new LatencyHistogram();
+
+    Method(String name)
+    {
+      this.name = name;
+    }
+
+    @Override
+    public String toString()
+    {
+      return name + ": " + calls + " calls, " + errors + " errors, " + bytesSent + " bytes sent, " + bytesReceived
+          + " received, latency [" + latency + "], wait [" + wait + "], read [" + read + "], parse [" + parse + "]";
+    }
+  }
+
+  @Override
+  public void record(Call call)
+  {
+    Method m = methods.get(call.method);
+    if (m == null)
+    {
+      Method created = new Method(call.method);
+      m = methods.putIfAbsent(call.method, created);
+      if (m == null)
+        m = created;
+    }
+    m.calls.incrementAndGet();
+    if (call.error)
+      m.errors.incrementAndGet();
+    m.bytesSent.addAndGet(call.bytesSent);
+    m.bytesReceived.addAndGet(call.bytesReceived);
+    m.latency.record(call.totalNanos);
+    if (call.connectNanos > 0)
+      m.connect.record(call.connectNanos);
+    if (call.waitNanos > 0 || call.bytesReceived > 0)
+    {
+      m.wait.record(call.waitNanos);
+      m.read.record(call.readNanos);
+      m.parse.record(call.parseNanos);
+    }
+  }
+
+  /**
+   * The measurements of a method, or null if it was never called.
+   */
+  public Method get(String method)
+  {
+    return methods.get(method);
+  }
+
+  /**
+   * The measurements of every method called so far, sorted by name.
+   */
+  public Map<String, Method> getMethods()
+  {
+    return Collections.unmodifiableMap(new TreeMap<String, Method>(methods));
+  }
+
+  /**
+   * Forgets every measurement.
+   */
+  public void clear()
+  {
+    methods.clear();
+  }
+
+  @Override
+  public String toString()
+  {
+    StringBuilder b = new StringBuilder();
+    for (Method m : getMethods().values())
+      b.append(m).append('\n');
+    return b.toString();
+  }
+}
@@ -0,0 +1,315 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import live.thought.thought4j.util.HashUtil;
+import live.thought.thought4j.util.HexCoder;
+
+/**
+ * Read-only helpers for serialized scripts: disassembly in the format thoughtd
+ * uses for "asm" fields, and recognition of the standard output types.
+ */
+public class ThoughtScript
+{
+  public static final String   TYPE_PUBKEY      = "pubkey";
+  public static final String   TYPE_PUBKEYHASH  = "pubkeyhash";
+  public static final String   TYPE_SCRIPTHASH  = "scripthash";
+  public static final String   TYPE_MULTISIG    = "multisig";
+  public static final String   TYPE_NULLDATA    = "nulldata";
+  public static final String   TYPE_NONSTANDARD = "nonstandard";
+
+  private static final int     OP_PUSHDATA1     = 0x4c;
+  private static final int     OP_PUSHDATA2     = 0x4d;
+  private static final int     OP_PUSHDATA4     = 0x4e;
+  private static final int     OP_1             = 0x51;
+  private static final int     OP_16            = 0x60;
+  private static final int     OP_RETURN        = 0x6a;
+  private static final int     OP_CHECKMULTISIG = 0xae;
+
+  private static final String[] OP_NAMES        = new String[256];
+  static
+  {
+    String[] names = { "OP_NOP", "OP_VER", "OP_IF", "OP_NOTIF", "OP_VERIF", "OP_VERNOTIF", "OP_ELSE", "OP_ENDIF", "OP_VERIFY",
+        "OP_RETURN", "OP_TOALTSTACK", "OP_FROMALTSTACK", "OP_2DROP", "OP_2DUP", "OP_3DUP", "OP_2OVER", "OP_2ROT", "OP_2SWAP",
+        "OP_IFDUP", "OP_DEPTH", "OP_DROP", "OP_DUP", "OP_NIP", "OP_OVER", "OP_PICK", "OP_ROLL", "OP_ROT", "OP_SWAP", "OP_TUCK",
+        "OP_CAT", "OP_SUBSTR", "OP_LEFT", "OP_RIGHT", "OP_SIZE", "OP_INVERT", "OP_AND", "OP_OR", "OP_XOR", "OP_EQUAL",
+        "OP_EQUALVERIFY", "OP_RESERVED1", "OP_RESERVED2", "OP_1ADD", "OP_1SUB", "OP_2MUL", "OP_2DIV", "OP_NEGATE", "OP_ABS",
+        "OP_NOT", "OP_0NOTEQUAL", "OP_ADD", "OP_SUB", "OP_MUL", "OP_DIV", "OP_MOD", "OP_LSHIFT", "OP_RSHIFT", "OP_BOOLAND",
+        "OP_BOOLOR", "OP_NUMEQUAL", "OP_NUMEQUALVERIFY", "OP_NUMNOTEQUAL", "OP_LESSTHAN", "OP_GREATERTHAN",
+        "OP_LESSTHANOREQUAL", "OP_GREATERTHANOREQUAL", "OP_MIN", "OP_MAX", "OP_WITHIN", "OP_RIPEMD160", "OP_SHA1", "OP_SHA256",
+        "OP_HASH160", "OP_HASH256", "OP_CODESEPARATOR", "OP_CHECKSIG", "OP_CHECKSIGVERIFY", "OP_CHECKMULTISIG",
+        "OP_CHECKMULTISIGVERIFY", "OP_NOP1", "OP_CHECKLOCKTIMEVERIFY", "OP_CHECKSEQUENCEVERIFY", "OP_NOP4", "OP_NOP5", "OP_NOP6",
+        "OP_NOP7", "OP_NOP8", "OP_NOP9", "OP_NOP10" };
+    for (int i = 0; i < OP_NAMES.length; i++)
+      OP_NAMES[i] = "OP_UNKNOWN";
+    OP_NAMES[0] = "0";
+    OP_NAMES[OP_PUSHDATA1] = "OP_PUSHDATA1";
+    OP_NAMES[OP_PUSHDATA2] = "OP_PUSHDATA2";
+    OP_NAMES[OP_PUSHDATA4] = "OP_PUSHDATA4";
+    OP_NAMES[0x4f] = "-1";
+    OP_NAMES[0x50] = "OP_RESERVED";
+    for (int i = OP_1; i <= OP_16; i++)
+      OP_NAMES[i] = String.valueOf(i - OP_1 + 1);
+    System.arraycopy(names, 0, OP_NAMES, 0x61, names.length);
+    OP_NAMES[0xff] = "OP_INVALIDOPCODE";
+  }
+
+  private static final String[] SIGHASH_NAMES   = { null, "[ALL]", "[NONE]", "[SINGLE]" };
+
+  private ThoughtScript()
+  {
+  }
+
+  /**
+   * Iterates over the operations of a script. {@link #next()} returns the
+   * opcode, or -1 at the end; pushed data is described by
+   * {@link #dataOffset} and {@link #dataLength}.
+   */
+  static class Parser
+  {
+    final byte[] script;
+    final int    end;
+    int          pos;
+    int          dataOffset;
+    int          dataLength;
+    boolean      error;
+
+    Parser(byte[] script, int offset, int length)
+    {
+      this.script = script;
+      this.pos = offset;
+      this.end = offset + length;
+    }
+
+    int next()
+    {
+      if (pos >= end || error)
+        return -1;
+      int opcode = script[pos++] & 0xff;
+      dataOffset = pos;
+      dataLength = 0;
+      if (opcode <= OP_PUSHDATA4)
+      {
+        long n;
+        if (opcode < OP_PUSHDATA1)
+          n = opcode;
+        else
+        {
+          int size = opcode == OP_PUSHDATA1 ? 1 : opcode == OP_PUSHDATA2 ? 2 : 4;
+          if (end - pos < size)
+            return fail();
+          n = 0;
+          for (int i = 0; i < size; i++)
+            n |= (long) (script[pos + i] & 0xff) << (8 * i);
+          pos += size;
+        }
+        if (n > end - pos)
+          return fail();
+        dataOffset = pos;
+        dataLength = (int) n;
+        pos += n;
+      }
+      return opcode;
+    }
+
+    private int fail()
+    {
+      error = true;
+      pos = end;
+      return -1;
+    }
+  }
+
+  public static String toAsm(byte[] script)
+  {
+    return toAsm(script, 0, script.length, false);
+  }
+
+  /**
+   * Disassembles a script. Pushes of up to four bytes are shown as numbers,
+   * longer ones as hex.
+   *
+   * @param decodeSignatures
+   *          show the sighash type of signatures, as done for scriptSig
+   */
+  public static String toAsm(byte[] script, int offset, int length, boolean decodeSignatures)
+  {
+    StringBuilder b = new StringBuilder(length * 2 + 16);
+    boolean unspendable = length > 0 && (script[offset] & 0xff) == OP_RETURN;
+    Parser p = new Parser(script, offset, length);
+    int opcode;
+    while ((opcode = p.next()) != -1)
+    {
+      if (b.length() > 0)
+        b.append(' ');
+      if (opcode <= OP_PUSHDATA4)
+      {
+        if (p.dataLength <= 4)
+          b.append(scriptNum(script, p.dataOffset, p.dataLength));
+        else if (decodeSignatures && !unspendable && isSignature(script, p.dataOffset, p.dataLength))
+        {
+          int hashType = script[p.dataOffset + p.dataLength - 1] & 0xff;
+          b.append(HexCoder.encode(script, p.dataOffset, p.dataLength - 1));
+          b.append(SIGHASH_NAMES[hashType & 0x1f]);
+          if ((hashType & 0x80) != 0)
+            b.insert(b.length() - 1, "|ANYONECANPAY");
+        }
+        else
+          b.append(HexCoder.encode(script, p.dataOffset, p.dataLength));
+      }
+      else
+        b.append(OP_NAMES[opcode]);
+    }
+    if (p.error)
+      b.append(b.length() > 0 ? " [error]" : "[error]");
+    return b.toString();
+  }
+
+  /**
+   * Decodes a minimally encoded script number of up to eight bytes.
+   */
+  static long scriptNum(byte[] data, int offset, int length)
+  {
+    if (length == 0)
+      return 0;
+    long result = 0;
+    for (int i = 0; i < length; i++)
+      result |= (long) (data[offset + i] & 0xff) << (8 * i);
+    if ((data[offset + length - 1] & 0x80) != 0)
+      return -(result & ~(0x80L << (8 * (length - 1))));
+    return result;
+  }
+
+  // Strict DER signature followed by a defined sighash type
+  private static boolean isSignature(byte[] s, int off, int len)
+  {
+    if (len < 9 || len > 73)
+      return false;
+    if ((s[off] & 0xff) != 0x30 || (s[off + 1] & 0xff) != len - 3)
+      return false;
+    int lenR = s[off + 3] & 0xff;
+    if (5 + lenR >= len)
+      return false;
+    int lenS = s[off + 5 + lenR] & 0xff;
+    if (lenR + lenS + 7 != len)
+      return false;
+    if (s[off + 2] != 0x02 || lenR == 0 || (s[off + 4] & 0x80) != 0)
+      return false;
+    if (lenR > 1 && s[off + 4] == 0 && (s[off + 5] & 0x80) == 0)
+      return false;
+    if (s[off + lenR + 4] != 0x02 || lenS == 0 || (s[off + lenR + 6] & 0x80) != 0)
+      return false;
+    if (lenS > 1 && s[off + lenR + 6] == 0 && (s[off + lenR + 7] & 0x80) == 0)
+      return false;
+    int hashType = (s[off + len - 1] & 0xff) & ~0x80;
+    return hashType >= 1 && hashType <= 3;
+  }
+
+  /**
+   * The standard type of an output script and the addresses it pays to.
+   */
+  public static class Destination
+  {
+    public final String       type;
+    public final int          reqSigs;
+    public final List<String> addresses;
+
+    Destination(String type, int reqSigs, List<String> addresses)
+    {
+      this.type = type;
+      this.reqSigs = reqSigs;
+      this.addresses = addresses;
+    }
+  }
+
+  private static boolean isPubKey(byte[] s, int off, int len)
+  {
+    if (len == 33)
+      return s[off] == 0x02 || s[off] == 0x03;
+    if (len == 65)
+      return s[off] == 0x04 || s[off] == 0x06 || s[off] == 0x07;
+    return false;
+  }
+
+  /**
+   * Recognizes the standard output types. For non-standard and data outputs
+   * reqSigs is 0 and addresses is null, as those fields are missing from the
+   * JSON thoughtd returns.
+   */
+  public static Destination destination(byte[] s, int off, int len, ThoughtAddressCodec codec)
+  {
+    if (len == 25 && (s[off] & 0xff) == 0x76 && (s[off + 1] & 0xff) == 0xa9 && s[off + 2] == 20 && (s[off + 23] & 0xff) == 0x88
+        && (s[off + 24] & 0xff) == 0xac)
+      return new Destination(TYPE_PUBKEYHASH, 1, Collections.singletonList(codec.pubKeyHashAddress(s, off + 3)));
+    if (len == 23 && (s[off] & 0xff) == 0xa9 && s[off + 1] == 20 && (s[off + 22] & 0xff) == 0x87)
+      return new Destination(TYPE_SCRIPTHASH, 1, Collections.singletonList(codec.scriptHashAddress(s, off + 2)));
+    if ((len == 35 || len == 67) && s[off] == len - 2 && (s[off + len - 1] & 0xff) == 0xac && isPubKey(s, off + 1, len - 2))
+      return new Destination(TYPE_PUBKEY, 1,
+          Collections.singletonList(codec.pubKeyHashAddress(HashUtil.hash160(s, off + 1, len - 2), 0)));
+
+    Parser p = new Parser(s, off, len);
+    int first = p.next();
+    if (first == OP_RETURN)
+    {
+      int op;
+      while ((op = p.next()) != -1)
+        if (op > OP_16)
+          return new Destination(TYPE_NONSTANDARD, 0, null);
+      return p.error ? new Destination(TYPE_NONSTANDARD, 0, null) : new Destination(TYPE_NULLDATA, 0, null);
+    }
+    if (first >= OP_1 && first <= OP_16 && len > 0 && (s[off + len - 1] & 0xff) == OP_CHECKMULTISIG)
+    {
+      int required = first - OP_1 + 1;
+      List<String> addresses = new ArrayList<String>();
+      int op;
+      while ((op = p.next()) != -1)
+      {
+        if (op <= OP_PUSHDATA4 && isPubKey(s, p.dataOffset, p.dataLength))
+          addresses.add(codec.pubKeyHashAddress(HashUtil.hash160(s, p.dataOffset, p.dataLength), 0));
+        else
+          break;
+      }
+      if (op >= OP_1 && op <= OP_16 && op - OP_1 + 1 == addresses.size() && required <= addresses.size()
+          && p.next() == OP_CHECKMULTISIG && p.next() == -1 && !p.error)
+        return new Destination(TYPE_MULTISIG, required, addresses);
+    }
+    return new Destination(TYPE_NONSTANDARD, 0, null);
+  }
+
+  /**
+   * The block height pushed at the start of a coinbase script (BIP34), or -1.
+   */
+  public static int coinbaseHeight(byte[] s, int off, int len)
+  {
+    Parser p = new Parser(s, off, len);
+    int op = p.next();
+    if (op == 0)
+      return 0;
+    if (op >= OP_1 && op <= OP_16)
+      return op - OP_1 + 1;
+    if (op > 0 && op <= OP_PUSHDATA4 && p.dataLength <= 4)
+      return (int) scriptNum(s, p.dataOffset, p.dataLength);
+    return -1;
+  }
+}
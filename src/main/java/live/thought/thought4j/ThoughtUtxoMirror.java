@@ -0,0 +1,428 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import live.thought.thought4j.ThoughtClientInterface.RawTransaction;
+import live.thought.thought4j.ThoughtClientInterface.Transaction;
+import live.thought.thought4j.ThoughtClientInterface.TransactionsSinceBlock;
+import live.thought.thought4j.ThoughtClientInterface.Unspent;
+import live.thought.thought4j.util.CoinUtil;
+import live.thought.thought4j.util.OutPointMap;
+
+/**
+ * A local copy of the wallet's unspent outputs, for wallets too large to call
+ * <code>listunspent</code> often.
+ *
+ * The mirror is seeded with one <code>listunspent</code> call, plus a
+ * <code>listsinceblock</code> over the last {@link #COINBASE_MATURITY} blocks
+ * for the immature coinbase outputs <code>listunspent</code> leaves out. Each
+ * {@link #update()} then asks <code>listsinceblock</code> for what changed
+ * since the previous one:
+ * <ul>
+ * <li>receive entries add outputs;</li>
+ * <li>transactions with send entries spent wallet outputs, so they are fetched
+ * with {@link ThoughtClientInterface#getWalletTransactions(List)}, which
+ * {@link ThoughtRPCClient} answers with one batch of <code>gettransaction</code>;
+ * their inputs are removed and their outputs that the node lists neither as
+ * sent nor as received, the change, are added;</li>
+ * <li>entries that gained their first confirmation fix the height of their
+ * outputs.</li>
+ * </ul>
+ * Immature coinbase outputs are held back until they mature. A conflicted or
+ * orphaned transaction makes the mirror seed itself again.
+ *
+ * Outputs are stored in an {@link OutPointMap}, so balances and lookups need
+ * no RPC and no per-output objects. Unlike <code>listunspent</code> the mirror
+ * does not know about locked outputs, nor about spends that create no entries
+ * at all, such as a transaction paying only to change addresses; call
+ * {@link #seed()} now and then to catch up with those.
+ */
+public class ThoughtUtxoMirror
+{
+  public static final int                     COINBASE_MATURITY = 100;
+
+  private final ThoughtClientInterface        thought;
+  private final OutPointMap                   utxos             = new OutPointMap();
+  private final OutPointMap                   immature          = new OutPointMap();
+  /** Processed transactions without confirmation, with the outputs they added. */
+  private final HashMap<String, List<Integer>> unconfirmed       = new HashMap<String, List<Integer>>();
+  /** Outputs listed as not spendable or not solvable, as "txid:vout". */
+  private final HashSet<String>               unspendable       = new HashSet<String>();
+  private final HashSet<String>               unsolvable        = new HashSet<String>();
+  private String                              lastBlock;
+  private int                                 tipHeight         = -1;
+  private long                                seeds;
+
+  public ThoughtUtxoMirror(ThoughtClientInterface thought)
+  {
+    this.thought = thought;
+  }
+
+  public synchronized String getLastBlock()
+  {
+    return lastBlock;
+  }
+
+  public synchronized int getTipHeight()
+  {
+    return tipHeight;
+  }
+
+  /**
+   * Returns the number of times the mirror was seeded.
+   */
+  public synchronized long getSeeds()
+  {
+    return seeds;
+  }
+
+  /**
+   * Replaces the mirror's content with the result of <code>listunspent</code>
+   * and the immature coinbase outputs of the last
+   * {@link #COINBASE_MATURITY} blocks.
+   */
+  public synchronized void seed() throws GenericRpcException
+  {
+    String best = thought.getBestBlockHash();
+    int height = thought.getBlockHeight(best);
+    List<Unspent> list = thought.listUnspent(0);
+    TransactionsSinceBlock recent = height < COINBASE_MATURITY ? thought.listSinceBlock()
+        : thought.listSinceBlock(thought.getBlockHash(height - COINBASE_MATURITY));
+    utxos.clear();
+    immature.clear();
+    unconfirmed.clear();
+    unspendable.clear();
+    unsolvable.clear();
+    for (Unspent u : list)
+    {
+      int confirmations = u.confirmations();
+      if (confirmations > 0)
+        utxos.put(u.txid(), u.vout(), u.amountSat(), height - confirmations + 1);
+      else
+      {
+        utxos.put(u.txid(), u.vout(), u.amountSat(), OutPointMap.UNCONFIRMED);
+        addUnconfirmed(u.txid(), u.vout());
+      }
+      if (!u.spendable())
+        unspendable.add(key(u.txid(), u.vout()));
+      if (!u.solvable())
+        unsolvable.add(key(u.txid(), u.vout()));
+    }
+    for (Transaction t : recent.transactions())
+      if ("immature".equals(t.category()) && t.confirmations() > 0)
+        immature.put(t.txId(), t.vout(), t.amountSat(), height - t.confirmations() + 1);
+    lastBlock = best;
+    tipHeight = height;
+    seeds++;
+  }
+
+  /**
+   * Brings the mirror up to date, seeding it first if needed.
+   *
+   * @return the number of outputs added, removed or confirmed
+   */
+  public synchronized int update() throws GenericRpcException
+  {
+    if (lastBlock == null)
+    {
+      seed();
+      return utxos.size();
+    }
+    TransactionsSinceBlock delta = thought.listSinceBlock(lastBlock);
+    String tip = delta.lastBlock();
+    int height = thought.getBlockHeight(tip);
+
+    Map<String, List<Transaction>> byTx = new LinkedHashMap<String, List<Transaction>>();
+    for (Transaction t : delta.transactions())
+    {
+      if (t.confirmations() < 0 || "orphan".equals(t.category()))
+      {
+        seed();
+        return utxos.size();
+      }
+      List<Transaction> entries = byTx.get(t.txId());
+      if (entries == null)
+        byTx.put(t.txId(), entries = new ArrayList<Transaction>());
+      entries.add(t);
+    }
+
+    int changes = 0;
+    Map<String, Set<Integer>> debits = new LinkedHashMap<String, Set<Integer>>();
+    Map<String, Integer> debitHeights = new HashMap<String, Integer>();
+    for (Map.Entry<String, List<Transaction>> e : byTx.entrySet())
+    {
+      String txid = e.getKey();
+      int confirmations = e.getValue().get(0).confirmations();
+      int txHeight = confirmations > 0 ? height - confirmations + 1 : OutPointMap.UNCONFIRMED;
+      List<Integer> pending = unconfirmed.get(txid);
+      if (pending != null)
+      {
+        if (confirmations > 0)
+        {
+          for (int vout : pending)
+            utxos.setHeight(txid, vout, txHeight);
+          unconfirmed.remove(txid);
+          changes += pending.size();
+        }
+        continue;
+      }
+      if (confirmations == 0)
+        unconfirmed.put(txid, new ArrayList<Integer>());
+      Set<Integer> listed = new HashSet<Integer>();
+      boolean debit = false;
+      for (Transaction t : e.getValue())
+      {
+        String category = t.category();
+        if ("send".equals(category))
+          debit = true;
+        else if ("immature".equals(category))
+          immature.put(txid, t.vout(), t.amountSat(), txHeight);
+        else if ("receive".equals(category) || "generate".equals(category))
+        {
+          put(txid, t.vout(), t.amountSat(), txHeight);
+          changes++;
+        }
+        listed.add(t.vout());
+      }
+      if (debit)
+      {
+        debits.put(txid, listed);
+        debitHeights.put(txid, txHeight);
+      }
+    }
+    if (!debits.isEmpty())
+      changes += applyDebits(debits, debitHeights);
+    changes += mature(height);
+
+    lastBlock = tip;
+    tipHeight = height;
+    return changes;
+  }
+
+  /**
+   * Fetches and decodes the transactions spending wallet outputs, adds their
+   * change and then removes what they spent, so that change spent within the
+   * same update does not survive.
+   */
+  private int applyDebits(Map<String, Set<Integer>> debits, Map<String, Integer> heights) throws GenericRpcException
+  {
+    List<RawTransaction> decoded = thought.getWalletTransactions(new ArrayList<String>(debits.keySet()));
+    int changes = 0;
+    int n = 0;
+    for (Map.Entry<String, Set<Integer>> e : debits.entrySet())
+    {
+      RawTransaction tx = decoded.get(n++);
+      for (RawTransaction.Out out : tx.vOut())
+        if (!e.getValue().contains(out.n()))
+        {
+          put(e.getKey(), out.n(), out.valueSat(), heights.get(e.getKey()));
+          changes++;
+        }
+    }
+    for (RawTransaction tx : decoded)
+      for (RawTransaction.In in : tx.vIn())
+        if (!in.isCoinbase() && utxos.remove(in.txid(), in.vout()) >= 0)
+        {
+          String key = key(in.txid(), in.vout());
+          unspendable.remove(key);
+          unsolvable.remove(key);
+          changes++;
+        }
+    return changes;
+  }
+
+  private static String key(String txid, int vout)
+  {
+    return txid + ":" + vout;
+  }
+
+  private void put(String txid, int vout, long amount, int height)
+  {
+    utxos.put(txid, vout, amount, height);
+    if (height == OutPointMap.UNCONFIRMED)
+      addUnconfirmed(txid, vout);
+  }
+
+  private void addUnconfirmed(String txid, int vout)
+  {
+    List<Integer> vouts = unconfirmed.get(txid);
+    if (vouts == null)
+      unconfirmed.put(txid, vouts = new ArrayList<Integer>());
+    vouts.add(vout);
+  }
+
+  private int mature(int height)
+  {
+    if (immature.size() == 0)
+      return 0;
+    final List<Object[]> ripe = new ArrayList<Object[]>();
+    immature.forEach(height - COINBASE_MATURITY + 1, new OutPointMap.Visitor()
+    {
+      @Override
+      public void visit(String txid, int vout, long amount, int h)
+      {
+        ripe.add(new Object[] { txid, vout, amount, h });
+      }
+    });
+    for (Object[] o : ripe)
+    {
+      immature.remove((String) o[0], (Integer) o[1]);
+      utxos.put((String) o[0], (Integer) o[1], (Long) o[2], (Integer) o[3]);
+    }
+    return ripe.size();
+  }
+
+  public synchronized int size()
+  {
+    return utxos.size();
+  }
+
+  public synchronized boolean contains(String txid, int vout)
+  {
+    return utxos.contains(txid, vout);
+  }
+
+  /**
+   * Returns the amount of an unspent output in satoshis, or -1 if the mirror
+   * does not hold it.
+   */
+  public synchronized long getAmountSat(String txid, int vout)
+  {
+    return utxos.getAmount(txid, vout);
+  }
+
+  /**
+   * Returns the sum of the unspent outputs with at least the given number of
+   * confirmations, in satoshis, as of the last update.
+   */
+  public synchronized long getBalanceSat(int minConf)
+  {
+    return minConf <= 0 ? utxos.total() : utxos.sum(tipHeight - minConf + 1);
+  }
+
+  /**
+   * Lists the unspent outputs with at least the given number of confirmations,
+   * as of the last update. Only txid, vout, amount, confirmations and the
+   * spendable and solvable flags are known.
+   */
+  public synchronized List<Unspent> listUnspent(int minConf)
+  {
+    final List<Unspent> list = new ArrayList<Unspent>(utxos.size());
+    final int tip = tipHeight;
+    utxos.forEach(minConf <= 0 ? OutPointMap.UNCONFIRMED : tip - minConf + 1, new OutPointMap.Visitor()
+    {
+      @Override
+      public void visit(String txid, int vout, long amount, int height)
+      {
+        String key = key(txid, vout);
+        list.add(new MirroredUnspent(txid, vout, amount, height == OutPointMap.UNCONFIRMED ? 0 : tip - height + 1,
+            !unspendable.contains(key), !unsolvable.contains(key)));
+      }
+    });
+    return list;
+  }
+
+  private static class MirroredUnspent extends ThoughtClientInterface.BasicTxInput implements Unspent
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final long        amount;
+    private final int         confirmations;
+    private final boolean     spendable;
+    private final boolean     solvable;
+
+    MirroredUnspent(String txid, int vout, long amount, int confirmations, boolean spendable, boolean solvable)
+    {
+      super(txid, vout);
+      this.amount = amount;
+      this.confirmations = confirmations;
+      this.spendable = spendable;
+      this.solvable = solvable;
+    }
+
+    @Override
+    public String address()
+    {
+      return null;
+    }
+
+    @Override
+    public String account()
+    {
+      return null;
+    }
+
+    @Override
+    public String scriptPubKey()
+    {
+      return null;
+    }
+
+    @Override
+    public double amount()
+    {
+      return CoinUtil.toCoins(amount);
+    }
+
+    @Override
+    public long amountSat()
+    {
+      return amount;
+    }
+
+    @Override
+    public int confirmations()
+    {
+      return confirmations;
+    }
+
+    @Override
+    public boolean spendable()
+    {
+      return spendable;
+    }
+
+    @Override
+    public boolean solvable()
+    {
+      return solvable;
+    }
+
+    @Override
+    public int ps_rounds()
+    {
+      return -1;
+    }
+
+    @Override
+    public String toString()
+    {
+      return txid + ":" + vout + " " + CoinUtil.format(amount);
+    }
+  }
+}
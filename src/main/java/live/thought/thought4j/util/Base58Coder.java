@@ -0,0 +1,132 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import java.util.Arrays;
+
+/**
+ * Base58 and Base58Check encoding as used for Thought addresses and keys.
+ */
+public class Base58Coder
+{
+  private static final char[] ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
+  private static final int[]  INDEXES  = new int[128];
+  static
+  {
+    Arrays.fill(INDEXES, -1);
+    for (int i = 0; i < ALPHABET.length; i++)
+      INDEXES[ALPHABET[i]] = i;
+  }
+
+  public static String encode(byte[] input)
+  {
+    if (input.length == 0)
+      return "";
+    int zeros = 0;
+    while (zeros < input.length && input[zeros] == 0)
+      zeros++;
+    byte[] number = Arrays.copyOf(input, input.length);
+    char[] encoded = new char[input.length * 2];
+    int out = encoded.length;
+    for (int start = zeros; start < number.length;)
+    {
+      encoded[--out] = ALPHABET[divmod(number, start, 256, 58)];
+      if (number[start] == 0)
+        start++;
+    }
+    while (out < encoded.length && encoded[out] == ALPHABET[0])
+      out++;
+    while (--zeros >= 0)
+      encoded[--out] = ALPHABET[0];
+    return new String(encoded, out, encoded.length - out);
+  }
+
+  public static byte[] decode(String input)
+  {
+    if (input.isEmpty())
+      return new byte[0];
+    byte[] input58 = new byte[input.length()];
+    for (int i = 0; i < input.length(); i++)
+    {
+      char c = input.charAt(i);
+      int digit = c < 128 ? INDEXES[c] : -1;
+      if (digit < 0)
+        throw new IllegalArgumentException("Invalid Base58 character '" + c + "' at " + i);
+      input58[i] = (byte) digit;
+    }
+    int zeros = 0;
+    while (zeros < input58.length && input58[zeros] == 0)
+      zeros++;
+    byte[] decoded = new byte[input.length()];
+    int out = decoded.length;
+    for (int start = zeros; start < input58.length;)
+    {
+      decoded[--out] = divmod(input58, start, 58, 256);
+      if (input58[start] == 0)
+        start++;
+    }
+    while (out < decoded.length && decoded[out] == 0)
+      out++;
+    return Arrays.copyOfRange(decoded, out - zeros, decoded.length);
+  }
+
+  /**
+   * Appends the first four bytes of the double SHA-256 of the payload and
+   * encodes the result.
+   */
+  public static String encodeChecked(byte[] payload)
+  {
+    byte[] checksum = HashUtil.sha256d(payload);
+    byte[] data = Arrays.copyOf(payload, payload.length + 4);
+    System.arraycopy(checksum, 0, data, payload.length, 4);
+    return encode(data);
+  }
+
+  /**
+   * Decodes a Base58Check string and verifies its checksum.
+   *
+   * @return the payload without the checksum
+   */
+  public static byte[] decodeChecked(String input)
+  {
+    byte[] data = decode(input);
+    if (data.length < 4)
+      throw new IllegalArgumentException("Base58Check string too short");
+    byte[] payload = Arrays.copyOf(data, data.length - 4);
+    byte[] checksum = HashUtil.sha256d(payload);
+    for (int i = 0; i < 4; i++)
+      if (checksum[i] != data[payload.length + i])
+        throw new IllegalArgumentException("Invalid Base58Check checksum");
+    return payload;
+  }
+
+  // Divides number, a big-endian integer in the given base, in place
+  private static byte divmod(byte[] number, int start, int base, int divisor)
+  {
+    int remainder = 0;
+    for (int i = start; i < number.length; i++)
+    {
+      int temp = remainder * base + (number[i] & 0xff);
+      number[i] = (byte) (temp / divisor);
+      remainder = temp % divisor;
+    }
+    return (byte) remainder;
+  }
+}
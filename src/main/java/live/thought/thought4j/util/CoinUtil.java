@@ -23,18 +23,121 @@
 
 package live.thought.thought4j.util;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
 /**
  *
  * @author Mikhail Yevchenko m.ṥῥẚɱ.ѓѐḿởύḙ@azazar.com
  */
 public class CoinUtil
 {
+  /** The number of satoshis in one coin. */
+  public static final long COIN = 100000000L;
 
   public static double normalizeAmount(double amount)
   {
     return (long) (0.5d + (amount / 0.00000001)) * 0.00000001;
   }
 
+  /**
+   * Converts an amount in coins to satoshis, rounding to the nearest one.
+   */
+  public static long toSatoshis(double amount)
+  {
+    return Math.round(amount * 100000000d);
+  }
+
+  /**
+   * Converts an amount in coins to satoshis. Decimals from the JSON parsers and
+   * integral numbers are converted exactly, without floating point.
+   *
+   * @throws ArithmeticException
+   *           if the result does not fit in a long
+   */
+  public static long toSatoshis(Number amount)
+  {
+    if (amount instanceof JSONDecimal)
+      return ((JSONDecimal) amount).satoshis();
+    if (amount instanceof Long || amount instanceof Integer || amount instanceof Short || amount instanceof Byte)
+      return Math.multiplyExact(amount.longValue(), COIN);
+    if (amount instanceof BigDecimal)
+      return ((BigDecimal) amount).movePointRight(8).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    return toSatoshis(amount.doubleValue());
+  }
+
+  /**
+   * Parses an amount in coins, such as "12.5", into satoshis without floating
+   * point.
+   *
+   * @throws NumberFormatException
+   *           if the text is not a plain decimal number
+   */
+  public static long parseSatoshis(String amount)
+  {
+    JSONDecimal d = JSONDecimal.parse(amount);
+    if (d != null)
+      return d.satoshis();
+    try
+    {
+      return Math.multiplyExact(Long.parseLong(amount), COIN);
+    }
+    catch (ArithmeticException ex)
+    {
+      throw new NumberFormatException("Amount out of range: " + amount);
+    }
+  }
+
+  /**
+   * Converts satoshis to coins, the nearest double to the exact amount.
+   */
+  public static double toCoins(long satoshis)
+  {
+    return satoshis / 100000000d;
+  }
+
+  /**
+   * Returns the amount as a decimal number with eight fraction digits, as the
+   * node prints amounts.
+   */
+  public static String format(long satoshis)
+  {
+    return new JSONDecimal(satoshis, 8).toString();
+  }
+
+  /**
+   * Returns the amount as a number that the JSON writers print exactly.
+   */
+  public static Number toJSON(long satoshis)
+  {
+    return new JSONDecimal(satoshis, 8);
+  }
+
+  /**
+   * Adds amounts in satoshis.
+   *
+   * @throws ArithmeticException
+   *           on overflow
+   */
+  public static long sum(long... satoshis)
+  {
+    long sum = 0;
+    for (long s : satoshis)
+      sum = Math.addExact(sum, s);
+    return sum;
+  }
+
+  /**
+   * Returns the fee for a transaction of the given size at a rate in satoshis
+   * per 1000 bytes. Like the node, the fee is rounded down but never zero for
+   * a positive rate.
+   */
+  public static long fee(long satoshisPerKb, int bytes)
+  {
+    long fee = Math.multiplyExact(satoshisPerKb, (long) bytes) / 1000;
+    return fee == 0 && satoshisPerKb > 0 && bytes > 0 ? 1 : fee;
+  }
+
   // public static void main(String[] args) {
   // NumberFormat f = new DecimalFormat("#.#########");
   // System.out.println(f.format(normalizeAmount(1d)) + ":\n1");
@@ -0,0 +1,159 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The hash functions used by Thought scripts and serialization.
+ */
+public class HashUtil
+{
+  private static MessageDigest sha256Digest()
+  {
+    try
+    {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException ex)
+    {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  public static byte[] sha256(byte[] data)
+  {
+    return sha256Digest().digest(data);
+  }
+
+  public static byte[] sha256d(byte[] data)
+  {
+    return sha256d(data, 0, data.length);
+  }
+
+  /**
+   * Double SHA-256, used for txids, block hashes and checksums.
+   */
+  public static byte[] sha256d(byte[] data, int offset, int length)
+  {
+    MessageDigest md = sha256Digest();
+    md.update(data, offset, length);
+    return md.digest(md.digest());
+  }
+
+  /**
+   * RIPEMD-160 of SHA-256, used for public key and script hashes.
+   */
+  public static byte[] hash160(byte[] data, int offset, int length)
+  {
+    MessageDigest md = sha256Digest();
+    md.update(data, offset, length);
+    return ripemd160(md.digest());
+  }
+
+  public static byte[] hash160(byte[] data)
+  {
+    return hash160(data, 0, data.length);
+  }
+
+  // RIPEMD-160, which the standard JCE providers do not offer
+
+  private static final int[] RL = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 7, 4, 13, 1, 10, 6, 15, 3, 12, 0, 9, 5,
+      2, 14, 11, 8, 3, 10, 14, 4, 9, 15, 8, 1, 2, 7, 0, 6, 13, 11, 5, 12, 1, 9, 11, 10, 0, 8, 12, 4, 13, 3, 7, 15, 14, 5, 6, 2, 4, 0,
+      5, 9, 7, 12, 2, 10, 14, 1, 3, 8, 11, 6, 15, 13 };
+  private static final int[] RR = { 5, 14, 7, 0, 9, 2, 11, 4, 13, 6, 15, 8, 1, 10, 3, 12, 6, 11, 3, 7, 0, 13, 5, 10, 14, 15, 8, 12,
+      4, 9, 1, 2, 15, 5, 1, 3, 7, 14, 6, 9, 11, 8, 12, 2, 10, 0, 4, 13, 8, 6, 4, 1, 3, 11, 15, 0, 5, 12, 2, 13, 9, 7, 10, 14, 12, 15,
+      10, 4, 1, 5, 8, 7, 6, 2, 13, 14, 0, 3, 9, 11 };
+  private static final int[] SL = { 11, 14, 15, 12, 5, 8, 7, 9, 11, 13, 14, 15, 6, 7, 9, 8, 7, 6, 8, 13, 11, 9, 7, 15, 7, 12, 15, 9,
+      11, 7, 13, 12, 11, 13, 6, 7, 14, 9, 13, 15, 14, 8, 13, 6, 5, 12, 7, 5, 11, 12, 14, 15, 14, 15, 9, 8, 9, 14, 5, 6, 8, 6, 5, 12,
+      9, 15, 5, 11, 6, 8, 13, 12, 5, 12, 13, 14, 11, 8, 5, 6 };
+  private static final int[] SR = { 8, 9, 9, 11, 13, 15, 15, 5, 7, 7, 8, 11, 14, 14, 12, 6, 9, 13, 15, 7, 12, 8, 9, 11, 7, 7, 12, 7,
+      6, 15, 13, 11, 9, 7, 15, 11, 8, 6, 6, 14, 12, 13, 5, 14, 13, 13, 7, 5, 15, 5, 8, 11, 14, 14, 6, 14, 6, 9, 12, 9, 12, 5, 15, 8,
+      8, 5, 12, 9, 12, 5, 14, 6, 8, 13, 6, 5, 15, 13, 11, 11 };
+  private static final int[] KL = { 0x00000000, 0x5a827999, 0x6ed9eba1, 0x8f1bbcdc, 0xa953fd4e };
+  private static final int[] KR = { 0x50a28be6, 0x5c4dd124, 0x6d703ef3, 0x7a6d76e9, 0x00000000 };
+
+  private static int f(int j, int x, int y, int z)
+  {
+    switch (j >> 4)
+    {
+      case 0:
+        return x ^ y ^ z;
+      case 1:
+        return (x & y) | (~x & z);
+      case 2:
+        return (x | ~y) ^ z;
+      case 3:
+        return (x & z) | (y & ~z);
+      default:
+        return x ^ (y | ~z);
+    }
+  }
+
+  public static byte[] ripemd160(byte[] data)
+  {
+    int padded = ((data.length + 8) / 64 + 1) * 64;
+    byte[] msg = new byte[padded];
+    System.arraycopy(data, 0, msg, 0, data.length);
+    msg[data.length] = (byte) 0x80;
+    long bits = (long) data.length * 8;
+    for (int i = 0; i < 8; i++)
+      msg[padded - 8 + i] = (byte) (bits >>> (8 * i));
+
+    int h0 = 0x67452301, h1 = 0xefcdab89, h2 = 0x98badcfe, h3 = 0x10325476, h4 = 0xc3d2e1f0;
+    int[] x = new int[16];
+    for (int block = 0; block < padded; block += 64)
+    {
+      for (int i = 0; i < 16; i++)
+        x[i] = (msg[block + i * 4] & 0xff) | (msg[block + i * 4 + 1] & 0xff) << 8 | (msg[block + i * 4 + 2] & 0xff) << 16
+            | (msg[block + i * 4 + 3] & 0xff) << 24;
+      int al = h0, bl = h1, cl = h2, dl = h3, el = h4;
+      int ar = h0, br = h1, cr = h2, dr = h3, er = h4;
+      for (int j = 0; j < 80; j++)
+      {
+        int t = Integer.rotateLeft(al + f(j, bl, cl, dl) + x[RL[j]] + KL[j >> 4], SL[j]) + el;
+        al = el;
+        el = dl;
+        dl = Integer.rotateLeft(cl, 10);
+        cl = bl;
+        bl = t;
+        t = Integer.rotateLeft(ar + f(79 - j, br, cr, dr) + x[RR[j]] + KR[j >> 4], SR[j]) + er;
+        ar = er;
+        er = dr;
+        dr = Integer.rotateLeft(cr, 10);
+        cr = br;
+        br = t;
+      }
+      int t = h1 + cl + dr;
+      h1 = h2 + dl + er;
+      h2 = h3 + el + ar;
+      h3 = h4 + al + br;
+      h4 = h0 + bl + cr;
+      h0 = t;
+    }
+    byte[] out = new byte[20];
+    int[] h = { h0, h1, h2, h3, h4 };
+    for (int i = 0; i < 5; i++)
+      for (int j = 0; j < 4; j++)
+        out[i * 4 + j] = (byte) (h[i] >>> (8 * j));
+    return out;
+  }
+}
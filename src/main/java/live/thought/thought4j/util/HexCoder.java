@@ -0,0 +1,93 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+/**
+ * Conversion between bytes and lower case hex strings, including the reversed
+ * byte order thoughtd uses to display hashes.
+ */
+public class HexCoder
+{
+  private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+  public static String encode(byte[] data)
+  {
+    return encode(data, 0, data.length);
+  }
+
+  public static String encode(byte[] data, int offset, int length)
+  {
+    char[] out = new char[length * 2];
+    for (int i = 0; i < length; i++)
+    {
+      int b = data[offset + i] & 0xff;
+      out[i * 2] = DIGITS[b >>> 4];
+      out[i * 2 + 1] = DIGITS[b & 0xf];
+    }
+    return new String(out);
+  }
+
+  /**
+   * Encodes the bytes in reverse order, as used for txids and block hashes.
+   */
+  public static String encodeReversed(byte[] data, int offset, int length)
+  {
+    char[] out = new char[length * 2];
+    for (int i = 0; i < length; i++)
+    {
+      int b = data[offset + length - 1 - i] & 0xff;
+      out[i * 2] = DIGITS[b >>> 4];
+      out[i * 2 + 1] = DIGITS[b & 0xf];
+    }
+    return new String(out);
+  }
+
+  public static byte[] decode(String hex)
+  {
+    int n = hex.length();
+    if ((n & 1) != 0)
+      throw new IllegalArgumentException("Odd number of hex digits");
+    byte[] out = new byte[n / 2];
+    for (int i = 0; i < out.length; i++)
+    {
+      int hi = Character.digit(hex.charAt(i * 2), 16);
+      int lo = Character.digit(hex.charAt(i * 2 + 1), 16);
+      if (hi < 0 || lo < 0)
+        throw new IllegalArgumentException("Invalid hex digit at " + (i * 2));
+      out[i] = (byte) ((hi << 4) | lo);
+    }
+    return out;
+  }
+
+  /**
+   * Decodes a hash displayed in reverse byte order.
+   */
+  public static byte[] decodeReversed(String hex)
+  {
+    byte[] out = decode(hex);
+    for (int i = 0, j = out.length - 1; i < j; i++, j--)
+    {
+      byte t = out[i];
+      out[i] = out[j];
+      out[j] = t;
+    }
+    return out;
+  }
+}
@@ -24,6 +24,8 @@
 
 package live.thought.thought4j.util;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
 import java.util.Map;
 
@@ -135,6 +137,30 @@ public class JSON {
         return CrippledJavaScriptParser.parseJSExpr(s);
     }
 
+    /**
+     * Parses a UTF-8 encoded JSON document in one pass, see
+     * {@link JSONStreamParser}.
+     */
+    public static Object parse(InputStream in) throws IOException {
+        return JSONStreamParser.parse(in);
+    }
+
+    public static Object parse(byte[] utf8) throws IOException {
+        return JSONStreamParser.parse(utf8);
+    }
+
+    /**
+     * Parses like {@link #parse(InputStream)}, optionally decoding decimals to
+     * {@link JSONDecimal}, see {@link JSONStreamParser#setExactDecimals(boolean)}.
+     */
+    public static Object parse(InputStream in, boolean exactDecimals) throws IOException {
+        return JSONStreamParser.parse(in, exactDecimals);
+    }
+
+    public static Object parse(byte[] utf8, boolean exactDecimals) throws IOException {
+        return JSONStreamParser.parse(utf8, exactDecimals);
+    }
+
 //    public static void main(String[] args) {
 //        String test =
 //                  "[ { 'x': 'y', 'y': 'z', id: 'value' }, { 1:2 }, {3:2, 4:[null,1,2,3,null,-1,111,-111,null]} ];";
@@ -0,0 +1,196 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package live.thought.thought4j.util;
+
+import java.math.BigDecimal;
+
+/**
+ * A decimal JSON number held as an unscaled long and a scale, as the parsers
+ * produce it, when asked to, for numbers with a fraction and no exponent, like
+ * the amounts in RPC results. The value is exact, so {@link #satoshis()} needs no floating
+ * point; {@link #doubleValue()} returns the same double as
+ * {@link Double#parseDouble(String)} on the original text.
+ */
+public final class JSONDecimal extends Number implements Comparable<JSONDecimal> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The largest scale, and the most significant digits, a decimal can have. */
+    public static final int MAX_DIGITS = 18;
+
+    private static final long[] POW10 = new long[MAX_DIGITS + 1];
+    private static final double[] DOUBLE_POW10 = new double[MAX_DIGITS + 1];
+    private static final long EXACT_DOUBLE = 1L << 53;
+
+    static {
+        POW10[0] = 1;
+        DOUBLE_POW10[0] = 1;
+        for (int i = 1; i <= MAX_DIGITS; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+            DOUBLE_POW10[i] = DOUBLE_POW10[i - 1] * 10;
+        }
+    }
+
+    private final long unscaled;
+    private final int scale;
+
+    public JSONDecimal(long unscaled, int scale) {
+        if (scale < 0 || scale > MAX_DIGITS)
+            throw new IllegalArgumentException("Invalid scale " + scale);
+        this.unscaled = unscaled;
+        this.scale = scale;
+    }
+
+    /**
+     * Parses the number in [start, end) if it is a decimal without exponent of
+     * at most {@link #MAX_DIGITS} significant digits and decimal places.
+     *
+     * @return the decimal, or null if the text has another form
+     */
+    public static JSONDecimal parse(byte[] d, int start, int end) {
+        int i = start;
+        boolean negative = i < end && d[i] == '-';
+        if (negative)
+            i++;
+        long value = 0;
+        int digits = 0;
+        int significant = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            byte b = d[i];
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                digits++;
+                if (value != 0)
+                    significant++;
+                if (scale >= 0)
+                    scale++;
+            } else if (b == '.' && scale < 0 && digits > 0) {
+                scale = 0;
+            } else {
+                return null;
+            }
+        }
+        if (scale <= 0 || scale > MAX_DIGITS || significant > MAX_DIGITS)
+            return null;
+        return new JSONDecimal(negative ? -value : value, scale);
+    }
+
+    /**
+     * Parses the text if it is a decimal without exponent of at most
+     * {@link #MAX_DIGITS} significant digits and decimal places.
+     *
+     * @return the decimal, or null if the text has another form
+     */
+    public static JSONDecimal parse(String s) {
+        byte[] b = new byte[s.length()];
+        for (int i = 0; i < b.length; i++) {
+            char c = s.charAt(i);
+            b[i] = c < 0x80 ? (byte) c : (byte) '?';
+        }
+        return parse(b, 0, b.length);
+    }
+
+    public long unscaledValue() {
+        return unscaled;
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    /**
+     * The value times 10^8, rounded half away from zero.
+     *
+     * @throws ArithmeticException
+     *           if that does not fit in a long
+     */
+    public long satoshis() {
+        if (scale <= 8)
+            return Math.multiplyExact(unscaled, POW10[8 - scale]);
+        long div = POW10[scale - 8];
+        long q = unscaled / div;
+        long r = unscaled % div;
+        if (Math.abs(r) * 2 >= div)
+            q += unscaled < 0 ? -1 : 1;
+        return q;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    @Override
+    public double doubleValue() {
+        // both operands are exact doubles, so the quotient is correctly rounded
+        if (unscaled < EXACT_DOUBLE && unscaled > -EXACT_DOUBLE)
+            return unscaled / DOUBLE_POW10[scale];
+        return Double.parseDouble(toString());
+    }
+
+    @Override
+    public float floatValue() {
+        return (float) doubleValue();
+    }
+
+    @Override
+    public long longValue() {
+        return unscaled / POW10[scale];
+    }
+
+    @Override
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    @Override
+    public int compareTo(JSONDecimal o) {
+        return toBigDecimal().compareTo(o.toBigDecimal());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof JSONDecimal && compareTo((JSONDecimal) obj) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(doubleValue());
+    }
+
+    /**
+     * Returns the number as written, without exponent.
+     */
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder(24);
+        long abs = Math.abs(unscaled);
+        String digits = Long.toString(abs);
+        if (unscaled < 0)
+            b.append('-');
+        int pad = scale + 1 - digits.length();
+        for (int i = 0; i < pad; i++)
+            b.append('0');
+        b.append(digits);
+        b.insert(b.length() - scale, '.');
+        return b.toString();
+    }
+}
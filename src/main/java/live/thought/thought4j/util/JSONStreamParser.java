@@ -0,0 +1,401 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One-pass JSON parser reading UTF-8 bytes straight from an input stream or a
+ * byte array, without building a String of the whole document first.
+ *
+ * It produces the same object model as {@link CrippledJavaScriptParser}:
+ * objects become {@link LinkedHashMap}s, arrays {@link ArrayList}s, integral
+ * numbers {@link Long}s, other numbers {@link Double}s, plus {@link String},
+ * {@link Boolean} and null. Repeated object keys share one String instance.
+ *
+ * With {@link #setExactDecimals(boolean)} decimals of up to 18 significant
+ * digits and decimal places without exponent, such as amounts, become exact
+ * {@link JSONDecimal}s instead, without going through a String.
+ */
+public class JSONStreamParser {
+
+    private static final int KEY_CACHE_SIZE = 512;
+    private static final int MAX_CACHED_KEY = 32;
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private long offset;
+    private char[] chars = new char[128];
+    private final String[] keyCache = new String[KEY_CACHE_SIZE];
+    private boolean exactDecimals;
+
+    public JSONStreamParser(InputStream in) {
+        this.in = in;
+        this.buf = new byte[8192];
+    }
+
+    public JSONStreamParser(byte[] data, int off, int len) {
+        this.in = null;
+        this.buf = data;
+        this.pos = off;
+        this.limit = off + len;
+        this.offset = -off;
+    }
+
+    public static Object parse(InputStream in) throws IOException {
+        return new JSONStreamParser(in).parse();
+    }
+
+    public static Object parse(byte[] data) throws IOException {
+        return new JSONStreamParser(data, 0, data.length).parse();
+    }
+
+    public static Object parse(InputStream in, boolean exactDecimals) throws IOException {
+        JSONStreamParser p = new JSONStreamParser(in);
+        p.setExactDecimals(exactDecimals);
+        return p.parse();
+    }
+
+    public static Object parse(byte[] data, boolean exactDecimals) throws IOException {
+        JSONStreamParser p = new JSONStreamParser(data, 0, data.length);
+        p.setExactDecimals(exactDecimals);
+        return p.parse();
+    }
+
+    public boolean isExactDecimals() {
+        return exactDecimals;
+    }
+
+    /**
+     * Makes decimals without exponent decode to {@link JSONDecimal} instead of
+     * {@link Double} when they fit. Disabled by default.
+     */
+    public void setExactDecimals(boolean exactDecimals) {
+        this.exactDecimals = exactDecimals;
+    }
+
+    /**
+     * Parses one JSON value and checks that nothing but whitespace follows it.
+     * When reading from a stream, the stream is consumed up to its end.
+     */
+    public Object parse() throws IOException {
+        int c = skipWhitespace();
+        if (c == -1)
+            throw error("Empty JSON document");
+        Object value = parseValue(c);
+        if (skipWhitespace() != -1)
+            throw error("Unexpected data after JSON value");
+        return value;
+    }
+
+    private boolean fill() throws IOException {
+        if (in == null)
+            return false;
+        offset += limit;
+        pos = limit = 0;
+        int n;
+        do {
+            n = in.read(buf, 0, buf.length);
+        } while (n == 0);
+        if (n < 0)
+            return false;
+        limit = n;
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill())
+            return -1;
+        return buf[pos++] & 0xff;
+    }
+
+    private int skipWhitespace() throws IOException {
+        for (;;) {
+            int c = read();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                return c;
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at byte " + (offset + pos));
+    }
+
+    private Object parseValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                return parseObject();
+            case '[':
+                return parseArray();
+            case '"': {
+                int n = parseString();
+                return new String(chars, 0, n);
+            }
+            case 't':
+                expect("rue");
+                return Boolean.TRUE;
+            case 'f':
+                expect("alse");
+                return Boolean.FALSE;
+            case 'n':
+                expect("ull");
+                return null;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9'))
+                    return parseNumber(c);
+                throw error(c == -1 ? "Unexpected end of JSON" : "Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void expect(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++)
+            if (read() != rest.charAt(i))
+                throw error("Invalid literal");
+    }
+
+    private Map<String, Object> parseObject() throws IOException {
+        LinkedHashMap<String, Object> rv = new LinkedHashMap<String, Object>();
+        int c = skipWhitespace();
+        if (c == '}')
+            return rv;
+        for (;;) {
+            if (c != '"')
+                throw error("Expected object key");
+            String key = parseKey();
+            if (skipWhitespace() != ':')
+                throw error("Expected ':'");
+            rv.put(key, parseValue(skipWhitespace()));
+            c = skipWhitespace();
+            if (c == '}')
+                return rv;
+            if (c != ',')
+                throw error("Expected ',' or '}'");
+            c = skipWhitespace();
+        }
+    }
+
+    private List<Object> parseArray() throws IOException {
+        ArrayList<Object> rv = new ArrayList<Object>();
+        int c = skipWhitespace();
+        if (c == ']')
+            return rv;
+        for (;;) {
+            rv.add(parseValue(c));
+            c = skipWhitespace();
+            if (c == ']')
+                return rv;
+            if (c != ',')
+                throw error("Expected ',' or ']'");
+            c = skipWhitespace();
+        }
+    }
+
+    private String parseKey() throws IOException {
+        int n = parseString();
+        if (n > MAX_CACHED_KEY)
+            return new String(chars, 0, n);
+        int h = 0;
+        for (int i = 0; i < n; i++)
+            h = 31 * h + chars[i];
+        int slot = (h ^ (h >>> 16)) & (KEY_CACHE_SIZE - 1);
+        String key = keyCache[slot];
+        if (key != null && key.length() == n) {
+            int i = 0;
+            while (i < n && key.charAt(i) == chars[i])
+                i++;
+            if (i == n)
+                return key;
+        }
+        key = new String(chars, 0, n);
+        keyCache[slot] = key;
+        return key;
+    }
+
+    private void append(int n, char c) {
+        if (n == chars.length) {
+            char[] grown = new char[n * 2];
+            System.arraycopy(chars, 0, grown, 0, n);
+            chars = grown;
+        }
+        chars[n] = c;
+    }
+
+    /**
+     * Decodes a string body, the opening quote already consumed, into chars.
+     *
+     * @return the number of chars decoded
+     */
+    private int parseString() throws IOException {
+        int n = 0;
+        for (;;) {
+            // Fast path for plain ASCII runs inside the current buffer
+            while (pos < limit) {
+                byte b = buf[pos];
+                if (b == '"' || b == '\\' || b < 0x20)
+                    break;
+                if (n == chars.length)
+                    append(n, (char) 0);
+                chars[n++] = (char) b;
+                pos++;
+            }
+            int c = read();
+            if (c == '"')
+                return n;
+            if (c == -1)
+                throw error("Unterminated string");
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        break;
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        c = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int d = Character.digit(read(), 16);
+                            if (d < 0)
+                                throw error("Invalid \\u escape");
+                            c = (c << 4) | d;
+                        }
+                        break;
+                    default:
+                        throw error("Invalid escape");
+                }
+                append(n++, (char) c);
+            } else if (c < 0x80) {
+                append(n++, (char) c);
+            } else {
+                int cp = decodeUtf8(c);
+                if (cp >= 0x10000) {
+                    append(n++, Character.highSurrogate(cp));
+                    append(n++, Character.lowSurrogate(cp));
+                } else {
+                    append(n++, (char) cp);
+                }
+            }
+        }
+    }
+
+    private int decodeUtf8(int c) throws IOException {
+        int extra, cp;
+        if ((c & 0xe0) == 0xc0) {
+            extra = 1;
+            cp = c & 0x1f;
+        } else if ((c & 0xf0) == 0xe0) {
+            extra = 2;
+            cp = c & 0x0f;
+        } else if ((c & 0xf8) == 0xf0) {
+            extra = 3;
+            cp = c & 0x07;
+        } else {
+            return 0xfffd;
+        }
+        for (int i = 0; i < extra; i++) {
+            if (pos == limit && !fill())
+                throw error("Unterminated string");
+            int b = buf[pos] & 0xff;
+            if ((b & 0xc0) != 0x80)
+                return 0xfffd;
+            pos++;
+            cp = (cp << 6) | (b & 0x3f);
+        }
+        return cp > 0x10ffff ? 0xfffd : cp;
+    }
+
+    private Object parseNumber(int c) throws IOException {
+        int n = 0;
+        boolean negative = c == '-';
+        boolean integral = true;
+        boolean exponent = false;
+        long value = 0;
+        int digits = 0;
+        int significant = 0;
+        int scale = -1;
+        append(n++, (char) c);
+        if (!negative) {
+            value = c - '0';
+            digits++;
+        }
+        for (;;) {
+            if (pos == limit && !fill())
+                break;
+            c = buf[pos];
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+                if (value != 0)
+                    significant++;
+                if (scale >= 0)
+                    scale++;
+            } else if (c == '.') {
+                integral = false;
+                if (scale < 0)
+                    scale = 0;
+                else
+                    exponent = true;
+            } else if (c == 'e' || c == 'E' || c == '+' || c == '-') {
+                integral = false;
+                exponent = true;
+            } else {
+                break;
+            }
+            append(n++, (char) c);
+            pos++;
+        }
+        if (integral && digits > 0 && digits <= 18)
+            return Long.valueOf(negative ? -value : value);
+        if (exactDecimals && !exponent && scale > 0 && scale <= JSONDecimal.MAX_DIGITS && significant <= JSONDecimal.MAX_DIGITS
+                && digits > scale)
+            return new JSONDecimal(negative ? -value : value, scale);
+        String s = new String(chars, 0, n);
+        try {
+            if (integral)
+                return Long.valueOf(Long.parseLong(s));
+            return Double.valueOf(Double.parseDouble(s));
+        } catch (NumberFormatException ex) {
+            if (integral && digits > 0)
+                return Double.valueOf(Double.parseDouble(s));
+            throw error("Invalid number '" + s + "'");
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Writes JSON as ASCII bytes into a growable buffer that can be reused between
+ * documents. Values are handled like {@link JSON#stringify(Object)} does;
+ * characters outside ASCII are written as \\u escapes.
+ */
+public class JSONWriter {
+
+    public static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(ASCII);
+    private static final byte[] NULL = "null".getBytes(ASCII);
+    private static final byte[] TRUE = "true".getBytes(ASCII);
+    private static final byte[] FALSE = "false".getBytes(ASCII);
+
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+    private byte[] buf;
+    private int count;
+
+    public JSONWriter() {
+        this(1024, 1 << 20);
+    }
+
+    /**
+     * @param initialCapacity
+     *          the initial buffer size
+     * @param maxRetainedCapacity
+     *          buffers grown beyond this size are dropped by {@link #reset()}
+     */
+    public JSONWriter(int initialCapacity, int maxRetainedCapacity) {
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+        this.buf = new byte[initialCapacity];
+    }
+
+    /**
+     * Empties the writer for the next document.
+     */
+    public JSONWriter reset() {
+        if (buf.length > maxRetainedCapacity)
+            buf = new byte[initialCapacity];
+        count = 0;
+        return this;
+    }
+
+    /**
+     * The internal buffer; valid bytes are 0 to {@link #size()}.
+     */
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte[] toByteArray() {
+        byte[] r = new byte[count];
+        System.arraycopy(buf, 0, r, 0, count);
+        return r;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, count, ASCII);
+    }
+
+    private void ensure(int extra) {
+        int needed = count + extra;
+        if (needed > buf.length) {
+            byte[] grown = new byte[Math.max(needed, buf.length * 2)];
+            System.arraycopy(buf, 0, grown, 0, count);
+            buf = grown;
+        }
+    }
+
+    /**
+     * Appends pre-encoded bytes as they are.
+     */
+    public JSONWriter raw(byte[] b) {
+        ensure(b.length);
+        System.arraycopy(b, 0, buf, count, b.length);
+        count += b.length;
+        return this;
+    }
+
+    public JSONWriter raw(char c) {
+        ensure(1);
+        buf[count++] = (byte) c;
+        return this;
+    }
+
+    private void ascii(String s) {
+        int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++)
+            buf[count++] = (byte) s.charAt(i);
+    }
+
+    public JSONWriter value(Object o) {
+        if (o == null)
+            return raw(NULL);
+        if (o instanceof String)
+            return string((String) o);
+        if (o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte)
+            return number(((Number) o).longValue());
+        if (o instanceof Number) {
+            ascii(String.valueOf(o));
+            return this;
+        }
+        if (o instanceof Boolean)
+            return raw(((Boolean) o).booleanValue() ? TRUE : FALSE);
+        if (o instanceof Date) {
+            ascii("new Date(");
+            number(((Date) o).getTime());
+            return raw(')');
+        }
+        if (o instanceof Map)
+            return map((Map<?, ?>) o);
+        if (o instanceof Iterable) {
+            raw('[');
+            boolean first = true;
+            for (Object e : (Iterable<?>) o) {
+                if (first)
+                    first = false;
+                else
+                    raw(',');
+                value(e);
+            }
+            return raw(']');
+        }
+        if (o instanceof Object[])
+            return array((Object[]) o);
+        return string(String.valueOf(o));
+    }
+
+    public JSONWriter map(Map<?, ?> m) {
+        raw('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> e : m.entrySet()) {
+            if (first)
+                first = false;
+            else
+                raw(',');
+            value(e.getKey());
+            raw(':');
+            value(e.getValue());
+        }
+        return raw('}');
+    }
+
+    public JSONWriter array(Object[] a) {
+        raw('[');
+        for (int i = 0; i < a.length; i++) {
+            if (i > 0)
+                raw(',');
+            value(a[i]);
+        }
+        return raw(']');
+    }
+
+    public JSONWriter number(long v) {
+        if (v == Long.MIN_VALUE) {
+            ascii(Long.toString(v));
+            return this;
+        }
+        ensure(20);
+        if (v < 0) {
+            buf[count++] = '-';
+            v = -v;
+        }
+        int start = count;
+        do {
+            buf[count++] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+        return this;
+    }
+
+    public JSONWriter string(String s) {
+        int n = s.length();
+        ensure(n + 2);
+        buf[count++] = '"';
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x7f && c != '"' && c != '\\') {
+                buf[count++] = (byte) c;
+                continue;
+            }
+            // Room for this escape, the rest of the string and the closing quote
+            ensure(n - i + 6);
+            switch (c) {
+                case '\t':
+                    buf[count++] = '\\';
+                    buf[count++] = 't';
+                    break;
+                case '\r':
+                    buf[count++] = '\\';
+                    buf[count++] = 'r';
+                    break;
+                case '\n':
+                    buf[count++] = '\\';
+                    buf[count++] = 'n';
+                    break;
+                case '\f':
+                    buf[count++] = '\\';
+                    buf[count++] = 'f';
+                    break;
+                case '\b':
+                    buf[count++] = '\\';
+                    buf[count++] = 'b';
+                    break;
+                case '"':
+                case '\\':
+                    buf[count++] = '\\';
+                    buf[count++] = (byte) c;
+                    break;
+                default:
+                    buf[count++] = '\\';
+                    buf[count++] = 'u';
+                    buf[count++] = HEX[(c >> 12) & 0xf];
+                    buf[count++] = HEX[(c >> 8) & 0xf];
+                    buf[count++] = HEX[(c >> 4) & 0xf];
+                    buf[count++] = HEX[c & 0xf];
+            }
+        }
+        buf[count++] = '"';
+        return this;
+    }
+}
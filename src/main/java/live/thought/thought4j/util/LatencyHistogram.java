@@ -0,0 +1,150 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values, typically durations in nanoseconds,
+ * laid out like an HdrHistogram: every power of two range is split into 32
+ * linear buckets, so any recorded value is known to within about 3% whatever
+ * its magnitude. Values up to {@link #MAX_VALUE} (about 18 minutes in
+ * nanoseconds) are tracked in 1152 counters; larger values are counted as
+ * {@link #MAX_VALUE}.
+ *
+ * Recording is lock-free and allocates nothing, so it can sit on the path of
+ * every call. Readers see a consistent enough view for monitoring, not an
+ * atomic snapshot.
+ */
+public class LatencyHistogram
+{
+  public static final long     MAX_VALUE  = (1L << 40) - 1;
+
+  private static final int     SUB_BITS   = 6;
+  private static final int     SUB_COUNT  = 1 << SUB_BITS;
+  private static final int     HALF_BITS  = SUB_BITS - 1;
+  private static final int     HALF_COUNT = 1 << HALF_BITS;
+
+  private final AtomicLongArray counts    = new AtomicLongArray(index(MAX_VALUE) + 1);
+  private final AtomicLong      count     = new AtomicLong();
+  private final AtomicLong      total     = new AtomicLong();
+  private final AtomicLong      max       = new AtomicLong();
+
+  static int index(long value)
+  {
+    if (value < SUB_COUNT)
+      return (int) value;
+    int bucket = 63 - Long.numberOfLeadingZeros(value) - HALF_BITS;
+    return (bucket << HALF_BITS) + (int) (value >>> bucket);
+  }
+
+  /**
+   * The largest value counted in the same bucket as the given index.
+   */
+  static long highestEquivalentValue(int index)
+  {
+    if (index < SUB_COUNT)
+      return index;
+    int bucket = (index >> HALF_BITS) - 1;
+    long sub = index - (bucket << HALF_BITS);
+    return ((sub + 1) << bucket) - 1;
+  }
+
+  public void record(long value)
+  {
+    if (value < 0)
+      value = 0;
+    else if (value > MAX_VALUE)
+      value = MAX_VALUE;
+    counts.incrementAndGet(index(value));
+    count.incrementAndGet();
+    total.addAndGet(value);
+    long m;
+    while (value > (m = max.get()))
+      if (max.compareAndSet(m, value))
+        break;
+  }
+
+  public long getCount()
+  {
+    return count.get();
+  }
+
+  /**
+   * The sum of all recorded values.
+   */
+  public long getTotal()
+  {
+    return total.get();
+  }
+
+  public long getMax()
+  {
+    return max.get();
+  }
+
+  public double getMean()
+  {
+    long n = count.get();
+    return n == 0 ? 0 : (double) total.get() / n;
+  }
+
+  /**
+   * The value below or at which the given percentage of recorded values fall,
+   * reported as the upper end of its bucket and never above the largest value
+   * recorded. Returns 0 when nothing was recorded.
+   *
+   * @param percentile
+   *          a percentage between 0 and 100, e.g. 99.9
+   */
+  public long getValueAtPercentile(double percentile)
+  {
+    long n = count.get();
+    if (n == 0)
+      return 0;
+    long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * n));
+    long seen = 0;
+    int last = counts.length() - 1;
+    for (int i = 0; i <= last; i++)
+    {
+      seen += counts.get(i);
+      if (seen >= rank)
+        return Math.min(highestEquivalentValue(i), max.get());
+    }
+    return max.get();
+  }
+
+  public void reset()
+  {
+    for (int i = 0; i < counts.length(); i++)
+      counts.set(i, 0);
+    count.set(0);
+    total.set(0);
+    max.set(0);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "count=" + getCount() + ", mean=" + (long) getMean() + ", p50=" + getValueAtPercentile(50) + ", p99="
+        + getValueAtPercentile(99) + ", max=" + getMax();
+  }
+}
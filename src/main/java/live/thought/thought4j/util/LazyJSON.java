@@ -0,0 +1,194 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Lazy JSON views over a raw document. {@link #parse(byte[])} only looks at the
+ * first byte of the document; objects and arrays are indexed the first time
+ * they are accessed, and each member is decoded only when it is read. Nested
+ * objects and arrays are lazy views again.
+ *
+ * The views are read-only and keep the whole document alive, including any
+ * small value taken out of it. They serialize as ordinary maps and lists.
+ */
+public class LazyJSON {
+
+    static final Charset LATIN1 = Charset.forName("ISO8859-1");
+
+    private LazyJSON() {
+    }
+
+    /**
+     * @return a {@link LazyJSONObject}, a {@link LazyJSONArray} or a decoded
+     *         scalar
+     */
+    public static Object parse(byte[] data) {
+        return parse(data, false);
+    }
+
+    /**
+     * Parses like {@link #parse(byte[])}, optionally decoding decimals to
+     * {@link JSONDecimal}, see {@link JSONStreamParser#setExactDecimals(boolean)}.
+     */
+    public static Object parse(byte[] data, boolean exactDecimals) {
+        int start = skipWhitespace(data, 0, data.length);
+        if (start == data.length)
+            throw invalid(start);
+        int end = skipValue(data, start, data.length);
+        if (skipWhitespace(data, end, data.length) != data.length)
+            throw invalid(end);
+        return value(data, start, end, exactDecimals);
+    }
+
+    static IllegalArgumentException invalid(int pos) {
+        return new IllegalArgumentException("Invalid JSON at byte " + pos);
+    }
+
+    static int skipWhitespace(byte[] d, int p, int end) {
+        while (p < end && (d[p] == ' ' || d[p] == '\n' || d[p] == '\r' || d[p] == '\t'))
+            p++;
+        return p;
+    }
+
+    /**
+     * @return the position after the string starting with the quote at p
+     */
+    static int skipString(byte[] d, int p, int end) {
+        for (p++; p < end; p++) {
+            byte b = d[p];
+            if (b == '"')
+                return p + 1;
+            if (b == '\\')
+                p++;
+        }
+        throw invalid(end);
+    }
+
+    /**
+     * @return the position after the value starting at p, which must not be
+     *         whitespace
+     */
+    static int skipValue(byte[] d, int p, int end) {
+        byte b = d[p];
+        if (b == '"')
+            return skipString(d, p, end);
+        if (b != '{' && b != '[') {
+            while (p < end && (b = d[p]) != ',' && b != '}' && b != ']' && b != ' ' && b != '\n' && b != '\r' && b != '\t')
+                p++;
+            return p;
+        }
+        int depth = 0;
+        while (p < end) {
+            b = d[p];
+            if (b == '"') {
+                p = skipString(d, p, end);
+                continue;
+            }
+            if (b == '{' || b == '[')
+                depth++;
+            else if (b == '}' || b == ']') {
+                if (--depth == 0)
+                    return p + 1;
+            }
+            p++;
+        }
+        throw invalid(end);
+    }
+
+    /**
+     * Decodes the value in [start, end), which has been delimited by
+     * {@link #skipValue(byte[], int, int)}.
+     */
+    static Object value(byte[] d, int start, int end, boolean exactDecimals) {
+        byte b = d[start];
+        switch (b) {
+            case '{':
+                return new LazyJSONObject(d, start, end, exactDecimals);
+            case '[':
+                return new LazyJSONArray(d, start, end, exactDecimals);
+            case '"':
+                return string(d, start, end);
+            case 't':
+                return literal(d, start, end, "true", Boolean.TRUE);
+            case 'f':
+                return literal(d, start, end, "false", Boolean.FALSE);
+            case 'n':
+                return literal(d, start, end, "null", null);
+            default:
+                return number(d, start, end, exactDecimals);
+        }
+    }
+
+    static String string(byte[] d, int start, int end) {
+        for (int i = start + 1; i < end - 1; i++) {
+            byte b = d[i];
+            if (b == '\\' || b < 0)
+                return (String) scalar(d, start, end);
+        }
+        return new String(d, start + 1, end - start - 2, LATIN1);
+    }
+
+    private static Object literal(byte[] d, int start, int end, String text, Object value) {
+        if (end - start != text.length())
+            throw invalid(start);
+        for (int i = 0; i < text.length(); i++)
+            if (d[start + i] != text.charAt(i))
+                throw invalid(start);
+        return value;
+    }
+
+    private static Object number(byte[] d, int start, int end, boolean exactDecimals) {
+        boolean integral = true;
+        for (int i = start; i < end; i++) {
+            byte b = d[i];
+            if (b == '.' || b == 'e' || b == 'E')
+                integral = false;
+        }
+        if (!integral && exactDecimals) {
+            JSONDecimal decimal = JSONDecimal.parse(d, start, end);
+            if (decimal != null)
+                return decimal;
+        }
+        String s = new String(d, start, end - start, LATIN1);
+        try {
+            if (integral) {
+                try {
+                    return Long.valueOf(Long.parseLong(s));
+                } catch (NumberFormatException ex) {
+                    // Too large for a long
+                }
+            }
+            return Double.valueOf(Double.parseDouble(s));
+        } catch (NumberFormatException ex) {
+            throw invalid(start);
+        }
+    }
+
+    private static Object scalar(byte[] d, int start, int end) {
+        try {
+            return new JSONStreamParser(d, start, end - start).parse();
+        } catch (IOException ex) {
+            throw invalid(start);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list over a JSON array in a raw document, see {@link LazyJSON}.
+ * Element offsets are found on first access; elements are decoded when read
+ * and then kept.
+ */
+public class LazyJSONArray extends AbstractList<Object> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Object UNDECODED = new Object();
+
+    private final byte[] data;
+    private final int start;
+    private final int end;
+    private final boolean exactDecimals;
+
+    private int[] offsets;
+    private Object[] values;
+    private int size = -1;
+
+    LazyJSONArray(byte[] data, int start, int end, boolean exactDecimals) {
+        this.data = data;
+        this.start = start;
+        this.end = end;
+        this.exactDecimals = exactDecimals;
+    }
+
+    private synchronized void index() {
+        if (size >= 0)
+            return;
+        int[] o = new int[16];
+        int n = 0;
+        int p = LazyJSON.skipWhitespace(data, start + 1, end);
+        if (data[p] != ']') {
+            for (;;) {
+                int valueEnd = LazyJSON.skipValue(data, p, end);
+                if (n * 2 == o.length) {
+                    int[] grown = new int[o.length * 2];
+                    System.arraycopy(o, 0, grown, 0, o.length);
+                    o = grown;
+                }
+                o[n * 2] = p;
+                o[n * 2 + 1] = valueEnd;
+                n++;
+                p = LazyJSON.skipWhitespace(data, valueEnd, end);
+                if (data[p] == ']')
+                    break;
+                if (data[p] != ',')
+                    throw LazyJSON.invalid(p);
+                p = LazyJSON.skipWhitespace(data, p + 1, end);
+            }
+        }
+        Object[] v = new Object[n];
+        for (int i = 0; i < n; i++)
+            v[i] = UNDECODED;
+        offsets = o;
+        values = v;
+        size = n;
+    }
+
+    @Override
+    public synchronized Object get(int index) {
+        index();
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        Object v = values[index];
+        if (v == UNDECODED) {
+            v = LazyJSON.value(data, offsets[index * 2], offsets[index * 2 + 1], exactDecimals);
+            values[index] = v;
+        }
+        return v;
+    }
+
+    @Override
+    public int size() {
+        index();
+        return size;
+    }
+
+    /**
+     * Returns the length in bytes of the JSON text behind this view.
+     */
+    public int rawLength() {
+        return end - start;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new ArrayList<Object>(this);
+    }
+}
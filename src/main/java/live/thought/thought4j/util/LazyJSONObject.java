@@ -0,0 +1,183 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only map over a JSON object in a raw document, see {@link LazyJSON}.
+ * Member offsets are found on first access; values are decoded when read and
+ * then kept.
+ */
+public class LazyJSONObject extends AbstractMap<String, Object> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Object UNDECODED = new Object();
+
+    private final byte[] data;
+    private final int start;
+    private final int end;
+    private final boolean exactDecimals;
+
+    private String[] keys;
+    private int[] offsets;
+    private Object[] values;
+    private int size = -1;
+
+    LazyJSONObject(byte[] data, int start, int end, boolean exactDecimals) {
+        this.data = data;
+        this.start = start;
+        this.end = end;
+        this.exactDecimals = exactDecimals;
+    }
+
+    private synchronized void index() {
+        if (size >= 0)
+            return;
+        int capacity = 8;
+        String[] k = new String[capacity];
+        int[] o = new int[capacity * 2];
+        int n = 0;
+        int p = LazyJSON.skipWhitespace(data, start + 1, end);
+        if (data[p] != '}') {
+            for (;;) {
+                if (data[p] != '"')
+                    throw LazyJSON.invalid(p);
+                int keyEnd = LazyJSON.skipString(data, p, end);
+                String key = LazyJSON.string(data, p, keyEnd);
+                p = LazyJSON.skipWhitespace(data, keyEnd, end);
+                if (p == end || data[p] != ':')
+                    throw LazyJSON.invalid(p);
+                p = LazyJSON.skipWhitespace(data, p + 1, end);
+                int valueEnd = LazyJSON.skipValue(data, p, end);
+                if (n == capacity) {
+                    capacity *= 2;
+                    String[] gk = new String[capacity];
+                    int[] go = new int[capacity * 2];
+                    System.arraycopy(k, 0, gk, 0, n);
+                    System.arraycopy(o, 0, go, 0, n * 2);
+                    k = gk;
+                    o = go;
+                }
+                k[n] = key;
+                o[n * 2] = p;
+                o[n * 2 + 1] = valueEnd;
+                n++;
+                p = LazyJSON.skipWhitespace(data, valueEnd, end);
+                if (data[p] == '}')
+                    break;
+                if (data[p] != ',')
+                    throw LazyJSON.invalid(p);
+                p = LazyJSON.skipWhitespace(data, p + 1, end);
+            }
+        }
+        Object[] v = new Object[n];
+        for (int i = 0; i < n; i++)
+            v[i] = UNDECODED;
+        keys = k;
+        offsets = o;
+        values = v;
+        size = n;
+    }
+
+    private int find(Object key) {
+        index();
+        for (int i = size - 1; i >= 0; i--)
+            if (keys[i].equals(key))
+                return i;
+        return -1;
+    }
+
+    private synchronized Object valueAt(int i) {
+        Object v = values[i];
+        if (v == UNDECODED) {
+            v = LazyJSON.value(data, offsets[i * 2], offsets[i * 2 + 1], exactDecimals);
+            values[i] = v;
+        }
+        return v;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = find(key);
+        return i < 0 ? null : valueAt(i);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        index();
+        return size;
+    }
+
+    /**
+     * Returns the length in bytes of the JSON text behind this view.
+     */
+    public int rawLength() {
+        return end - start;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        index();
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Iterator<Map.Entry<String, Object>>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        if (next >= size)
+                            throw new NoSuchElementException();
+                        int i = next++;
+                        return new SimpleImmutableEntry<String, Object>(keys[i], valueAt(i));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new LinkedHashMap<String, Object>(this);
+    }
+}
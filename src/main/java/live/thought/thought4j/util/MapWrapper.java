@@ -82,6 +82,11 @@ public class MapWrapper
     return mapBigDecimal(m, key);
   }
 
+  public long mapSatoshis(String key)
+  {
+    return mapSatoshis(m, key);
+  }
+
   public static boolean mapBool(Map<?, ?> m, String key)
   {
     return ((Boolean) m.get(key));
@@ -89,7 +94,21 @@ public class MapWrapper
 
   public static BigDecimal mapBigDecimal(Map<?, ?> m, String key)
   {
-    return new BigDecimal(((Number) m.get(key)).doubleValue());
+    Object o = m.get(key);
+    if (o instanceof JSONDecimal)
+      return ((JSONDecimal) o).toBigDecimal();
+    if (o instanceof Long || o instanceof Integer)
+      return BigDecimal.valueOf(((Number) o).longValue());
+    return BigDecimal.valueOf(((Number) o).doubleValue());
+  }
+
+  /**
+   * Reads an amount in coins as satoshis, exactly when the parser produced a
+   * {@link JSONDecimal}.
+   */
+  public static long mapSatoshis(Map<?, ?> m, String key)
+  {
+    return CoinUtil.toSatoshis((Number) m.get(key));
   }
 
   public static float mapFloat(Map<?, ?> m, String key)
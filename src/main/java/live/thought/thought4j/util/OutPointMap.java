@@ -0,0 +1,271 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+/**
+ * A map from transaction outputs, (txid, vout), to their amount in satoshis and
+ * a height, stored in open-addressed primitive arrays: about 70 bytes per
+ * output, with no objects per entry. Lookups and updates take a few hundred
+ * nanoseconds.
+ *
+ * Heights are block heights, or {@link #UNCONFIRMED}, which sorts above every
+ * block height. {@link #sum(int)} totals the amounts up to a height without
+ * touching the txids.
+ *
+ * Not thread safe.
+ */
+public class OutPointMap
+{
+  public static final int UNCONFIRMED = Integer.MAX_VALUE;
+
+  public interface Visitor
+  {
+    void visit(String txid, int vout, long amount, int height);
+  }
+
+  private long[]    keys    = new long[4 * 16];
+  private int[]     vouts   = new int[16];
+  private long[]    amounts = new long[16];
+  private int[]     heights = new int[16];
+  private boolean[] used    = new boolean[16];
+  private int       size;
+  private long      total;
+
+  /**
+   * Adds an output or replaces the amount and height of one already present.
+   *
+   * @return true if the output was not present
+   * @throws IllegalArgumentException
+   *           if txid is not 64 hex digits
+   */
+  public boolean put(String txid, int vout, long amount, int height)
+  {
+    long[] k = key(txid);
+    int i = slot(k, vout);
+    boolean added = !used[i];
+    if (added)
+    {
+      System.arraycopy(k, 0, keys, 4 * i, 4);
+      vouts[i] = vout;
+      used[i] = true;
+      size++;
+    }
+    else
+      total -= amounts[i];
+    amounts[i] = amount;
+    heights[i] = height;
+    total += amount;
+    if (added && size * 3 > used.length * 2)
+      grow();
+    return added;
+  }
+
+  public boolean contains(String txid, int vout)
+  {
+    long[] k = TxidSet.key(txid);
+    return k != null && used[slot(k, vout)];
+  }
+
+  /**
+   * Returns the amount of an output, or -1 if it is not present.
+   */
+  public long getAmount(String txid, int vout)
+  {
+    long[] k = TxidSet.key(txid);
+    if (k == null)
+      return -1;
+    int i = slot(k, vout);
+    return used[i] ? amounts[i] : -1;
+  }
+
+  /**
+   * Returns the height of an output, or -1 if it is not present.
+   */
+  public int getHeight(String txid, int vout)
+  {
+    long[] k = TxidSet.key(txid);
+    if (k == null)
+      return -1;
+    int i = slot(k, vout);
+    return used[i] ? heights[i] : -1;
+  }
+
+  /**
+   * Moves an output to another height.
+   *
+   * @return false if the output is not present
+   */
+  public boolean setHeight(String txid, int vout, int height)
+  {
+    long[] k = TxidSet.key(txid);
+    if (k == null)
+      return false;
+    int i = slot(k, vout);
+    if (!used[i])
+      return false;
+    heights[i] = height;
+    return true;
+  }
+
+  /**
+   * Removes an output.
+   *
+   * @return its amount, or -1 if it was not present
+   */
+  public long remove(String txid, int vout)
+  {
+    long[] k = TxidSet.key(txid);
+    if (k == null)
+      return -1;
+    int i = slot(k, vout);
+    if (!used[i])
+      return -1;
+    long amount = amounts[i];
+    delete(i);
+    return amount;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Returns the sum of all amounts.
+   */
+  public long total()
+  {
+    return total;
+  }
+
+  /**
+   * Returns the sum of the amounts of the outputs at or below a height.
+   */
+  public long sum(int maxHeight)
+  {
+    if (maxHeight == UNCONFIRMED)
+      return total;
+    long sum = 0;
+    for (int i = 0; i < used.length; i++)
+      if (used[i] && heights[i] <= maxHeight)
+        sum += amounts[i];
+    return sum;
+  }
+
+  /**
+   * Calls the visitor for every output at or below a height. The map must not
+   * be changed meanwhile.
+   */
+  public void forEach(int maxHeight, Visitor visitor)
+  {
+    for (int i = 0; i < used.length; i++)
+      if (used[i] && heights[i] <= maxHeight)
+        visitor.visit(TxidSet.txid(keys, 4 * i), vouts[i], amounts[i], heights[i]);
+  }
+
+  public void clear()
+  {
+    keys = new long[4 * 16];
+    vouts = new int[16];
+    amounts = new long[16];
+    heights = new int[16];
+    used = new boolean[16];
+    size = 0;
+    total = 0;
+  }
+
+  private static long[] key(String txid)
+  {
+    long[] k = TxidSet.key(txid);
+    if (k == null)
+      throw new IllegalArgumentException("Not a transaction id: " + txid);
+    return k;
+  }
+
+  private static int home(long k0, int vout, int mask)
+  {
+    long h = (k0 ^ k0 >>> 32) + vout * 0x9e3779b9L;
+    return (int) (h ^ h >>> 29) & mask;
+  }
+
+  private int slot(long[] k, int vout)
+  {
+    int mask = used.length - 1;
+    int i = home(k[0], vout, mask);
+    while (used[i] && !(vouts[i] == vout && keys[4 * i] == k[0] && keys[4 * i + 1] == k[1] && keys[4 * i + 2] == k[2]
+        && keys[4 * i + 3] == k[3]))
+      i = (i + 1) & mask;
+    return i;
+  }
+
+  private void delete(int i)
+  {
+    int mask = used.length - 1;
+    total -= amounts[i];
+    used[i] = false;
+    size--;
+    int j = i;
+    while (true)
+    {
+      j = (j + 1) & mask;
+      if (!used[j])
+        return;
+      int home = home(keys[4 * j], vouts[j], mask);
+      // move j back into the hole if its home is not between the hole and j
+      if (i <= j ? (home <= i || home > j) : (home <= i && home > j))
+      {
+        System.arraycopy(keys, 4 * j, keys, 4 * i, 4);
+        vouts[i] = vouts[j];
+        amounts[i] = amounts[j];
+        heights[i] = heights[j];
+        used[i] = true;
+        used[j] = false;
+        i = j;
+      }
+    }
+  }
+
+  private void grow()
+  {
+    long[] oldKeys = keys;
+    int[] oldVouts = vouts;
+    long[] oldAmounts = amounts;
+    int[] oldHeights = heights;
+    boolean[] oldUsed = used;
+    int capacity = oldUsed.length * 2;
+    keys = new long[4 * capacity];
+    vouts = new int[capacity];
+    amounts = new long[capacity];
+    heights = new int[capacity];
+    used = new boolean[capacity];
+    long[] k = new long[4];
+    for (int i = 0; i < oldUsed.length; i++)
+      if (oldUsed[i])
+      {
+        System.arraycopy(oldKeys, 4 * i, k, 0, 4);
+        int j = slot(k, oldVouts[i]);
+        System.arraycopy(k, 0, keys, 4 * j, 4);
+        vouts[j] = oldVouts[i];
+        amounts[j] = oldAmounts[i];
+        heights[j] = oldHeights[i];
+        used[j] = true;
+      }
+  }
+}
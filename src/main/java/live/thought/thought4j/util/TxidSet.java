@@ -0,0 +1,534 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A set of transaction ids stored as 32-byte binary keys in open-addressed
+ * primitive tables, about 40 bytes per id instead of the 200 or so a
+ * <code>HashSet&lt;String&gt;</code> takes.
+ *
+ * Every id carries a height, which may be a block height or any other counter
+ * that grows over time; {@link #expire(int)} drops the ids added below a given
+ * height. Ids added through {@link #add(String)} never expire.
+ *
+ * The table is split into segments with their own locks, so concurrent callers
+ * rarely wait on each other. With a backing file, every change is appended to
+ * it and the file is read back on construction; {@link #expire(int)} rewrites it
+ * through a temporary file when it holds mostly stale records.
+ *
+ * Only 64 digit hex strings can be added. {@link #contains(Object)} and
+ * {@link #remove(Object)} return false for anything else.
+ */
+public class TxidSet extends AbstractSet<String> implements Closeable
+{
+  public static final int     NO_EXPIRY = Integer.MAX_VALUE;
+
+  private static final int    SEGMENTS  = 16;
+  private static final int    REMOVED   = Integer.MIN_VALUE;
+  private static final char[] DIGITS    = "0123456789abcdef".toCharArray();
+
+  private final Segment[]     segments  = new Segment[SEGMENTS];
+  private final File          file;
+  private DataOutputStream    log;
+  private long                logRecords;
+
+  public TxidSet()
+  {
+    for (int i = 0; i < SEGMENTS; i++)
+      segments[i] = new Segment();
+    file = null;
+  }
+
+  /**
+   * Creates a set backed by the given file, loading the ids it holds.
+   */
+  public TxidSet(File file) throws IOException
+  {
+    for (int i = 0; i < SEGMENTS; i++)
+      segments[i] = new Segment();
+    this.file = file;
+    if (file.exists())
+      load();
+    log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+  }
+
+  @Override
+  public boolean add(String txid)
+  {
+    return add(txid, NO_EXPIRY);
+  }
+
+  /**
+   * Adds an id that expires once {@link #expire(int)} is called with a higher
+   * height. If the id is already present its height is left unchanged.
+   *
+   * @throws IllegalArgumentException
+   *           if txid is not 64 hex digits
+   */
+  public boolean add(String txid, int height)
+  {
+    long[] k = key(txid);
+    if (k == null)
+      throw new IllegalArgumentException("Not a transaction id: " + txid);
+    if (!segment(k).put(k, height, false))
+      return false;
+    append(k, height);
+    return true;
+  }
+
+  /**
+   * Adds an id or moves an id already present to the given height.
+   *
+   * @return true if the id was not present
+   * @throws IllegalArgumentException
+   *           if txid is not 64 hex digits
+   */
+  public boolean put(String txid, int height)
+  {
+    long[] k = key(txid);
+    if (k == null)
+      throw new IllegalArgumentException("Not a transaction id: " + txid);
+    boolean added = segment(k).put(k, height, true);
+    append(k, height);
+    return added;
+  }
+
+  @Override
+  public boolean contains(Object o)
+  {
+    long[] k = o instanceof String ? key((String) o) : null;
+    return k != null && segment(k).height(k) != REMOVED;
+  }
+
+  /**
+   * Returns the height an id was added with, or -1 if it is not present.
+   */
+  public int getHeight(String txid)
+  {
+    long[] k = key(txid);
+    int h = k == null ? REMOVED : segment(k).height(k);
+    return h == REMOVED ? -1 : h;
+  }
+
+  /**
+   * Returns the highest height below {@link #NO_EXPIRY} in the set, or -1.
+   */
+  public int getMaxHeight()
+  {
+    int max = -1;
+    for (Segment s : segments)
+      max = Math.max(max, s.maxHeight());
+    return max;
+  }
+
+  @Override
+  public boolean remove(Object o)
+  {
+    long[] k = o instanceof String ? key((String) o) : null;
+    if (k == null || !segment(k).remove(k))
+      return false;
+    append(k, REMOVED);
+    return true;
+  }
+
+  /**
+   * Removes every id added with a height below the given one.
+   *
+   * @return the number of ids removed
+   */
+  public int expire(int height)
+  {
+    return expire(height, null);
+  }
+
+  /**
+   * Removes every id added with a height below the given one, adding the ids
+   * removed to a collection.
+   *
+   * @return the number of ids removed
+   */
+  public int expire(int height, Collection<String> removed)
+  {
+    List<long[]> keys = new ArrayList<long[]>();
+    for (Segment s : segments)
+      s.expire(height, keys);
+    for (long[] k : keys)
+    {
+      if (removed != null)
+        removed.add(txid(k, 0));
+      append(k, REMOVED);
+    }
+    if (!keys.isEmpty() && file != null)
+    {
+      synchronized (this)
+      {
+        if (logRecords > 2L * size() + 1024)
+          compact();
+      }
+    }
+    return keys.size();
+  }
+
+  @Override
+  public int size()
+  {
+    int size = 0;
+    for (Segment s : segments)
+      size += s.size();
+    return size;
+  }
+
+  @Override
+  public void clear()
+  {
+    for (Segment s : segments)
+      s.clear();
+    if (file != null)
+      synchronized (this)
+      {
+        compact();
+      }
+  }
+
+  /**
+   * Iterates over a snapshot of the set. Removing through the iterator removes
+   * from the set.
+   */
+  @Override
+  public Iterator<String> iterator()
+  {
+    final List<String> ids = new ArrayList<String>();
+    for (Segment s : segments)
+      s.collect(ids);
+    final Iterator<String> i = ids.iterator();
+    return new Iterator<String>()
+    {
+      private String last;
+
+      @Override
+      public boolean hasNext()
+      {
+        return i.hasNext();
+      }
+
+      @Override
+      public String next()
+      {
+        return last = i.next();
+      }
+
+      @Override
+      public void remove()
+      {
+        if (last == null)
+          throw new IllegalStateException();
+        TxidSet.this.remove(last);
+        last = null;
+      }
+    };
+  }
+
+  @Override
+  public synchronized void close() throws IOException
+  {
+    if (log != null)
+      log.close();
+    log = null;
+  }
+
+  private Segment segment(long[] k)
+  {
+    return segments[(int) (k[1] >>> 60)];
+  }
+
+  static long[] key(String txid)
+  {
+    if (txid == null || txid.length() != 64)
+      return null;
+    long[] k = new long[4];
+    for (int i = 0; i < 64; i++)
+    {
+      int d = Character.digit(txid.charAt(i), 16);
+      if (d < 0)
+        return null;
+      k[i >> 4] = k[i >> 4] << 4 | d;
+    }
+    return k;
+  }
+
+  static String txid(long[] keys, int offset)
+  {
+    char[] c = new char[64];
+    for (int i = 0; i < 64; i++)
+      c[i] = DIGITS[(int) (keys[offset + (i >> 4)] >>> (60 - 4 * (i & 15))) & 15];
+    return new String(c);
+  }
+
+  private synchronized void append(long[] k, int height)
+  {
+    if (log == null)
+      return;
+    try
+    {
+      for (long l : k)
+        log.writeLong(l);
+      log.writeInt(height);
+      log.flush();
+      logRecords++;
+    }
+    catch (IOException ex)
+    {
+      throw new UncheckedIOException("Cannot write " + file, ex);
+    }
+  }
+
+  private void load() throws IOException
+  {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+    {
+      long[] k = new long[4];
+      while (true)
+      {
+        for (int i = 0; i < 4; i++)
+          k[i] = in.readLong();
+        int height = in.readInt();
+        if (height == REMOVED)
+          segment(k).remove(k);
+        else
+          segment(k).put(k, height, true);
+        logRecords++;
+      }
+    }
+    catch (EOFException ex)
+    {
+      // end of the log, or a record cut short by a crash
+    }
+  }
+
+  private void compact()
+  {
+    File tmp = new File(file.getPath() + ".tmp");
+    try
+    {
+      if (log != null)
+        log.close();
+      long records = 0;
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+      {
+        for (Segment s : segments)
+          records += s.write(out);
+      }
+      try
+      {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (AtomicMoveNotSupportedException ex)
+      {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      logRecords = records;
+      log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+    catch (IOException ex)
+    {
+      throw new UncheckedIOException("Cannot write " + file, ex);
+    }
+  }
+
+  /**
+   * A linear probing table with backward shift deletion, so no tombstones.
+   */
+  private static final class Segment
+  {
+    private long[]  keys    = new long[4 * 16];
+    private int[]   heights = new int[16];
+    private boolean[] used  = new boolean[16];
+    private int     size;
+
+    private int slot(long[] k)
+    {
+      int mask = used.length - 1;
+      int i = (int) (k[0] ^ k[0] >>> 32) & mask;
+      while (used[i] && !equal(k, i))
+        i = (i + 1) & mask;
+      return i;
+    }
+
+    private boolean equal(long[] k, int i)
+    {
+      int o = 4 * i;
+      return keys[o] == k[0] && keys[o + 1] == k[1] && keys[o + 2] == k[2] && keys[o + 3] == k[3];
+    }
+
+    synchronized boolean put(long[] k, int height, boolean update)
+    {
+      int i = slot(k);
+      if (used[i])
+      {
+        if (update)
+          heights[i] = height;
+        return false;
+      }
+      System.arraycopy(k, 0, keys, 4 * i, 4);
+      heights[i] = height;
+      used[i] = true;
+      if (++size * 3 > used.length * 2)
+        grow();
+      return true;
+    }
+
+    synchronized int height(long[] k)
+    {
+      int i = slot(k);
+      return used[i] ? heights[i] : REMOVED;
+    }
+
+    synchronized boolean remove(long[] k)
+    {
+      int i = slot(k);
+      if (!used[i])
+        return false;
+      delete(i);
+      return true;
+    }
+
+    private void delete(int i)
+    {
+      int mask = used.length - 1;
+      used[i] = false;
+      size--;
+      int j = i;
+      while (true)
+      {
+        j = (j + 1) & mask;
+        if (!used[j])
+          return;
+        int home = (int) (keys[4 * j] ^ keys[4 * j] >>> 32) & mask;
+        // move j back into the hole if its home is not between the hole and j
+        if (i <= j ? (home <= i || home > j) : (home <= i && home > j))
+        {
+          System.arraycopy(keys, 4 * j, keys, 4 * i, 4);
+          heights[i] = heights[j];
+          used[i] = true;
+          used[j] = false;
+          i = j;
+        }
+      }
+    }
+
+    synchronized void expire(int height, List<long[]> removed)
+    {
+      for (int i = 0; i < used.length; i++)
+      {
+        // a shifted entry may land on a slot already visited, so look again
+        while (used[i] && heights[i] < height)
+        {
+          long[] k = new long[4];
+          System.arraycopy(keys, 4 * i, k, 0, 4);
+          removed.add(k);
+          delete(i);
+        }
+      }
+    }
+
+    synchronized int size()
+    {
+      return size;
+    }
+
+    synchronized int maxHeight()
+    {
+      int max = -1;
+      for (int i = 0; i < used.length; i++)
+        if (used[i] && heights[i] != NO_EXPIRY)
+          max = Math.max(max, heights[i]);
+      return max;
+    }
+
+    synchronized void clear()
+    {
+      keys = new long[4 * 16];
+      heights = new int[16];
+      used = new boolean[16];
+      size = 0;
+    }
+
+    synchronized void collect(List<String> ids)
+    {
+      for (int i = 0; i < used.length; i++)
+        if (used[i])
+          ids.add(txid(keys, 4 * i));
+    }
+
+    synchronized long write(DataOutputStream out) throws IOException
+    {
+      long n = 0;
+      for (int i = 0; i < used.length; i++)
+        if (used[i])
+        {
+          for (int j = 0; j < 4; j++)
+            out.writeLong(keys[4 * i + j]);
+          out.writeInt(heights[i]);
+          n++;
+        }
+      return n;
+    }
+
+    private void grow()
+    {
+      long[] oldKeys = keys;
+      int[] oldHeights = heights;
+      boolean[] oldUsed = used;
+      keys = new long[oldKeys.length * 2];
+      heights = new int[oldHeights.length * 2];
+      used = new boolean[oldUsed.length * 2];
+      long[] k = new long[4];
+      for (int i = 0; i < oldUsed.length; i++)
+        if (oldUsed[i])
+        {
+          System.arraycopy(oldKeys, 4 * i, k, 0, 4);
+          int j = slot(k);
+          System.arraycopy(k, 0, keys, 4 * j, 4);
+          heights[j] = oldHeights[i];
+          used[j] = true;
+        }
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncThoughtClientTest
+{
+  private EchoRpcServer      server;
+  private AsyncThoughtClient client;
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    client = new AsyncThoughtClient(new ThoughtRPCClient(server.url()), 3, null);
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    client.close();
+    server.close();
+  }
+
+  @Test
+  public void manyOutstandingCallsShareFewConnections() throws Exception
+  {
+    server.delay = 2;
+    List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+    for (int i = 0; i < 200; i++)
+      futures.add(client.query("getblockhash", i));
+    for (int i = 0; i < 200; i++)
+    {
+      Map<?, ?> echo = (Map<?, ?>) futures.get(i).get();
+      assertEquals("getblockhash", echo.get("method"));
+      assertEquals(Long.valueOf(i), ((List<?>) echo.get("params")).get(0));
+    }
+    assertEquals(200, server.requests.get());
+    assertEquals(3, server.connections.get());
+    assertEquals(0, client.getTransport().getPending());
+  }
+
+  @Test
+  public void chunkedResponses() throws Exception
+  {
+    server.chunked = true;
+    for (int i = 0; i < 3; i++)
+      assertEquals("ping", ((Map<?, ?>) client.query("ping").get()).get("method"));
+    assertEquals(1, server.connections.get());
+  }
+
+  @Test
+  public void malformedResponseOnlyFailsItsRequest() throws Exception
+  {
+    final ServerSocket raw = new ServerSocket(0);
+    Thread t = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        String[] answers = { "HTTP/1.1 200 OK\r\nContent-Length: nope\r\n\r\n",
+            "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok" };
+        for (String answer : answers)
+        {
+          try (Socket s = raw.accept())
+          {
+            InputStream in = s.getInputStream();
+            // the request is small enough to arrive in one read
+            in.read(new byte[4096]);
+            OutputStream out = s.getOutputStream();
+            out.write(answer.getBytes(Charset.forName("US-ASCII")));
+            out.flush();
+            if (answer.endsWith("ok"))
+              in.read();
+          }
+          catch (IOException ex)
+          {
+            return;
+          }
+        }
+      }
+    };
+    t.setDaemon(true);
+    t.start();
+    ThoughtAsyncTransport transport = new ThoughtAsyncTransport(new URL("http://127.0.0.1:" + raw.getLocalPort() + "/"), 1, null);
+    try
+    {
+      byte[] body = "{}".getBytes(Charset.forName("US-ASCII"));
+      try
+      {
+        transport.post("/", null, body).get();
+        fail();
+      }
+      catch (ExecutionException expected)
+      {
+        assertTrue(expected.getCause() instanceof IOException);
+      }
+      assertEquals("ok", new String(transport.post("/", null, body).get().body, Charset.forName("US-ASCII")));
+    }
+    finally
+    {
+      transport.close();
+      raw.close();
+    }
+  }
+
+  @Test
+  public void timedOutRequestIsNotRetried() throws Exception
+  {
+    assertEquals("ping", ((Map<?, ?>) client.query("ping").get()).get("method"));
+    server.delay = 1000;
+    client.getTransport().setRequestTimeout(100);
+    try
+    {
+      client.query("sendtoaddress", "addr", 1).get();
+      fail();
+    }
+    catch (ExecutionException expected)
+    {
+      assertTrue(expected.getCause().getCause() instanceof SocketTimeoutException);
+    }
+    Thread.sleep(300);
+    assertEquals(2, server.requests.get());
+  }
+
+  @Test
+  public void postAfterCloseFails() throws Exception
+  {
+    ThoughtAsyncTransport transport = client.getTransport();
+    transport.close();
+    try
+    {
+      transport.post("/", null, new byte[0]).get();
+      fail();
+    }
+    catch (ExecutionException expected)
+    {
+      assertTrue(expected.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void walletCallsAreTyped() throws Exception
+  {
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        if ("signrawtransaction".equals(method))
+        {
+          m.put("hex", "0100");
+          m.put("complete", !"partial".equals(params.get(0)));
+          return m;
+        }
+        if ("listtransactions".equals(method))
+        {
+          m.put("txid", "t" + params.get(1));
+          return Collections.singletonList(m);
+        }
+        return method;
+      }
+    };
+    assertEquals("0100", client.signRawTransaction("00").get());
+    try
+    {
+      client.signRawTransaction("partial").get();
+      fail();
+    }
+    catch (ExecutionException expected)
+    {
+      assertTrue(expected.getCause() instanceof GenericRpcException);
+    }
+    assertEquals("t5", client.listTransactions("", 5).get().get(0).txId());
+    assertEquals("getnewaddress", client.getNewAddress().get());
+    assertEquals("getrawchangeaddress", client.getRawChangeAddress().get());
+  }
+}
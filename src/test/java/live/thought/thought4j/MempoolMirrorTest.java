@@ -0,0 +1,154 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MempoolMirrorTest
+{
+  private EchoRpcServer          server;
+  private MempoolMirror          mirror;
+  private volatile List<String>  pool   = new ArrayList<String>();
+  private final Map<String, Map<String, Object>> blocks = new ConcurrentHashMap<String, Map<String, Object>>();
+  private volatile String        tip    = "b1";
+  private final List<String>     events = new ArrayList<String>();
+
+  private static String id(char c)
+  {
+    char[] id = new char[64];
+    Arrays.fill(id, c);
+    return new String(id);
+  }
+
+  private void connect(String hash, String prev, int height, List<String> tx)
+  {
+    Map<String, Object> m = new LinkedHashMap<String, Object>();
+    m.put("hash", hash);
+    m.put("height", height);
+    if (prev != null)
+      m.put("previousblockhash", prev);
+    m.put("tx", tx);
+    blocks.put(hash, m);
+    tip = hash;
+  }
+
+  @Before
+  public void start() throws IOException
+  {
+    connect("b1", null, 1, new ArrayList<String>());
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        if ("getrawmempool".equals(method))
+          return pool;
+        if ("getbestblockhash".equals(method))
+          return tip;
+        if ("getblock".equals(method))
+          return blocks.get(params.get(0));
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        if (!pool.contains(params.get(0)))
+          throw new IllegalStateException("No such mempool transaction");
+        m.put("txid", params.get(0));
+        return m;
+      }
+    };
+    mirror = new MempoolMirror(new ThoughtRPCClient(server.url()));
+    mirror.setBatchSize(2);
+    mirror.addListener(new MempoolMirror.Listener()
+    {
+      @Override
+      public void added(ThoughtClientInterface.RawTransaction transaction)
+      {
+        events.add("+" + transaction.txId().charAt(0));
+      }
+
+      @Override
+      public void removed(String txId, boolean confirmed)
+      {
+        events.add((confirmed ? "*" : "-") + txId.charAt(0));
+      }
+    });
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  @Test
+  public void reportsChanges() throws Exception
+  {
+    pool = Arrays.asList(id('a'), id('b'), id('c'));
+    mirror.poll();
+    assertEquals("[+a, +b, +c]", events.toString());
+    assertEquals(3, mirror.size());
+
+    events.clear();
+    mirror.poll();
+    assertEquals("[]", events.toString());
+
+    events.clear();
+    connect("b2", "b1", 2, Arrays.asList(id('a')));
+    pool = Arrays.asList(id('c'), id('d'));
+    mirror.poll();
+    assertEquals("[*a, -b, +d]", events.toString());
+    assertEquals(2, mirror.size());
+  }
+
+  @Test
+  public void confirmsAcrossSeveralBlocks() throws Exception
+  {
+    pool = Arrays.asList(id('a'), id('b'), id('c'));
+    mirror.poll();
+
+    events.clear();
+    connect("b2", "b1", 2, Arrays.asList(id('a')));
+    connect("b3", "b2", 3, Arrays.asList(id('b')));
+    pool = Arrays.asList(id('d'));
+    mirror.poll();
+    assertEquals("[*a, *b, -c, +d]", events.toString());
+  }
+
+  @Test
+  public void staysWithinMaxSize() throws Exception
+  {
+    mirror.setMaxSize(2);
+    pool = Arrays.asList(id('a'), id('b'), id('c'));
+    mirror.poll();
+    assertEquals(2, mirror.size());
+    assertEquals(1, mirror.getSkipped());
+  }
+}
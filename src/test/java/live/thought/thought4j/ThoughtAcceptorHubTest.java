@@ -0,0 +1,117 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThoughtAcceptorHubTest
+{
+  private EchoRpcServer server;
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        if ("getbestblockhash".equals(method))
+          return "b10";
+        if ("getmempoolinfo".equals(method))
+        {
+          m.put("size", 0);
+          m.put("bytes", 0);
+          return m;
+        }
+        if ("getblockheader".equals(method))
+        {
+          int height = Integer.parseInt(((String) params.get(0)).substring(1));
+          m.put("hash", params.get(0));
+          m.put("confirmations", 11 - height);
+          m.put("height", height);
+          m.put("previousblockhash", "b" + (height - 1));
+          return m;
+        }
+        m.put("transactions", new ArrayList<Object>());
+        m.put("lastblock", "b10");
+        return m;
+      }
+    };
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  private int count(String call)
+  {
+    int n = 0;
+    synchronized (server.calls)
+    {
+      for (String c : server.calls)
+        if (c.endsWith(call))
+          n++;
+    }
+    return n;
+  }
+
+  @Test
+  public void walletsShareChainWork() throws Exception
+  {
+    ThoughtAcceptorHub hub = new ThoughtAcceptorHub(new ThoughtRPCClient(server.url()));
+    hub.getScheduler().setProbeInterval(10);
+    try
+    {
+      hub.addWallet("a", 3);
+      hub.addWallet("b", 3);
+      hub.addWallet("c d", 3);
+      long deadline = System.currentTimeMillis() + 5000;
+      while (count("/wallet/c%20d listsinceblock") == 0 && System.currentTimeMillis() < deadline)
+        Thread.sleep(5);
+      Thread.sleep(100);
+    }
+    finally
+    {
+      hub.close();
+    }
+    assertEquals(1, count("/wallet/a listsinceblock"));
+    assertEquals(1, count("/wallet/b listsinceblock"));
+    assertEquals(1, count("/wallet/c%20d listsinceblock"));
+    // the block walk is done once, for the first wallet
+    assertEquals(3, count(" getblockheader"));
+    assertEquals(count(" getbestblockhash"), count("/ getbestblockhash"));
+  }
+}
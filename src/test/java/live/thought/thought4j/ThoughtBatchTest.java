@@ -0,0 +1,164 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import live.thought.thought4j.ThoughtClientInterface.Block;
+
+public class ThoughtBatchTest
+{
+  private EchoRpcServer    server;
+  private ThoughtRPCClient client;
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        if ("fail".equals(method))
+          throw new IllegalStateException("failed on purpose");
+        if ("getblock".equals(method))
+        {
+          Map<String, Object> block = new LinkedHashMap<String, Object>();
+          block.put("hash", params.get(0));
+          block.put("height", 7);
+          return block;
+        }
+        return method + params;
+      }
+    };
+    client = new ThoughtRPCClient(server.url());
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  @Test
+  public void resultsFollowCallOrderWhateverTheResponseOrder() throws Exception
+  {
+    server.batchFilter = new EchoRpcServer.BatchFilter()
+    {
+      @Override
+      public List<Object> filter(List<Object> responses)
+      {
+        List<Object> reversed = new ArrayList<Object>(responses);
+        Collections.reverse(reversed);
+        return reversed;
+      }
+    };
+    ThoughtRPCClient.BatchResult r = client.batch().call("a", 1).getBlock("h").call("b").execute();
+    assertEquals(1, server.requests.get());
+    assertEquals(3, r.size());
+    assertEquals("a[1]", r.get(0));
+    Block block = r.get(1);
+    assertEquals("h", block.hash());
+    assertEquals(7, block.height());
+    assertEquals("b[]", r.get(2));
+  }
+
+  @Test
+  public void errorsAreReportedPerCall() throws Exception
+  {
+    ThoughtRPCClient.BatchResult r = client.batch().call("a").call("fail").call("b").execute();
+    assertFalse(r.isError(0));
+    assertTrue(r.isError(1));
+    assertTrue(r.getError(1).getMessage().contains("failed on purpose"));
+    assertEquals("b[]", r.get(2));
+    try
+    {
+      r.get(1);
+      fail();
+    }
+    catch (GenericRpcException expected)
+    {
+    }
+  }
+
+  @Test
+  public void missingResponsesAreErrors() throws Exception
+  {
+    server.batchFilter = new EchoRpcServer.BatchFilter()
+    {
+      @Override
+      public List<Object> filter(List<Object> responses)
+      {
+        return new ArrayList<Object>(responses.subList(0, 1));
+      }
+    };
+    ThoughtRPCClient.BatchResult r = client.batch().call("a").call("b").execute();
+    assertEquals("a[]", r.get(0));
+    assertTrue(r.isError(1));
+    assertTrue(r.getError(1).getMessage().contains("No response for b"));
+  }
+
+  @Test
+  public void unknownIdsFailTheBatch() throws Exception
+  {
+    server.batchFilter = new EchoRpcServer.BatchFilter()
+    {
+      @Override
+      public List<Object> filter(List<Object> responses)
+      {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> first = (Map<String, Object>) responses.get(0);
+        first.put("id", -5);
+        return responses;
+      }
+    };
+    try
+    {
+      client.batch().call("a").execute();
+      fail();
+    }
+    catch (ThoughtRPCException expected)
+    {
+      assertTrue(expected.getMessage().contains("Unexpected response ID"));
+    }
+  }
+
+  @Test
+  public void emptyBatchSendsNothing() throws Exception
+  {
+    assertEquals(0, client.batch().execute().size());
+    assertEquals(0, server.requests.get());
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThoughtBlockCacheTest
+{
+  private EchoRpcServer                             server;
+  private ThoughtRPCClient                          client;
+  private final Map<String, AtomicInteger>          calls = new ConcurrentHashMap<String, AtomicInteger>();
+  private volatile int                              tip   = 100;
+  private volatile int                              forkHeight = Integer.MAX_VALUE;
+
+  private String hash(int height)
+  {
+    return (height >= forkHeight ? "fork" : "main") + height;
+  }
+
+  private int height(String hash)
+  {
+    return Integer.parseInt(hash.substring(4));
+  }
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        calls.putIfAbsent(method, new AtomicInteger());
+        calls.get(method).incrementAndGet();
+        if ("getbestblockhash".equals(method))
+          return hash(tip);
+        if ("getblockcount".equals(method))
+          return tip;
+        if ("getblockhash".equals(method))
+          return hash(((Number) params.get(0)).intValue());
+        String hash = (String) params.get(0);
+        int height = height(hash);
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        m.put("hash", hash);
+        m.put("confirmations", (long) (hash.equals(hash(height)) ? tip - height + 1 : -1));
+        m.put("height", (long) height);
+        if ("getblock".equals(method))
+          m.put("tx", new ArrayList<String>());
+        if (height > 0)
+          m.put("previousblockhash", hash(height - 1));
+        if (height < tip)
+          m.put("nextblockhash", hash(height + 1));
+        return m;
+      }
+    };
+    client = new ThoughtRPCClient(server.url());
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  private int calls(String method)
+  {
+    AtomicInteger n = calls.get(method);
+    return n == null ? 0 : n.get();
+  }
+
+  @Test
+  public void confirmedBlocksAreServedFromCache() throws Exception
+  {
+    assertEquals("main10", client.getBlock(10).hash());
+    assertEquals(91, client.getBlock(10).confirmations());
+    assertEquals("main11", client.getBlock(10).next().hash());
+    assertEquals("main10", client.getBlock(11).previous().hash());
+    assertEquals(2, calls("getblock"));
+    assertEquals(1, calls("getblockhash"));
+    assertEquals(0, calls("getblockcount"));
+
+    // Confirmations follow the tip once the client sees it
+    tip = 110;
+    assertEquals(91, client.getBlock(10).confirmations());
+    assertEquals(110, client.getBlockCount());
+    assertEquals(101, client.getBlock(10).confirmations());
+    assertEquals(2, calls("getblock"));
+  }
+
+  @Test
+  public void exactConfirmationsAskForTheTip() throws Exception
+  {
+    client.getBlockCache().setExactConfirmations(true);
+    client.getBlock(10);
+    tip = 110;
+    assertEquals(101, client.getBlock(10).confirmations());
+    assertEquals(1, calls("getblock"));
+    assertEquals(1, calls("getblockcount"));
+  }
+
+  @Test
+  public void recentBlocksAreFetchedAgain() throws Exception
+  {
+    client.getBlock(98);
+    client.getBlock(98);
+    assertEquals(2, calls("getblock"));
+  }
+
+  @Test
+  public void parentLinksAreCachedAtAnyDepth() throws Exception
+  {
+    String h = hash(tip);
+    for (int i = 0; i < 6; i++)
+      h = client.getPreviousBlockHash(h);
+    assertEquals("main94", h);
+    h = hash(tip);
+    for (int i = 0; i < 6; i++)
+      h = client.getPreviousBlockHash(h);
+    assertEquals(6, calls("getblockheader"));
+    assertNull(client.getPreviousBlockHash("main0"));
+  }
+
+  @Test
+  public void deepReorgInvalidates() throws Exception
+  {
+    client.getBestBlockHash();
+    assertEquals("main60", client.getBlock(60).hash());
+    forkHeight = 50;
+    tip = 101;
+    client.getBestBlockHash();
+    assertEquals(1, client.getBlockCache().getInvalidations());
+    assertEquals("fork60", client.getBlock(60).hash());
+    assertEquals("fork59", client.getBlock(60).previousHash());
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import live.thought.thought4j.ThoughtClientInterface.Block;
+
+public class ThoughtBlockIteratorTest
+{
+  private EchoRpcServer       server;
+  private final AtomicInteger active    = new AtomicInteger();
+  private final AtomicInteger maxActive = new AtomicInteger();
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        if ("getblockhash".equals(method))
+          return "hash" + params.get(0);
+        int n = active.incrementAndGet();
+        for (int m = maxActive.get(); n > m && !maxActive.compareAndSet(m, n); m = maxActive.get())
+          ;
+        try
+        {
+          Thread.sleep(2);
+        }
+        catch (InterruptedException ex)
+        {
+        }
+        active.decrementAndGet();
+        Map<String, Object> block = new LinkedHashMap<String, Object>();
+        block.put("hash", params.get(0));
+        block.put("height", Long.parseLong(((String) params.get(0)).substring(4)));
+        return block;
+      }
+    };
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  @Test
+  public void blocksArriveInHeightOrder() throws Exception
+  {
+    ThoughtRPCClient client = new ThoughtRPCClient(server.url());
+    int expected = 10;
+    try (ThoughtBlockIterator blocks = client.blocks(10, 109, 3, false))
+    {
+      while (blocks.hasNext())
+      {
+        Block b = blocks.next();
+        assertEquals(expected, b.height());
+        assertEquals("hash" + expected, b.hash());
+        expected++;
+      }
+    }
+    assertEquals(110, expected);
+    assertTrue(maxActive.get() <= 3);
+  }
+
+  @Test
+  public void closingStopsPrefetch() throws Exception
+  {
+    ThoughtRPCClient client = new ThoughtRPCClient(server.url());
+    ThoughtBlockIterator blocks = client.blocks(0, 1000);
+    assertEquals(0, blocks.next().height());
+    blocks.close();
+    assertFalse(blocks.hasNext());
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import live.thought.thought4j.ThoughtClientInterface.Block;
+
+public class ThoughtChainFollowerTest
+{
+  @Rule
+  public TemporaryFolder              folder = new TemporaryFolder();
+
+  private EchoRpcServer               server;
+  private ThoughtRPCClient            client;
+  private final List<String>          chain  = Collections.synchronizedList(new ArrayList<String>());
+  private final Map<String, Integer>  known  = Collections.synchronizedMap(new LinkedHashMap<String, Integer>());
+  private final List<String>          events = new ArrayList<String>();
+
+  private void extend(String prefix, int height)
+  {
+    while (chain.size() > height)
+      chain.remove(chain.size() - 1);
+    while (chain.size() <= height)
+    {
+      String hash = prefix + chain.size();
+      known.put(hash, chain.size());
+      chain.add(hash);
+    }
+  }
+
+  @Before
+  public void start() throws IOException
+  {
+    extend("m", 10);
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        synchronized (chain)
+        {
+          if ("getbestblockhash".equals(method))
+            return chain.get(chain.size() - 1);
+          if ("getblockcount".equals(method))
+            return chain.size() - 1;
+          if ("getblockhash".equals(method))
+            return chain.get(((Number) params.get(0)).intValue());
+          String hash = (String) params.get(0);
+          int height = known.get(hash);
+          Map<String, Object> m = new LinkedHashMap<String, Object>();
+          m.put("hash", hash);
+          m.put("height", height);
+          boolean main = height < chain.size() && chain.get(height).equals(hash);
+          m.put("confirmations", main ? chain.size() - height : -1);
+          if (height > 0)
+          {
+            String prev = hash.substring(0, 1) + (height - 1);
+            m.put("previousblockhash", known.containsKey(prev) ? prev : "m" + (height - 1));
+          }
+          return m;
+        }
+      }
+    };
+    client = new ThoughtRPCClient(server.url());
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  private ThoughtChainFollower follower(File file, int startHeight) throws IOException
+  {
+    ThoughtChainFollower f = new ThoughtChainFollower(client, file, startHeight);
+    f.addListener(new ThoughtChainFollower.Listener()
+    {
+      @Override
+      public void blockConnected(Block block)
+      {
+        events.add("+" + block.hash());
+      }
+
+      @Override
+      public void blockDisconnected(Block block)
+      {
+        events.add("-" + block.hash());
+      }
+    });
+    return f;
+  }
+
+  @Test
+  public void followsReorganizationsAndResumes() throws Exception
+  {
+    File file = new File(folder.getRoot(), "follower.properties");
+    ThoughtChainFollower f = follower(file, 8);
+    assertEquals(2, f.poll());
+    assertEquals("[+m9, +m10]", events.toString());
+    assertEquals(0, f.poll());
+
+    events.clear();
+    synchronized (chain)
+    {
+      extend("f", 9);
+      extend("f", 11);
+    }
+    f.setMaxAncestors(1);
+    f.poll();
+    assertEquals("[-m10, -m9, +f9, +f10, +f11]", events.toString());
+
+    events.clear();
+    synchronized (chain)
+    {
+      extend("f", 12);
+    }
+    ThoughtChainFollower resumed = follower(file, 0);
+    assertEquals("f11", resumed.getHash());
+    assertEquals(1, resumed.poll());
+    assertEquals("[+f12]", events.toString());
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThoughtCoinSelectorTest
+{
+  private static final long[] VALUES = { 50, 30, 20, 10, 5 };
+
+  private EchoRpcServer       server;
+  private final List<Object>  unspent = new ArrayList<Object>();
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        return unspent;
+      }
+    };
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  private Map<String, Object> utxo(String txid, int vout, double amount, int confirmations)
+  {
+    Map<String, Object> m = new LinkedHashMap<String, Object>();
+    m.put("txid", txid);
+    m.put("vout", vout);
+    m.put("amount", amount);
+    m.put("confirmations", confirmations);
+    unspent.add(m);
+    return m;
+  }
+
+  private static long sum(int[] chosen)
+  {
+    long sum = 0;
+    for (int i : chosen)
+      sum += VALUES[i];
+    return sum;
+  }
+
+  @Test
+  public void largestAndSmallestFirst()
+  {
+    assertArrayEquals(new int[] { 0, 1 }, ThoughtCoinSelector.LARGEST_FIRST.select(VALUES, 60, 0));
+    assertArrayEquals(new int[] { 2, 3, 4 }, ThoughtCoinSelector.SMALLEST_FIRST.select(VALUES, 30, 0));
+    assertNull(ThoughtCoinSelector.LARGEST_FIRST.select(VALUES, 116, 0));
+  }
+
+  @Test
+  public void branchAndBoundFindsExactMatch()
+  {
+    int[] chosen = ThoughtCoinSelector.BRANCH_AND_BOUND.select(VALUES, 65, 0);
+    assertEquals(65, sum(chosen));
+    assertNull(ThoughtCoinSelector.BRANCH_AND_BOUND.select(VALUES, 4, 0));
+    assertArrayEquals(new int[] { 3 }, ThoughtCoinSelector.BRANCH_AND_BOUND.select(VALUES, 8, 3));
+  }
+
+  @Test
+  public void knapsackCoversTarget()
+  {
+    assertArrayEquals(new int[] { 2 }, ThoughtCoinSelector.KNAPSACK.select(VALUES, 20, 0));
+    assertEquals(45, sum(ThoughtCoinSelector.KNAPSACK.select(VALUES, 44, 0)));
+    // a small excess would make dust change, so one large output is better
+    assertArrayEquals(new int[] { 0 }, ThoughtCoinSelector.KNAPSACK.select(new long[] { 100, 3, 2 }, 4, 10));
+    assertNull(ThoughtCoinSelector.KNAPSACK.select(VALUES, 200, 0));
+  }
+
+  @Test
+  public void scalesToLargeWallets()
+  {
+    long[] values = new long[100000];
+    for (int i = 0; i < values.length; i++)
+      values[i] = 1000000 - i * 7;
+    long start = System.nanoTime();
+    int[] chosen = ThoughtCoinSelector.DEFAULT.select(values, 123456789, 0);
+    assertTrue(System.nanoTime() - start < 10000000000L);
+    long sum = 0;
+    for (int i : chosen)
+      sum += values[i];
+    assertTrue(sum >= 123456789);
+  }
+
+  @Test
+  public void selectorUsesOneSnapshot() throws Exception
+  {
+    utxo("a", 0, 0.5, 10);
+    utxo("b", 1, 0.3, 10);
+    utxo("c", 0, 0.2, 0);
+    ThoughtRPCClient client = new ThoughtRPCClient(server.url());
+    ThoughtCoinSelector selector = new ThoughtCoinSelector(client);
+    ThoughtCoinSelector.Selection s = selector.select(50000000, 1, null);
+    assertEquals(1, s.coins.size());
+    assertEquals("a", s.coins.get(0).txid());
+    assertEquals(50000000, s.total);
+    assertNull(selector.select(50000000, 1, null));
+    assertEquals(20000000, selector.select(20000000, 0, null).total);
+    assertEquals(1, server.requests.get());
+
+    ThoughtRawTxBuilder builder = new ThoughtRawTxBuilder(client);
+    selector.invalidate();
+    builder.setCoinSelector(selector).in(0.3, 1);
+    assertEquals("b", builder.inputs.iterator().next().txid());
+    assertEquals(2, server.requests.get());
+  }
+
+  @Test
+  public void unspendableOutputsAreNotSelected() throws Exception
+  {
+    utxo("a", 0, 0.5, 10).put("spendable", false);
+    utxo("b", 0, 0.3, 10);
+    ThoughtCoinSelector selector = new ThoughtCoinSelector(new ThoughtRPCClient(server.url()));
+    ThoughtCoinSelector.Selection s = selector.select(30000000, 1, null);
+    assertEquals("b", s.coins.get(0).txid());
+    assertNull(selector.select(30000000, 1, null));
+  }
+}
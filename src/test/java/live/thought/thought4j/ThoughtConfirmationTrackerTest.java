@@ -0,0 +1,152 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThoughtConfirmationTrackerTest
+{
+  private EchoRpcServer                   server;
+  private ThoughtConfirmationTracker      tracker;
+  private final List<String>              events   = Collections.synchronizedList(new ArrayList<String>());
+  private final List<String>              since    = Collections.synchronizedList(new ArrayList<String>());
+  /** txid to block height, -1 while in the mempool */
+  private final Map<String, Integer>      payments = Collections.synchronizedMap(new LinkedHashMap<String, Integer>());
+  private volatile int                    tip      = 100;
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        if ("getblockheader".equals(method))
+        {
+          m.put("height", Integer.parseInt(((String) params.get(0)).substring(1)));
+          return m;
+        }
+        int from = Integer.parseInt(((String) params.get(0)).substring(1));
+        since.add((String) params.get(0));
+        List<Object> txs = new ArrayList<Object>();
+        synchronized (payments)
+        {
+          for (Map.Entry<String, Integer> p : payments.entrySet())
+          {
+            int height = p.getValue();
+            if (height >= 0 && height <= from)
+              continue;
+            Map<String, Object> tx = new LinkedHashMap<String, Object>();
+            tx.put("txid", p.getKey());
+            tx.put("category", "receive");
+            tx.put("confirmations", height < 0 ? 0 : tip - height + 1);
+            txs.add(tx);
+          }
+        }
+        m.put("transactions", txs);
+        m.put("lastblock", "b" + tip);
+        return m;
+      }
+    };
+    tracker = new ThoughtConfirmationTracker(new ThoughtRPCClient(server.url()), "b100", 0, 1, 3);
+    tracker.addListener(new ThoughtPaymentListener()
+    {
+      @Override
+      public void block(String blockHash)
+      {
+        events.add(blockHash);
+      }
+
+      @Override
+      public void transaction(ThoughtClientInterface.Transaction transaction)
+      {
+        events.add(transaction.txId() + "@" + transaction.confirmations());
+      }
+    });
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  @Test
+  public void thresholdsFireOnce() throws Exception
+  {
+    payments.put("a", -1);
+    tracker.check();
+    tracker.check();
+    assertEquals("[a@0]", events.toString());
+
+    tip = 101;
+    payments.put("a", 101);
+    tracker.check();
+    assertEquals("[a@0, a@1, b101]", events.toString());
+
+    tip = 102;
+    tracker.check();
+    tip = 103;
+    tracker.check();
+    assertEquals("[a@0, a@1, b101, b102, a@3, b103]", events.toString());
+    assertEquals(0, tracker.getPendingCount());
+    assertEquals("[b100, b100, b100, b101, b102]", since.toString());
+  }
+
+  @Test
+  public void skippedThresholdsFireOnce() throws Exception
+  {
+    tip = 104;
+    payments.put("c", 101);
+    tracker.check();
+    assertEquals("[c@4, b104]", events.toString());
+    assertEquals(0, tracker.getPendingCount());
+  }
+
+  @Test
+  public void paymentsLeavingTheMempoolAreDropped() throws Exception
+  {
+    payments.put("d", -1);
+    tracker.setMaxMissedChecks(2);
+    tracker.check();
+    assertEquals(1, tracker.getPendingCount());
+
+    payments.remove("d");
+    tracker.check();
+    assertEquals(1, tracker.getPendingCount());
+    tracker.check();
+    assertEquals(0, tracker.getPendingCount());
+    assertEquals("[d@0]", events.toString());
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.security.KeyStore;
+import java.util.Map;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThoughtConnectionPoolTest
+{
+  private EchoRpcServer server;
+
+  @Before
+  public void startServer() throws IOException
+  {
+    server = new EchoRpcServer();
+  }
+
+  @After
+  public void stopServer() throws IOException
+  {
+    server.close();
+  }
+
+  private ThoughtRPCClient client() throws IOException
+  {
+    return new ThoughtRPCClient(server.url());
+  }
+
+  @Test
+  public void connectionIsReused() throws Exception
+  {
+    ThoughtRPCClient client = client();
+    for (int i = 0; i < 5; i++)
+      assertEquals("getblockcount", ((Map<?, ?>) client.query("getblockcount")).get("method"));
+    ThoughtConnectionPool.Statistics stats = client.getConnectionPool().getStatistics();
+    assertEquals(1, server.connections.get());
+    assertEquals(1, stats.created);
+    assertEquals(4, stats.reused);
+    assertEquals(1, stats.idle);
+    assertEquals(0, stats.leased);
+  }
+
+  @Test
+  public void chunkedResponsesKeepConnectionAlive() throws Exception
+  {
+    server.chunked = true;
+    ThoughtRPCClient client = client();
+    for (int i = 0; i < 3; i++)
+      assertEquals("ping", ((Map<?, ?>) client.query("ping")).get("method"));
+    assertEquals(1, server.connections.get());
+  }
+
+  @Test
+  public void idleConnectionsAreEvicted() throws Exception
+  {
+    ThoughtRPCClient client = client();
+    client.getConnectionPool().setIdleTimeout(1);
+    client.query("ping");
+    Thread.sleep(10);
+    client.getConnectionPool().evictIdle();
+    assertEquals(0, client.getConnectionPool().getStatistics().idle);
+    assertEquals(1, client.getConnectionPool().getStatistics().evicted);
+  }
+
+  private static KeyStore keyStore(String name) throws Exception
+  {
+    KeyStore ks = KeyStore.getInstance("PKCS12");
+    InputStream in = ThoughtConnectionPoolTest.class.getResourceAsStream(name);
+    try
+    {
+      ks.load(in, "changeit".toCharArray());
+    }
+    finally
+    {
+      in.close();
+    }
+    return ks;
+  }
+
+  /**
+   * Answers one HTTPS request with the certificate in the given key store and
+   * returns the status code the pool saw.
+   */
+  private static int tlsRequest(String keyStore) throws Exception
+  {
+    KeyStore ks = keyStore(keyStore);
+    KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    kmf.init(ks, "changeit".toCharArray());
+    SSLContext serverContext = SSLContext.getInstance("TLS");
+    serverContext.init(kmf.getKeyManagers(), null, null);
+    // the client trusts the certificate, so only the host name can fail
+    TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    tmf.init(ks);
+    SSLContext clientContext = SSLContext.getInstance("TLS");
+    clientContext.init(null, tmf.getTrustManagers(), null);
+
+    final SSLServerSocket server = (SSLServerSocket) serverContext.getServerSocketFactory().createServerSocket(0, 1,
+        InetAddress.getByName("127.0.0.1"));
+    Thread t = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          Socket s = server.accept();
+          try
+          {
+            BufferedReader r = new BufferedReader(new InputStreamReader(s.getInputStream(), "ISO-8859-1"));
+            int length = 0;
+            for (String line; (line = r.readLine()) != null && !line.isEmpty();)
+              if (line.toLowerCase().startsWith("content-length:"))
+                length = Integer.parseInt(line.substring(15).trim());
+            for (int i = 0; i < length; i++)
+              r.read();
+            OutputStream out = s.getOutputStream();
+            out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes("ISO-8859-1"));
+            out.flush();
+          }
+          finally
+          {
+            s.close();
+          }
+        }
+        catch (IOException ignored)
+        {
+          // handshake refused by the client
+        }
+      }
+    };
+    t.setDaemon(true);
+    t.start();
+    try
+    {
+      ThoughtConnectionPool pool = new ThoughtConnectionPool(new URL("https://127.0.0.1:" + server.getLocalPort() + "/"));
+      pool.setSslSocketFactory(clientContext.getSocketFactory());
+      ThoughtConnectionPool.Response response = pool.post("/", null, new byte[0]);
+      try
+      {
+        return response.getStatusCode();
+      }
+      finally
+      {
+        response.close();
+      }
+    }
+    finally
+    {
+      server.close();
+    }
+  }
+
+  @Test
+  public void certificateMatchingTheHostIsAccepted() throws Exception
+  {
+    assertEquals(200, tlsRequest("localhost.p12"));
+  }
+
+  @Test
+  public void certificateForAnotherHostIsRejected() throws Exception
+  {
+    try
+    {
+      tlsRequest("example.p12");
+      fail();
+    }
+    catch (SSLException ex)
+    {
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import live.thought.thought4j.ThoughtClientInterface.Transaction;
+
+public class ThoughtListenerDispatcherTest
+{
+  private ThoughtListenerDispatcher dispatcher;
+
+  @Before
+  public void start()
+  {
+    dispatcher = new ThoughtListenerDispatcher(4);
+  }
+
+  @After
+  public void stop()
+  {
+    dispatcher.close();
+  }
+
+  private static Transaction tx(final String txId)
+  {
+    return (Transaction) Proxy.newProxyInstance(Transaction.class.getClassLoader(), new Class<?>[] { Transaction.class },
+        new InvocationHandler()
+        {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args)
+          {
+            return "txId".equals(method.getName()) || "account".equals(method.getName()) ? txId : null;
+          }
+        });
+  }
+
+  private static class Recorder implements ThoughtPaymentListener
+  {
+    final List<String>   events = Collections.synchronizedList(new ArrayList<String>());
+    final CountDownLatch gate;
+
+    Recorder(CountDownLatch gate)
+    {
+      this.gate = gate;
+    }
+
+    @Override
+    public void block(String blockHash)
+    {
+      events.add(blockHash);
+    }
+
+    @Override
+    public void transaction(Transaction transaction)
+    {
+      try
+      {
+        gate.await();
+      }
+      catch (InterruptedException ex)
+      {
+        return;
+      }
+      events.add(transaction.txId());
+    }
+  }
+
+  @Test
+  public void slowListenerDoesNotStallOthers() throws Exception
+  {
+    CountDownLatch gate = new CountDownLatch(1);
+    Recorder slow = new Recorder(gate);
+    Recorder fast = new Recorder(new CountDownLatch(0));
+    for (int i = 0; i < 10; i++)
+    {
+      dispatcher.transaction(slow, tx("t" + i));
+      dispatcher.transaction(fast, tx("t" + i));
+    }
+    long deadline = System.currentTimeMillis() + 5000;
+    while (fast.events.size() < 10 && System.currentTimeMillis() < deadline)
+      Thread.sleep(5);
+    assertEquals(10, fast.events.size());
+    assertEquals(0, slow.events.size());
+    gate.countDown();
+    assertTrue(dispatcher.awaitIdle(5000));
+    assertEquals(10, slow.events.size());
+    assertEquals(10, dispatcher.getMetrics(slow).dispatched);
+  }
+
+  @Test
+  public void eventsForOneTxidStayInOrder() throws Exception
+  {
+    dispatcher.setLanesPerListener(4);
+    final List<String> seen = Collections.synchronizedList(new ArrayList<String>());
+    ThoughtPaymentListener l = new SimpleThoughtPaymentListener()
+    {
+      @Override
+      public void transaction(Transaction transaction)
+      {
+        if ("a".equals(transaction.txId()))
+          seen.add(transaction.txId() + seen.size());
+      }
+    };
+    for (int i = 0; i < 200; i++)
+    {
+      dispatcher.transaction(l, tx("a"));
+      dispatcher.transaction(l, tx("b" + i));
+    }
+    assertTrue(dispatcher.awaitIdle(5000));
+    assertEquals(200, seen.size());
+    for (int i = 0; i < 200; i++)
+      assertEquals("a" + i, seen.get(i));
+  }
+
+  @Test
+  public void dropOldestDiscardsWhenFull() throws Exception
+  {
+    dispatcher.setQueueCapacity(2);
+    dispatcher.setOverflowPolicy(ThoughtListenerDispatcher.OverflowPolicy.DROP_OLDEST);
+    CountDownLatch gate = new CountDownLatch(1);
+    Recorder r = new Recorder(gate);
+    dispatcher.transaction(r, tx("t0"));
+    Thread.sleep(50);
+    for (int i = 1; i < 5; i++)
+      dispatcher.transaction(r, tx("t" + i));
+    gate.countDown();
+    assertTrue(dispatcher.awaitIdle(5000));
+    assertEquals("[t0, t3, t4]", r.events.toString());
+    assertEquals(2, dispatcher.getMetrics(r).dropped);
+  }
+
+  @Test
+  public void spillKeepsEverythingInOrder() throws Exception
+  {
+    dispatcher.setQueueCapacity(2);
+    dispatcher.setOverflowPolicy(ThoughtListenerDispatcher.OverflowPolicy.SPILL);
+    CountDownLatch gate = new CountDownLatch(1);
+    Recorder r = new Recorder(gate);
+    dispatcher.transaction(r, tx("t0"));
+    Thread.sleep(50);
+    for (int i = 1; i < 6; i++)
+      dispatcher.transaction(r, tx("t" + i));
+    assertEquals(5, dispatcher.getMetrics(r).queued);
+    gate.countDown();
+    assertTrue(dispatcher.awaitIdle(5000));
+    assertEquals("[t0, t1, t2, t3, t4, t5]", r.events.toString());
+    assertEquals(3, dispatcher.getMetrics(r).spilled);
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThoughtNotifyReceiverTest
+{
+  private ThoughtNotifyReceiver              receiver;
+  private final LinkedBlockingQueue<String>  received = new LinkedBlockingQueue<String>();
+
+  @Before
+  public void start() throws IOException
+  {
+    receiver = new ThoughtNotifyReceiver(0);
+    receiver.addListener(new ThoughtNotifyReceiver.Listener()
+    {
+      @Override
+      public void notified(String kind, String id)
+      {
+        received.add(kind + ":" + id);
+      }
+    });
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    receiver.close();
+  }
+
+  @Test
+  public void linesAreDispatched() throws Exception
+  {
+    try (Socket s = new Socket(InetAddress.getLoopbackAddress(), receiver.getPort()))
+    {
+      OutputStream out = s.getOutputStream();
+      out.write("walletnotify aa01\nblocknotify bb02\r\n".getBytes("US-ASCII"));
+    }
+    assertEquals("walletnotify:aa01", received.poll(5, TimeUnit.SECONDS));
+    assertEquals("blocknotify:bb02", received.poll(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void httpRequestsAreDispatched() throws Exception
+  {
+    HttpURLConnection c = (HttpURLConnection) new URL("http://127.0.0.1:" + receiver.getPort() + "/blocknotify/cc03")
+        .openConnection();
+    assertEquals(204, c.getResponseCode());
+    assertEquals("blocknotify:cc03", received.poll(5, TimeUnit.SECONDS));
+    c = (HttpURLConnection) new URL("http://127.0.0.1:" + receiver.getPort() + "/other/cc03").openConnection();
+    assertEquals(404, c.getResponseCode());
+  }
+
+  @Test
+  public void acceptorIsWokenUp() throws Exception
+  {
+    final AtomicInteger polls = new AtomicInteger();
+    EchoRpcServer server = new EchoRpcServer();
+    try
+    {
+      server.handler = new EchoRpcServer.Handler()
+      {
+        @Override
+        public Object result(String method, List<?> params)
+        {
+          Map<String, Object> m = new LinkedHashMap<String, Object>();
+          if ("getblockheader".equals(method))
+          {
+            m.put("height", 1);
+            return m;
+          }
+          polls.incrementAndGet();
+          m.put("transactions", new ArrayList<Object>());
+          m.put("lastblock", "tip");
+          return m;
+        }
+      };
+      ThoughtAcceptor acceptor = new ThoughtAcceptor(new ThoughtRPCClient(server.url()), "tip", 0);
+      receiver.addAcceptor(acceptor);
+      assertEquals(ThoughtNotifyReceiver.DEFAULT_FALLBACK_INTERVAL, acceptor.getCheckInterval());
+      Thread t = new Thread(acceptor);
+      t.start();
+      waitFor(polls, 1);
+      try (Socket s = new Socket(InetAddress.getLoopbackAddress(), receiver.getPort()))
+      {
+        s.getOutputStream().write("walletnotify aa01\n".getBytes("US-ASCII"));
+      }
+      waitFor(polls, 2);
+      acceptor.stopAccepting();
+      t.join(5000);
+    }
+    finally
+    {
+      server.close();
+    }
+  }
+
+  private static void waitFor(AtomicInteger n, int value) throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (n.get() < value && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+    assertEquals(value, n.get());
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThoughtPayoutBatcherTest
+{
+  private EchoRpcServer        server;
+  private ThoughtRPCClient     client;
+  private ThoughtPayoutBatcher batcher;
+  private final List<Object>   sent = new ArrayList<Object>();
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        if ("validateaddress".equals(method))
+          return Collections.singletonMap("isvalid", !"bad".equals(params.get(0)));
+        Map<?, ?> amounts = (Map<?, ?>) params.get(1);
+        if (amounts.containsKey("bad"))
+          throw new IllegalStateException("Invalid Thought address: bad");
+        if (amounts.containsKey("poor"))
+          throw new IllegalStateException("Insufficient funds");
+        synchronized (sent)
+        {
+          sent.add(amounts);
+          return "tx" + sent.size();
+        }
+      }
+    };
+    client = new ThoughtRPCClient(server.url());
+    batcher = new ThoughtPayoutBatcher(client);
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    batcher.close();
+    server.close();
+  }
+
+  @Test
+  public void payoutsShareOneSendMany() throws Exception
+  {
+    batcher.setMaxDelay(60000);
+    batcher.setMaxPayouts(3);
+    CompletableFuture<String> a = batcher.submit("a", 1.5);
+    CompletableFuture<String> b = batcher.submit("b", 0.1);
+    CompletableFuture<String> c = batcher.submit("a", 0.25);
+    assertEquals("tx1", a.get(5, TimeUnit.SECONDS));
+    assertEquals("tx1", b.get(5, TimeUnit.SECONDS));
+    assertEquals("tx1", c.get(5, TimeUnit.SECONDS));
+    assertEquals(1, server.requests.get());
+    assertEquals("{a=1.75, b=0.1}", sent.get(0).toString());
+    assertEquals(1, batcher.getBatches());
+    assertEquals(3, batcher.getPayouts());
+  }
+
+  @Test
+  public void delayAndCloseSendPending() throws Exception
+  {
+    batcher.setMaxDelay(10);
+    assertEquals("tx1", batcher.submit("a", 1).get(5, TimeUnit.SECONDS));
+    batcher.setMaxDelay(60000);
+    CompletableFuture<String> b = batcher.submit("b", 2);
+    batcher.close();
+    assertEquals("tx2", b.get(0, TimeUnit.SECONDS));
+    try
+    {
+      batcher.submit("c", 1);
+      fail();
+    }
+    catch (IllegalStateException ex)
+    {
+    }
+  }
+
+  @Test
+  public void invalidAddressIsDroppedFromTheBatch() throws Exception
+  {
+    batcher.setMaxDelay(60000);
+    CompletableFuture<String> a = batcher.submit("a", 1);
+    CompletableFuture<String> b = batcher.submit("bad", 1);
+    batcher.flush();
+    assertEquals("tx1", a.get(5, TimeUnit.SECONDS));
+    assertEquals("[{a=1.0}]", sent.toString());
+    try
+    {
+      b.get(5, TimeUnit.SECONDS);
+      fail();
+    }
+    catch (ExecutionException ex)
+    {
+      assertTrue(ex.getCause().getMessage().contains("Invalid Thought address"));
+    }
+    assertEquals(1, batcher.getPayouts());
+  }
+
+  @Test
+  public void rejectedBatchFailsEveryPayout() throws Exception
+  {
+    batcher.setMaxDelay(60000);
+    CompletableFuture<String> a = batcher.submit("a", 1);
+    CompletableFuture<String> b = batcher.submit("poor", 1);
+    batcher.flush();
+    for (CompletableFuture<String> f : Arrays.asList(a, b))
+    {
+      try
+      {
+        f.get(5, TimeUnit.SECONDS);
+        fail();
+      }
+      catch (ExecutionException ex)
+      {
+        assertTrue(ex.getCause() instanceof GenericRpcException);
+        assertFalse(ex.getCause() instanceof ThoughtPayoutBatcher.UnknownOutcomeException);
+      }
+    }
+    assertEquals(1, batcher.getBatches());
+  }
+
+  @Test
+  public void errorStatusWithRpcErrorIsRejected() throws Exception
+  {
+    server.status = "500 Internal Server Error";
+    CompletableFuture<String> a = batcher.submit("poor", 1);
+    batcher.flush();
+    try
+    {
+      a.get(5, TimeUnit.SECONDS);
+      fail();
+    }
+    catch (ExecutionException ex)
+    {
+      assertEquals(500, ((ThoughtRPCException) ex.getCause()).getResponseCode());
+    }
+  }
+
+  @Test
+  public void proxyErrorLeavesOutcomeUnknown() throws Exception
+  {
+    server.status = "502 Bad Gateway";
+    CompletableFuture<String> a = batcher.submit("a", 1);
+    batcher.flush();
+    try
+    {
+      a.get(5, TimeUnit.SECONDS);
+      fail();
+    }
+    catch (ExecutionException ex)
+    {
+      assertTrue(ex.getCause() instanceof ThoughtPayoutBatcher.UnknownOutcomeException);
+    }
+    assertEquals(1, batcher.getBatches());
+  }
+
+  @Test
+  public void transportFailureLeavesOutcomeUnknown() throws Exception
+  {
+    server.delay = 2000;
+    client.getConnectionPool().setReadTimeout(50);
+    batcher.setMaxDelay(60000);
+    CompletableFuture<String> a = batcher.submit("a", 1);
+    batcher.flush();
+    try
+    {
+      a.get(5, TimeUnit.SECONDS);
+      fail();
+    }
+    catch (ExecutionException ex)
+    {
+      assertTrue(ex.getCause() instanceof ThoughtPayoutBatcher.UnknownOutcomeException);
+    }
+  }
+}
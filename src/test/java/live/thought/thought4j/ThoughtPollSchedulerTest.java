@@ -0,0 +1,109 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThoughtPollSchedulerTest
+{
+  private EchoRpcServer        server;
+  private ThoughtPollScheduler scheduler;
+  private final AtomicInteger  scans    = new AtomicInteger();
+  private volatile String      tip      = "b1";
+  private volatile long        memPool  = 0;
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        if ("getbestblockhash".equals(method))
+          return tip;
+        if ("getmempoolinfo".equals(method))
+        {
+          m.put("size", memPool);
+          m.put("bytes", memPool * 250);
+          return m;
+        }
+        if ("getblockheader".equals(method))
+        {
+          m.put("height", Integer.parseInt(((String) params.get(0)).substring(1)));
+          return m;
+        }
+        scans.incrementAndGet();
+        m.put("transactions", new ArrayList<Object>());
+        m.put("lastblock", tip);
+        return m;
+      }
+    };
+    scheduler = new ThoughtPollScheduler();
+    scheduler.setProbeInterval(10);
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    scheduler.close();
+    server.close();
+  }
+
+  private void waitFor(int value) throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (scans.get() < value && System.currentTimeMillis() < deadline)
+      Thread.sleep(5);
+    Thread.sleep(100);
+    assertEquals(value, scans.get());
+  }
+
+  @Test
+  public void scansOnlyWhenTipOrMemPoolChanges() throws Exception
+  {
+    ThoughtRPCClient client = new ThoughtRPCClient(server.url());
+    scheduler.add(new ThoughtAcceptor(client, "b1", 0));
+    scheduler.add(new ThoughtAcceptor(client, "b1", 0));
+    waitFor(2);
+
+    tip = "b2";
+    waitFor(4);
+
+    memPool = 3;
+    waitFor(6);
+
+    scheduler.wakeUp();
+    waitFor(8);
+  }
+}
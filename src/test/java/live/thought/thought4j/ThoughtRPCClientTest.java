@@ -27,9 +27,11 @@ import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -59,7 +61,13 @@ public class ThoughtRPCClientTest {
             if(o.equals(expectedObject)){
                 throw new GenericRpcException("wrong object");
             }
-            return JSON.parse(result);
+            if (!isExactDecimals())
+                return JSON.parse(result);
+            try {
+                return JSON.parse(result.getBytes("UTF-8"), true);
+            } catch (IOException ex) {
+                throw new GenericRpcException(ex);
+            }
         }
     }
 
@@ -129,4 +137,17 @@ public class ThoughtRPCClientTest {
         boolean bool = client.lockunspent(false, inputSet);
         assertEquals("true", String.valueOf(bool));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void listAddressBalancesTest() throws Exception {
+        for (boolean exact : new boolean[] { false, true }) {
+            client = new MyClientTest(true, "listaddressbalances", null,
+                    "{\"addr1\": 12.5, \"addr2\": 0.00000001}");
+            client.setExactDecimals(exact);
+            Map<String, Double> balances = client.listAddressBalances(0);
+            Double d = balances.get("addr1");
+            assertEquals(12.5, d, 0);
+            assertEquals(Double.valueOf(0.00000001), balances.get("addr2"));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import live.thought.thought4j.ThoughtClientInterface.RawTransaction;
+import live.thought.thought4j.util.HexCoder;
+
+public class ThoughtRawDecoderTest
+{
+  // The bitcoin genesis block uses the same serialization as Thought blocks
+  private static final String GENESIS = "0100000000000000000000000000000000000000000000000000000000000000000000003ba3edfd7a7b12b27ac72c3e67768f617fc81bc3888a51323a9fb8aa4b1e5e4a29ab5f49ffff001d1dac2b7c"
+      + "0101000000010000000000000000000000000000000000000000000000000000000000000000ffffffff4d04ffff001d0104455468652054696d65732030332f4a616e2f32303039204368616e63656c6c6f72206f6e206272696e6b206f66207365636f6e64206261696c6f757420666f722062616e6b73ffffffff"
+      + "0100f2052a01000000434104678afdb0fe5548271967f1a67130b7105cd6a828e03909a67962e0ea1f61deb649f6bc3f4cef38c4f35504e51ec112de5c384df7ba0b8d578a4c702b6bf11d5fac00000000";
+
+  private static final String SIGNED  = "0100000001b8b2244faca910c1ffff24ecd2b559b4699338398bf77e4cb1fdeb19ad419ea0010000006b483045022100b68b7fe9cfabb32949af6747b6769dffcf2aa4170e4df2f0e9d0a4571989e94e02204cf506c210cdb6b6b4413bf251a0b57ebcf1b1b2d303ba6183239b557ef0a310012102ab46e1d7b997d8094e97bc06a21a054c2ef485fac512e2dc91eb9831af55af4effffffff012e2600000000000017a9140b2d7ed4e5076383ba8e98b9b3bce426b7a2ea1e8700000000";
+
+  private final ThoughtRawDecoder decoder = new ThoughtRawDecoder(new ThoughtAddressCodec(0, 5), null);
+
+  @Test
+  public void decodesBlock()
+  {
+    ThoughtRawDecoder.DecodedBlock block = decoder.decodeBlock(GENESIS);
+    assertEquals("000000000019d6689c085ae165831e934ff763ae46a2a6c172b3f1b60a8ce26f", block.hash());
+    assertEquals("4a5e1e4baab89f3a32518a88c31bc87f618f76673e2cc77ab2127b7afdeda33b", block.merkleRoot());
+    assertEquals(Arrays.asList("4a5e1e4baab89f3a32518a88c31bc87f618f76673e2cc77ab2127b7afdeda33b"), block.tx());
+    assertNull(block.previousHash());
+    assertEquals("1d00ffff", block.bits());
+    assertEquals(2083236893L, block.nonce());
+    assertEquals(1231006505000L, block.time().getTime());
+    assertEquals(1.0, block.difficulty(), 0);
+    assertEquals(285, block.size());
+
+    RawTransaction coinbase = block.transactions().get(0);
+    assertTrue(coinbase.vIn().get(0).isCoinbase());
+    assertNull(coinbase.vIn().get(0).txid());
+    assertEquals(50.0, coinbase.vOut().get(0).value(), 0);
+    RawTransaction.Out.ScriptPubKey script = coinbase.vOut().get(0).scriptPubKey();
+    assertEquals("pubkey", script.type());
+    assertEquals(Arrays.asList("1A1zP1eP5QGefi2DMPTfTL5SLmv7DivfNa"), script.addresses());
+    assertTrue(script.asm().endsWith("1d5f OP_CHECKSIG"));
+    assertEquals(block.hash(), coinbase.blockHash());
+  }
+
+  @Test
+  public void decodesTransaction()
+  {
+    RawTransaction tx = decoder.decodeTransaction(SIGNED);
+    assertEquals(SIGNED, tx.hex());
+    assertEquals(1, tx.version());
+    assertEquals(0, tx.lockTime());
+    RawTransaction.In in = tx.vIn().get(0);
+    assertEquals("a09e41ad19ebfdb14c7ef78b39389369b459b5d2ec24ffffc110a9ac4f24b2b8", in.txid());
+    assertEquals(1, in.vout());
+    assertEquals(0xffffffffL, in.sequence());
+    String asm = (String) in.scriptSig().get("asm");
+    assertTrue(asm, asm.contains("a310[ALL] 02ab46e1"));
+    RawTransaction.Out out = tx.vOut().get(0);
+    assertEquals(0.00009774, out.value(), 0);
+    assertEquals("scripthash", out.scriptPubKey().type());
+    assertEquals("OP_HASH160 0b2d7ed4e5076383ba8e98b9b3bce426b7a2ea1e OP_EQUAL", out.scriptPubKey().asm());
+    assertEquals(new ThoughtAddressCodec(0, 5).scriptHashAddress(HexCoder.decode("0b2d7ed4e5076383ba8e98b9b3bce426b7a2ea1e"), 0),
+        out.scriptPubKey().addresses().get(0));
+  }
+
+  @Test
+  public void decodedViewsSerialize() throws Exception
+  {
+    ThoughtRawDecoder.DecodedBlock block = decoder.decodeBlock(GENESIS);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+    {
+      out.writeObject(block);
+      out.writeObject(decoder.decodeTransaction(SIGNED));
+    }
+    ThoughtRawDecoder.DecodedBlock copy;
+    RawTransaction tx;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+    {
+      copy = (ThoughtRawDecoder.DecodedBlock) in.readObject();
+      tx = (RawTransaction) in.readObject();
+    }
+    assertEquals(block.hash(), copy.hash());
+    assertEquals(block.tx(), copy.tx());
+    assertEquals(Arrays.asList("1A1zP1eP5QGefi2DMPTfTL5SLmv7DivfNa"),
+        copy.transactions().get(0).vOut().get(0).scriptPubKey().addresses());
+    assertEquals(SIGNED, tx.hex());
+    try
+    {
+      tx.vIn().get(0).getTransaction();
+      fail();
+    }
+    catch (IllegalStateException expected)
+    {
+    }
+  }
+}
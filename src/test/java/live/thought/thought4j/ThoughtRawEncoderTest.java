@@ -0,0 +1,77 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import live.thought.thought4j.ThoughtClientInterface.BasicTxInput;
+import live.thought.thought4j.ThoughtClientInterface.BasicTxOutput;
+import live.thought.thought4j.ThoughtClientInterface.TxInput;
+import live.thought.thought4j.ThoughtClientInterface.TxOutput;
+import live.thought.thought4j.util.HexCoder;
+
+public class ThoughtRawEncoderTest
+{
+  /** The unsigned transaction of ThoughtRawDecoderTest, as createrawtransaction returns it. */
+  private static final String  UNSIGNED = "0100000001b8b2244faca910c1ffff24ecd2b559b4699338398bf77e4cb1fdeb19ad419ea00100000000ffffffff012e2600000000000017a9140b2d7ed4e5076383ba8e98b9b3bce426b7a2ea1e8700000000";
+
+  private static final String  TXID     = HexCoder.encodeReversed(HexCoder.decode("b8b2244faca910c1ffff24ecd2b559b4699338398bf77e4cb1fdeb19ad419ea0"), 0, 32);
+
+  private final ThoughtRawEncoder encoder = new ThoughtRawEncoder(ThoughtAddressCodec.MAINNET);
+
+  private static String p2sh()
+  {
+    return ThoughtAddressCodec.MAINNET.scriptHashAddress(HexCoder.decode("0b2d7ed4e5076383ba8e98b9b3bce426b7a2ea1e"), 0);
+  }
+
+  @Test
+  public void matchesCreateRawTransaction()
+  {
+    List<TxInput> in = Arrays.<TxInput> asList(new BasicTxInput(TXID, 1));
+    List<TxOutput> out = Arrays.<TxOutput> asList(new BasicTxOutput(p2sh(), 0.00009774));
+    assertEquals(UNSIGNED, encoder.createRawTransaction(in, out));
+  }
+
+  @Test
+  public void mergesOutputsByAddress()
+  {
+    String p2pkh = ThoughtAddressCodec.MAINNET.pubKeyHashAddress(HexCoder.decode("4cb4c3b90994fef58fabb6d8368302e917c6efb1"), 0);
+    List<TxOutput> out = new ArrayList<TxOutput>();
+    out.add(new BasicTxOutput(p2sh(), 0.00004887));
+    out.add(new BasicTxOutput(p2pkh, 1));
+    out.add(new BasicTxOutput(p2sh(), 0.00004887));
+    String hex = encoder.createRawTransaction(new ArrayList<TxInput>(), out);
+    assertEquals("010000000002" + "2e2600000000000017a9140b2d7ed4e5076383ba8e98b9b3bce426b7a2ea1e87"
+        + "00e1f505000000001976a9144cb4c3b90994fef58fabb6d8368302e917c6efb188ac" + "00000000", hex);
+  }
+
+  @Test(expected = GenericRpcException.class)
+  public void rejectsForeignAddress()
+  {
+    String testnet = ThoughtAddressCodec.TESTNET.pubKeyHashAddress(new byte[20], 0);
+    encoder.createRawTransaction(new ArrayList<TxInput>(), Arrays.<TxOutput> asList(new BasicTxOutput(testnet, 1)));
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThoughtRawTxBuilderTest
+{
+  private EchoRpcServer server;
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        if ("createrawtransaction".equals(method))
+          return "00";
+        Map<String, Object> out = new LinkedHashMap<String, Object>();
+        out.put("value", 2.5);
+        out.put("n", 0);
+        Map<String, Object> tx = new LinkedHashMap<String, Object>();
+        tx.put("txid", params.get(0));
+        tx.put("vout", Arrays.asList(out));
+        return tx;
+      }
+    };
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  @Test
+  public void changeNeedsOneBatchForUnknownInputs() throws Exception
+  {
+    ThoughtRawTxBuilder builder = new ThoughtRawTxBuilder(new ThoughtRPCClient(server.url()));
+    builder.in("a", 3, 1.0).in("b", 0).in("c", 0).in("b", 0);
+    builder.out("addr", 4.0).outChange("change", 0.001);
+    assertEquals(2, builder.outputs.size());
+    assertEquals(1.999, builder.outputs.get(1).amount(), 1e-9);
+    assertEquals(1, server.requests.get());
+    assertEquals(2, server.calls.size());
+  }
+
+  @Test
+  public void knownAmountsNeedNoCalls() throws Exception
+  {
+    ThoughtRawTxBuilder builder = new ThoughtRawTxBuilder(new ThoughtRPCClient(server.url()));
+    builder.in("a", 0, 1.0).in("b", 1, 2.0).out("addr", 2.5).outChange("change");
+    assertEquals(0.5, builder.outputs.get(1).amount(), 1e-9);
+    assertEquals(0, server.requests.get());
+  }
+
+  @Test
+  public void createsOnTheNodeUnlessAnEncoderIsSet() throws Exception
+  {
+    ThoughtRawTxBuilder builder = new ThoughtRawTxBuilder(new ThoughtRPCClient(server.url()));
+    char[] txid = new char[64];
+    Arrays.fill(txid, 'a');
+    builder.in(new String(txid), 0, 1.0);
+    assertEquals("00", builder.create());
+    assertEquals(1, server.requests.get());
+
+    builder.setEncoder(new ThoughtRawEncoder(ThoughtAddressCodec.MAINNET));
+    builder.outputs.clear();
+    String hex = builder.create();
+    assertEquals(1, server.requests.get());
+    assertEquals("01000000", hex.substring(0, 8));
+  }
+}
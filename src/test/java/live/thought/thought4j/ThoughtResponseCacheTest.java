@@ -0,0 +1,117 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThoughtResponseCacheTest
+{
+  private EchoRpcServer        server;
+  private ThoughtRPCClient     client;
+  private ThoughtResponseCache cache;
+  private volatile long        confirmations = 10;
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        if ("getblockcount".equals(method))
+          return 100;
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        m.put("txid", params.get(0));
+        m.put("hex", params.get(0));
+        m.put("confirmations", confirmations);
+        return m;
+      }
+    };
+    client = new ThoughtRPCClient(server.url());
+    cache = new ThoughtResponseCache();
+    client.setResponseCache(cache);
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  @Test
+  public void immutableResultsAreCached() throws Exception
+  {
+    client.decodeScript("00");
+    client.decodeScript("00");
+    client.decodeScript("01");
+    assertEquals(2, server.requests.get());
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    client.getBlockCount();
+    client.getBlockCount();
+    assertEquals(4, server.requests.get());
+  }
+
+  @Test
+  public void unconfirmedResultsAreNotCached() throws Exception
+  {
+    confirmations = 1;
+    client.getRawTransaction("aa");
+    confirmations = 6;
+    client.getRawTransaction("aa");
+    client.getRawTransaction("aa");
+    assertEquals(2, server.requests.get());
+  }
+
+  @Test
+  public void ttlEntriesExpire() throws Exception
+  {
+    cache.setPolicy("validateaddress", ThoughtResponseCache.Policy.ttl(20));
+    client.validateAddress("a");
+    client.validateAddress("a");
+    assertEquals(1, server.requests.get());
+    Thread.sleep(40);
+    client.validateAddress("a");
+    assertEquals(2, server.requests.get());
+  }
+
+  @Test
+  public void sizeIsBounded() throws Exception
+  {
+    cache.setMaxBytes(4096);
+    for (int i = 0; i < 100; i++)
+      client.decodeScript(Integer.toHexString(i));
+    assertTrue(cache.getBytes() <= 4096);
+    assertTrue(cache.getEvictions() > 0);
+    assertEquals(cache.getSize() + cache.getEvictions(), 100);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThoughtRpcMetricsTest
+{
+  private EchoRpcServer     server;
+  private ThoughtRPCClient  client;
+  private ThoughtRpcMetrics metrics;
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        if ("fail".equals(method))
+          throw new IllegalStateException("no");
+        return method;
+      }
+    };
+    client = new ThoughtRPCClient(server.url());
+    metrics = new ThoughtRpcMetrics();
+    client.setMetricsSink(metrics);
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  @Test
+  public void recordsCallsPerMethod() throws Exception
+  {
+    for (int i = 0; i < 3; i++)
+      client.query("ping");
+    try
+    {
+      client.query("fail");
+      fail();
+    }
+    catch (GenericRpcException expected)
+    {
+    }
+    client.batch().call("a").call("b").execute();
+
+    ThoughtRpcMetrics.Method ping = metrics.get("ping");
+    assertEquals(3, ping.calls.get());
+    assertEquals(0, ping.errors.get());
+    assertEquals(3, ping.latency.getCount());
+    // Only the first call opened the connection
+    assertEquals(1, ping.connect.getCount());
+    assertTrue(ping.bytesSent.get() > 3 * 40);
+    assertTrue(ping.bytesReceived.get() > 3 * 40);
+    assertTrue(ping.wait.getTotal() > 0);
+    assertTrue(ping.latency.getTotal() >= ping.wait.getTotal() + ping.parse.getTotal());
+
+    assertEquals(1, metrics.get("fail").errors.get());
+    assertEquals(1, metrics.get("batch").calls.get());
+    assertEquals(3, metrics.getMethods().size());
+  }
+
+  @Test
+  public void transportFailuresAreErrors() throws Exception
+  {
+    // No response head comes back before the read timeout
+    server.delay = 2000;
+    client.getConnectionPool().setReadTimeout(50);
+    try
+    {
+      client.query("ping");
+      fail();
+    }
+    catch (GenericRpcException expected)
+    {
+    }
+    assertEquals(1, metrics.get("ping").errors.get());
+    assertEquals(0, metrics.get("ping").wait.getCount());
+  }
+
+  @Test
+  public void asyncCallsAreRecorded() throws Exception
+  {
+    AsyncThoughtClient async = new AsyncThoughtClient(client, 2, null);
+    try
+    {
+      assertEquals("ping", async.query("ping").get());
+    }
+    finally
+    {
+      async.close();
+    }
+    ThoughtRpcMetrics.Method ping = metrics.get("ping");
+    assertEquals(1, ping.calls.get());
+    assertEquals(1, ping.connect.getCount());
+    assertTrue(ping.bytesReceived.get() > 0);
+  }
+
+  @Test
+  public void defaultSinkIgnoresCalls() throws Exception
+  {
+    client.setMetricsSink(null);
+    assertEquals(ThoughtMetricsSink.NONE, client.getMetricsSink());
+    client.query("ping");
+    assertNull(metrics.get("ping"));
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import live.thought.thought4j.ThoughtClientInterface.BasicTxInput;
+import live.thought.thought4j.ThoughtClientInterface.BasicTxOutput;
+import live.thought.thought4j.ThoughtClientInterface.TxInput;
+import live.thought.thought4j.ThoughtClientInterface.TxOutput;
+
+public class ThoughtUtxoMirrorTest
+{
+  private static final String A = id('a');
+  private static final String C = id('c');
+
+  private EchoRpcServer       server;
+  private ThoughtRPCClient    client;
+  private volatile String     tip     = "b10";
+  private volatile List<Object> unspent = new ArrayList<Object>();
+  private volatile List<Object> since   = new ArrayList<Object>();
+  private String              hexB;
+  private String              idB;
+
+  private static String id(char c)
+  {
+    char[] id = new char[64];
+    Arrays.fill(id, c);
+    return new String(id);
+  }
+
+  private static Map<String, Object> entry(String txid, String category, int vout, double amount, int confirmations)
+  {
+    Map<String, Object> m = new LinkedHashMap<String, Object>();
+    m.put("txid", txid);
+    m.put("category", category);
+    m.put("vout", vout);
+    m.put("amount", amount);
+    m.put("confirmations", confirmations);
+    return m;
+  }
+
+  @Before
+  public void start() throws IOException
+  {
+    server = new EchoRpcServer();
+    client = new ThoughtRPCClient(server.url());
+    // B spends A:0, pays 0.3 away and keeps 0.69 as change
+    String other = ThoughtAddressCodec.MAINNET.pubKeyHashAddress(new byte[20], 0);
+    String change = ThoughtAddressCodec.MAINNET.scriptHashAddress(new byte[20], 0);
+    hexB = client.getRawEncoder().createRawTransaction(Arrays.<TxInput> asList(new BasicTxInput(A, 0)),
+        Arrays.<TxOutput> asList(new BasicTxOutput(other, 0.3), new BasicTxOutput(change, 0.69)));
+    idB = client.getRawDecoder().decodeTransaction(hexB).txId();
+    server.handler = new EchoRpcServer.Handler()
+    {
+      @Override
+      public Object result(String method, List<?> params)
+      {
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        if ("getbestblockhash".equals(method))
+          return tip;
+        if ("getblockheader".equals(method))
+        {
+          String hash = (String) params.get(0);
+          m.put("hash", hash);
+          m.put("height", Integer.parseInt(hash.substring(1)));
+          m.put("confirmations", 1);
+          return m;
+        }
+        if ("listunspent".equals(method))
+          return unspent;
+        if ("listsinceblock".equals(method))
+        {
+          m.put("transactions", since);
+          m.put("lastblock", tip);
+          return m;
+        }
+        if ("gettransaction".equals(method))
+        {
+          m.put("txid", params.get(0));
+          m.put("hex", hexB);
+          return m;
+        }
+        throw new IllegalStateException("Unexpected " + method);
+      }
+    };
+    Map<String, Object> a = entry(A, "receive", 0, 1.0, 3);
+    unspent = new ArrayList<Object>(Arrays.asList((Object) a));
+  }
+
+  @After
+  public void stop() throws IOException
+  {
+    server.close();
+  }
+
+  @Test
+  public void followsDeltas() throws Exception
+  {
+    ThoughtUtxoMirror mirror = new ThoughtUtxoMirror(client);
+    mirror.update();
+    assertEquals(1, mirror.size());
+    assertEquals(100000000, mirror.getBalanceSat(3));
+    assertEquals(0, mirror.getBalanceSat(4));
+
+    tip = "b11";
+    since = new ArrayList<Object>(Arrays.asList((Object) entry(idB, "send", 0, -0.3, 0), entry(C, "receive", 1, 2.0, 1)));
+    mirror.update();
+    assertFalse(mirror.contains(A, 0));
+    assertEquals(69000000, mirror.getAmountSat(idB, 1));
+    assertEquals(200000000, mirror.getAmountSat(C, 1));
+    assertEquals(269000000, mirror.getBalanceSat(0));
+    assertEquals(200000000, mirror.getBalanceSat(1));
+
+    tip = "b12";
+    since = new ArrayList<Object>(Arrays.asList((Object) entry(idB, "send", 0, -0.3, 1)));
+    assertEquals(1, mirror.update());
+    assertEquals(269000000, mirror.getBalanceSat(1));
+    assertEquals(200000000, mirror.getBalanceSat(2));
+    assertEquals(1, mirror.getSeeds());
+
+    ThoughtCoinSelector selector = new ThoughtCoinSelector(mirror);
+    ThoughtCoinSelector.Selection s = selector.select(69000000, 1, null);
+    assertEquals(idB, s.coins.get(0).txid());
+    assertEquals(1, s.coins.get(0).confirmations());
+  }
+
+  @Test
+  public void conflictReseeds() throws Exception
+  {
+    ThoughtUtxoMirror mirror = new ThoughtUtxoMirror(client);
+    mirror.update();
+    since = new ArrayList<Object>(Arrays.asList((Object) entry(C, "receive", 0, 1.0, -1)));
+    mirror.update();
+    assertEquals(2, mirror.getSeeds());
+    assertTrue(mirror.contains(A, 0));
+  }
+
+  @Test
+  public void seedKeepsImmatureCoinbaseAndFlags() throws Exception
+  {
+    String d = id('d');
+    Map<String, Object> watched = entry(C, "receive", 0, 2.0, 4);
+    watched.put("spendable", false);
+    watched.put("solvable", true);
+    unspent.add(watched);
+    since = new ArrayList<Object>(Arrays.asList((Object) entry(d, "immature", 0, 5.0, 5)));
+    ThoughtUtxoMirror mirror = new ThoughtUtxoMirror(client);
+    mirror.seed();
+    assertEquals(2, mirror.size());
+    for (ThoughtClientInterface.Unspent u : mirror.listUnspent(0))
+    {
+      assertEquals(!C.equals(u.txid()), u.spendable());
+      assertTrue(u.solvable());
+    }
+
+    // the coinbase was mined at height 6 and matures at 105
+    tip = "b105";
+    since = new ArrayList<Object>();
+    mirror.update();
+    assertTrue(mirror.contains(d, 0));
+    assertEquals(800000000, mirror.getBalanceSat(1));
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class JSONDecimalTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void parsersProduceExactDecimals() throws IOException {
+        byte[] json = "[314.15926535,-0.00000001,1e-5,2,0.1]".getBytes(UTF8);
+        List<?> streamed = (List<?>) JSONStreamParser.parse(json, true);
+        List<?> lazy = (List<?>) LazyJSON.parse(json, true);
+        for (List<?> l : new List<?>[] { streamed, lazy }) {
+            assertTrue(l.get(0) instanceof JSONDecimal);
+            assertEquals(31415926535L, CoinUtil.toSatoshis((Number) l.get(0)));
+            assertEquals(-1, CoinUtil.toSatoshis((Number) l.get(1)));
+            assertTrue(l.get(2) instanceof Double);
+            assertEquals(200000000, CoinUtil.toSatoshis((Number) l.get(3)));
+            assertEquals("0.1", l.get(4).toString());
+        }
+    }
+
+    @Test
+    public void parsersProduceDoublesByDefault() throws IOException {
+        byte[] json = "[314.15926535]".getBytes(UTF8);
+        Object[] parsed = { ((List<?>) JSONStreamParser.parse(json)).get(0),
+                ((List<?>) LazyJSON.parse(json)).get(0),
+                CrippledJavaScriptParser.parseJSExpr("314.15926535") };
+        for (Object o : parsed)
+            assertEquals(Double.valueOf(314.15926535), o);
+    }
+
+    @Test
+    public void longFractionsFallBackToDouble() throws IOException {
+        String text = "0.0002441371325370145";
+        byte[] json = ("[" + text + "]").getBytes(UTF8);
+        Object[] parsed = { ((List<?>) JSONStreamParser.parse(json, true)).get(0),
+                ((List<?>) LazyJSON.parse(json, true)).get(0) };
+        for (Object o : parsed)
+            assertEquals(Double.valueOf(Double.parseDouble(text)), o);
+        assertNull(JSONDecimal.parse(text));
+    }
+
+    @Test
+    public void doubleValueMatchesParseDouble() {
+        Random r = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            long unscaled = r.nextLong() % 2100000000000000L;
+            int scale = 1 + r.nextInt(JSONDecimal.MAX_DIGITS);
+            JSONDecimal d = new JSONDecimal(unscaled, scale);
+            assertEquals(d.toString(), Double.parseDouble(d.toString()), d.doubleValue(), 0);
+            assertEquals(d, JSONDecimal.parse(d.toString()));
+        }
+    }
+
+    @Test
+    public void satoshisRoundHalfAwayFromZero() {
+        assertEquals(1, new JSONDecimal(5, 9).satoshis());
+        assertEquals(-1, new JSONDecimal(-5, 9).satoshis());
+        assertEquals(0, new JSONDecimal(4, 9).satoshis());
+        assertEquals(150000000, JSONDecimal.parse("1.5").satoshis());
+        assertEquals(-2100000000000000L, CoinUtil.parseSatoshis("-21000000.00000000"));
+        assertEquals("-0.00000001", CoinUtil.format(-1));
+        assertEquals("12.34500000", CoinUtil.format(1234500000));
+    }
+
+    @Test
+    public void rejectsOtherForms() {
+        assertNull(JSONDecimal.parse("1"));
+        assertNull(JSONDecimal.parse("1.5e3"));
+        assertNull(JSONDecimal.parse(".5"));
+        assertNull(JSONDecimal.parse("1."));
+        assertNull(JSONDecimal.parse("1234567890.1234567890"));
+    }
+}
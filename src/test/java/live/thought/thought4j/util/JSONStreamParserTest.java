@@ -0,0 +1,114 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JSONStreamParserTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String UNSPENT = "{\"result\":[{\"txid\":\"a09e41ad19ebfdb14c7ef78b39389369b459b5d2ec24ffffc110a9ac4f24b2b8\","
+            + "\"vout\":1,\"address\":\"3ygXaDhCtYaCJ9AFnhbqV1SaBXWbRzzgLC\",\"account\":\"\",\"scriptPubKey\":\"76a914\","
+            + "\"amount\":314.15926535,\"confirmations\":-1,\"spendable\":true,\"solvable\":false,\"fee\":1e-5,"
+            + "\"sequence\":4294967295,\"label\":null,\"empty\":[],\"obj\":{}}],"
+            + "\"error\":null,\"id\":\"1\"}\n";
+
+    @Test
+    public void sameModelAsStringParser() throws IOException {
+        Object expected = CrippledJavaScriptParser.parseJSExpr(UNSPENT);
+        assertEquals(expected, JSONStreamParser.parse(UNSPENT.getBytes(UTF8)));
+        assertEquals(expected, JSONStreamParser.parse(new ByteArrayInputStream(UNSPENT.getBytes(UTF8))));
+    }
+
+    @Test
+    public void valuesAcrossBufferBoundaries() throws IOException {
+        // A stream returning one byte per read forces every token across a refill
+        final byte[] data = UNSPENT.getBytes(UTF8);
+        InputStream in = new InputStream() {
+            int i = 0;
+
+            @Override
+            public int read() {
+                return i < data.length ? data[i++] & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (i == data.length)
+                    return -1;
+                b[off] = data[i++];
+                return 1;
+            }
+        };
+        assertEquals(CrippledJavaScriptParser.parseJSExpr(UNSPENT), JSONStreamParser.parse(in));
+    }
+
+    @Test
+    public void stringsAndNumbers() throws IOException {
+        List<?> l = (List<?>) JSONStreamParser.parse("[\"café € 😀\",\"\\u00e9\\n\\\"\\/\",-0,9223372036854775807,1.5E2,null]".getBytes(UTF8));
+        assertEquals("café € 😀", l.get(0));
+        assertEquals("é\n\"/", l.get(1));
+        assertEquals(Long.valueOf(0), l.get(2));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), l.get(3));
+        assertEquals(Double.valueOf(150), l.get(4));
+        assertNull(l.get(5));
+    }
+
+    @Test
+    public void longStringsGrowTheScratchBuffer() throws IOException {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < 100; i++)
+            hex.append("0a1b");
+        List<?> l = (List<?>) JSONStreamParser.parse(("[\"" + hex + "\"]").getBytes(UTF8));
+        assertEquals(hex.toString(), l.get(0));
+    }
+
+    @Test
+    public void repeatedKeysAreShared() throws IOException {
+        List<?> l = (List<?>) JSONStreamParser.parse("[{\"amount\":1},{\"amount\":2}]".getBytes(UTF8));
+        String first = ((Map<?, ?>) l.get(0)).keySet().iterator().next().toString();
+        String second = ((Map<?, ?>) l.get(1)).keySet().iterator().next().toString();
+        assertSame(first, second);
+    }
+
+    @Test
+    public void rejectsMalformedInput() {
+        for (String bad : new String[] { "", "{", "[1,]", "{\"a\" 1}", "\"abc", "tru", "[1] x", "-" }) {
+            try {
+                JSONStreamParser.parse(bad.getBytes(UTF8));
+                fail(bad);
+            } catch (IOException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JSONWriterTest {
+
+    @Test
+    public void matchesStringify() {
+        Map<String, Object> output = new LinkedHashMap<String, Object>();
+        output.put("3ygXaDhCtYaCJ9AFnhbqV1SaBXWbRzzgLC", 12.5);
+        output.put("data", "quote \" backslash \\ tab \t newline \n");
+        Object[] params = new Object[] { Arrays.asList(1, -2L, Long.MIN_VALUE, 0), output, true, null, new BigDecimal("0.00000001"),
+                new Object[0] };
+        assertEquals(JSON.stringify(params), new JSONWriter().array(params).toString());
+    }
+
+    @Test
+    public void nonAsciiIsEscapedAndRoundTrips() throws IOException {
+        JSONWriter w = new JSONWriter(4, 16);
+        w.string("café € 😀");
+        assertEquals("\"caf\\u00e9 \\u20ac \\ud83d\\ude00\"", w.toString());
+        assertEquals("café € 😀", JSONStreamParser.parse(w.toByteArray()));
+        assertEquals(0, w.reset().size());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+  @Test
+  public void bucketsCoverEveryValue()
+  {
+    int last = -1;
+    for (long v = 0; v < 1 << 20; v++)
+    {
+      int i = LatencyHistogram.index(v);
+      assertTrue(i == last || i == last + 1);
+      assertTrue(LatencyHistogram.highestEquivalentValue(i) >= v);
+      last = i;
+    }
+    assertEquals(1151, LatencyHistogram.index(LatencyHistogram.MAX_VALUE));
+    assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.highestEquivalentValue(1151));
+  }
+
+  @Test
+  public void percentilesWithinPrecision()
+  {
+    LatencyHistogram h = new LatencyHistogram();
+    for (long v = 1; v <= 100000; v++)
+      h.record(v * 1000);
+    assertEquals(100000, h.getCount());
+    assertEquals(100000000, h.getMax());
+    assertEquals(50000500, h.getMean(), 1);
+    long p50 = h.getValueAtPercentile(50);
+    long p99 = h.getValueAtPercentile(99);
+    assertTrue(p50 >= 50000000 && p50 < 50000000 * 1.04);
+    assertTrue(p99 >= 99000000 && p99 < 99000000 * 1.04);
+    assertEquals(100000000, h.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void clampsOutOfRangeValues()
+  {
+    LatencyHistogram h = new LatencyHistogram();
+    h.record(-5);
+    h.record(Long.MAX_VALUE);
+    assertEquals(0, h.getValueAtPercentile(50));
+    assertEquals(LatencyHistogram.MAX_VALUE, h.getMax());
+    h.reset();
+    assertEquals(0, h.getCount());
+    assertEquals(0, h.getValueAtPercentile(99));
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class LazyJSONTest {
+
+    private static final byte[] BLOCK = ("{\"result\":{\"hash\":\"000000a1\",\"confirmations\":12,\"height\":1000,"
+            + "\"tx\":[\"aa\",\"bb\",\"cc\"],\"difficulty\":0.0123,\"nextblockhash\":null,\"label\":\"caf\\u00e9 €\","
+            + "\"nested\":{\"a\":[{\"b\":\"}]\\\"\"},[]],\"c\":true}},\"error\":null,\"id\":\"1\"}\n").getBytes(Charset.forName("UTF-8"));
+
+    @Test
+    public void decodesLikeTheEagerParser() throws IOException {
+        Object lazy = LazyJSON.parse(BLOCK);
+        assertTrue(lazy instanceof LazyJSONObject);
+        assertEquals(JSONStreamParser.parse(BLOCK), lazy);
+    }
+
+    @Test
+    public void readsSingleFields() {
+        Map<?, ?> result = (Map<?, ?>) ((Map<?, ?>) LazyJSON.parse(BLOCK)).get("result");
+        assertEquals("000000a1", MapWrapper.mapStr(result, "hash"));
+        assertEquals(1000, MapWrapper.mapInt(result, "height"));
+        assertEquals(3, ((List<?>) result.get("tx")).size());
+        assertEquals("cc", ((List<?>) result.get("tx")).get(2));
+        assertEquals("café €", result.get("label"));
+        assertTrue(result.containsKey("nextblockhash"));
+        assertEquals(null, result.get("missing"));
+    }
+
+    @Test
+    public void serializesAsPlainCollections() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(LazyJSON.parse(BLOCK));
+        out.close();
+        Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertTrue(copy instanceof LinkedHashMap);
+        assertEquals(JSONStreamParser.parse(BLOCK), copy);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OutPointMapTest
+{
+  private static String txid(Random r)
+  {
+    StringBuilder b = new StringBuilder(64);
+    for (int i = 0; i < 64; i++)
+      b.append("0123456789abcdef".charAt(r.nextInt(16)));
+    return b.toString();
+  }
+
+  @Test
+  public void behavesLikeAHashMap()
+  {
+    Random r = new Random(7);
+    String[] txids = new String[500];
+    for (int i = 0; i < txids.length; i++)
+      txids[i] = txid(r);
+    OutPointMap map = new OutPointMap();
+    Map<String, Long> expected = new HashMap<String, Long>();
+    long total = 0;
+    for (int i = 0; i < 20000; i++)
+    {
+      String txid = txids[r.nextInt(txids.length)];
+      int vout = r.nextInt(8);
+      String key = txid + ":" + vout;
+      if (r.nextInt(3) == 0)
+      {
+        Long old = expected.remove(key);
+        assertEquals(old == null ? -1 : old.longValue(), map.remove(txid, vout));
+        if (old != null)
+          total -= old;
+      }
+      else
+      {
+        long amount = r.nextInt(1000000);
+        Long old = expected.put(key, amount);
+        assertEquals(old == null, map.put(txid, vout, amount, i));
+        total += amount - (old == null ? 0 : old);
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    assertEquals(total, map.total());
+    assertEquals(total, map.sum(Integer.MAX_VALUE - 1));
+    for (Map.Entry<String, Long> e : expected.entrySet())
+    {
+      String[] k = e.getKey().split(":");
+      assertEquals(e.getValue().longValue(), map.getAmount(k[0], Integer.parseInt(k[1])));
+    }
+  }
+
+  @Test
+  public void sumsByHeight()
+  {
+    String a = txid(new Random(1));
+    OutPointMap map = new OutPointMap();
+    map.put(a, 0, 5, 10);
+    map.put(a, 1, 7, 12);
+    map.put(a, 2, 11, OutPointMap.UNCONFIRMED);
+    assertEquals(5, map.sum(11));
+    assertEquals(12, map.sum(12));
+    assertEquals(23, map.sum(OutPointMap.UNCONFIRMED));
+    assertTrue(map.setHeight(a, 2, 13));
+    assertEquals(23, map.sum(13));
+    assertFalse(map.contains(a, 3));
+    assertEquals(-1, map.getHeight(a, 3));
+  }
+}
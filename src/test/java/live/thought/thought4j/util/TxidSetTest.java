@@ -0,0 +1,140 @@
+/*
+ * thought4j Java RPC Client library for the Thought Network
+ * 
+ * Copyright (c) 2018, Thought Network LLC
+ * 
+ * License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the 
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package live.thought.thought4j.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TxidSetTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static String txid(Random r)
+  {
+    byte[] b = new byte[32];
+    r.nextBytes(b);
+    return HexCoder.encode(b);
+  }
+
+  @Test
+  public void behavesLikeASet()
+  {
+    Random r = new Random(1);
+    TxidSet set = new TxidSet();
+    HashSet<String> reference = new HashSet<String>();
+    for (int i = 0; i < 20000; i++)
+    {
+      String id = txid(r);
+      assertTrue(set.add(id));
+      reference.add(id);
+    }
+    int n = 0;
+    for (String id : reference)
+      if (n++ % 2 == 0)
+        assertTrue(set.remove(id));
+    n = 0;
+    for (String id : reference)
+      assertEquals(n++ % 2 != 0, set.contains(id));
+    assertEquals(10000, set.size());
+    assertFalse(set.add(set.iterator().next()));
+    assertFalse(set.contains("not a txid"));
+    assertTrue(set.contains(set.iterator().next().toUpperCase()));
+  }
+
+  @Test
+  public void expiresByHeight()
+  {
+    Random r = new Random(2);
+    TxidSet set = new TxidSet();
+    Map<String, Integer> heights = new HashMap<String, Integer>();
+    for (int i = 0; i < 5000; i++)
+    {
+      String id = txid(r);
+      set.add(id, i % 100);
+      heights.put(id, i % 100);
+    }
+    String forever = txid(r);
+    set.add(forever);
+    assertEquals(2500, set.expire(50));
+    for (Map.Entry<String, Integer> e : heights.entrySet())
+      assertEquals(e.getValue() >= 50, set.contains(e.getKey()));
+    assertTrue(set.contains(forever));
+    assertEquals(99, set.getMaxHeight());
+  }
+
+  @Test
+  public void persistsChanges() throws Exception
+  {
+    File file = new File(folder.getRoot(), "processed.bin");
+    Random r = new Random(3);
+    String a = txid(r), b = txid(r), c = txid(r);
+    TxidSet set = new TxidSet(file);
+    set.add(a, 1);
+    set.add(b, 2);
+    set.add(c, 3);
+    set.remove(b);
+    set.close();
+
+    set = new TxidSet(file);
+    assertEquals(2, set.size());
+    assertTrue(set.contains(a));
+    assertFalse(set.contains(b));
+    assertEquals(3, set.getHeight(c));
+    for (int i = 0; i < 3000; i++)
+      set.add(txid(r), 0);
+    set.expire(1);
+    set.close();
+    assertEquals(2 * 36, file.length());
+
+    set = new TxidSet(file);
+    assertEquals(2, set.size());
+    set.close();
+  }
+
+  @Test
+  public void expiryIsPersistedWithoutCompaction() throws Exception
+  {
+    File file = new File(folder.getRoot(), "expiring.bin");
+    Random r = new Random(4);
+    String a = txid(r), b = txid(r);
+    TxidSet set = new TxidSet(file);
+    set.add(a, 1);
+    set.add(b, 5);
+    assertEquals(1, set.expire(3));
+    set.close();
+
+    set = new TxidSet(file);
+    assertFalse(set.contains(a));
+    assertTrue(set.contains(b));
+    set.close();
+  }
+}